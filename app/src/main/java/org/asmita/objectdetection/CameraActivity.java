@@ -17,31 +17,22 @@
 package org.asmita.objectdetection;
 
 import android.Manifest;
-import android.app.Fragment;
+import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.hardware.Camera;
-import android.hardware.camera2.CameraAccessException;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.params.StreamConfigurationMap;
+import android.graphics.SurfaceTexture;
 import android.media.AudioManager;
-import android.media.Image;
-import android.media.Image.Plane;
-import android.media.ImageReader;
-import android.media.ImageReader.OnImageAvailableListener;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Trace;
+import android.os.IBinder;
 import androidx.annotation.NonNull;
 //import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import androidx.appcompat.app.AppCompatActivity;
 //import androidx.appcompat.widget.SwitchCompat;
 import androidx.appcompat.widget.Toolbar;
 import android.util.Size;
-import android.view.Surface;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.view.WindowManager;
@@ -50,38 +41,30 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
 
-import org.asmita.objectdetection.env.ImageUtils;
 import org.asmita.objectdetection.env.Logger;
 
+/**
+ * Views the output of the {@link DetectorEngine} running in {@link DetectionService}. The service is
+ * started once the permissions are granted and keeps running when this Activity goes away; the
+ * Activity binds to it while it is visible.
+ */
 public abstract class CameraActivity extends AppCompatActivity
-    implements OnImageAvailableListener,
-        Camera.PreviewCallback,
-        CompoundButton.OnCheckedChangeListener,
-        View.OnClickListener {
+    implements CompoundButton.OnCheckedChangeListener,
+        View.OnClickListener,
+        CameraConnectionFragment.PreviewCallback {
   private static final Logger LOGGER = new Logger();
 
   private static final int PERMISSIONS_REQUEST = 1;
 
   private static final String PERMISSION_CAMERA = Manifest.permission.CAMERA;
   private static final String PERMISSION_RECORD_AUDIO = Manifest.permission.RECORD_AUDIO;
-  protected int previewWidth = 0;
-  protected int previewHeight = 0;
   private boolean debug = false;
-  private Handler handler;
-  private HandlerThread handlerThread;
-  private boolean useCamera2API;
-  private boolean isProcessingFrame = false;
-  private byte[][] yuvBytes = new byte[3][];
-  private int[] rgbBytes = null;
-  private int yRowStride;
-  private Runnable postInferenceCallback;
-  private Runnable imageConverter;
-  protected SpeechRecognitionListener listener;
   protected int streamVolume;
   protected AudioManager audioManager;
+  protected DetectorEngine engine;
+  private CameraConnectionFragment cameraFragment;
+  private boolean bound = false;
 //  private LinearLayout bottomSheetLayout;
 //  private LinearLayout gestureLayout;
 //  private BottomSheetBehavior sheetBehavior;
@@ -92,6 +75,25 @@ public abstract class CameraActivity extends AppCompatActivity
 //  private SwitchCompat apiSwitchCompat;
 //  private TextView threadsTextView;
 
+  private final ServiceConnection serviceConnection =
+      new ServiceConnection() {
+        @Override
+        public void onServiceConnected(final ComponentName name, final IBinder service) {
+          LOGGER.d("Connected to " + name);
+          engine = ((DetectionService.LocalBinder) service).getEngine();
+          onEngineConnected(engine);
+          engine.setPreviewTexture(
+              cameraFragment != null ? cameraFragment.getPreviewTexture() : null);
+        }
+
+        @Override
+        public void onServiceDisconnected(final ComponentName name) {
+          LOGGER.d("Disconnected from " + name);
+          onEngineDisconnected();
+          engine = null;
+        }
+      };
+
   @Override
   protected void onCreate(final Bundle savedInstanceState) {
     LOGGER.d("onCreate " + this);
@@ -175,183 +177,49 @@ public abstract class CameraActivity extends AppCompatActivity
 //    minusImageView.setOnClickListener(this);
   }
 
-  protected int[] getRgbBytes() {
-    imageConverter.run();
-    return rgbBytes;
-  }
-
-  protected int getLuminanceStride() {
-    return yRowStride;
-  }
-
-  protected byte[] getLuminance() {
-    return yuvBytes[0];
-  }
-
-  /** Callback for android.hardware.Camera API */
-  @Override
-  public void onPreviewFrame(final byte[] bytes, final Camera camera) {
-    if (isProcessingFrame) {
-      LOGGER.w("Dropping frame!");
-      return;
-    }
-
-    try {
-      // Initialize the storage bitmaps once when the resolution is known.
-      if (rgbBytes == null) {
-        Camera.Size previewSize = camera.getParameters().getPreviewSize();
-        previewHeight = previewSize.height;
-        previewWidth = previewSize.width;
-        rgbBytes = new int[previewWidth * previewHeight];
-        onPreviewSizeChosen(new Size(previewSize.width, previewSize.height), 90);
-      }
-    } catch (final Exception e) {
-      LOGGER.e(e, "Exception!");
-      return;
-    }
-
-    isProcessingFrame = true;
-    yuvBytes[0] = bytes;
-    yRowStride = previewWidth;
-
-    imageConverter =
-        new Runnable() {
-          @Override
-          public void run() {
-            ImageUtils.convertYUV420SPToARGB8888(bytes, previewWidth, previewHeight, rgbBytes);
-          }
-        };
-
-    postInferenceCallback =
-        new Runnable() {
-          @Override
-          public void run() {
-            camera.addCallbackBuffer(bytes);
-            isProcessingFrame = false;
-          }
-        };
-    processImage();
-  }
-
-  /** Callback for Camera2 API */
-  @Override
-  public void onImageAvailable(final ImageReader reader) {
-    // We need wait until we have some size from onPreviewSizeChosen
-    if (previewWidth == 0 || previewHeight == 0) {
-      return;
-    }
-    if (rgbBytes == null) {
-      rgbBytes = new int[previewWidth * previewHeight];
-    }
-    try {
-      final Image image = reader.acquireLatestImage();
-
-      if (image == null) {
-        return;
-      }
-
-      if (isProcessingFrame) {
-        image.close();
-        return;
-      }
-      isProcessingFrame = true;
-      Trace.beginSection("imageAvailable");
-      final Plane[] planes = image.getPlanes();
-      fillBytes(planes, yuvBytes);
-      yRowStride = planes[0].getRowStride();
-      final int uvRowStride = planes[1].getRowStride();
-      final int uvPixelStride = planes[1].getPixelStride();
-
-      imageConverter =
-          new Runnable() {
-            @Override
-            public void run() {
-              ImageUtils.convertYUV420ToARGB8888(
-                  yuvBytes[0],
-                  yuvBytes[1],
-                  yuvBytes[2],
-                  previewWidth,
-                  previewHeight,
-                  yRowStride,
-                  uvRowStride,
-                  uvPixelStride,
-                  rgbBytes);
-            }
-          };
-
-      postInferenceCallback =
-          new Runnable() {
-            @Override
-            public void run() {
-              image.close();
-              isProcessingFrame = false;
-            }
-          };
-
-      processImage();
-    } catch (final Exception e) {
-      LOGGER.e(e, "Exception!");
-      Trace.endSection();
-      return;
-    }
-    Trace.endSection();
-  }
-
   @Override
   public synchronized void onStart() {
     LOGGER.d("onStart " + this);
     super.onStart();
+    if (hasPermission()) {
+      bindDetectionService();
+    }
   }
 
   @Override
   public synchronized void onResume() {
     LOGGER.d("onResume " + this);
     super.onResume();
-
-    handlerThread = new HandlerThread("inference");
-    handlerThread.start();
-    handler = new Handler(handlerThread.getLooper());
   }
 
   @Override
   public synchronized void onPause() {
     LOGGER.d("onPause " + this);
-
-    handlerThread.quitSafely();
-    try {
-      handlerThread.join();
-      handlerThread = null;
-      handler = null;
-    } catch (final InterruptedException e) {
-      LOGGER.e(e, "Exception!");
-    }
-    listener.destroy();
-//    listener.stopListening();
-//    audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, streamVolume, 0);
     super.onPause();
   }
 
   @Override
   public synchronized void onStop() {
     LOGGER.d("onStop " + this);
-//    audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, streamVolume, 0);
+    // The engine keeps running; only the view of it goes away.
+    if (bound) {
+      if (engine != null) {
+        onEngineDisconnected();
+        engine = null;
+      }
+      unbindService(serviceConnection);
+      bound = false;
+    }
     super.onStop();
   }
 
   @Override
   public synchronized void onDestroy() {
     LOGGER.d("onDestroy " + this);
-    listener.destroy();
     //    audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, streamVolume, 0);
     super.onDestroy();
   }
 
-  protected synchronized void runInBackground(final Runnable r) {
-    if (handler != null) {
-      handler.post(r);
-    }
-  }
-
   @Override
   public void onRequestPermissionsResult(
       final int requestCode, final String[] permissions, final int[] grantResults) {
@@ -359,6 +227,7 @@ public abstract class CameraActivity extends AppCompatActivity
       if (grantResults.length > 0
           && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
         setFragment();
+        bindDetectionService();
       } else {
         requestPermission();
       }
@@ -388,92 +257,35 @@ public abstract class CameraActivity extends AppCompatActivity
     }
   }
 
-  // Returns true if the device supports the required hardware level, or better.
-  private boolean isHardwareLevelSupported(
-      CameraCharacteristics characteristics, int requiredLevel) {
-    int deviceLevel = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
-    if (deviceLevel == CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY) {
-      return requiredLevel == deviceLevel;
+  /**
+   * Starts the service if it isn't running yet and binds to it. The camera may only be opened in
+   * the background by a foreground service, which is why it is started rather than just bound.
+   */
+  private void bindDetectionService() {
+    if (bound) {
+      return;
     }
-    // deviceLevel is not LEGACY, can use numerical sort
-    return requiredLevel <= deviceLevel;
+    final Intent intent = new Intent(this, DetectionService.class);
+    startForegroundService(intent);
+    bound = bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
   }
 
-  private String chooseCamera() {
-    final CameraManager manager = (CameraManager) getSystemService(Context.CAMERA_SERVICE);
-    try {
-      for (final String cameraId : manager.getCameraIdList()) {
-        final CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
-
-        // We don't use a front facing camera in this sample.
-        final Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
-        if (facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT) {
-          continue;
-        }
-
-        final StreamConfigurationMap map =
-            characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-
-        if (map == null) {
-          continue;
-        }
-
-        // Fallback to camera1 API for internal cameras that don't have full support.
-        // This should help with legacy situations where using the camera2 API causes
-        // distorted or otherwise broken previews.
-        useCamera2API =
-            (facing == CameraCharacteristics.LENS_FACING_EXTERNAL)
-                || isHardwareLevelSupported(
-                    characteristics, CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL);
-        LOGGER.i("Camera API lv2?: %s", useCamera2API);
-        return cameraId;
-      }
-    } catch (CameraAccessException e) {
-      LOGGER.e(e, "Not allowed to access camera");
-    }
-
-    return null;
+  protected void setFragment() {
+    cameraFragment = CameraConnectionFragment.newInstance(this, getLayoutId());
+    getFragmentManager().beginTransaction().replace(R.id.container, cameraFragment).commit();
   }
 
-  protected void setFragment() {
-    String cameraId = chooseCamera();
-
-    Fragment fragment;
-    if (useCamera2API) {
-      CameraConnectionFragment camera2Fragment =
-          CameraConnectionFragment.newInstance(
-              new CameraConnectionFragment.ConnectionCallback() {
-                @Override
-                public void onPreviewSizeChosen(final Size size, final int rotation) {
-                  previewHeight = size.getHeight();
-                  previewWidth = size.getWidth();
-                  CameraActivity.this.onPreviewSizeChosen(size, rotation);
-                }
-              },
-              this,
-              getLayoutId(),
-              getDesiredPreviewFrameSize());
-
-      camera2Fragment.setCamera(cameraId);
-      fragment = camera2Fragment;
-    } else {
-      fragment =
-          new LegacyCameraConnectionFragment(this, getLayoutId(), getDesiredPreviewFrameSize());
+  @Override
+  public void onPreviewTextureChanged(final SurfaceTexture texture) {
+    if (engine != null) {
+      engine.setPreviewTexture(texture);
     }
-
-    getFragmentManager().beginTransaction().replace(R.id.container, fragment).commit();
   }
 
-  protected void fillBytes(final Plane[] planes, final byte[][] yuvBytes) {
-    // Because of the variable row stride it's not possible to know in
-    // advance the actual necessary dimensions of the yuv planes.
-    for (int i = 0; i < planes.length; ++i) {
-      final ByteBuffer buffer = planes[i].getBuffer();
-      if (yuvBytes[i] == null) {
-        LOGGER.d("Initializing buffer %d at size %d", i, buffer.capacity());
-        yuvBytes[i] = new byte[buffer.capacity()];
-      }
-      buffer.get(yuvBytes[i]);
+  /** Fits the preview to the camera frame size; for use from {@link CameraEngine.Viewer}. */
+  protected void setPreviewSize(final Size size) {
+    if (cameraFragment != null) {
+      cameraFragment.setPreviewSize(size);
     }
   }
 
@@ -481,25 +293,6 @@ public abstract class CameraActivity extends AppCompatActivity
     return debug;
   }
 
-  protected void readyForNextImage() {
-    if (postInferenceCallback != null) {
-      postInferenceCallback.run();
-    }
-  }
-
-  protected int getScreenOrientation() {
-    switch (getWindowManager().getDefaultDisplay().getRotation()) {
-      case Surface.ROTATION_270:
-        return 270;
-      case Surface.ROTATION_180:
-        return 180;
-      case Surface.ROTATION_90:
-        return 90;
-      default:
-        return 0;
-    }
-  }
-
   @Override
   public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
     setUseNNAPI(isChecked);
@@ -540,14 +333,14 @@ public abstract class CameraActivity extends AppCompatActivity
 //    inferenceTimeTextView.setText(inferenceTime);
   }
 
-  protected abstract void processImage();
+  /** Called on the main thread once the service is bound and the engine is available. */
+  protected abstract void onEngineConnected(DetectorEngine engine);
 
-  protected abstract void onPreviewSizeChosen(final Size size, final int rotation);
+  /** Called on the main thread before the engine becomes unavailable. */
+  protected abstract void onEngineDisconnected();
 
   protected abstract int getLayoutId();
 
-  protected abstract Size getDesiredPreviewFrameSize();
-
   protected abstract void setNumThreads(int numThreads);
 
   protected abstract void setUseNNAPI(boolean isChecked);
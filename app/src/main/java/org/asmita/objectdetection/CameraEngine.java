@@ -0,0 +1,725 @@
+/*
+ * Copyright 2019 The TensorFlow Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asmita.objectdetection;
+
+import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.Image.Plane;
+import android.media.ImageReader;
+import android.media.ImageReader.OnImageAvailableListener;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Size;
+import android.view.Surface;
+import android.view.WindowManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics;
+import org.asmita.objectdetection.core.trace.TraceRecorder;
+import org.asmita.objectdetection.env.ImageUtils;
+import org.asmita.objectdetection.env.Logger;
+import org.asmita.objectdetection.env.PowerStats;
+
+/**
+ * Runs the camera and hands its frames to {@link #processImage()} on the camera thread, with a
+ * separate thread for inference. The engine lives in {@link DetectionService} and keeps running
+ * without any Activity; a {@link Viewer} may attach to draw the preview and results while it is
+ * visible.
+ *
+ * <p>{@link #start()}, {@link #stop()}, {@link #attachViewer} and {@link #setPreviewTexture} must
+ * be called on the main thread.
+ */
+public abstract class CameraEngine
+    implements OnImageAvailableListener,
+        Camera.PreviewCallback,
+        ReplayFrameSource.FrameListener,
+        HeadlessModeMonitor.Listener {
+  private static final Logger LOGGER = new Logger();
+
+  // Written to the app's external files directory whenever the engine stops.
+  private static final String METRICS_FILE = "pipeline-metrics.csv";
+  private static final String LOG_FILE = "log-ring.txt";
+  // Events kept for the trace export, about a minute of pipeline activity.
+  private static final int TRACE_CAPACITY = 1 << 16;
+
+  /** Shows the engine's output. Called on the main thread unless noted otherwise. */
+  public interface Viewer {
+    /** The camera frame size is known, or became known before the viewer attached. */
+    void onPreviewSizeChosen(Size size);
+
+    /** The tracked results changed and should be redrawn. Called on any thread. */
+    void onTrackingUpdated();
+
+    /** The engine stopped and won't produce anything more. */
+    void onEngineStopped();
+  }
+
+  /** Notified on the main thread when the engine can't run and has stopped itself. */
+  public interface FailureListener {
+    void onEngineFailed(String message);
+  }
+
+  /** Notified on the main thread once a trace export has finished. */
+  public interface TraceListener {
+    /** @param file the trace written, or null if it couldn't be written. */
+    void onTraceExported(File file);
+  }
+
+  protected final Context context;
+  protected final Handler mainHandler = new Handler(Looper.getMainLooper());
+  protected final PowerStats powerStats;
+  protected final PipelineMetrics metrics =
+      new PipelineMetrics(SystemClock::elapsedRealtimeNanos, CameraEngine::gcCount);
+  protected final TraceRecorder tracer =
+      new TraceRecorder(TRACE_CAPACITY, SystemClock::elapsedRealtimeNanos);
+  protected int previewWidth = 0;
+  protected int previewHeight = 0;
+  protected volatile Viewer viewer;
+  private final HeadlessModeMonitor headlessModeMonitor;
+  private final HandlerThread exportThread;
+  private final Handler exportHandler;
+  private FailureListener failureListener;
+  private Handler handler;
+  private HandlerThread handlerThread;
+  private FrameSource frameSource;
+  private boolean running = false;
+  private boolean useCamera2API;
+  private boolean isProcessingFrame = false;
+  private byte[][] yuvBytes = new byte[3][];
+  private int[] rgbBytes = null;
+  private int yRowStride;
+  // Frames the source delivered, including dropped ones.
+  private long framesDelivered;
+  private long frameNumber;
+  private long frameTimestampNs;
+  private long frameTrackingTimestampNs;
+  // Whether Camera2 image timestamps share the SystemClock.elapsedRealtimeNanos() time base.
+  private boolean realtimeImageTimestamps;
+  private Runnable postInferenceCallback;
+  private ImageConverter imageConverter;
+  private volatile Runnable frameDoneCallback;
+  private SurfaceTexture viewerTexture;
+  private volatile boolean headless = true;
+  private File replayFile;
+  private boolean replayRealtime;
+
+  protected CameraEngine(final Context context) {
+    this.context = context;
+    this.powerStats = new PowerStats(context);
+    this.powerStats.setMode(PowerStats.Mode.HEADLESS);
+    this.headlessModeMonitor = new HeadlessModeMonitor(context, this);
+    metrics.setTracer(tracer);
+    exportThread = new HandlerThread("TraceExport", Process.THREAD_PRIORITY_BACKGROUND);
+    exportThread.start();
+    exportHandler = new Handler(exportThread.getLooper());
+  }
+
+  public void setFailureListener(final FailureListener failureListener) {
+    this.failureListener = failureListener;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Makes the next {@link #start()} replay {@code file} instead of opening the camera, or use the
+   * camera again when {@code file} is null.
+   *
+   * @param realtime whether to replay at the recorded pace, or as fast as frames are processed.
+   */
+  public void setReplay(final File file, final boolean realtime) {
+    this.replayFile = file;
+    this.replayRealtime = realtime;
+  }
+
+  /** Opens the camera and starts processing frames. Does nothing if already running. */
+  public void start() {
+    if (running) {
+      return;
+    }
+    LOGGER.d("start " + this);
+    running = true;
+    metrics.reset();
+    tracer.clear();
+    framesDelivered = 0;
+    synchronized (this) {
+      handlerThread = new HandlerThread("inference");
+      handlerThread.start();
+      handler = new Handler(handlerThread.getLooper());
+    }
+    headlessModeMonitor.start();
+    onStart();
+
+    final FrameSource.ConnectionCallback connectionCallback =
+        new FrameSource.ConnectionCallback() {
+          @Override
+          public void onPreviewSizeChosen(final Size size, final int rotation) {
+            previewHeight = size.getHeight();
+            previewWidth = size.getWidth();
+            CameraEngine.this.onPreviewSizeChosen(size, rotation);
+            final Viewer v = viewer;
+            if (v != null) {
+              v.onPreviewSizeChosen(size);
+            }
+          }
+        };
+    if (replayFile != null) {
+      frameSource = new ReplayFrameSource(replayFile, replayRealtime, connectionCallback, this);
+    } else {
+      final String cameraId = chooseCamera();
+      if (useCamera2API) {
+        frameSource =
+            new Camera2Source(
+                context, cameraId, connectionCallback, this, getDesiredPreviewFrameSize());
+      } else {
+        frameSource =
+            new LegacyCameraSource(connectionCallback, this, getDesiredPreviewFrameSize());
+      }
+    }
+    frameSource.setPreviewTexture(headless ? null : viewerTexture);
+    frameSource.start();
+  }
+
+  /** Closes the camera, stops processing and tells the viewer. Does nothing if not running. */
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    LOGGER.d("stop " + this);
+    running = false;
+    onStop();
+    frameSource.stop();
+    frameSource = null;
+    headlessModeMonitor.stop();
+    LOGGER.i("Power use by mode:\n%s", powerStats.getStatString());
+    dumpDiagnostics();
+    final HandlerThread inferenceThread;
+    synchronized (this) {
+      inferenceThread = handlerThread;
+      handlerThread = null;
+      handler = null;
+    }
+    inferenceThread.quitSafely();
+    try {
+      inferenceThread.join();
+    } catch (final InterruptedException e) {
+      LOGGER.e(e, "Exception!");
+    }
+    isProcessingFrame = false;
+    frameDoneCallback = null;
+    rgbBytes = null;
+    yuvBytes = new byte[3][];
+    previewWidth = 0;
+    previewHeight = 0;
+    final Viewer v = viewer;
+    if (v != null) {
+      v.onEngineStopped();
+    }
+  }
+
+  /** Stops the engine and reports {@code message} to the {@link FailureListener}. */
+  protected void fail(final String message) {
+    LOGGER.e("Engine failed: %s", message);
+    // Posted, since this is usually called from within start().
+    mainHandler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            stop();
+            if (failureListener != null) {
+              failureListener.onEngineFailed(message);
+            }
+          }
+        });
+  }
+
+  /**
+   * Attaches a viewer, replacing any previous one, or detaches it when {@code viewer} is null.
+   * Detaching also withdraws the preview texture.
+   */
+  protected void attachViewer(final Viewer viewer) {
+    this.viewer = viewer;
+    if (viewer == null) {
+      viewerTexture = null;
+    } else if (previewWidth > 0 && previewHeight > 0) {
+      viewer.onPreviewSizeChosen(new Size(previewWidth, previewHeight));
+    }
+    updateHeadless();
+  }
+
+  /**
+   * Lends the camera a texture to draw the preview on, or withdraws it when {@code texture} is
+   * null. The preview is only drawn while the viewer can be seen.
+   */
+  public void setPreviewTexture(final SurfaceTexture texture) {
+    viewerTexture = texture;
+    if (frameSource != null) {
+      frameSource.setPreviewTexture(headless ? null : viewerTexture);
+    }
+  }
+
+  /** Latency histograms, drop counters and GC counts since the engine was last started. */
+  public String getStatString() {
+    return metrics.getStatString();
+  }
+
+  /** Logs the metrics and writes them, along with the recent log messages, to files. */
+  private void dumpDiagnostics() {
+    LOGGER.i("Pipeline metrics:\n%s", metrics.getStatString());
+    final File dir = context.getExternalFilesDir(null);
+    if (dir == null) {
+      return;
+    }
+    try {
+      metrics.dump(new File(dir, METRICS_FILE));
+      Logger.dumpRing(new File(dir, LOG_FILE));
+    } catch (final IOException e) {
+      LOGGER.e(e, "Could not write diagnostics");
+    }
+  }
+
+  /** Stops the engine and its background threads. The engine can't be restarted. */
+  public void release() {
+    stop();
+    exportThread.quitSafely();
+  }
+
+  /**
+   * Writes the most recent pipeline events to a timestamped file in the app's external files
+   * directory, in the Chrome trace-event format read by ui.perfetto.dev and chrome://tracing. The
+   * file is formatted and written on a low-priority thread; recording carries on meanwhile.
+   */
+  public void exportTrace(final TraceListener listener) {
+    exportHandler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            final File file = writeTrace();
+            mainHandler.post(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    listener.onTraceExported(file);
+                  }
+                });
+          }
+        });
+  }
+
+  private File writeTrace() {
+    final File dir = context.getExternalFilesDir(null);
+    if (dir == null) {
+      return null;
+    }
+    final String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+    final File file = new File(dir, "trace-" + stamp + ".json");
+    try {
+      tracer.writeJson(file);
+    } catch (final IOException e) {
+      LOGGER.e(e, "Could not write trace");
+      return null;
+    }
+    LOGGER.i("Wrote trace to %s", file);
+    return file;
+  }
+
+  private static long gcCount() {
+    final String count = Debug.getRuntimeStat("art.gc.gc-count");
+    if (count == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(count);
+    } catch (final NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Converts the current frame, or a region of it, into {@code rgbBytes}. */
+  private interface ImageConverter {
+    void convert(FrameRegion region);
+  }
+
+  protected int[] getRgbBytes() {
+    return getRgbBytes(null);
+  }
+
+  /**
+   * Converts only {@code region} of the current frame, or all of it if null. The region's pixels
+   * are packed at the start of the returned array, which is sized for the whole frame.
+   */
+  protected int[] getRgbBytes(final FrameRegion region) {
+    imageConverter.convert(region);
+    return rgbBytes;
+  }
+
+  /**
+   * Returns the position of the current frame among all frames the source delivered since the
+   * engine started. Gaps are frames that were dropped.
+   */
+  protected long getFrameNumber() {
+    return frameNumber;
+  }
+
+  /**
+   * Returns the capture time of the current frame in the {@link
+   * android.os.SystemClock#elapsedRealtimeNanos()} time base.
+   */
+  protected long getFrameTimestampNs() {
+    return frameTimestampNs;
+  }
+
+  /**
+   * Returns the time the tracker should place the current frame at: the capture time, or the
+   * recorded one for replayed frames.
+   */
+  protected long getFrameTrackingTimestampNs() {
+    return frameTrackingTimestampNs;
+  }
+
+  protected int getLuminanceStride() {
+    return yRowStride;
+  }
+
+  protected byte[] getLuminance() {
+    return yuvBytes[0];
+  }
+
+  /** Callback for android.hardware.Camera API */
+  @Override
+  public void onPreviewFrame(final byte[] bytes, final Camera camera) {
+    ++framesDelivered;
+    if (isProcessingFrame) {
+      LOGGER.v("Dropping frame %d", framesDelivered);
+      metrics.countDrop(PipelineMetrics.Drop.CAMERA_BUSY);
+      return;
+    }
+    // We need wait until we have some size from onPreviewSizeChosen
+    if (previewWidth == 0 || previewHeight == 0) {
+      return;
+    }
+    if (rgbBytes == null) {
+      rgbBytes = new int[previewWidth * previewHeight];
+    }
+
+    isProcessingFrame = true;
+    frameNumber = framesDelivered;
+    // Camera1 doesn't report capture times, the arrival time is the closest we can get.
+    frameTimestampNs = SystemClock.elapsedRealtimeNanos();
+    frameTrackingTimestampNs = frameTimestampNs;
+    yuvBytes[0] = bytes;
+    yRowStride = previewWidth;
+
+    imageConverter =
+        new ImageConverter() {
+          @Override
+          public void convert(final FrameRegion region) {
+            ImageUtils.convertYUV420SPToARGB8888(
+                bytes, previewWidth, previewHeight, region, rgbBytes);
+          }
+        };
+
+    postInferenceCallback =
+        new Runnable() {
+          @Override
+          public void run() {
+            camera.addCallbackBuffer(bytes);
+            isProcessingFrame = false;
+          }
+        };
+    processImage();
+  }
+
+  /** Callback for Camera2 API */
+  @Override
+  public void onImageAvailable(final ImageReader reader) {
+    // We need wait until we have some size from onPreviewSizeChosen
+    if (previewWidth == 0 || previewHeight == 0) {
+      return;
+    }
+    if (rgbBytes == null) {
+      rgbBytes = new int[previewWidth * previewHeight];
+    }
+    try {
+      final Image image = reader.acquireLatestImage();
+
+      if (image == null) {
+        return;
+      }
+      ++framesDelivered;
+
+      if (isProcessingFrame) {
+        image.close();
+        metrics.countDrop(PipelineMetrics.Drop.CAMERA_BUSY);
+        return;
+      }
+      isProcessingFrame = true;
+      frameNumber = framesDelivered;
+      frameTimestampNs =
+          realtimeImageTimestamps ? image.getTimestamp() : SystemClock.elapsedRealtimeNanos();
+      frameTrackingTimestampNs = frameTimestampNs;
+      Trace.beginSection("imageAvailable");
+      final Plane[] planes = image.getPlanes();
+      fillBytes(planes, yuvBytes);
+      yRowStride = planes[0].getRowStride();
+      final int uvRowStride = planes[1].getRowStride();
+      final int uvPixelStride = planes[1].getPixelStride();
+
+      imageConverter =
+          new ImageConverter() {
+            @Override
+            public void convert(final FrameRegion region) {
+              ImageUtils.convertYUV420ToARGB8888(
+                  yuvBytes[0],
+                  yuvBytes[1],
+                  yuvBytes[2],
+                  previewWidth,
+                  previewHeight,
+                  yRowStride,
+                  uvRowStride,
+                  uvPixelStride,
+                  region,
+                  rgbBytes);
+            }
+          };
+
+      postInferenceCallback =
+          new Runnable() {
+            @Override
+            public void run() {
+              image.close();
+              isProcessingFrame = false;
+            }
+          };
+
+      processImage();
+    } catch (final Exception e) {
+      LOGGER.e(e, "Exception!");
+      Trace.endSection();
+      return;
+    }
+    Trace.endSection();
+  }
+
+  /** Callback for {@link ReplayFrameSource} */
+  @Override
+  public void onReplayFrame(
+      final ByteBuffer nv21,
+      final long timestampNs,
+      final long recordedTimestampNs,
+      final Runnable done) {
+    ++framesDelivered;
+    if (isProcessingFrame || previewWidth == 0 || previewHeight == 0) {
+      if (isProcessingFrame) {
+        metrics.countDrop(PipelineMetrics.Drop.CAMERA_BUSY);
+      }
+      done.run();
+      return;
+    }
+    if (rgbBytes == null) {
+      rgbBytes = new int[previewWidth * previewHeight];
+    }
+
+    isProcessingFrame = true;
+    frameNumber = framesDelivered;
+    frameTimestampNs = timestampNs;
+    frameTrackingTimestampNs = recordedTimestampNs;
+    frameDoneCallback = done;
+
+    imageConverter =
+        new ImageConverter() {
+          @Override
+          public void convert(final FrameRegion region) {
+            ImageUtils.convertYUV420SPToARGB8888(
+                nv21, previewWidth, previewHeight, region, rgbBytes);
+          }
+        };
+
+    postInferenceCallback =
+        new Runnable() {
+          @Override
+          public void run() {
+            isProcessingFrame = false;
+          }
+        };
+    processImage();
+  }
+
+  /**
+   * Called once the current frame has been fully processed, or dropped without being processed.
+   * Lets a replay that runs as fast as possible deliver its next frame.
+   */
+  protected void frameProcessed() {
+    final Runnable done = frameDoneCallback;
+    if (done != null) {
+      frameDoneCallback = null;
+      done.run();
+    }
+  }
+
+  protected synchronized void runInBackground(final Runnable r) {
+    if (handler != null) {
+      handler.post(r);
+    }
+  }
+
+  // Returns true if the device supports the required hardware level, or better.
+  private boolean isHardwareLevelSupported(
+      CameraCharacteristics characteristics, int requiredLevel) {
+    int deviceLevel = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+    if (deviceLevel == CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY) {
+      return requiredLevel == deviceLevel;
+    }
+    // deviceLevel is not LEGACY, can use numerical sort
+    return requiredLevel <= deviceLevel;
+  }
+
+  private String chooseCamera() {
+    final CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+    try {
+      for (final String cameraId : manager.getCameraIdList()) {
+        final CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
+
+        // We don't use a front facing camera in this sample.
+        final Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        if (facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT) {
+          continue;
+        }
+
+        final StreamConfigurationMap map =
+            characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+
+        if (map == null) {
+          continue;
+        }
+
+        // Fallback to camera1 API for internal cameras that don't have full support.
+        // This should help with legacy situations where using the camera2 API causes
+        // distorted or otherwise broken previews.
+        useCamera2API =
+            (facing == CameraCharacteristics.LENS_FACING_EXTERNAL)
+                || isHardwareLevelSupported(
+                    characteristics, CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_FULL);
+        final Integer timestampSource =
+            characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+        realtimeImageTimestamps =
+            timestampSource != null
+                && timestampSource == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+        LOGGER.i("Camera API lv2?: %s", useCamera2API);
+        return cameraId;
+      }
+    } catch (CameraAccessException e) {
+      LOGGER.e(e, "Not allowed to access camera");
+    }
+
+    return null;
+  }
+
+  protected void fillBytes(final Plane[] planes, final byte[][] yuvBytes) {
+    // Because of the variable row stride it's not possible to know in
+    // advance the actual necessary dimensions of the yuv planes.
+    for (int i = 0; i < planes.length; ++i) {
+      final ByteBuffer buffer = planes[i].getBuffer();
+      if (yuvBytes[i] == null) {
+        LOGGER.d("Initializing buffer %d at size %d", i, buffer.capacity());
+        yuvBytes[i] = new byte[buffer.capacity()];
+      }
+      buffer.get(yuvBytes[i]);
+    }
+  }
+
+  /**
+   * True while nobody can see the output: no viewer is attached, the screen is off or a screen
+   * reader is active. All rendering, including the camera preview, is skipped and only detection,
+   * tracking and audio/haptic output keep running.
+   */
+  public boolean isHeadless() {
+    return headless;
+  }
+
+  @Override
+  public void onHeadlessModeChanged(final boolean headless) {
+    updateHeadless();
+  }
+
+  private void updateHeadless() {
+    final boolean newHeadless = viewer == null || headlessModeMonitor.isHeadless();
+    if (newHeadless == headless) {
+      return;
+    }
+    headless = newHeadless;
+    LOGGER.i("Headless mode: %s", headless);
+    powerStats.setMode(headless ? PowerStats.Mode.HEADLESS : PowerStats.Mode.VISUAL);
+    if (frameSource != null) {
+      frameSource.setPreviewTexture(headless ? null : viewerTexture);
+    }
+  }
+
+  protected void readyForNextImage() {
+    if (postInferenceCallback != null) {
+      postInferenceCallback.run();
+    }
+  }
+
+  protected int getScreenOrientation() {
+    final WindowManager windowManager =
+        (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+    switch (windowManager.getDefaultDisplay().getRotation()) {
+      case Surface.ROTATION_270:
+        return 270;
+      case Surface.ROTATION_180:
+        return 180;
+      case Surface.ROTATION_90:
+        return 90;
+      default:
+        return 0;
+    }
+  }
+
+  /** Called at the start of {@link #start()}, before the camera is opened. */
+  protected void onStart() {}
+
+  /** Called at the start of {@link #stop()}, before the camera is closed. */
+  protected void onStop() {}
+
+  protected abstract void processImage();
+
+  protected abstract void onPreviewSizeChosen(final Size size, final int rotation);
+
+  protected abstract Size getDesiredPreviewFrameSize();
+
+  public abstract void setNumThreads(int numThreads);
+
+  public abstract void setUseNNAPI(boolean isChecked);
+}
@@ -0,0 +1,163 @@
+package org.asmita.objectdetection;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.IBinder;
+import android.widget.Toast;
+import java.io.File;
+import org.asmita.objectdetection.env.Logger;
+
+/**
+ * Foreground service that owns the {@link DetectorEngine}, so that camera, inference and speech
+ * keep running while the screen is off or another app is in front. Activities bind to it to view
+ * the engine's output; the engine is only stopped through the notification or when it fails.
+ */
+public class DetectionService extends Service
+    implements CameraEngine.FailureListener, CameraEngine.TraceListener {
+  private static final Logger LOGGER = new Logger();
+
+  static final String ACTION_STOP = "org.asmita.objectdetection.action.STOP";
+  /** Writes the recent pipeline trace to a file without stopping the engine. */
+  static final String ACTION_EXPORT_TRACE = "org.asmita.objectdetection.action.EXPORT_TRACE";
+  /** Swaps in the model installed in app storage without stopping the engine. */
+  static final String ACTION_RELOAD_MODEL = "org.asmita.objectdetection.action.RELOAD_MODEL";
+  /** Path of a frame recording to replay instead of opening the camera. */
+  static final String EXTRA_REPLAY_FILE = "org.asmita.objectdetection.extra.REPLAY_FILE";
+  /** Whether to replay at the recorded pace (the default) or as fast as possible. */
+  static final String EXTRA_REPLAY_REALTIME = "org.asmita.objectdetection.extra.REPLAY_REALTIME";
+  private static final String CHANNEL_ID = "guidance";
+  private static final int NOTIFICATION_ID = 1;
+
+  /** Gives bound Activities in this process direct access to the engine. */
+  public class LocalBinder extends Binder {
+    public DetectorEngine getEngine() {
+      return engine;
+    }
+  }
+
+  private final LocalBinder binder = new LocalBinder();
+  private DetectorEngine engine;
+
+  @Override
+  public void onCreate() {
+    LOGGER.d("onCreate " + this);
+    super.onCreate();
+    engine = new DetectorEngine(getApplicationContext());
+    engine.setFailureListener(this);
+  }
+
+  @Override
+  public int onStartCommand(final Intent intent, final int flags, final int startId) {
+    // Any start may come from startForegroundService(), which has to be answered with
+    // startForeground() whatever the action, or the system kills the app.
+    startForeground(NOTIFICATION_ID, buildNotification());
+    final String action = intent != null ? intent.getAction() : null;
+    if (ACTION_STOP.equals(action)) {
+      LOGGER.i("Stopped from notification");
+      shutDown();
+      return START_NOT_STICKY;
+    }
+    if (ACTION_EXPORT_TRACE.equals(action)) {
+      engine.exportTrace(this);
+      return finishCommand();
+    }
+    if (ACTION_RELOAD_MODEL.equals(action)) {
+      engine.reloadModel();
+      return finishCommand();
+    }
+    if (!engine.isRunning()) {
+      final String replayPath = intent != null ? intent.getStringExtra(EXTRA_REPLAY_FILE) : null;
+      if (replayPath != null) {
+        engine.setReplay(
+            new File(replayPath), intent.getBooleanExtra(EXTRA_REPLAY_REALTIME, true));
+      }
+      engine.start();
+    }
+    // The camera and microphone can't be reopened without a visible Activity, so a killed service
+    // is left for the user to restart.
+    return START_NOT_STICKY;
+  }
+
+  /** Ends a command that doesn't start guidance, leaving no notification behind if none runs. */
+  private int finishCommand() {
+    if (!engine.isRunning()) {
+      shutDown();
+    }
+    return START_NOT_STICKY;
+  }
+
+  @Override
+  public IBinder onBind(final Intent intent) {
+    return binder;
+  }
+
+  @Override
+  public void onEngineFailed(final String message) {
+    Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
+    shutDown();
+  }
+
+  @Override
+  public void onTraceExported(final File trace) {
+    Toast.makeText(
+            getApplicationContext(),
+            trace != null
+                ? getString(R.string.trace_saved, trace.getName())
+                : getString(R.string.trace_failed),
+            Toast.LENGTH_SHORT)
+        .show();
+  }
+
+  @Override
+  public void onDestroy() {
+    LOGGER.d("onDestroy " + this);
+    engine.release();
+    super.onDestroy();
+  }
+
+  /** Stops the engine right away; the service itself goes once every viewer has unbound. */
+  private void shutDown() {
+    engine.stop();
+    stopForeground(true);
+    stopSelf();
+  }
+
+  private Notification buildNotification() {
+    final NotificationManager notificationManager =
+        (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+    notificationManager.createNotificationChannel(
+        new NotificationChannel(
+            CHANNEL_ID,
+            getString(R.string.notification_channel_name),
+            NotificationManager.IMPORTANCE_LOW));
+
+    final PendingIntent openIntent =
+        PendingIntent.getActivity(this, 0, new Intent(this, DetectorActivity.class), 0);
+    final PendingIntent stopIntent =
+        PendingIntent.getService(
+            this, 0, new Intent(this, DetectionService.class).setAction(ACTION_STOP), 0);
+    final PendingIntent traceIntent =
+        PendingIntent.getService(
+            this, 0, new Intent(this, DetectionService.class).setAction(ACTION_EXPORT_TRACE), 0);
+    return new Notification.Builder(this, CHANNEL_ID)
+        .setSmallIcon(R.drawable.ic_launcher)
+        .setContentTitle(getString(R.string.app_name))
+        .setContentText(getString(R.string.notification_guiding))
+        .setContentIntent(openIntent)
+        .setOngoing(true)
+        .addAction(
+            new Notification.Action.Builder(
+                    null, getString(R.string.notification_stop), stopIntent)
+                .build())
+        .addAction(
+            new Notification.Action.Builder(
+                    null, getString(R.string.notification_save_trace), traceIntent)
+                .build())
+        .build();
+  }
+}
@@ -0,0 +1,838 @@
+/*
+ * Copyright 2019 The TensorFlow Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.asmita.objectdetection;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+
+import android.util.Size;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.ml.vision.FirebaseVision;
+import com.google.firebase.ml.vision.common.FirebaseVisionImage;
+import com.google.firebase.ml.vision.text.FirebaseVisionText;
+import com.google.firebase.ml.vision.text.FirebaseVisionTextRecognizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.asmita.objectdetection.barcode.BarcodeScanner;
+import org.asmita.objectdetection.core.DetectionPipeline;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.DetectorBackend;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.detection.MultiModelBackend;
+import org.asmita.objectdetection.core.detection.ThresholdProfile;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics;
+import org.asmita.objectdetection.core.replay.BlackBoxRecorder;
+import org.asmita.objectdetection.core.scene.Position;
+import org.asmita.objectdetection.feedback.EarconPlayer;
+import org.asmita.objectdetection.feedback.HapticFeedback;
+import org.asmita.objectdetection.env.ImageUtils;
+import org.asmita.objectdetection.env.Logger;
+import org.asmita.objectdetection.speech.SpeechScheduler;
+import org.asmita.objectdetection.tflite.Classifier;
+import org.asmita.objectdetection.tflite.ClassifierBackend;
+import org.asmita.objectdetection.tflite.ModelRegistry;
+import org.asmita.objectdetection.tflite.ModelSpec;
+import org.asmita.objectdetection.tflite.StoredModel;
+import org.asmita.objectdetection.tracking.MultiBoxTracker;
+
+/**
+ * Uses a TensorFlowMultiBoxDetector and ObjectTracker to detect and then track objects, and guides
+ * the user through speech, earcons and haptics. Voice commands are listened for while the engine
+ * runs.
+ */
+public class DetectorEngine extends CameraEngine {
+  private static final Logger LOGGER = new Logger();
+
+  /** Shows detection results. */
+  public interface Viewer extends CameraEngine.Viewer {
+    /** Text found in front of the user, empty if none. Replayed when the viewer attaches. */
+    void onTextRecognized(String text);
+
+    /** Data of the last barcode found. Replayed when the viewer attaches. */
+    void onBarcodeRecognized(String barcodeText);
+  }
+
+  // Inference time per second all models together may take, leaving room for OCR and tracking.
+  private static final long INFERENCE_BUDGET_MS = 700;
+  // Memory the loaded specialist models may take together.
+  private static final long SPECIALIST_MEMORY_BUDGET_BYTES = 24L << 20;
+  // Missing something the user may walk into is worse than a false alarm.
+  private static final float MINIMUM_CONFIDENCE_HAZARD = 0.5f;
+  private static final String[] PERSON_LABELS = {"person"};
+  private static final String[] VEHICLE_LABELS = {"bicycle", "car", "motorcycle", "bus", "truck"};
+  private static final String[] OBSTACLE_LABELS = {"fire hydrant", "bench"};
+  // Classes the model often sees in clutter that isn't there.
+  private static final float MINIMUM_CONFIDENCE_NOISY = 0.8f;
+  private static final String[] NOISY_LABELS = {"dining table", "potted plant", "tv", "kite"};
+  // Detections of the same class overlapping more than this are one object.
+  private static final float MAX_DETECTION_IOU = 0.6f;
+  private static final boolean MAINTAIN_ASPECT = false;
+  private static final Size DESIRED_PREVIEW_SIZE = new Size(640, 480);
+  private static final boolean SAVE_PREVIEW_BITMAP = false;
+  private static final Position[] POSITIONS = Position.values();
+  // Objects expected to reach the user sooner than this trigger an urgent warning.
+  private static final float MAX_TIME_TO_COLLISION_SEC = 2.5f;
+  // Longest acceptable time from frame capture until a hazard warning is handed to speech.
+  private static final long HAZARD_LATENCY_BUDGET_MS = 300;
+  // When looking far ahead, every frame is also run through this many tiles, taken in turn from a
+  // grid of this many tiles along the longer and the shorter side of the frame.
+  private static final int TILES_PER_FRAME = 1;
+  private static final int TILES_ALONG_LONG_SIDE = 3;
+  private static final int TILES_ALONG_SHORT_SIDE = 2;
+  // Event names in the exported trace.
+  private static final String FRAME_TRACE = "frame";
+  private static final String TEXT_RECOGNITION_TRACE = "text recognition";
+  private static final String DETECTIONS_TRACE = "detections";
+  private static final String HAZARD_TRACE = "hazard warning";
+  // The black box keeps the last seconds of downscaled frames, detections and speech, about 3MB,
+  // and appends them to this file in the app's external files directory when asked or on a crash.
+  private static final String BLACK_BOX_FILE = "blackbox.bin";
+  private static final int BLACK_BOX_WIDTH = 160;
+  private static final int BLACK_BOX_HEIGHT = 120;
+  private static final int BLACK_BOX_FRAMES = 150;
+  private static final long BLACK_BOX_WINDOW_NS = 10000000000L;
+  // Directory under the app's files that may hold a replacement for the prepackaged model.
+  private static final String STORED_MODEL_DIRECTORY = "models/primary";
+  private final String REGEX_OCR_TRIGGER_SPEECH = "(what('s| is) written in front of me)|(read)";
+  private final String REGEX_START_GUIDING = "(start guiding( ?me)?)|(guide( ?me)?)";
+  private final String REGEX_STOP_GUIDING = "stop( guiding( ?me)?)?";
+  private final String REGEX_START_SCANNING = "scan( (the )?(bar ?code|item|product))?";
+  private final String REGEX_USE_TONES = "(use )?(tones|beeps?)";
+  private final String REGEX_USE_SPEECH = "use (speech|voice)";
+  private final String REGEX_VIBRATION_ON = "vibrations? on|(turn|switch) on (the )?vibrations?";
+  private final String REGEX_VIBRATION_OFF = "vibrations? off|(turn|switch) off (the )?vibrations?";
+  private final String REGEX_TILES_ON = "look (far|further)( ahead)?";
+  private final String REGEX_TILES_OFF = "look (near|nearby|close)";
+  private final String REGEX_SAVE_RECORDING = "report (a |the )?problem|save (the )?recording";
+  private final String ERROR_COULDNT_READ = "I can't see anything written in front of you!";
+
+  private Integer sensorOrientation;
+
+  private ClassifierBackend backend;
+  private LabelTable labelTable;
+  private MultiModelBackend models;
+  private DetectionPipeline pipeline;
+  private Frame frame;
+
+  private long lastProcessingTimeMs;
+  private Bitmap cropCopyBitmap = null;
+
+  private boolean computingDetection = false;
+  private boolean runningTextRecognition = false;
+
+  private volatile MultiBoxTracker tracker;
+
+  private final SpeechScheduler speechScheduler;
+  private SpeechRecognitionListener listener;
+  private volatile boolean announceWholeScene = false;
+  private final EarconPlayer earconPlayer;
+  private volatile boolean useEarcons = false;
+  private final HapticFeedback hapticFeedback;
+  private volatile boolean useHaptics = true;
+  private long hazardAlertCount = 0;
+  private long hazardOverBudgetCount = 0;
+  private long hazardMaxLatencyMs = 0;
+  private String detectedText = "";
+  private String extractedBarcodeText = "";
+  private boolean shouldGuide = false;
+  private final BarcodeScanner barcodeScanner;
+  private volatile boolean scanningBarcodes = false;
+  private volatile boolean tiledDetection = false;
+  private final BlackBoxRecorder blackBox =
+      new BlackBoxRecorder(
+          BLACK_BOX_WIDTH, BLACK_BOX_HEIGHT, BLACK_BOX_FRAMES, BLACK_BOX_WINDOW_NS);
+  private final HandlerThread blackBoxThread;
+  private final Handler blackBoxHandler;
+  private final HandlerThread modelLoaderThread;
+  private final Handler modelLoaderHandler;
+  private volatile boolean useNNAPI = false;
+  private final Thread.UncaughtExceptionHandler previousExceptionHandler;
+  private final Thread.UncaughtExceptionHandler crashHandler =
+      new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(final Thread thread, final Throwable e) {
+          // The process is going away, so write on the crashing thread.
+          writeBlackBox("crash: " + e);
+          if (previousExceptionHandler != null) {
+            previousExceptionHandler.uncaughtException(thread, e);
+          }
+        }
+      };
+
+  public DetectorEngine(final Context context) {
+    super(context);
+    speechScheduler = new SpeechScheduler(context, Locale.UK);
+    barcodeScanner = new BarcodeScanner();
+    speechScheduler.setTracer(tracer);
+    barcodeScanner.setTracer(tracer);
+    speechScheduler.setBlackBox(blackBox);
+    blackBoxThread = new HandlerThread("BlackBox", Process.THREAD_PRIORITY_BACKGROUND);
+    blackBoxThread.start();
+    blackBoxHandler = new Handler(blackBoxThread.getLooper());
+    modelLoaderThread = new HandlerThread("ModelLoader", Process.THREAD_PRIORITY_BACKGROUND);
+    modelLoaderThread.start();
+    modelLoaderHandler = new Handler(modelLoaderThread.getLooper());
+    previousExceptionHandler = Thread.getDefaultUncaughtExceptionHandler();
+    Thread.setDefaultUncaughtExceptionHandler(crashHandler);
+    earconPlayer = new EarconPlayer(context);
+    hapticFeedback = new HapticFeedback(context);
+  }
+
+  /** Attaches a viewer, replacing any previous one, or detaches it when {@code viewer} is null. */
+  public void setViewer(final Viewer viewer) {
+    attachViewer(viewer);
+    if (viewer != null) {
+      viewer.onTextRecognized(detectedText);
+      if (!extractedBarcodeText.isEmpty()) {
+        viewer.onBarcodeRecognized(extractedBarcodeText);
+      }
+    }
+  }
+
+  /** The tracker of the running engine, or null until the frame size is known. */
+  public MultiBoxTracker getTracker() {
+    return tracker;
+  }
+
+  public long getLastProcessingTimeMs() {
+    return lastProcessingTimeMs;
+  }
+
+  @Override
+  public void onPreviewSizeChosen(final Size size, final int rotation) {
+    try {
+      backend =
+          new ClassifierBackend(
+              ModelRegistry.PRIMARY.create(context.getAssets()), ModelRegistry.PRIMARY.inputSize);
+      labelTable = createLabelTable();
+    } catch (final IOException e) {
+      LOGGER.e(e, "Exception initializing classifier!");
+      fail("Classifier could not be initialized");
+      return;
+    }
+
+    previewWidth = size.getWidth();
+    previewHeight = size.getHeight();
+
+    sensorOrientation = rotation - getScreenOrientation();
+    LOGGER.i("Camera orientation relative to screen canvas: %d", sensorOrientation);
+
+    LOGGER.i("Initializing at size %dx%d", previewWidth, previewHeight);
+    frame = new Frame(previewWidth, previewHeight);
+    backend.getClassifier().setMetrics(metrics);
+    backend.getClassifier().setLabelTable(labelTable);
+    backend.getClassifier().setThresholdProfile(createThresholdProfile(labelTable));
+    if (models != null) {
+      // Left over from the previous run.
+      models.releaseAll();
+    }
+    models =
+        new MultiModelBackend(
+            backend,
+            SPECIALIST_MEMORY_BUDGET_BYTES,
+            TimeUnit.MILLISECONDS.toNanos(INFERENCE_BUDGET_MS),
+            System::nanoTime,
+            modelLoaderHandler::post);
+    addSpecialists();
+    pipeline =
+        // The classifiers' threshold profiles already dropped what isn't confident enough.
+        new DetectionPipeline(models, labelTable, 0.0f, MultiBoxTracker.MAX_TRACKS);
+    pipeline.configure(previewWidth, previewHeight, sensorOrientation, MAINTAIN_ASPECT);
+    pipeline.setMetrics(metrics);
+    applyTiledDetection();
+    reloadModel();
+
+    final MultiBoxTracker tracker = new MultiBoxTracker(context, pipeline.getTracker());
+    tracker.setFrameConfiguration(previewWidth, previewHeight, sensorOrientation);
+    this.tracker = tracker;
+  }
+
+  /**
+   * Loads the model installed in {@link #STORED_MODEL_DIRECTORY}, if any, on a low-priority thread
+   * and swaps it in between two frames once it is ready, so no frame waits for it. A model that
+   * fails its checksum, takes another input than the running one or reports classes the running
+   * label table doesn't have is logged and ignored; the table is built with the stored model's
+   * labels on the next start.
+   */
+  public void reloadModel() {
+    final ClassifierBackend backend = this.backend;
+    final LabelTable labelTable = this.labelTable;
+    if (backend == null) {
+      return;
+    }
+    final File directory = new File(context.getFilesDir(), STORED_MODEL_DIRECTORY);
+    modelLoaderHandler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (!StoredModel.exists(directory)) {
+              return;
+            }
+            final Classifier classifier;
+            try {
+              final StoredModel model = StoredModel.read(directory);
+              if (model.inputSize != backend.getInputSize()) {
+                LOGGER.w(
+                    "Stored model %s takes %d pixels, not %d, ignoring it",
+                    model, model.inputSize, backend.getInputSize());
+                return;
+              }
+              final List<String> unresolved = labelTable.unresolved(model.loadLabels());
+              if (!unresolved.isEmpty()) {
+                LOGGER.w(
+                    "Stored model %s has labels the running detector doesn't know, %s, ignoring it"
+                        + " until the next start",
+                    model, unresolved);
+                return;
+              }
+              final long startMs = SystemClock.uptimeMillis();
+              classifier = model.create();
+              LOGGER.i(
+                  "Loaded stored model %s in %dms", model, SystemClock.uptimeMillis() - startMs);
+            } catch (final IOException e) {
+              LOGGER.e(e, "Could not load stored model from %s", directory);
+              return;
+            }
+            classifier.setMetrics(metrics);
+            classifier.setLabelTable(labelTable);
+            classifier.setThresholdProfile(createThresholdProfile(labelTable));
+            classifier.setUseNNAPI(useNNAPI);
+            backend.swapClassifier(classifier);
+          }
+        });
+  }
+
+  /**
+   * Registers the specialist models packaged with the app, which load on the model loader thread
+   * when first due.
+   */
+  private void addSpecialists() {
+    final AssetManager assets = context.getAssets();
+    for (final ModelSpec spec : ModelRegistry.SPECIALISTS) {
+      if (!spec.isAvailable(assets)) {
+        LOGGER.i("Specialist model %s not packaged, skipping", spec);
+        continue;
+      }
+      final long memoryBytes;
+      try {
+        memoryBytes = spec.estimateMemoryBytes(assets, previewWidth, previewHeight);
+      } catch (final IOException e) {
+        LOGGER.e(e, "Exception sizing specialist model %s", spec);
+        continue;
+      }
+      models.addSpecialist(
+          spec.name,
+          new MultiModelBackend.Loader() {
+            @Override
+            public DetectorBackend load() throws IOException {
+              LOGGER.i("Loading specialist model %s", spec);
+              final Classifier classifier = spec.create(assets);
+              classifier.setLabelTable(labelTable);
+              classifier.setThresholdProfile(
+                  new ThresholdProfile(spec.minConfidence).setTopK(MultiBoxTracker.MAX_TRACKS));
+              return new ClassifierBackend(classifier, spec.inputSize);
+            }
+
+            @Override
+            public void release(final DetectorBackend specialist) {
+              LOGGER.i("Releasing specialist model %s", spec);
+              ((ClassifierBackend) specialist).getClassifier().close();
+            }
+          },
+          spec.inputSize,
+          memoryBytes,
+          TimeUnit.MILLISECONDS.toNanos(spec.intervalMs),
+          spec.priority);
+    }
+  }
+
+  /**
+   * Builds one label table for every model that may run: the prepackaged one, its replacement in
+   * app storage and the specialists.
+   */
+  private LabelTable createLabelTable() throws IOException {
+    final AssetManager assets = context.getAssets();
+    final LabelTable.Builder builder = new LabelTable.Builder();
+    setHazard(builder, PERSON_LABELS, LabelTable.Hazard.PERSON);
+    setHazard(builder, VEHICLE_LABELS, LabelTable.Hazard.VEHICLE);
+    setHazard(builder, OBSTACLE_LABELS, LabelTable.Hazard.OBSTACLE);
+    builder.addAll(ModelRegistry.PRIMARY.loadLabels(assets));
+    final File storedModel = new File(context.getFilesDir(), STORED_MODEL_DIRECTORY);
+    if (StoredModel.exists(storedModel)) {
+      try {
+        builder.addAll(StoredModel.read(storedModel).loadLabels());
+      } catch (final IOException e) {
+        LOGGER.e(e, "Could not read the labels of the stored model");
+      }
+    }
+    for (final ModelSpec spec : ModelRegistry.SPECIALISTS) {
+      if (spec.isAvailable(assets)) {
+        builder.addAll(spec.loadLabels(assets));
+      }
+    }
+    return builder.build();
+  }
+
+  private static void setHazard(
+      final LabelTable.Builder builder, final String[] labels, final LabelTable.Hazard hazard) {
+    for (final String label : labels) {
+      builder.setHazard(label, hazard);
+    }
+  }
+
+  private static ThresholdProfile createThresholdProfile(final LabelTable labelTable) {
+    final ThresholdProfile profile =
+        new ThresholdProfile(ModelRegistry.PRIMARY.minConfidence)
+            .setTopK(MultiBoxTracker.MAX_TRACKS)
+            .setMaxIou(MAX_DETECTION_IOU);
+    for (int i = 0; i < labelTable.size(); ++i) {
+      if (labelTable.getHazard(i) != LabelTable.Hazard.NONE) {
+        profile.setThreshold(labelTable.getName(i), MINIMUM_CONFIDENCE_HAZARD);
+      }
+    }
+    for (final String label : NOISY_LABELS) {
+      profile.setThreshold(label, MINIMUM_CONFIDENCE_NOISY);
+    }
+    return profile;
+  }
+
+  private void sayDetectedObjectLocations(final DetectionPipeline.Result result) {
+    final float[] largestAreaByPosition = result.largestAreaByPosition;
+    if (shouldGuide && useEarcons) {
+      final long now = SystemClock.elapsedRealtime();
+      for (final Position position : POSITIONS) {
+        earconPlayer.update(position, largestAreaByPosition[position.ordinal()], now);
+      }
+    }
+    hapticFeedback.update(
+        shouldGuide && useHaptics ? largestAreaByPosition[Position.FRONT.ordinal()] : 0.0f);
+
+    if (announceWholeScene) {
+      announceWholeScene = false;
+      pipeline.announceWholeScene();
+    }
+    // Changes are held back while earlier guidance is still waiting to be spoken, so that the
+    // scheduler never has to coalesce away a diff the user hasn't heard.
+    if (!shouldGuide
+        || useEarcons
+        || !speechScheduler.isReady()
+        || speechScheduler.hasPending(SpeechScheduler.Priority.GUIDANCE)) {
+      return;
+    }
+    final String sentence = pipeline.nextAnnouncement();
+    if (sentence == null) {
+      return;
+    }
+    LOGGER.d("Announcing scene changes: %s", sentence);
+    speechScheduler.speak(SpeechScheduler.Priority.GUIDANCE, sentence, result.timestampNs);
+  }
+
+  private String extractDetectedText(final FirebaseVisionText result) {
+    return result.getText();
+  }
+
+  private void runTextRecognition() {
+    if (runningTextRecognition) {
+      return;
+    }
+    runningTextRecognition = true;
+    final long traceId = getFrameNumber();
+    tracer.beginAsync(TEXT_RECOGNITION_TRACE, traceId);
+    FirebaseVisionImage image = FirebaseVisionImage.fromBitmap(backend.getInputBitmap());
+    FirebaseVisionTextRecognizer detector = FirebaseVision.getInstance()
+            .getOnDeviceTextRecognizer();
+    LOGGER.v("Running text recognition");
+    Task<FirebaseVisionText> result =
+            detector.processImage(image)
+                    .addOnSuccessListener(new OnSuccessListener<FirebaseVisionText>() {
+                      @Override
+                      public void onSuccess(FirebaseVisionText firebaseVisionText) {
+                        runningTextRecognition = false;
+                        tracer.endAsync(TEXT_RECOGNITION_TRACE, traceId);
+                        String extractedText = extractDetectedText(firebaseVisionText);
+                        detectedText = extractedText;
+                        final Viewer v = (Viewer) viewer;
+                        if (v != null) {
+                          v.onTextRecognized(detectedText);
+                        }
+                        LOGGER.d("Detected text: %s", detectedText);
+                      }
+                    })
+                    .addOnFailureListener(
+                            new OnFailureListener() {
+                              @Override
+                              public void onFailure(@NonNull Exception e) {
+                                runningTextRecognition = false;
+                                tracer.endAsync(TEXT_RECOGNITION_TRACE, traceId);
+                                LOGGER.e(e, "Text recognition failed");
+                              }
+                            });
+  }
+
+  /**
+   * @param scanning whether the frame was converted for a barcode scan, i.e. whole and at full
+   *     resolution.
+   */
+  private void runBarRecognition(final boolean scanning) {
+    final BarcodeScanner.Callback callback =
+        new BarcodeScanner.Callback() {
+          @Override
+          public void onScanned(String barcodeText, boolean hasNewValue) {
+            if (hasNewValue) {
+              extractedBarcodeText = barcodeText;
+              speechScheduler.speak(SpeechScheduler.Priority.NOTICE, "Barcode detected");
+              final Viewer v = (Viewer) viewer;
+              if (v != null) {
+                v.onBarcodeRecognized(extractedBarcodeText);
+              }
+            }
+            LOGGER.d("Detected barcode data: %s", barcodeText);
+          }
+        };
+    // While scanning, look closely at the centre of the full resolution frame where the user
+    // holds the item, otherwise glance over the whole (downscaled) detector input.
+    if (scanning) {
+      barcodeScanner.scanCenter(backend.getFrameBitmap(), callback);
+    } else {
+      barcodeScanner.scan(backend.getInputBitmap(), callback);
+    }
+  }
+
+  private void notifyTrackingUpdated() {
+    final CameraEngine.Viewer v = viewer;
+    if (v != null) {
+      v.onTrackingUpdated();
+    }
+  }
+
+  @Override
+  protected void processImage() {
+    final long frameNumber = getFrameNumber();
+    final long frameTimestampNs = getFrameTimestampNs();
+    final boolean headless = isHeadless();
+    if (!headless) {
+      notifyTrackingUpdated();
+    }
+    tracer.beginAsync(FRAME_TRACE, frameNumber);
+
+    // No mutex needed as this method is not reentrant.
+    if (computingDetection || pipeline == null) {
+      metrics.countDrop(
+          pipeline == null
+              ? PipelineMetrics.Drop.NOT_READY
+              : PipelineMetrics.Drop.DETECTOR_BUSY);
+      readyForNextImage();
+      tracer.endAsync(FRAME_TRACE, frameNumber);
+      frameProcessed();
+      return;
+    }
+    computingDetection = true;
+    LOGGER.v("Preparing image %d for detection in bg thread.", frameNumber);
+
+    final long conversionStartNs = metrics.nowNs();
+    // Only the part of the frame the model takes is converted, at the resolution it can use,
+    // unless the barcode scanner needs the whole frame at full resolution. Read once, a voice
+    // command may toggle scanning before the frame is processed.
+    final boolean scanning = scanningBarcodes;
+    final FrameRegion region = scanning ? null : pipeline.getInputRegion();
+    frame.set(
+        getRgbBytes(region), region, frameNumber, frameTimestampNs, getFrameTrackingTimestampNs());
+    metrics.record(PipelineMetrics.Stage.CONVERSION, conversionStartNs, frameTimestampNs);
+    pipeline.setInput(frame);
+    blackBox.addFrame(frame);
+
+    readyForNextImage();
+
+    // For examining the actual TF input.
+    if (SAVE_PREVIEW_BITMAP) {
+      ImageUtils.saveBitmap(backend.getInputBitmap());
+    }
+
+    runInBackground(
+        new Runnable() {
+          @Override
+          public void run() {
+            LOGGER.v("Running detection on image %d", frameNumber);
+            // Text recognition would compete with the barcode detector while scanning.
+            if (!scanning) {
+              runTextRecognition();
+            }
+            runBarRecognition(scanning);
+            final long startTime = SystemClock.uptimeMillis();
+            final DetectionPipeline.Result result = pipeline.process();
+            tracer.counter(DETECTIONS_TRACE, result.detections.size());
+            blackBox.setObjects(
+                result.frameNumber, result.frameDetections, pipeline.getTracker().getTracks());
+            sayDetectedObjectLocations(result);
+            warnOfApproachingObject();
+            metrics.endStage(PipelineMetrics.Stage.ANNOUNCE);
+
+            lastProcessingTimeMs = SystemClock.uptimeMillis() - startTime;
+            // The annotated copy of the detector input only exists to be looked at.
+            if (!headless) {
+              cropCopyBitmap = Bitmap.createBitmap(backend.getInputBitmap());
+              final Canvas canvas = new Canvas(cropCopyBitmap);
+              final Paint paint = new Paint();
+              paint.setColor(Color.RED);
+              paint.setStyle(Style.STROKE);
+              paint.setStrokeWidth(2.0f);
+              for (final Detection detection : result.detections) {
+                final Box location = detection.location;
+                canvas.drawRect(
+                    location.left, location.top, location.right, location.bottom, paint);
+              }
+            }
+
+            tracker.setRenderingEnabled(!headless);
+            tracker.setDebugResults(result.frameDetections);
+            powerStats.onFrame();
+
+            computingDetection = false;
+            tracer.endAsync(FRAME_TRACE, frameNumber);
+            frameProcessed();
+            if (headless) {
+              return;
+            }
+            notifyTrackingUpdated();
+          }
+        });
+  }
+
+  /**
+   * Speaks an urgent warning, bypassing the scene announcement and preempting any other speech, if
+   * a tracked object is about to reach the user.
+   */
+  private void warnOfApproachingObject() {
+    if (!shouldGuide) {
+      return;
+    }
+    final DetectionPipeline.Hazard hazard = pipeline.findHazard(MAX_TIME_TO_COLLISION_SEC);
+    if (hazard == null) {
+      return;
+    }
+    speechScheduler.speak(SpeechScheduler.Priority.HAZARD, hazard.phrase, hazard.timestampNs);
+    tracer.instant(HAZARD_TRACE);
+
+    final long latencyMs = (SystemClock.elapsedRealtimeNanos() - hazard.timestampNs) / 1000000;
+    ++hazardAlertCount;
+    hazardMaxLatencyMs = Math.max(hazardMaxLatencyMs, latencyMs);
+    if (latencyMs > HAZARD_LATENCY_BUDGET_MS) {
+      ++hazardOverBudgetCount;
+      LOGGER.w("Hazard alert took %dms from capture, budget is %dms",
+          latencyMs, HAZARD_LATENCY_BUDGET_MS);
+    }
+    LOGGER.i("%s approaching, time to collision %.1fs, alerted %dms after capture",
+        hazard.title, hazard.timeToCollisionSec, latencyMs);
+  }
+
+  /**
+   * Makes every frame also be run through a tile at close to the camera's resolution, which finds
+   * small and distant objects at the cost of more inference.
+   */
+  public void setTiledDetection(final boolean enabled) {
+    tiledDetection = enabled;
+    runInBackground(
+        new Runnable() {
+          @Override
+          public void run() {
+            applyTiledDetection();
+          }
+        });
+  }
+
+  private void applyTiledDetection() {
+    if (pipeline == null) {
+      return;
+    }
+    final boolean landscape = previewWidth >= previewHeight;
+    pipeline.setTiling(
+        landscape ? TILES_ALONG_LONG_SIDE : TILES_ALONG_SHORT_SIDE,
+        landscape ? TILES_ALONG_SHORT_SIDE : TILES_ALONG_LONG_SIDE,
+        tiledDetection ? TILES_PER_FRAME : 0);
+  }
+
+  /**
+   * Appends the last seconds of frames, detections and speech to {@link #BLACK_BOX_FILE} on a
+   * low-priority thread, and confirms it once written.
+   */
+  public void saveBlackBox(final String reason) {
+    blackBoxHandler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (writeBlackBox(reason)) {
+              speechScheduler.speak(SpeechScheduler.Priority.INFO, "Recording saved");
+            }
+          }
+        });
+  }
+
+  private boolean writeBlackBox(final String reason) {
+    final File dir = context.getExternalFilesDir(null);
+    if (dir == null) {
+      return false;
+    }
+    try {
+      final int frames = blackBox.flush(new File(dir, BLACK_BOX_FILE), reason);
+      LOGGER.i("Saved %d frames to the black box (%s)", frames, reason);
+      return true;
+    } catch (final IOException e) {
+      LOGGER.e(e, "Could not write black box");
+      return false;
+    }
+  }
+
+  private void speakRecognizedText() {
+    if(detectedText.isEmpty()) {
+      speechScheduler.speak(SpeechScheduler.Priority.INFO, ERROR_COULDNT_READ);
+    } else {
+      speechScheduler.speak(SpeechScheduler.Priority.INFO, detectedText);
+    }
+  }
+
+  @Override
+  protected void onStart() {
+    computingDetection = false;
+    initSpeechRecognitionListener();
+  }
+
+  private boolean matches(String regex, String text) {
+    Pattern pattern = Pattern.compile(regex);
+    Matcher matcher = pattern.matcher(text);
+    return matcher.find();
+  }
+
+  private void initSpeechRecognitionListener() {
+    listener =
+            new SpeechRecognitionListener(context, new SpeechRecognitionListener.OnSpeechRecognitionResult() {
+              @Override
+              public void onSuccess(ArrayList<String> matches) {
+                for(String match: matches) {
+                  LOGGER.d("Recognized speech: %s", match);
+                  if (matches(REGEX_OCR_TRIGGER_SPEECH, match)) {
+                    speakRecognizedText();
+                    break;
+                  } else if (matches(REGEX_SAVE_RECORDING, match)) {
+                    saveBlackBox("voice command: " + match);
+                    break;
+                  } else if (matches(REGEX_TILES_ON, match)) {
+                    setTiledDetection(true);
+                  } else if (matches(REGEX_TILES_OFF, match)) {
+                    setTiledDetection(false);
+                  } else if (matches(REGEX_START_GUIDING, match)) {
+                    announceWholeScene = true;
+                    shouldGuide = true;
+                  } else if (matches(REGEX_VIBRATION_ON, match)) {
+                    useHaptics = true;
+                  } else if (matches(REGEX_VIBRATION_OFF, match)) {
+                    useHaptics = false;
+                  } else if (matches(REGEX_STOP_GUIDING, match)) {
+                    shouldGuide = false;
+                    scanningBarcodes = false;
+                  } else if (matches(REGEX_START_SCANNING, match)) {
+                    barcodeScanner.reset();
+                    scanningBarcodes = true;
+                  } else if (matches(REGEX_USE_TONES, match)) {
+                    useEarcons = true;
+                  } else if (matches(REGEX_USE_SPEECH, match)) {
+                    announceWholeScene = true;
+                    useEarcons = false;
+                  }
+                }
+              }
+
+              @Override
+              public void onError(int error) {
+
+              }
+            });
+    listener.startListening();
+  }
+
+  @Override
+  protected void onStop() {
+    listener.destroy();
+    listener = null;
+    LOGGER.i("Speech latency, queue and capture to audio:\n%s", speechScheduler.getStatString());
+    LOGGER.i("Hazard alerts: %d, over %dms budget: %d, max capture-to-alert: %dms",
+        hazardAlertCount, HAZARD_LATENCY_BUDGET_MS, hazardOverBudgetCount, hazardMaxLatencyMs);
+    hapticFeedback.stop();
+    if (models != null) {
+      LOGGER.i("Detection models:\n%s", models.getStatString());
+    }
+  }
+
+  /** Stops the engine and releases everything it holds. The engine can't be restarted. */
+  @Override
+  public void release() {
+    super.release();
+    barcodeScanner.close();
+    earconPlayer.release();
+    hapticFeedback.release();
+    speechScheduler.shutdown();
+    blackBoxThread.quitSafely();
+    if (models != null) {
+      // The processing thread is gone, nothing else touches the models.
+      models.releaseAll();
+    }
+    // After the releases it was just handed, which it still runs.
+    modelLoaderThread.quitSafely();
+    if (Thread.getDefaultUncaughtExceptionHandler() == crashHandler) {
+      Thread.setDefaultUncaughtExceptionHandler(previousExceptionHandler);
+    }
+  }
+
+  @Override
+  protected Size getDesiredPreviewFrameSize() {
+    return DESIRED_PREVIEW_SIZE;
+  }
+
+  @Override
+  public void setUseNNAPI(final boolean isChecked) {
+    useNNAPI = isChecked;
+    runInBackground(() -> backend.getClassifier().setUseNNAPI(isChecked));
+  }
+
+  @Override
+  public void setNumThreads(final int numThreads) {
+    runInBackground(() -> backend.getClassifier().setNumThreads(numThreads));
+  }
+}
@@ -0,0 +1,27 @@
+package org.asmita.objectdetection;
+
+import android.graphics.SurfaceTexture;
+import android.util.Size;
+
+/**
+ * Delivers preview frames to a {@link CameraEngine}. Sources run without any Activity; a viewer may
+ * lend them a texture to draw the preview on.
+ */
+public interface FrameSource {
+  /** Callback for the engine to initialize its buffers once the frame size is known. */
+  interface ConnectionCallback {
+    void onPreviewSizeChosen(Size size, int cameraRotation);
+  }
+
+  /** Opens the source and starts delivering frames. */
+  void start();
+
+  /** Stops delivering frames and releases the source. */
+  void stop();
+
+  /**
+   * Draws the preview on {@code texture} in addition to delivering frames, or stops drawing it when
+   * {@code texture} is null. The texture must not be released before this is called with null.
+   */
+  void setPreviewTexture(SurfaceTexture texture);
+}
@@ -0,0 +1,90 @@
+package org.asmita.objectdetection;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PowerManager;
+import android.view.accessibility.AccessibilityManager;
+
+/**
+ * Decides whether anyone can be looking at the screen. Nothing needs to be rendered while the
+ * screen is off or while a screen reader such as TalkBack is active.
+ */
+public class HeadlessModeMonitor {
+  /** Notified on the main thread whenever headless mode is entered or left. */
+  public interface Listener {
+    void onHeadlessModeChanged(boolean headless);
+  }
+
+  private final Context context;
+  private final Listener listener;
+  private final AccessibilityManager accessibilityManager;
+  private volatile boolean screenOn;
+  private volatile boolean touchExploration;
+  private volatile boolean headless;
+
+  private final BroadcastReceiver screenReceiver =
+      new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+          screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+          update();
+        }
+      };
+
+  private final AccessibilityManager.TouchExplorationStateChangeListener touchExplorationListener =
+      new AccessibilityManager.TouchExplorationStateChangeListener() {
+        @Override
+        public void onTouchExplorationStateChanged(boolean enabled) {
+          touchExploration = enabled;
+          update();
+        }
+      };
+
+  public HeadlessModeMonitor(final Context context, final Listener listener) {
+    this.context = context;
+    this.listener = listener;
+    this.accessibilityManager =
+        (AccessibilityManager) context.getSystemService(Context.ACCESSIBILITY_SERVICE);
+  }
+
+  /**
+   * Starts listening. {@link CameraEngine} keeps the monitor registered for as long as it runs, not
+   * just while an Activity is resumed, so the screen turning off is noticed with the app in the
+   * background too.
+   */
+  public void start() {
+    final PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    screenOn = powerManager == null || powerManager.isInteractive();
+    final IntentFilter filter = new IntentFilter();
+    filter.addAction(Intent.ACTION_SCREEN_ON);
+    filter.addAction(Intent.ACTION_SCREEN_OFF);
+    context.registerReceiver(screenReceiver, filter);
+    if (accessibilityManager != null) {
+      touchExploration = accessibilityManager.isTouchExplorationEnabled();
+      accessibilityManager.addTouchExplorationStateChangeListener(touchExplorationListener);
+    }
+    update();
+  }
+
+  /** Stops listening; the last state is kept. */
+  public void stop() {
+    context.unregisterReceiver(screenReceiver);
+    if (accessibilityManager != null) {
+      accessibilityManager.removeTouchExplorationStateChangeListener(touchExplorationListener);
+    }
+  }
+
+  public boolean isHeadless() {
+    return headless;
+  }
+
+  private void update() {
+    final boolean newHeadless = !screenOn || touchExploration;
+    if (newHeadless != headless) {
+      headless = newHeadless;
+      listener.onHeadlessModeChanged(headless);
+    }
+  }
+}
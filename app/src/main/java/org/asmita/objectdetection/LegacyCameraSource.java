@@ -0,0 +1,148 @@
+package org.asmita.objectdetection;
+
+/*
+ * Copyright 2019 The TensorFlow Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+import android.hardware.Camera.CameraInfo;
+import android.util.Size;
+import java.io.IOException;
+import java.util.List;
+import org.asmita.objectdetection.env.ImageUtils;
+import org.asmita.objectdetection.env.Logger;
+
+/**
+ * Captures preview frames with the legacy camera API. The legacy API won't deliver frames without
+ * a preview target, so a detached texture nobody draws stands in while no viewer is attached.
+ *
+ * <p>Must be started, stopped and handed textures on the thread whose looper receives the preview
+ * callbacks.
+ */
+public class LegacyCameraSource implements FrameSource {
+  private static final Logger LOGGER = new Logger();
+
+  private final Camera.PreviewCallback imageListener;
+  private final ConnectionCallback cameraConnectionCallback;
+  private final Size desiredSize;
+  private Camera camera;
+  private SurfaceTexture dummyTexture;
+  private SurfaceTexture previewTexture;
+
+  public LegacyCameraSource(
+      final ConnectionCallback connectionCallback,
+      final Camera.PreviewCallback imageListener,
+      final Size desiredSize) {
+    this.cameraConnectionCallback = connectionCallback;
+    this.imageListener = imageListener;
+    this.desiredSize = desiredSize;
+  }
+
+  @Override
+  public void start() {
+    int index = getCameraId();
+    camera = Camera.open(index);
+
+    try {
+      Camera.Parameters parameters = camera.getParameters();
+      List<String> focusModes = parameters.getSupportedFocusModes();
+      if (focusModes != null
+          && focusModes.contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)) {
+        parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE);
+      }
+      List<Camera.Size> cameraSizes = parameters.getSupportedPreviewSizes();
+      Size[] sizes = new Size[cameraSizes.size()];
+      int i = 0;
+      for (Camera.Size size : cameraSizes) {
+        sizes[i++] = new Size(size.width, size.height);
+      }
+      Size previewSize =
+          Camera2Source.chooseOptimalSize(sizes, desiredSize.getWidth(), desiredSize.getHeight());
+      parameters.setPreviewSize(previewSize.getWidth(), previewSize.getHeight());
+      camera.setDisplayOrientation(90);
+      camera.setParameters(parameters);
+      camera.setPreviewTexture(currentTexture());
+    } catch (IOException exception) {
+      LOGGER.e(exception, "Exception!");
+      camera.release();
+      camera = null;
+      return;
+    }
+
+    Camera.Size s = camera.getParameters().getPreviewSize();
+    cameraConnectionCallback.onPreviewSizeChosen(new Size(s.width, s.height), 90);
+    startPreview();
+  }
+
+  @Override
+  public void stop() {
+    if (camera != null) {
+      camera.stopPreview();
+      camera.setPreviewCallback(null);
+      camera.release();
+      camera = null;
+    }
+    if (dummyTexture != null) {
+      dummyTexture.release();
+      dummyTexture = null;
+    }
+  }
+
+  @Override
+  public void setPreviewTexture(final SurfaceTexture texture) {
+    if (previewTexture == texture) {
+      return;
+    }
+    previewTexture = texture;
+    if (camera == null) {
+      return;
+    }
+    // The target can only be swapped while the preview is stopped, which also drops the callback.
+    camera.stopPreview();
+    try {
+      camera.setPreviewTexture(currentTexture());
+    } catch (IOException exception) {
+      LOGGER.e(exception, "Exception!");
+    }
+    startPreview();
+  }
+
+  private void startPreview() {
+    camera.setPreviewCallbackWithBuffer(imageListener);
+    Camera.Size s = camera.getParameters().getPreviewSize();
+    camera.addCallbackBuffer(new byte[ImageUtils.getYUVByteSize(s.height, s.width)]);
+    camera.startPreview();
+  }
+
+  private SurfaceTexture currentTexture() {
+    if (previewTexture != null) {
+      return previewTexture;
+    }
+    if (dummyTexture == null) {
+      dummyTexture = new SurfaceTexture(false);
+    }
+    return dummyTexture;
+  }
+
+  private int getCameraId() {
+    CameraInfo ci = new CameraInfo();
+    for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
+      Camera.getCameraInfo(i, ci);
+      if (ci.facing == CameraInfo.CAMERA_FACING_BACK) return i;
+    }
+    return -1; // No camera found
+  }
+}
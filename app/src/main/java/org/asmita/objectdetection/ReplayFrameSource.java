@@ -0,0 +1,167 @@
+package org.asmita.objectdetection;
+
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Size;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import org.asmita.objectdetection.core.replay.FrameRecording;
+import org.asmita.objectdetection.env.Logger;
+
+/**
+ * Replays a {@link FrameRecording} in place of the camera, so that throughput and latency can be
+ * measured on identical input. Frames are handed out straight from the memory-mapped file.
+ *
+ * <p>In real-time mode frames are delivered at the recorded pace and dropped like camera frames
+ * when the engine is busy. Otherwise every frame is delivered as soon as the previous one has been
+ * fully processed, and the run ends with a throughput summary in the log.
+ */
+public class ReplayFrameSource implements FrameSource {
+  private static final Logger LOGGER = new Logger();
+
+  /** Receives the replayed frames on the replay thread. */
+  public interface FrameListener {
+    /**
+     * @param nv21 the frame, valid until {@code done} is run.
+     * @param timestampNs when the frame was delivered, in the {@link
+     *     SystemClock#elapsedRealtimeNanos()} time base, so that frame age and latency are measured
+     *     from the replay.
+     * @param recordedTimestampNs the recorded capture time shifted into the same time base. Frame
+     *     intervals are kept as recorded in both modes, so tracking behaves the same however fast
+     *     the frames are processed.
+     * @param done must be run once the frame has been fully processed or dropped.
+     */
+    void onReplayFrame(ByteBuffer nv21, long timestampNs, long recordedTimestampNs, Runnable done);
+  }
+
+  private final File file;
+  private final boolean realtime;
+  private final ConnectionCallback connectionCallback;
+  private final FrameListener frameListener;
+  private final Semaphore frameDone = new Semaphore(0);
+  private final Runnable releaseFrame =
+      new Runnable() {
+        @Override
+        public void run() {
+          frameDone.release();
+        }
+      };
+  private final Runnable noOp =
+      new Runnable() {
+        @Override
+        public void run() {}
+      };
+  private HandlerThread thread;
+  private FrameRecording recording;
+  private volatile boolean running = false;
+
+  public ReplayFrameSource(
+      final File file,
+      final boolean realtime,
+      final ConnectionCallback connectionCallback,
+      final FrameListener frameListener) {
+    this.file = file;
+    this.realtime = realtime;
+    this.connectionCallback = connectionCallback;
+    this.frameListener = frameListener;
+  }
+
+  @Override
+  public void start() {
+    try {
+      recording = FrameRecording.open(file);
+    } catch (final IOException e) {
+      LOGGER.e(e, "Could not open recording %s", file);
+      return;
+    }
+    LOGGER.i(
+        "Replaying %d frames of %dx%d from %s (%s)",
+        recording.getFrameCount(),
+        recording.getWidth(),
+        recording.getHeight(),
+        file,
+        realtime ? "real time" : "as fast as possible");
+    connectionCallback.onPreviewSizeChosen(
+        new Size(recording.getWidth(), recording.getHeight()), recording.getRotation());
+
+    running = true;
+    thread = new HandlerThread("ReplayFrames");
+    thread.start();
+    new Handler(thread.getLooper())
+        .post(
+            new Runnable() {
+              @Override
+              public void run() {
+                replay();
+              }
+            });
+  }
+
+  @Override
+  public void stop() {
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    // Unblocks a replay waiting for a frame that will never be processed.
+    frameDone.release();
+    thread.quitSafely();
+    try {
+      thread.join();
+    } catch (final InterruptedException e) {
+      LOGGER.e(e, "Exception!");
+    }
+    thread = null;
+    try {
+      recording.close();
+    } catch (final IOException e) {
+      LOGGER.e(e, "Exception!");
+    }
+    recording = null;
+  }
+
+  /** Recordings have no preview to draw. */
+  @Override
+  public void setPreviewTexture(final SurfaceTexture texture) {}
+
+  private void replay() {
+    final int frameCount = recording.getFrameCount();
+    if (frameCount == 0) {
+      return;
+    }
+    final long firstTimestampNs = recording.getTimestampNs(0);
+    final long startNs = SystemClock.elapsedRealtimeNanos();
+    int delivered = 0;
+    for (int i = 0; i < frameCount && running; ++i) {
+      final long offsetNs = recording.getTimestampNs(i) - firstTimestampNs;
+      if (realtime) {
+        final long waitMs = (startNs + offsetNs - SystemClock.elapsedRealtimeNanos()) / 1000000;
+        if (waitMs > 0) {
+          SystemClock.sleep(waitMs);
+        }
+        frameListener.onReplayFrame(
+            recording.getFrame(i), SystemClock.elapsedRealtimeNanos(), startNs + offsetNs, noOp);
+      } else {
+        // Ahead of the recorded pace, so the recorded time would lie in the future.
+        frameListener.onReplayFrame(
+            recording.getFrame(i),
+            SystemClock.elapsedRealtimeNanos(),
+            startNs + offsetNs,
+            releaseFrame);
+        frameDone.acquireUninterruptibly();
+      }
+      ++delivered;
+    }
+    final long elapsedMs = (SystemClock.elapsedRealtimeNanos() - startNs) / 1000000;
+    LOGGER.i(
+        "Replay %s after %d frames in %dms (%.1f fps)",
+        running ? "finished" : "stopped",
+        delivered,
+        elapsedMs,
+        elapsedMs > 0 ? delivered * 1000f / elapsedMs : 0f);
+  }
+}
@@ -6,12 +6,12 @@ import android.os.Bundle;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
-import android.util.Log;
 
 import java.util.ArrayList;
+import org.asmita.objectdetection.env.Logger;
 
 public class SpeechRecognitionListener implements RecognitionListener {
-    private String TAG = "SpeechRecognitionListener";
+    private static final Logger LOGGER = new Logger();
 
     public interface OnSpeechRecognitionResult {
         void onSuccess(ArrayList<String> matches);
@@ -57,7 +57,7 @@ public class SpeechRecognitionListener implements RecognitionListener {
     @Override
     public void onBeginningOfSpeech()
     {
-        Log.d(TAG, "onBeginingOfSpeech");
+        LOGGER.d("onBeginningOfSpeech");
     }
 
     @Override
@@ -69,14 +69,14 @@ public class SpeechRecognitionListener implements RecognitionListener {
     @Override
     public void onEndOfSpeech()
     {
-        Log.d(TAG, "onEndOfSpeech");
+        LOGGER.d("onEndOfSpeech");
     }
 
     @Override
     public void onError(int error)
     {
         onSpeechRecognitionResult.onError(error);
-        Log.d(TAG, "error = " + error);
+        LOGGER.d("error = %d", error);
         init();
         startListening();
     }
@@ -96,16 +96,16 @@ public class SpeechRecognitionListener implements RecognitionListener {
     @Override
     public void onReadyForSpeech(Bundle params)
     {
-        Log.d(TAG, "onReadyForSpeech"); //$NON-NLS-1$
+        LOGGER.d("onReadyForSpeech");
     }
 
     @Override
     public void onResults(Bundle results)
     {
         ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-        Log.d(TAG, matches.size()+"");
+        LOGGER.d("%d results", matches.size());
         for (String match: matches) {
-            Log.d(TAG, match);
+            LOGGER.d("%s", match);
         }
         onSpeechRecognitionResult.onSuccess(matches);
         startListening();
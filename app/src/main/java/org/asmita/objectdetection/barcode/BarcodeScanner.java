@@ -0,0 +1,210 @@
+package org.asmita.objectdetection.barcode;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.ml.vision.FirebaseVision;
+import com.google.firebase.ml.vision.barcode.FirebaseVisionBarcode;
+import com.google.firebase.ml.vision.barcode.FirebaseVisionBarcodeDetector;
+import com.google.firebase.ml.vision.barcode.FirebaseVisionBarcodeDetectorOptions;
+import com.google.firebase.ml.vision.common.FirebaseVisionImage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.asmita.objectdetection.core.trace.TraceRecorder;
+import org.asmita.objectdetection.env.Logger;
+
+/**
+ * Detects barcodes with a detector restricted to the symbologies we can make use of (retail product
+ * codes and QR codes), so that the detector doesn't search for every supported format on each
+ * frame.
+ *
+ * <p>In scanning mode only a square window in the centre of the full resolution preview frame is
+ * handed to the detector, which is where the user holds the item up. Values that were announced
+ * recently are filtered out so that alternating between two codes doesn't re-announce them.
+ */
+public class BarcodeScanner {
+  private static final Logger LOGGER = new Logger();
+
+  // Fraction of the shorter frame side covered by the scanning window.
+  private static final float ROI_FRACTION = 0.6f;
+  // A value is announced again only after it has been out of view for this long.
+  private static final long DEDUPE_WINDOW_MS = 10000;
+  private static final int MAX_REMEMBERED_VALUES = 16;
+  private static final String TRACE_NAME = "barcode scan";
+
+  /** Receives the result of a scan on the main thread. */
+  public interface Callback {
+    /**
+     * @param displayText text describing every barcode found, empty if none were found.
+     * @param hasNewValue true if at least one value wasn't announced within the dedupe window.
+     */
+    void onScanned(String displayText, boolean hasNewValue);
+  }
+
+  private final FirebaseVisionBarcodeDetector detector;
+  private final RecentValueFilter recentValues =
+      new RecentValueFilter(DEDUPE_WINDOW_MS, MAX_REMEMBERED_VALUES);
+  private final Rect roiSrcRect = new Rect();
+  private final Rect roiDstRect = new Rect();
+  private Bitmap roiBitmap;
+  private Canvas roiCanvas;
+  private volatile boolean running = false;
+  private volatile TraceRecorder tracer;
+  private long scanCount = 0;
+
+  public BarcodeScanner() {
+    final FirebaseVisionBarcodeDetectorOptions options =
+        new FirebaseVisionBarcodeDetectorOptions.Builder()
+            .setBarcodeFormats(
+                FirebaseVisionBarcode.FORMAT_EAN_13,
+                FirebaseVisionBarcode.FORMAT_EAN_8,
+                FirebaseVisionBarcode.FORMAT_UPC_A,
+                FirebaseVisionBarcode.FORMAT_UPC_E,
+                FirebaseVisionBarcode.FORMAT_QR_CODE)
+            .build();
+    detector = FirebaseVision.getInstance().getVisionBarcodeDetector(options);
+  }
+
+  /** Records each scan, from submission to result, as an async span of {@code tracer}. */
+  public void setTracer(final TraceRecorder tracer) {
+    this.tracer = tracer;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /** Scans the whole bitmap. Returns false if a previous scan is still in flight. */
+  public boolean scan(final Bitmap bitmap, final Callback callback) {
+    if (running) {
+      return false;
+    }
+    running = true;
+    detect(FirebaseVisionImage.fromBitmap(bitmap), callback);
+    return true;
+  }
+
+  /**
+   * Scans the centre window of a full resolution frame at its native resolution. The window is
+   * copied out synchronously, so the frame may be reused as soon as this returns.
+   *
+   * @return false if a previous scan is still in flight.
+   */
+  public boolean scanCenter(final Bitmap frame, final Callback callback) {
+    if (running) {
+      return false;
+    }
+    running = true;
+
+    final int side = (int) (Math.min(frame.getWidth(), frame.getHeight()) * ROI_FRACTION);
+    if (roiBitmap == null || roiBitmap.getWidth() != side) {
+      roiBitmap = Bitmap.createBitmap(side, side, Config.ARGB_8888);
+      roiCanvas = new Canvas(roiBitmap);
+      roiDstRect.set(0, 0, side, side);
+    }
+    final int left = (frame.getWidth() - side) / 2;
+    final int top = (frame.getHeight() - side) / 2;
+    roiSrcRect.set(left, top, left + side, top + side);
+    roiCanvas.drawBitmap(frame, roiSrcRect, roiDstRect, null);
+
+    detect(FirebaseVisionImage.fromBitmap(roiBitmap), callback);
+    return true;
+  }
+
+  /** Forgets recently announced values, so the next sighting of any code is announced. */
+  public void reset() {
+    recentValues.clear();
+  }
+
+  public void close() {
+    try {
+      detector.close();
+    } catch (final IOException e) {
+      LOGGER.e(e, "Exception closing barcode detector!");
+    }
+  }
+
+  private void detect(final FirebaseVisionImage image, final Callback callback) {
+    final TraceRecorder tracer = this.tracer;
+    final long scanId = scanCount++;
+    if (tracer != null) {
+      tracer.beginAsync(TRACE_NAME, scanId);
+    }
+    detector
+        .detectInImage(image)
+        .addOnSuccessListener(
+            new OnSuccessListener<List<FirebaseVisionBarcode>>() {
+              @Override
+              public void onSuccess(List<FirebaseVisionBarcode> barcodes) {
+                final long now = SystemClock.elapsedRealtime();
+                boolean hasNewValue = false;
+                for (FirebaseVisionBarcode barcode : barcodes) {
+                  final String rawValue = barcode.getRawValue();
+                  if (rawValue != null && recentValues.accept(rawValue, now)) {
+                    hasNewValue = true;
+                  }
+                }
+                running = false;
+                if (tracer != null) {
+                  tracer.endAsync(TRACE_NAME, scanId);
+                }
+                callback.onScanned(extractBarcodeText(barcodes), hasNewValue);
+              }
+            })
+        .addOnFailureListener(
+            new OnFailureListener() {
+              @Override
+              public void onFailure(@NonNull Exception e) {
+                running = false;
+                if (tracer != null) {
+                  tracer.endAsync(TRACE_NAME, scanId);
+                }
+                LOGGER.e(e, "Barcode detection failed!");
+              }
+            });
+  }
+
+  private static String extractBarcodeText(List<FirebaseVisionBarcode> barcodes) {
+    ArrayList<String> extractedBarcodeTexts = new ArrayList<>();
+    for (FirebaseVisionBarcode barcode : barcodes) {
+      String extractedBarcodeText = barcode.getRawValue();
+      int valueType = barcode.getValueType();
+      // See API reference for complete list of supported types
+      try {
+        switch (valueType) {
+          case FirebaseVisionBarcode.TYPE_WIFI:
+            String ssid = barcode.getWifi().getSsid();
+            String password = barcode.getWifi().getPassword();
+            int type = barcode.getWifi().getEncryptionType();
+            if (ssid != null && !ssid.isEmpty() && password != null && !password.isEmpty()) {
+              extractedBarcodeText =
+                  String.format("SSID: %s\nPassword: %s\nType: %d", ssid, password, type);
+            }
+            break;
+          case FirebaseVisionBarcode.TYPE_URL:
+            String title = barcode.getUrl().getTitle();
+            String url = barcode.getUrl().getUrl();
+            if (title != null && !title.isEmpty() && url != null && !url.isEmpty()) {
+              extractedBarcodeText = String.format("Title: %s\nURL: %s", title, url);
+            }
+            break;
+        }
+      } catch (Exception e) {
+        LOGGER.e(e, "Exception reading barcode value!");
+      }
+      if (extractedBarcodeText != null) {
+        extractedBarcodeTexts.add(extractedBarcodeText);
+      }
+    }
+    return String.join("\n----------\n", extractedBarcodeTexts);
+  }
+}
@@ -0,0 +1,55 @@
+package org.asmita.objectdetection.barcode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers values that were announced recently so that the same value is not announced again
+ * while it stays in view. A value is forgotten once it hasn't been seen for the configured window.
+ */
+public class RecentValueFilter {
+  private final long windowMs;
+  private final int maxEntries;
+  // Access ordered, and the only access is the put on each sighting, so values are ordered by last
+  // sighting and expired ones are always at the head.
+  private final LinkedHashMap<String, Long> lastSeen;
+
+  public RecentValueFilter(final long windowMs, final int maxEntries) {
+    this.windowMs = windowMs;
+    this.maxEntries = maxEntries;
+    this.lastSeen =
+        new LinkedHashMap<String, Long>(maxEntries, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+            return size() > RecentValueFilter.this.maxEntries;
+          }
+        };
+  }
+
+  /**
+   * Records a sighting of {@code value}.
+   *
+   * @return true if the value was not seen within the window and should be announced.
+   */
+  public synchronized boolean accept(final String value, final long nowMs) {
+    expire(nowMs);
+    final boolean isNew = !lastSeen.containsKey(value);
+    lastSeen.put(value, nowMs);
+    return isNew;
+  }
+
+  public synchronized void clear() {
+    lastSeen.clear();
+  }
+
+  private void expire(final long nowMs) {
+    final Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+    while (it.hasNext()) {
+      if (nowMs - it.next().getValue() <= windowMs) {
+        break;
+      }
+      it.remove();
+    }
+  }
+}
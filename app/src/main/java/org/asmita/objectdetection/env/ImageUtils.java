@@ -20,13 +20,13 @@ import android.graphics.Matrix;
 import android.os.Environment;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.image.YuvConverter;
 
 /** Utility class for manipulating images. */
 public class ImageUtils {
-  // This value is 2 ^ 18 - 1, and is used to clamp the RGB values before their ranges
-  // are normalized to eight bits.
-  static final int kMaxChannelValue = 262143;
-
   @SuppressWarnings("unused")
   private static final Logger LOGGER = new Logger();
 
@@ -86,46 +86,16 @@ public class ImageUtils {
   }
 
   public static void convertYUV420SPToARGB8888(byte[] input, int width, int height, int[] output) {
-    final int frameSize = width * height;
-    for (int j = 0, yp = 0; j < height; j++) {
-      int uvp = frameSize + (j >> 1) * width;
-      int u = 0;
-      int v = 0;
-
-      for (int i = 0; i < width; i++, yp++) {
-        int y = 0xff & input[yp];
-        if ((i & 1) == 0) {
-          v = 0xff & input[uvp++];
-          u = 0xff & input[uvp++];
-        }
-
-        output[yp] = YUV2RGB(y, u, v);
-      }
-    }
+    YuvConverter.convertYUV420SPToARGB8888(input, width, height, output);
   }
 
-  private static int YUV2RGB(int y, int u, int v) {
-    // Adjust and check YUV values
-    y = (y - 16) < 0 ? 0 : (y - 16);
-    u -= 128;
-    v -= 128;
-
-    // This is the floating point equivalent. We do the conversion in integer
-    // because some Android devices do not have floating point in hardware.
-    // nR = (int)(1.164 * nY + 2.018 * nU);
-    // nG = (int)(1.164 * nY - 0.813 * nV - 0.391 * nU);
-    // nB = (int)(1.164 * nY + 1.596 * nV);
-    int y1192 = 1192 * y;
-    int r = (y1192 + 1634 * v);
-    int g = (y1192 - 833 * v - 400 * u);
-    int b = (y1192 + 2066 * u);
-
-    // Clipping RGB values to be inside boundaries [ 0 , kMaxChannelValue ]
-    r = r > kMaxChannelValue ? kMaxChannelValue : (r < 0 ? 0 : r);
-    g = g > kMaxChannelValue ? kMaxChannelValue : (g < 0 ? 0 : g);
-    b = b > kMaxChannelValue ? kMaxChannelValue : (b < 0 ? 0 : b);
-
-    return 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+  /**
+   * Same as {@link #convertYUV420SPToARGB8888(byte[], int, int, int[])} for a frame that is read in
+   * place, e.g. from a memory-mapped recording, starting at the buffer's current position.
+   */
+  public static void convertYUV420SPToARGB8888(
+      ByteBuffer input, int width, int height, int[] output) {
+    YuvConverter.convertYUV420SPToARGB8888(input, width, height, output);
   }
 
   public static void convertYUV420ToARGB8888(
@@ -138,16 +108,48 @@ public class ImageUtils {
       int uvRowStride,
       int uvPixelStride,
       int[] out) {
-    int yp = 0;
-    for (int j = 0; j < height; j++) {
-      int pY = yRowStride * j;
-      int pUV = uvRowStride * (j >> 1);
+    YuvConverter.convertYUV420ToARGB8888(
+        yData, uData, vData, width, height, yRowStride, uvRowStride, uvPixelStride, out);
+  }
 
-      for (int i = 0; i < width; i++) {
-        int uv_offset = pUV + (i >> 1) * uvPixelStride;
+  /** Converts {@code region} of an NV21 frame, or all of it if {@code region} is null. */
+  public static void convertYUV420SPToARGB8888(
+      byte[] input, int width, int height, FrameRegion region, int[] output) {
+    if (region == null) {
+      YuvConverter.convertYUV420SPToARGB8888(input, width, height, output);
+    } else {
+      YuvConverter.convertYUV420SPToARGB8888(input, width, height, region, output);
+    }
+  }
 
-        out[yp++] = YUV2RGB(0xff & yData[pY + i], 0xff & uData[uv_offset], 0xff & vData[uv_offset]);
-      }
+  /** Converts {@code region} of an NV21 frame read in place, or all of it. */
+  public static void convertYUV420SPToARGB8888(
+      ByteBuffer input, int width, int height, FrameRegion region, int[] output) {
+    if (region == null) {
+      YuvConverter.convertYUV420SPToARGB8888(input, width, height, output);
+    } else {
+      YuvConverter.convertYUV420SPToARGB8888(input, width, height, region, output);
+    }
+  }
+
+  /** Converts {@code region} of a planar YUV 4:2:0 frame, or all of it. */
+  public static void convertYUV420ToARGB8888(
+      byte[] yData,
+      byte[] uData,
+      byte[] vData,
+      int width,
+      int height,
+      int yRowStride,
+      int uvRowStride,
+      int uvPixelStride,
+      FrameRegion region,
+      int[] out) {
+    if (region == null) {
+      YuvConverter.convertYUV420ToARGB8888(
+          yData, uData, vData, width, height, yRowStride, uvRowStride, uvPixelStride, out);
+    } else {
+      YuvConverter.convertYUV420ToARGB8888(
+          yData, uData, vData, yRowStride, uvRowStride, uvPixelStride, region, out);
     }
   }
 
@@ -172,48 +174,20 @@ public class ImageUtils {
       final int dstHeight,
       final int applyRotation,
       final boolean maintainAspectRatio) {
-    final Matrix matrix = new Matrix();
-
-    if (applyRotation != 0) {
-      if (applyRotation % 90 != 0) {
-        LOGGER.w("Rotation of %d % 90 != 0", applyRotation);
-      }
-
-      // Translate so center of image is at origin.
-      matrix.postTranslate(-srcWidth / 2.0f, -srcHeight / 2.0f);
-
-      // Rotate around origin.
-      matrix.postRotate(applyRotation);
-    }
-
-    // Account for the already applied rotation, if any, and then determine how
-    // much scaling is needed for each axis.
-    final boolean transpose = (Math.abs(applyRotation) + 90) % 180 == 0;
-
-    final int inWidth = transpose ? srcHeight : srcWidth;
-    final int inHeight = transpose ? srcWidth : srcHeight;
-
-    // Apply scaling if necessary.
-    if (inWidth != dstWidth || inHeight != dstHeight) {
-      final float scaleFactorX = dstWidth / (float) inWidth;
-      final float scaleFactorY = dstHeight / (float) inHeight;
-
-      if (maintainAspectRatio) {
-        // Scale by minimum factor so that dst is filled completely while
-        // maintaining the aspect ratio. Some image may fall off the edge.
-        final float scaleFactor = Math.max(scaleFactorX, scaleFactorY);
-        matrix.postScale(scaleFactor, scaleFactor);
-      } else {
-        // Scale exactly to fill dst from src.
-        matrix.postScale(scaleFactorX, scaleFactorY);
-      }
-    }
-
-    if (applyRotation != 0) {
-      // Translate back from origin centered reference to destination frame.
-      matrix.postTranslate(dstWidth / 2.0f, dstHeight / 2.0f);
+    if (applyRotation % 90 != 0) {
+      LOGGER.w("Rotation of %d % 90 != 0", applyRotation);
     }
+    return toMatrix(
+        Transform.between(
+            srcWidth, srcHeight, dstWidth, dstHeight, applyRotation, maintainAspectRatio));
+  }
 
+  /** Converts a platform independent transform for use with the Android graphics APIs. */
+  public static Matrix toMatrix(final Transform transform) {
+    final float[] values = new float[9];
+    transform.getValues(values);
+    final Matrix matrix = new Matrix();
+    matrix.setValues(values);
     return matrix;
   }
 }
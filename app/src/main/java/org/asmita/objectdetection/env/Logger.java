@@ -15,14 +15,29 @@ limitations under the License.
 
 package org.asmita.objectdetection.env;
 
+import android.os.SystemClock;
 import android.util.Log;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import org.asmita.objectdetection.core.log.LogRing;
 
-/** Wrapper for the platform log function, allows convenient message prefixing and log disabling. */
+/**
+ * Wrapper for the platform log function, allows convenient message prefixing and log disabling.
+ *
+ * <p>Every message, whatever its level, is also kept unformatted in a process wide {@link LogRing},
+ * and is only formatted for logcat if its level is loggable. The overloads taking primitives and up
+ * to two objects don't allocate, so per-frame logging with them costs next to nothing when logcat
+ * doesn't show it.
+ */
 public final class Logger {
   private static final String DEFAULT_TAG = "tensorflow";
   private static final int DEFAULT_MIN_LOG_LEVEL = Log.DEBUG;
+  // About two minutes of per-frame logging.
+  private static final int RING_CAPACITY = 16384;
+
+  private static final LogRing RING = new LogRing(RING_CAPACITY, SystemClock::elapsedRealtimeNanos);
 
   // Classes to be ignored when examining the stack trace
   private static final Set<String> IGNORED_CLASS_NAMES;
@@ -120,65 +135,330 @@ public final class Logger {
     return logLevel >= minLogLevel || Log.isLoggable(tag, logLevel);
   }
 
+  /** Writes the messages kept in memory, oldest first, to {@code file}. */
+  public static void dumpRing(final File file) throws IOException {
+    RING.dump(file);
+  }
+
   private String toMessage(final String format, final Object... args) {
     return messagePrefix + (args.length > 0 ? String.format(format, args) : format);
   }
 
+  public void v(final String format) {
+    RING.add(Log.VERBOSE, messagePrefix, format);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + format);
+    }
+  }
+
+  public void v(final String format, final long a) {
+    RING.add(Log.VERBOSE, messagePrefix, format, a);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void v(final String format, final long a, final long b) {
+    RING.add(Log.VERBOSE, messagePrefix, format, a, b);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
+  public void v(final String format, final long a, final long b, final long c) {
+    RING.add(Log.VERBOSE, messagePrefix, format, a, b, c);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + String.format(format, a, b, c));
+    }
+  }
+
+  public void v(final String format, final double a) {
+    RING.add(Log.VERBOSE, messagePrefix, format, a);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void v(final String format, final Object a) {
+    RING.add(Log.VERBOSE, messagePrefix, format, a);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void v(final String format, final Object a, final Object b) {
+    RING.add(Log.VERBOSE, messagePrefix, format, a, b);
+    if (isLoggable(Log.VERBOSE)) {
+      Log.v(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
   public void v(final String format, final Object... args) {
+    RING.add(Log.VERBOSE, messagePrefix, format, args);
     if (isLoggable(Log.VERBOSE)) {
       Log.v(tag, toMessage(format, args));
     }
   }
 
   public void v(final Throwable t, final String format, final Object... args) {
+    RING.add(Log.VERBOSE, messagePrefix, format, args);
+    RING.add(Log.VERBOSE, messagePrefix, "%s", t);
     if (isLoggable(Log.VERBOSE)) {
       Log.v(tag, toMessage(format, args), t);
     }
   }
 
+  public void d(final String format) {
+    RING.add(Log.DEBUG, messagePrefix, format);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + format);
+    }
+  }
+
+  public void d(final String format, final long a) {
+    RING.add(Log.DEBUG, messagePrefix, format, a);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void d(final String format, final long a, final long b) {
+    RING.add(Log.DEBUG, messagePrefix, format, a, b);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
+  public void d(final String format, final long a, final long b, final long c) {
+    RING.add(Log.DEBUG, messagePrefix, format, a, b, c);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + String.format(format, a, b, c));
+    }
+  }
+
+  public void d(final String format, final double a) {
+    RING.add(Log.DEBUG, messagePrefix, format, a);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void d(final String format, final Object a) {
+    RING.add(Log.DEBUG, messagePrefix, format, a);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void d(final String format, final Object a, final Object b) {
+    RING.add(Log.DEBUG, messagePrefix, format, a, b);
+    if (isLoggable(Log.DEBUG)) {
+      Log.d(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
   public void d(final String format, final Object... args) {
+    RING.add(Log.DEBUG, messagePrefix, format, args);
     if (isLoggable(Log.DEBUG)) {
       Log.d(tag, toMessage(format, args));
     }
   }
 
   public void d(final Throwable t, final String format, final Object... args) {
+    RING.add(Log.DEBUG, messagePrefix, format, args);
+    RING.add(Log.DEBUG, messagePrefix, "%s", t);
     if (isLoggable(Log.DEBUG)) {
       Log.d(tag, toMessage(format, args), t);
     }
   }
 
+  public void i(final String format) {
+    RING.add(Log.INFO, messagePrefix, format);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + format);
+    }
+  }
+
+  public void i(final String format, final long a) {
+    RING.add(Log.INFO, messagePrefix, format, a);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void i(final String format, final long a, final long b) {
+    RING.add(Log.INFO, messagePrefix, format, a, b);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
+  public void i(final String format, final long a, final long b, final long c) {
+    RING.add(Log.INFO, messagePrefix, format, a, b, c);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + String.format(format, a, b, c));
+    }
+  }
+
+  public void i(final String format, final double a) {
+    RING.add(Log.INFO, messagePrefix, format, a);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void i(final String format, final Object a) {
+    RING.add(Log.INFO, messagePrefix, format, a);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void i(final String format, final Object a, final Object b) {
+    RING.add(Log.INFO, messagePrefix, format, a, b);
+    if (isLoggable(Log.INFO)) {
+      Log.i(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
   public void i(final String format, final Object... args) {
+    RING.add(Log.INFO, messagePrefix, format, args);
     if (isLoggable(Log.INFO)) {
       Log.i(tag, toMessage(format, args));
     }
   }
 
   public void i(final Throwable t, final String format, final Object... args) {
+    RING.add(Log.INFO, messagePrefix, format, args);
+    RING.add(Log.INFO, messagePrefix, "%s", t);
     if (isLoggable(Log.INFO)) {
       Log.i(tag, toMessage(format, args), t);
     }
   }
 
+  public void w(final String format) {
+    RING.add(Log.WARN, messagePrefix, format);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + format);
+    }
+  }
+
+  public void w(final String format, final long a) {
+    RING.add(Log.WARN, messagePrefix, format, a);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void w(final String format, final long a, final long b) {
+    RING.add(Log.WARN, messagePrefix, format, a, b);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
+  public void w(final String format, final long a, final long b, final long c) {
+    RING.add(Log.WARN, messagePrefix, format, a, b, c);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + String.format(format, a, b, c));
+    }
+  }
+
+  public void w(final String format, final double a) {
+    RING.add(Log.WARN, messagePrefix, format, a);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void w(final String format, final Object a) {
+    RING.add(Log.WARN, messagePrefix, format, a);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void w(final String format, final Object a, final Object b) {
+    RING.add(Log.WARN, messagePrefix, format, a, b);
+    if (isLoggable(Log.WARN)) {
+      Log.w(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
   public void w(final String format, final Object... args) {
+    RING.add(Log.WARN, messagePrefix, format, args);
     if (isLoggable(Log.WARN)) {
       Log.w(tag, toMessage(format, args));
     }
   }
 
   public void w(final Throwable t, final String format, final Object... args) {
+    RING.add(Log.WARN, messagePrefix, format, args);
+    RING.add(Log.WARN, messagePrefix, "%s", t);
     if (isLoggable(Log.WARN)) {
       Log.w(tag, toMessage(format, args), t);
     }
   }
 
+  public void e(final String format) {
+    RING.add(Log.ERROR, messagePrefix, format);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + format);
+    }
+  }
+
+  public void e(final String format, final long a) {
+    RING.add(Log.ERROR, messagePrefix, format, a);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void e(final String format, final long a, final long b) {
+    RING.add(Log.ERROR, messagePrefix, format, a, b);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
+  public void e(final String format, final long a, final long b, final long c) {
+    RING.add(Log.ERROR, messagePrefix, format, a, b, c);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + String.format(format, a, b, c));
+    }
+  }
+
+  public void e(final String format, final double a) {
+    RING.add(Log.ERROR, messagePrefix, format, a);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void e(final String format, final Object a) {
+    RING.add(Log.ERROR, messagePrefix, format, a);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + String.format(format, a));
+    }
+  }
+
+  public void e(final String format, final Object a, final Object b) {
+    RING.add(Log.ERROR, messagePrefix, format, a, b);
+    if (isLoggable(Log.ERROR)) {
+      Log.e(tag, messagePrefix + String.format(format, a, b));
+    }
+  }
+
   public void e(final String format, final Object... args) {
+    RING.add(Log.ERROR, messagePrefix, format, args);
     if (isLoggable(Log.ERROR)) {
       Log.e(tag, toMessage(format, args));
     }
   }
 
   public void e(final Throwable t, final String format, final Object... args) {
+    RING.add(Log.ERROR, messagePrefix, format, args);
+    RING.add(Log.ERROR, messagePrefix, "%s", t);
     if (isLoggable(Log.ERROR)) {
       Log.e(tag, toMessage(format, args), t);
     }
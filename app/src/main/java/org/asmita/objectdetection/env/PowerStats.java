@@ -0,0 +1,104 @@
+package org.asmita.objectdetection.env;
+
+import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * Accumulates process CPU time and battery drain separately for the time spent rendering the
+ * camera preview and overlay and the time spent headless, so the savings of headless mode can be
+ * read off directly.
+ */
+public class PowerStats {
+  public enum Mode {
+    VISUAL,
+    HEADLESS
+  }
+
+  private static final Mode[] MODES = Mode.values();
+
+  private final BatteryManager batteryManager;
+  private final long[] frames = new long[MODES.length];
+  private final long[] wallMs = new long[MODES.length];
+  private final long[] cpuMs = new long[MODES.length];
+  private final long[] drainedUah = new long[MODES.length];
+  private Mode mode = Mode.VISUAL;
+  private long sinceWallMs;
+  private long sinceCpuMs;
+  private long sinceChargeUah;
+
+  public PowerStats(final Context context) {
+    batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+    restart();
+  }
+
+  public synchronized Mode getMode() {
+    return mode;
+  }
+
+  public synchronized void setMode(final Mode newMode) {
+    if (newMode == mode) {
+      return;
+    }
+    accumulate();
+    mode = newMode;
+  }
+
+  public synchronized void onFrame() {
+    ++frames[mode.ordinal()];
+  }
+
+  /** Returns per-mode CPU time per frame and average battery current. */
+  public synchronized String getStatString() {
+    accumulate();
+    final StringBuilder sb = new StringBuilder();
+    for (final Mode m : MODES) {
+      final int i = m.ordinal();
+      final double hours = wallMs[i] / 3600000.0;
+      sb.append(m)
+          .append(": frames=")
+          .append(frames[i])
+          .append(" time=")
+          .append(wallMs[i] / 1000)
+          .append("s cpu/frame=")
+          .append(frames[i] > 0 ? cpuMs[i] / frames[i] : 0)
+          .append("ms cpu=")
+          .append(wallMs[i] > 0 ? 100 * cpuMs[i] / wallMs[i] : 0)
+          .append("% drain=")
+          .append(hours > 0 ? Math.round(drainedUah[i] / 1000.0 / hours) : 0)
+          .append("mA\n");
+    }
+    return sb.toString();
+  }
+
+  private void accumulate() {
+    final int i = mode.ordinal();
+    final long nowWallMs = SystemClock.elapsedRealtime();
+    final long nowCpuMs = Process.getElapsedCpuTime();
+    final long nowChargeUah = chargeUah();
+    wallMs[i] += nowWallMs - sinceWallMs;
+    cpuMs[i] += nowCpuMs - sinceCpuMs;
+    // The counter only falls while discharging; while charging there is nothing to attribute.
+    if (nowChargeUah != Long.MIN_VALUE && sinceChargeUah != Long.MIN_VALUE) {
+      drainedUah[i] += Math.max(0, sinceChargeUah - nowChargeUah);
+    }
+    sinceWallMs = nowWallMs;
+    sinceCpuMs = nowCpuMs;
+    sinceChargeUah = nowChargeUah;
+  }
+
+  private void restart() {
+    sinceWallMs = SystemClock.elapsedRealtime();
+    sinceCpuMs = Process.getElapsedCpuTime();
+    sinceChargeUah = chargeUah();
+  }
+
+  private long chargeUah() {
+    if (batteryManager == null) {
+      return Long.MIN_VALUE;
+    }
+    final int charge = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CHARGE_COUNTER);
+    return charge == Integer.MIN_VALUE || charge == 0 ? Long.MIN_VALUE : charge;
+  }
+}
@@ -0,0 +1,137 @@
+package org.asmita.objectdetection.feedback;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.asmita.objectdetection.env.Logger;
+import org.asmita.objectdetection.core.scene.Position;
+
+/**
+ * Non-verbal obstacle cues. A short tone is rendered once at startup and preloaded into a {@link
+ * SoundPool}, so playing a cue costs no synthesis and reaches the speaker within tens of
+ * milliseconds.
+ *
+ * <p>Stereo balance encodes the position of an object, while pitch and repetition rate grow with
+ * its size in the frame, which serves as a proxy for proximity.
+ */
+public class EarconPlayer {
+  private static final Logger LOGGER = new Logger();
+
+  private static final int SAMPLE_RATE = 22050;
+  private static final int TONE_HZ = 660;
+  private static final int TONE_MS = 45;
+  private static final int FADE_MS = 5;
+  private static final String TONE_FILE = "earcon.wav";
+
+  // Volume of the far channel for objects on one side.
+  private static final float FAR_CHANNEL_VOLUME = 0.15f;
+  // Cue repetition interval for the smallest and largest objects.
+  private static final long SLOWEST_INTERVAL_MS = 700;
+  private static final long FASTEST_INTERVAL_MS = 120;
+  // SoundPool playback rate range, which shifts the pitch.
+  private static final float LOWEST_RATE = 0.7f;
+  private static final float HIGHEST_RATE = 2.0f;
+
+  private static final Position[] POSITIONS = Position.values();
+
+  private final SoundPool soundPool;
+  private final long[] lastPlayedMs = new long[POSITIONS.length];
+  private volatile boolean loaded = false;
+  private int soundId;
+
+  public EarconPlayer(final Context context) {
+    soundPool =
+        new SoundPool.Builder()
+            .setMaxStreams(POSITIONS.length)
+            .setAudioAttributes(
+                new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_ASSISTANCE_SONIFICATION)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                    .build())
+            .build();
+    soundPool.setOnLoadCompleteListener(
+        new SoundPool.OnLoadCompleteListener() {
+          @Override
+          public void onLoadComplete(SoundPool pool, int sampleId, int status) {
+            loaded = status == 0;
+          }
+        });
+    try {
+      final File toneFile = new File(context.getCacheDir(), TONE_FILE);
+      writeTone(toneFile);
+      soundId = soundPool.load(toneFile.getAbsolutePath(), 1);
+    } catch (final IOException e) {
+      LOGGER.e(e, "Could not render earcon!");
+    }
+  }
+
+  /**
+   * Plays the cue for the largest object at {@code position} if its repetition interval has
+   * elapsed since the last cue at that position.
+   *
+   * @param areaFraction area of the object's box relative to the frame, 0 for no object.
+   */
+  public void update(final Position position, final float areaFraction, final long nowMs) {
+    if (!loaded || areaFraction <= 0) {
+      return;
+    }
+    final float proximity = Proximity.fromArea(areaFraction);
+    final int p = position.ordinal();
+    if (nowMs - lastPlayedMs[p] < intervalMs(proximity)) {
+      return;
+    }
+    lastPlayedMs[p] = nowMs;
+
+    float leftVolume = 1.0f;
+    float rightVolume = 1.0f;
+    if (position == Position.LEFT) {
+      rightVolume = FAR_CHANNEL_VOLUME;
+    } else if (position == Position.RIGHT) {
+      leftVolume = FAR_CHANNEL_VOLUME;
+    }
+    soundPool.play(soundId, leftVolume, rightVolume, 1, 0, rate(proximity));
+  }
+
+  public void release() {
+    loaded = false;
+    soundPool.release();
+  }
+
+  static long intervalMs(final float proximity) {
+    return SLOWEST_INTERVAL_MS - (long) (proximity * (SLOWEST_INTERVAL_MS - FASTEST_INTERVAL_MS));
+  }
+
+  static float rate(final float proximity) {
+    return LOWEST_RATE + proximity * (HIGHEST_RATE - LOWEST_RATE);
+  }
+
+  /** Renders a short sine tone with faded edges as a 16 bit mono WAV file. */
+  private static void writeTone(final File file) throws IOException {
+    final int numSamples = SAMPLE_RATE * TONE_MS / 1000;
+    final int fadeSamples = SAMPLE_RATE * FADE_MS / 1000;
+    final int dataSize = numSamples * 2;
+    final ByteBuffer wav = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+    wav.put(new byte[] {'R', 'I', 'F', 'F'}).putInt(36 + dataSize);
+    wav.put(new byte[] {'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+    wav.putInt(16).putShort((short) 1).putShort((short) 1);
+    wav.putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16);
+    wav.put(new byte[] {'d', 'a', 't', 'a'}).putInt(dataSize);
+    for (int i = 0; i < numSamples; ++i) {
+      final float envelope =
+          Math.min(1.0f, Math.min(i, numSamples - 1 - i) / (float) fadeSamples);
+      final double sample = Math.sin(2.0 * Math.PI * TONE_HZ * i / SAMPLE_RATE);
+      wav.putShort((short) (sample * envelope * 0.8 * Short.MAX_VALUE));
+    }
+    final FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(wav.array());
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package org.asmita.objectdetection.feedback;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+
+/**
+ * Vibration pulses that get stronger and faster as the object in front of the user grows in the
+ * frame.
+ *
+ * <p>Proximity is quantized into a few levels, each with a repeating waveform built up front.
+ * {@link #update} only publishes the latest level and wakes a dedicated thread when it changed, so
+ * the caller never blocks on the vibrator service and stale levels are never played.
+ */
+public class HapticFeedback {
+  // Pulse length, pause between pulses and amplitude for each proximity level, weakest first.
+  private static final long[] PULSE_MS = {30, 40, 50, 60};
+  private static final long[] PAUSE_MS = {770, 460, 250, 90};
+  private static final int[] AMPLITUDES = {60, 120, 190, 255};
+  // Objects smaller than this don't vibrate at all.
+  private static final float MIN_PROXIMITY = 0.15f;
+
+  private final Vibrator vibrator;
+  // Asking the vibrator service is a binder call, so it is asked once.
+  private final boolean available;
+  private final VibrationEffect[] effects = new VibrationEffect[PULSE_MS.length];
+  private final HandlerThread thread;
+  private final Handler handler;
+  private volatile int targetLevel = 0;
+  // Only touched on the haptics thread.
+  private int appliedLevel = 0;
+
+  private final Runnable applyLevel =
+      new Runnable() {
+        @Override
+        public void run() {
+          final int level = targetLevel;
+          if (level == appliedLevel) {
+            return;
+          }
+          appliedLevel = level;
+          if (level == 0) {
+            vibrator.cancel();
+          } else {
+            vibrator.vibrate(effects[level - 1]);
+          }
+        }
+      };
+
+  public HapticFeedback(final Context context) {
+    vibrator = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+    available = vibrator != null && vibrator.hasVibrator();
+    final boolean amplitudeControl = vibrator != null && vibrator.hasAmplitudeControl();
+    for (int i = 0; i < effects.length; ++i) {
+      final long[] timings = {0, PULSE_MS[i], PAUSE_MS[i]};
+      effects[i] =
+          amplitudeControl
+              ? VibrationEffect.createWaveform(timings, new int[] {0, AMPLITUDES[i], 0}, 1)
+              : VibrationEffect.createWaveform(timings, 1);
+    }
+    thread = new HandlerThread("haptics");
+    thread.start();
+    handler = new Handler(thread.getLooper());
+  }
+
+  public boolean isAvailable() {
+    return available;
+  }
+
+  /**
+   * Sets the pulse pattern for the object in front of the user.
+   *
+   * @param areaFraction area of its box relative to the frame, 0 if there is none.
+   */
+  public void update(final float areaFraction) {
+    final int level = level(areaFraction);
+    if (level != targetLevel && available) {
+      targetLevel = level;
+      handler.post(applyLevel);
+    }
+  }
+
+  public void stop() {
+    update(0.0f);
+  }
+
+  public void release() {
+    stop();
+    thread.quitSafely();
+  }
+
+  static int level(final float areaFraction) {
+    final float proximity = Proximity.fromArea(areaFraction);
+    if (proximity < MIN_PROXIMITY) {
+      return 0;
+    }
+    final float step = (1.0f - MIN_PROXIMITY) / PULSE_MS.length;
+    return Math.min(PULSE_MS.length, 1 + (int) ((proximity - MIN_PROXIMITY) / step));
+  }
+}
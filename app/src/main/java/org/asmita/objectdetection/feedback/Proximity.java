@@ -0,0 +1,14 @@
+package org.asmita.objectdetection.feedback;
+
+/** How close an object is, as the earcons and the vibrations both render it. */
+final class Proximity {
+  // Area fraction of the frame from which an object is considered as close as it gets.
+  private static final float FULL_PROXIMITY_AREA = 0.5f;
+
+  private Proximity() {}
+
+  /** Maps an area fraction to [0, 1], growing with the square root of the area like distance. */
+  static float fromArea(final float areaFraction) {
+    return Math.min(1.0f, (float) Math.sqrt(areaFraction / FULL_PROXIMITY_AREA));
+  }
+}
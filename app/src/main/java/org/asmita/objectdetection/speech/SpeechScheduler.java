@@ -0,0 +1,326 @@
+package org.asmita.objectdetection.speech;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import org.asmita.objectdetection.core.metrics.LatencyHistogram;
+import org.asmita.objectdetection.core.replay.BlackBoxRecorder;
+import org.asmita.objectdetection.core.trace.TraceRecorder;
+import org.asmita.objectdetection.env.Logger;
+
+/**
+ * Owns the {@link TextToSpeech} queue and decides what is spoken next.
+ *
+ * <p>Only one utterance is handed to the engine at a time. A more urgent utterance flushes whatever
+ * is being spoken, queued guidance is coalesced so only the latest scene description survives, and
+ * utterances that waited longer than their priority allows are dropped instead of being spoken late.
+ * Utterances describing a camera frame carry its capture time: their age counts from the capture,
+ * and the capture-to-audio ("glass to ear") latency is recorded when they start playing.
+ */
+public class SpeechScheduler extends UtteranceProgressListener {
+  private static final Logger LOGGER = new Logger();
+
+  /** Priority classes, most urgent first. */
+  public enum Priority {
+    /** Something the user may walk into. Preempts everything else. */
+    HAZARD(2000, false, false),
+    /** Short confirmations of something the user is doing, such as a barcode found. */
+    NOTICE(2000, false, false),
+    /** Scene descriptions. Only the latest one is worth speaking. */
+    GUIDANCE(3000, true, false),
+    /** Text the user asked for. Restarted if a hazard interrupts it. */
+    INFO(30000, false, true);
+
+    final long maxAgeMs;
+    final boolean coalesce;
+    final boolean resumeAfterPreemption;
+    final String traceName;
+
+    Priority(final long maxAgeMs, final boolean coalesce, final boolean resumeAfterPreemption) {
+      this.maxAgeMs = maxAgeMs;
+      this.coalesce = coalesce;
+      this.resumeAfterPreemption = resumeAfterPreemption;
+      this.traceName = "speak " + name();
+    }
+  }
+
+  private static final Priority[] PRIORITIES = Priority.values();
+
+  /** Capture time of utterances that don't describe a camera frame. */
+  public static final long NO_CAPTURE = -1;
+
+  private static class Utterance {
+    final long serial;
+    final String id;
+    final Priority priority;
+    final String text;
+    final long enqueuedAtMs;
+    final long captureTimestampNs;
+    boolean started = false;
+
+    Utterance(
+        final long serial,
+        final String id,
+        final Priority priority,
+        final String text,
+        final long enqueuedAtMs,
+        final long captureTimestampNs) {
+      this.serial = serial;
+      this.id = id;
+      this.priority = priority;
+      this.text = text;
+      this.enqueuedAtMs = enqueuedAtMs;
+      this.captureTimestampNs = captureTimestampNs;
+    }
+
+    /** When what the utterance says was true: its capture time, or else when it was queued. */
+    long originMs() {
+      return captureTimestampNs != NO_CAPTURE ? captureTimestampNs / 1000000 : enqueuedAtMs;
+    }
+  }
+
+  private final TextToSpeech tts;
+  @SuppressWarnings("unchecked")
+  private final ArrayDeque<Utterance>[] queues = new ArrayDeque[PRIORITIES.length];
+  private final long[] latencyCount = new long[PRIORITIES.length];
+  private final long[] latencySumMs = new long[PRIORITIES.length];
+  private final long[] latencyMaxMs = new long[PRIORITIES.length];
+  private final long[] droppedCount = new long[PRIORITIES.length];
+  private final LatencyHistogram[] captureToAudio = new LatencyHistogram[PRIORITIES.length];
+  private TraceRecorder tracer;
+  private BlackBoxRecorder blackBox;
+  private boolean ready = false;
+  private Utterance speaking;
+  private long nextUtteranceId = 0;
+
+  public SpeechScheduler(final Context context, final Locale locale) {
+    for (int i = 0; i < queues.length; ++i) {
+      queues[i] = new ArrayDeque<>();
+      captureToAudio[i] = new LatencyHistogram();
+    }
+    tts =
+        new TextToSpeech(
+            context,
+            new TextToSpeech.OnInitListener() {
+              @Override
+              public void onInit(int status) {
+                if (status != TextToSpeech.ERROR) {
+                  onEngineReady(locale);
+                } else {
+                  LOGGER.e("Text to speech initialization failed");
+                }
+              }
+            });
+  }
+
+  /** Records the time each utterance is audible as an async span of {@code tracer}. */
+  public synchronized void setTracer(final TraceRecorder tracer) {
+    this.tracer = tracer;
+  }
+
+  /** Keeps every utterance that starts playing in {@code blackBox}. */
+  public synchronized void setBlackBox(final BlackBoxRecorder blackBox) {
+    this.blackBox = blackBox;
+  }
+
+  private synchronized void onEngineReady(final Locale locale) {
+    tts.setLanguage(locale);
+    tts.setOnUtteranceProgressListener(this);
+    ready = true;
+    dispatchNext();
+  }
+
+  public synchronized boolean isReady() {
+    return ready;
+  }
+
+  /** True if nothing is being spoken or waiting to be spoken. */
+  public synchronized boolean isIdle() {
+    if (speaking != null) {
+      return false;
+    }
+    for (final ArrayDeque<Utterance> queue : queues) {
+      if (!queue.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** True if an utterance of the given priority is waiting to be spoken. */
+  public synchronized boolean hasPending(final Priority priority) {
+    return !queues[priority.ordinal()].isEmpty();
+  }
+
+  /** Schedules {@code text} to be spoken, preempting less urgent speech. */
+  public void speak(final Priority priority, final String text) {
+    speak(priority, text, NO_CAPTURE);
+  }
+
+  /**
+   * Schedules {@code text}, which describes the camera frame captured at {@code
+   * captureTimestampNs} in the {@link SystemClock#elapsedRealtimeNanos()} time base.
+   */
+  public synchronized void speak(
+      final Priority priority, final String text, final long captureTimestampNs) {
+    if (text == null || text.isEmpty()) {
+      return;
+    }
+    final ArrayDeque<Utterance> queue = queues[priority.ordinal()];
+    if (priority.coalesce) {
+      droppedCount[priority.ordinal()] += queue.size();
+      queue.clear();
+    }
+    queue.addLast(newUtterance(priority, text, captureTimestampNs));
+
+    if (!ready) {
+      return;
+    }
+    if (speaking == null) {
+      dispatchNext();
+    } else if (priority.ordinal() < speaking.priority.ordinal()) {
+      final Utterance preempted = speaking;
+      if (preempted.priority.resumeAfterPreemption) {
+        // Requeue under a fresh id so the late stop callback of the flushed one isn't mistaken
+        // for it.
+        queues[preempted.priority.ordinal()].addFirst(
+            newUtterance(preempted.priority, preempted.text, preempted.captureTimestampNs));
+      }
+      LOGGER.d("%s preempts %s", priority, preempted.priority);
+      dispatchNext();
+    }
+  }
+
+  private Utterance newUtterance(
+      final Priority priority, final String text, final long captureTimestampNs) {
+    final long serial = nextUtteranceId++;
+    return new Utterance(
+        serial,
+        "utt" + serial,
+        priority,
+        text,
+        SystemClock.elapsedRealtime(),
+        captureTimestampNs);
+  }
+
+  /** Drops everything that is queued or being spoken. */
+  public synchronized void stop() {
+    for (final ArrayDeque<Utterance> queue : queues) {
+      queue.clear();
+    }
+    endSpeakingSpan();
+    speaking = null;
+    if (ready) {
+      tts.stop();
+    }
+  }
+
+  public synchronized void shutdown() {
+    stop();
+    ready = false;
+    tts.shutdown();
+  }
+
+  public synchronized String getStatString() {
+    final StringBuilder sb = new StringBuilder();
+    for (final Priority priority : PRIORITIES) {
+      final int i = priority.ordinal();
+      sb.append(priority)
+          .append(": n=")
+          .append(latencyCount[i])
+          .append(" avg=")
+          .append(latencyCount[i] > 0 ? latencySumMs[i] / latencyCount[i] : 0)
+          .append("ms max=")
+          .append(latencyMaxMs[i])
+          .append("ms dropped=")
+          .append(droppedCount[i]);
+      if (captureToAudio[i].getCount() > 0) {
+        sb.append(" captureToAudio: ");
+        captureToAudio[i].appendSummary(sb);
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /** Hands the most urgent non-stale utterance to the engine, flushing whatever it is saying. */
+  private void dispatchNext() {
+    // Whatever is being spoken is flushed; its own stop callback will be ignored.
+    endSpeakingSpan();
+    final long now = SystemClock.elapsedRealtime();
+    for (final ArrayDeque<Utterance> queue : queues) {
+      final Iterator<Utterance> it = queue.iterator();
+      while (it.hasNext()) {
+        final Utterance utterance = it.next();
+        it.remove();
+        if (now - utterance.originMs() > utterance.priority.maxAgeMs) {
+          ++droppedCount[utterance.priority.ordinal()];
+          continue;
+        }
+        speaking = utterance;
+        tts.speak(utterance.text, TextToSpeech.QUEUE_FLUSH, null, utterance.id);
+        return;
+      }
+    }
+    speaking = null;
+  }
+
+  private synchronized void onFinished(final String utteranceId) {
+    // Callbacks for utterances that were flushed by a preemption arrive late; ignore them.
+    if (speaking != null && speaking.id.equals(utteranceId)) {
+      endSpeakingSpan();
+      speaking = null;
+      dispatchNext();
+    }
+  }
+
+  private void endSpeakingSpan() {
+    if (speaking != null && speaking.started && tracer != null) {
+      tracer.endAsync(speaking.priority.traceName, speaking.serial);
+    }
+  }
+
+  @Override
+  public synchronized void onStart(final String utteranceId) {
+    if (speaking == null || !speaking.id.equals(utteranceId)) {
+      return;
+    }
+    speaking.started = true;
+    if (tracer != null) {
+      tracer.beginAsync(speaking.priority.traceName, speaking.serial);
+    }
+    if (blackBox != null) {
+      blackBox.addUtterance(
+          SystemClock.elapsedRealtimeNanos(), speaking.priority.name(), speaking.text);
+    }
+    final int i = speaking.priority.ordinal();
+    final long latencyMs = SystemClock.elapsedRealtime() - speaking.enqueuedAtMs;
+    ++latencyCount[i];
+    latencySumMs[i] += latencyMs;
+    latencyMaxMs[i] = Math.max(latencyMaxMs[i], latencyMs);
+    LOGGER.v("%s utterance reached audio after %dms", speaking.priority, latencyMs);
+    if (speaking.captureTimestampNs != NO_CAPTURE) {
+      captureToAudio[i].record(
+          (SystemClock.elapsedRealtimeNanos() - speaking.captureTimestampNs) / 1000);
+    }
+  }
+
+  @Override
+  public void onDone(final String utteranceId) {
+    onFinished(utteranceId);
+  }
+
+  @Override
+  public void onStop(final String utteranceId, final boolean interrupted) {
+    onFinished(utteranceId);
+  }
+
+  @Override
+  public void onError(final String utteranceId) {
+    onFinished(utteranceId);
+  }
+}
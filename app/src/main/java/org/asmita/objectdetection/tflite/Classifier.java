@@ -18,6 +18,9 @@ package org.asmita.objectdetection.tflite;
 import android.graphics.Bitmap;
 import android.graphics.RectF;
 import java.util.List;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.detection.ThresholdProfile;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics;
 
 /** Generic interface for interacting with different recognition engines. */
 public interface Classifier {
@@ -27,6 +30,24 @@ public interface Classifier {
 
   String getStatString();
 
+  /**
+   * Records the preprocessing and inference stages of each {@link #recognizeImage} call into
+   * {@code metrics}, unless stat logging is disabled.
+   */
+  void setMetrics(PipelineMetrics metrics);
+
+  /**
+   * Makes {@link #recognizeImage} return only what {@code profile} accepts. Until this is called
+   * every recognition the model outputs is returned.
+   */
+  void setThresholdProfile(ThresholdProfile profile);
+
+  /**
+   * Makes recognitions carry class indices and names from {@code labels}, which should hold every
+   * label of the classifier. Until this is called a table of the classifier's own labels is used.
+   */
+  void setLabelTable(LabelTable labels);
+
   void close();
 
   void setNumThreads(int num_threads);
@@ -41,6 +62,9 @@ public interface Classifier {
      */
     private final String id;
 
+    /** Class index in the classifier's {@link LabelTable}. */
+    private final int classIndex;
+
     /** Display name for the recognition. */
     private final String title;
 
@@ -54,7 +78,17 @@ public interface Classifier {
 
     public Recognition(
         final String id, final String title, final Float confidence, final RectF location) {
+      this(id, LabelTable.UNKNOWN, title, confidence, location);
+    }
+
+    public Recognition(
+        final String id,
+        final int classIndex,
+        final String title,
+        final Float confidence,
+        final RectF location) {
       this.id = id;
+      this.classIndex = classIndex;
       this.title = title;
       this.confidence = confidence;
       this.location = location;
@@ -64,6 +98,10 @@ public interface Classifier {
       return id;
     }
 
+    public int getClassIndex() {
+      return classIndex;
+    }
+
     public String getTitle() {
       return title;
     }
@@ -0,0 +1,141 @@
+package org.asmita.objectdetection.tflite;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.DetectorBackend;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.env.ImageUtils;
+
+/**
+ * Adapts a {@link Classifier} to the platform independent {@link DetectorBackend}: frames are drawn
+ * into bitmaps for the classifier and its recognitions are converted to {@link Detection}s.
+ */
+public class ClassifierBackend implements DetectorBackend {
+  private volatile Classifier classifier;
+  private final AtomicReference<Classifier> nextClassifier = new AtomicReference<>();
+  private final int inputSize;
+  private final Bitmap inputBitmap;
+  private final Canvas inputCanvas;
+  // Crops go to their own bitmap, so the input stays the whole frame for text and barcode reading.
+  private final Bitmap cropBitmap;
+  private final Canvas cropCanvas;
+  private boolean cropPending;
+  private Bitmap frameBitmap;
+  private Transform frameToInput;
+  private FrameRegion region;
+  private Matrix frameToInputMatrix;
+  private final Matrix cropMatrix = new Matrix();
+  private final float[] cropValues = new float[9];
+
+  public ClassifierBackend(final Classifier classifier, final int inputSize) {
+    this.classifier = classifier;
+    this.inputSize = inputSize;
+    this.inputBitmap = Bitmap.createBitmap(inputSize, inputSize, Config.ARGB_8888);
+    this.inputCanvas = new Canvas(inputBitmap);
+    this.cropBitmap = Bitmap.createBitmap(inputSize, inputSize, Config.ARGB_8888);
+    this.cropCanvas = new Canvas(cropBitmap);
+  }
+
+  public Classifier getClassifier() {
+    return classifier;
+  }
+
+  /**
+   * Replaces the classifier before the next {@link #detect}, which closes the old one. Loading a
+   * model takes a while, so build {@code next} on another thread and hand it over once ready: the
+   * frames in between still go to the old classifier. {@code next} must take the same input size.
+   */
+  public void swapClassifier(final Classifier next) {
+    final Classifier replaced = nextClassifier.getAndSet(next);
+    if (replaced != null) {
+      replaced.close();
+    }
+  }
+
+  /**
+   * The pixels of the last frame: all of it, unless only a region of it was converted, as {@link
+   * Frame#getRegion} tells. Overwritten by the next {@link #setInput}, so only read it while no
+   * other frame can be set, e.g. while the last one is still being processed.
+   */
+  public Bitmap getFrameBitmap() {
+    return frameBitmap;
+  }
+
+  /** The classifier's input for the last frame, never one of its crops. */
+  public Bitmap getInputBitmap() {
+    return inputBitmap;
+  }
+
+  @Override
+  public int getInputSize() {
+    return inputSize;
+  }
+
+  @Override
+  public void setInput(final Frame frame, final Transform frameToInput) {
+    final int width = frame.getPixelsWidth();
+    final int height = frame.getPixelsHeight();
+    if (frameBitmap == null
+        || frameBitmap.getWidth() != width
+        || frameBitmap.getHeight() != height) {
+      frameBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+    }
+    final FrameRegion region = frame.getRegion();
+    if (frameToInput != this.frameToInput || region != this.region) {
+      this.frameToInput = frameToInput;
+      this.region = region;
+      frameToInputMatrix =
+          ImageUtils.toMatrix(region != null ? region.toFrame().then(frameToInput) : frameToInput);
+    }
+    frameBitmap.setPixels(frame.getPixels(), 0, width, 0, 0, width, height);
+    inputCanvas.drawBitmap(frameBitmap, frameToInputMatrix, null);
+    cropPending = false;
+  }
+
+  @Override
+  public void cropInput(final Transform frameToInput) {
+    if (frameBitmap == null) {
+      return;
+    }
+    // The tiles are in frame coordinates, the bitmap may only hold a region of the frame.
+    final Transform pixelsToInput =
+        region != null ? region.toFrame().then(frameToInput) : frameToInput;
+    pixelsToInput.getValues(cropValues);
+    cropMatrix.setValues(cropValues);
+    cropCanvas.drawBitmap(frameBitmap, cropMatrix, null);
+    cropPending = true;
+  }
+
+  @Override
+  public List<Detection> detect() {
+    final Classifier next = nextClassifier.getAndSet(null);
+    if (next != null) {
+      classifier.close();
+      classifier = next;
+    }
+    final Bitmap input = cropPending ? cropBitmap : inputBitmap;
+    cropPending = false;
+    final List<Classifier.Recognition> recognitions = classifier.recognizeImage(input);
+    final List<Detection> detections = new ArrayList<>(recognitions.size());
+    for (final Classifier.Recognition recognition : recognitions) {
+      final RectF location = recognition.getLocation();
+      detections.add(
+          new Detection(
+              recognition.getClassIndex(),
+              recognition.getTitle(),
+              recognition.getConfidence(),
+              new Box(location.left, location.top, location.right, location.bottom)));
+    }
+    return detections;
+  }
+}
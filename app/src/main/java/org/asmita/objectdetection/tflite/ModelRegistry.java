@@ -0,0 +1,43 @@
+package org.asmita.objectdetection.tflite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** The detection models the app knows about. */
+public final class ModelRegistry {
+  private static final String LABELS_PREFIX = "file:///android_asset/";
+
+  /** The prepackaged COCO SSD model, run on every frame. */
+  public static final ModelSpec PRIMARY =
+      new ModelSpec(
+          "coco", "detect.tflite", LABELS_PREFIX + "labelmap.txt", 300, true, 0.659f, 0, 0);
+
+  /**
+   * Specialists for what the primary model doesn't know, run now and then when time allows. They
+   * aren't shipped with the app; the ones whose files are missing from the assets are skipped.
+   */
+  public static final List<ModelSpec> SPECIALISTS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              new ModelSpec(
+                  "obstacles",
+                  "obstacles.tflite",
+                  LABELS_PREFIX + "obstacles_labels.txt",
+                  300,
+                  true,
+                  0.6f,
+                  500,
+                  0),
+              new ModelSpec(
+                  "traffic lights",
+                  "traffic_lights.tflite",
+                  LABELS_PREFIX + "traffic_lights_labels.txt",
+                  224,
+                  true,
+                  0.7f,
+                  1000,
+                  1)));
+
+  private ModelRegistry() {}
+}
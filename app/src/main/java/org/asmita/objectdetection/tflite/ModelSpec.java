@@ -0,0 +1,85 @@
+package org.asmita.objectdetection.tflite;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import java.io.IOException;
+import java.util.List;
+
+/** Everything needed to load a detection model packaged in the app's assets. */
+public class ModelSpec {
+  private static final String ASSET_PREFIX = "file:///android_asset/";
+
+  public final String name;
+  /** Model file in the assets. */
+  public final String modelFile;
+  /** Label file, as a {@code file:///android_asset/} URL. */
+  public final String labelsFile;
+  public final int inputSize;
+  public final boolean quantized;
+  /** Confidence below which the model's detections are dropped. */
+  public final float minConfidence;
+  /** Shortest time between two runs of a specialist. */
+  public final long intervalMs;
+  /** Specialists with a lower priority run first when time is short. */
+  public final int priority;
+
+  public ModelSpec(
+      final String name,
+      final String modelFile,
+      final String labelsFile,
+      final int inputSize,
+      final boolean quantized,
+      final float minConfidence,
+      final long intervalMs,
+      final int priority) {
+    this.name = name;
+    this.modelFile = modelFile;
+    this.labelsFile = labelsFile;
+    this.inputSize = inputSize;
+    this.quantized = quantized;
+    this.minConfidence = minConfidence;
+    this.intervalMs = intervalMs;
+    this.priority = priority;
+  }
+
+  public Classifier create(final AssetManager assets) throws IOException {
+    return TFLiteObjectDetectionAPIModel.create(
+        assets, modelFile, labelsFile, inputSize, quantized);
+  }
+
+  public List<String> loadLabels(final AssetManager assets) throws IOException {
+    return TFLiteObjectDetectionAPIModel.loadLabels(
+        assets.open(labelsFile.substring(ASSET_PREFIX.length())));
+  }
+
+  /** Whether the model and its labels are packaged, specialists are optional. */
+  public boolean isAvailable(final AssetManager assets) {
+    try {
+      assets.openFd(modelFile).close();
+      assets.open(labelsFile.substring(ASSET_PREFIX.length())).close();
+      return true;
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Estimates the memory the model takes once loaded behind a {@link ClassifierBackend}: the
+   * mapped model, the interpreter's input and the backend's copy of a frame and input.
+   */
+  public long estimateMemoryBytes(
+      final AssetManager assets, final int frameWidth, final int frameHeight) throws IOException {
+    final long modelBytes;
+    try (final AssetFileDescriptor fd = assets.openFd(modelFile)) {
+      modelBytes = fd.getLength();
+    }
+    final long inputBytes = (long) inputSize * inputSize * (quantized ? 3 : 12);
+    final long bitmapBytes = 4L * (frameWidth * frameHeight + inputSize * inputSize);
+    return modelBytes + inputBytes + bitmapBytes;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,160 @@
+package org.asmita.objectdetection.tflite;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * A detection model installed in app storage instead of the APK, so that a new one can be tried
+ * without reinstalling. The model's directory holds the model, its labels and a {@code
+ * model.properties} manifest:
+ *
+ * <pre>
+ * model=detect.tflite
+ * labels=labelmap.txt
+ * inputSize=300
+ * quantized=true
+ * sha256=&lt;hex digest of the model file&gt;
+ * </pre>
+ *
+ * <p>Float models may also give the normalization of their input as {@code mean} and {@code std},
+ * each either one value for all channels or three comma separated values for red, green and blue.
+ * Without them {@link TFLiteObjectDetectionAPIModel#IMAGE_MEAN} and {@link
+ * TFLiteObjectDetectionAPIModel#IMAGE_STD} are used.
+ */
+public class StoredModel {
+  public static final String MANIFEST_FILE = "model.properties";
+
+  public final File directory;
+  public final File modelFile;
+  public final File labelsFile;
+  public final int inputSize;
+  public final boolean quantized;
+  public final float[] imageMean;
+  public final float[] imageStd;
+  private final String sha256;
+
+  private StoredModel(
+      final File directory,
+      final File modelFile,
+      final File labelsFile,
+      final int inputSize,
+      final boolean quantized,
+      final float[] imageMean,
+      final float[] imageStd,
+      final String sha256) {
+    this.directory = directory;
+    this.modelFile = modelFile;
+    this.labelsFile = labelsFile;
+    this.inputSize = inputSize;
+    this.quantized = quantized;
+    this.imageMean = imageMean;
+    this.imageStd = imageStd;
+    this.sha256 = sha256;
+  }
+
+  /** Whether {@code directory} has a manifest. */
+  public static boolean exists(final File directory) {
+    return new File(directory, MANIFEST_FILE).isFile();
+  }
+
+  /** Reads the manifest in {@code directory}. */
+  public static StoredModel read(final File directory) throws IOException {
+    final Properties manifest = new Properties();
+    try (final InputStream in = new FileInputStream(new File(directory, MANIFEST_FILE))) {
+      manifest.load(in);
+    }
+    final String sha256 = require(manifest, "sha256").toLowerCase(Locale.US);
+    try {
+      return new StoredModel(
+          directory,
+          new File(directory, require(manifest, "model")),
+          new File(directory, require(manifest, "labels")),
+          Integer.parseInt(require(manifest, "inputSize")),
+          Boolean.parseBoolean(require(manifest, "quantized")),
+          parseChannels(manifest.getProperty("mean"), TFLiteObjectDetectionAPIModel.IMAGE_MEAN),
+          parseChannels(manifest.getProperty("std"), TFLiteObjectDetectionAPIModel.IMAGE_STD),
+          sha256);
+    } catch (final NumberFormatException e) {
+      throw new IOException("Invalid number in " + directory + "/" + MANIFEST_FILE, e);
+    }
+  }
+
+  /** Parses one value for every channel, or one per channel. */
+  private static float[] parseChannels(final String value, final float defaultValue)
+      throws IOException {
+    if (value == null) {
+      return new float[] {defaultValue, defaultValue, defaultValue};
+    }
+    final String[] parts = value.split(",");
+    if (parts.length == 1) {
+      final float v = Float.parseFloat(parts[0].trim());
+      return new float[] {v, v, v};
+    }
+    if (parts.length != 3) {
+      throw new IOException("Need one value or three for R, G and B: " + value);
+    }
+    final float[] channels = new float[3];
+    for (int c = 0; c < channels.length; ++c) {
+      channels[c] = Float.parseFloat(parts[c].trim());
+    }
+    return channels;
+  }
+
+  private static String require(final Properties manifest, final String key) throws IOException {
+    final String value = manifest.getProperty(key);
+    if (value == null || value.trim().isEmpty()) {
+      throw new IOException("Missing " + key + " in " + MANIFEST_FILE);
+    }
+    return value.trim();
+  }
+
+  /**
+   * Maps the model, checks it against the manifest's digest and builds its interpreter. The digest
+   * is taken over the mapped bytes, so what is checked is what runs.
+   *
+   * @throws IOException if a file is missing, the digest doesn't match or the model takes a
+   *     different input than the manifest says.
+   */
+  public Classifier create() throws IOException {
+    final MappedByteBuffer model = TFLiteObjectDetectionAPIModel.loadModelFile(modelFile);
+    final String actual = digest(model);
+    if (!actual.equals(sha256)) {
+      throw new IOException("Checksum mismatch for " + modelFile + ": " + actual);
+    }
+    return TFLiteObjectDetectionAPIModel.create(
+        model, loadLabels(), inputSize, quantized, imageMean, imageStd);
+  }
+
+  public List<String> loadLabels() throws IOException {
+    return TFLiteObjectDetectionAPIModel.loadLabels(new FileInputStream(labelsFile));
+  }
+
+  private static String digest(final MappedByteBuffer model) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      // Every Android release has SHA-256.
+      throw new IllegalStateException(e);
+    }
+    digest.update(model.duplicate());
+    final StringBuilder hex = new StringBuilder();
+    for (final byte b : digest.digest()) {
+      hex.append(String.format(Locale.US, "%02x", b));
+    }
+    return hex.toString();
+  }
+
+  @Override
+  public String toString() {
+    return modelFile.getName();
+  }
+}
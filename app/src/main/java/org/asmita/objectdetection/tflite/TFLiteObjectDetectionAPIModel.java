@@ -21,20 +21,31 @@ import android.graphics.Bitmap;
 import android.graphics.RectF;
 import android.os.Trace;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.asmita.objectdetection.core.detection.DetectionSelector;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.detection.ThresholdProfile;
+import org.asmita.objectdetection.core.image.InputPacker;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics.Stage;
 import org.asmita.objectdetection.env.Logger;
 
 /**
@@ -44,37 +55,68 @@ import org.asmita.objectdetection.env.Logger;
 public class TFLiteObjectDetectionAPIModel implements Classifier {
   private static final Logger LOGGER = new Logger();
 
-  // Only return this many results.
+  // Number of detections the model outputs.
   private static final int NUM_DETECTIONS = 10;
-  // Float model
-  private static final float IMAGE_MEAN = 128.0f;
-  private static final float IMAGE_STD = 128.0f;
+  // SSD Mobilenet V1 Model assumes class 0 is background class
+  // in label file and class labels start from 1 to number_of_classes+1,
+  // while outputClasses correspond to class index from 0 to number_of_classes
+  private static final int LABEL_OFFSET = 1;
+  // Float model: the normalization used unless the model's configuration gives another.
+  public static final float IMAGE_MEAN = 128.0f;
+  public static final float IMAGE_STD = 128.0f;
   // Number of threads in the java app
   private static final int NUM_THREADS = 4;
-  private boolean isModelQuantized;
+  private InputPacker inputPacker;
   // Config values.
   private int inputSize;
+  // The model's label map, and the class index of each of its labels.
+  private List<String> labels;
+  private LabelTable labelTable;
+  private int[] classIndices;
   // Pre-allocated buffers.
-  private Vector<String> labels = new Vector<String>();
   private int[] intValues;
-  // outputLocations: array of shape [Batchsize, NUM_DETECTIONS,4]
-  // contains the location of detected boxes
-  private float[][][] outputLocations;
-  // outputClasses: array of shape [Batchsize, NUM_DETECTIONS]
+  // The output tensors are copied into direct buffers in native order with one bulk copy each,
+  // rather than element by element into nested arrays, and read in place through float views.
+  // outputLocations: shape [Batchsize, NUM_DETECTIONS, 4]
+  // contains the location of detected boxes as [top, left, bottom, right]
+  private final ByteBuffer outputLocations = allocateOutput(NUM_DETECTIONS * 4);
+  private final FloatBuffer locations = outputLocations.asFloatBuffer();
+  // outputClasses: shape [Batchsize, NUM_DETECTIONS]
   // contains the classes of detected boxes
-  private float[][] outputClasses;
-  // outputScores: array of shape [Batchsize, NUM_DETECTIONS]
+  private final ByteBuffer outputClasses = allocateOutput(NUM_DETECTIONS);
+  private final FloatBuffer classes = outputClasses.asFloatBuffer();
+  // outputScores: shape [Batchsize, NUM_DETECTIONS]
   // contains the scores of detected boxes
-  private float[][] outputScores;
-  // numDetections: array of shape [Batchsize]
+  private final ByteBuffer outputScores = allocateOutput(NUM_DETECTIONS);
+  private final FloatBuffer scores = outputScores.asFloatBuffer();
+  // numDetections: shape [Batchsize]
   // contains the number of detected boxes
-  private float[] numDetections;
+  private final ByteBuffer numDetections = allocateOutput(1);
+  private final ByteBuffer[] outputs = {
+    outputLocations, outputClasses, outputScores, numDetections
+  };
+  private final Map<Integer, Object> outputMap = new HashMap<>();
+  private Object[] inputArray;
+  // Indices of the detections the threshold profile accepts.
+  private final int[] selected = new int[NUM_DETECTIONS];
+  private DetectionSelector selector;
 
   private ByteBuffer imgData;
 
   private Interpreter tfLite;
 
-  private TFLiteObjectDetectionAPIModel() {}
+  private PipelineMetrics metrics;
+  private boolean logStats = true;
+
+  private TFLiteObjectDetectionAPIModel() {
+    for (int i = 0; i < outputs.length; ++i) {
+      outputMap.put(i, outputs[i]);
+    }
+  }
+
+  private static ByteBuffer allocateOutput(final int floats) {
+    return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder());
+  }
 
   /** Memory-map the model file in Assets. */
   private static MappedByteBuffer loadModelFile(AssetManager assets, String modelFilename)
@@ -87,6 +129,27 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
     return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
   }
 
+  /** Memory-map a model file in app storage. */
+  public static MappedByteBuffer loadModelFile(final File modelFile) throws IOException {
+    try (final FileInputStream inputStream = new FileInputStream(modelFile)) {
+      // The mapping stays valid after the channel is closed.
+      final FileChannel fileChannel = inputStream.getChannel();
+      return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+    }
+  }
+
+  /** Reads one label per line. */
+  public static List<String> loadLabels(final InputStream labelsInput) throws IOException {
+    final List<String> labels = new ArrayList<>();
+    try (final BufferedReader br = new BufferedReader(new InputStreamReader(labelsInput))) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        labels.add(line);
+      }
+    }
+    return labels;
+  }
+
   /**
    * Initializes a native TensorFlow session for classifying images.
    *
@@ -103,45 +166,85 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
       final int inputSize,
       final boolean isQuantized)
       throws IOException {
-    final TFLiteObjectDetectionAPIModel d = new TFLiteObjectDetectionAPIModel();
-
-    InputStream labelsInput = null;
     String actualFilename = labelFilename.split("file:///android_asset/")[1];
-    labelsInput = assetManager.open(actualFilename);
-    BufferedReader br = null;
-    br = new BufferedReader(new InputStreamReader(labelsInput));
-    String line;
-    while ((line = br.readLine()) != null) {
-      LOGGER.w(line);
-      d.labels.add(line);
-    }
-    br.close();
+    final List<String> labels = loadLabels(assetManager.open(actualFilename));
+    return create(
+        loadModelFile(assetManager, modelFilename),
+        labels,
+        inputSize,
+        isQuantized,
+        new float[] {IMAGE_MEAN, IMAGE_MEAN, IMAGE_MEAN},
+        new float[] {IMAGE_STD, IMAGE_STD, IMAGE_STD});
+  }
 
+  /**
+   * Initializes a native TensorFlow session for a model already in memory, checking that its input
+   * is the image it will be given.
+   *
+   * @param model The model, usually mapped from a file.
+   * @param labels The labels of the model's classes.
+   * @param inputSize The size of image input
+   * @param isQuantized Boolean representing model is quantized or not
+   * @param imageMean Red, green and blue mean a float model's input is normalized with.
+   * @param imageStd Red, green and blue standard deviation a float model's input is normalized
+   *     with.
+   * @throws IOException if the model can't be loaded or takes a different input.
+   */
+  public static Classifier create(
+      final ByteBuffer model,
+      final List<String> labels,
+      final int inputSize,
+      final boolean isQuantized,
+      final float[] imageMean,
+      final float[] imageStd)
+      throws IOException {
+    final TFLiteObjectDetectionAPIModel d = new TFLiteObjectDetectionAPIModel();
+    d.labels = Collections.unmodifiableList(new ArrayList<>(labels));
+    d.setLabelTable(LabelTable.of(d.labels));
     d.inputSize = inputSize;
 
     try {
-      d.tfLite = new Interpreter(loadModelFile(assetManager, modelFilename));
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+      d.tfLite = new Interpreter(model);
+    } catch (final IllegalArgumentException e) {
+      throw new IOException("Invalid model", e);
+    }
+    final Tensor input = d.tfLite.getInputTensor(0);
+    final int[] expectedShape = {1, inputSize, inputSize, 3};
+    final DataType expectedType = isQuantized ? DataType.UINT8 : DataType.FLOAT32;
+    if (!Arrays.equals(input.shape(), expectedShape) || input.dataType() != expectedType) {
+      d.tfLite.close();
+      throw new IOException(
+          "Model takes "
+              + Arrays.toString(input.shape())
+              + " "
+              + input.dataType()
+              + ", expected "
+              + Arrays.toString(expectedShape)
+              + " "
+              + expectedType);
+    }
+    for (int i = 0; i < d.outputs.length; ++i) {
+      final int outputBytes = d.tfLite.getOutputTensor(i).numBytes();
+      if (outputBytes > d.outputs[i].capacity()) {
+        d.tfLite.close();
+        throw new IOException(
+            "Output " + i + " takes " + outputBytes + " bytes, expected " + d.outputs[i].capacity());
+      }
     }
 
-    d.isModelQuantized = isQuantized;
+    d.inputPacker =
+        isQuantized
+            ? InputPacker.quantized(inputSize)
+            : InputPacker.normalized(inputSize, imageMean, imageStd);
     // Pre-allocate buffers.
-    int numBytesPerChannel;
-    if (isQuantized) {
-      numBytesPerChannel = 1; // Quantized
-    } else {
-      numBytesPerChannel = 4; // Floating point
-    }
-    d.imgData = ByteBuffer.allocateDirect(1 * d.inputSize * d.inputSize * 3 * numBytesPerChannel);
+    d.imgData =
+        ByteBuffer.allocateDirect(d.inputSize * d.inputSize * d.inputPacker.getBytesPerPixel());
     d.imgData.order(ByteOrder.nativeOrder());
+    d.inputArray = new Object[] {d.imgData};
     d.intValues = new int[d.inputSize * d.inputSize];
 
     d.tfLite.setNumThreads(NUM_THREADS);
-    d.outputLocations = new float[1][NUM_DETECTIONS][4];
-    d.outputClasses = new float[1][NUM_DETECTIONS];
-    d.outputScores = new float[1][NUM_DETECTIONS];
-    d.numDetections = new float[1];
+    d.setThresholdProfile(new ThresholdProfile(0.0f));
     return d;
   }
 
@@ -155,63 +258,46 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
     // on the provided parameters.
     bitmap.getPixels(intValues, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
 
-    imgData.rewind();
-    for (int i = 0; i < inputSize; ++i) {
-      for (int j = 0; j < inputSize; ++j) {
-        int pixelValue = intValues[i * inputSize + j];
-        if (isModelQuantized) {
-          // Quantized model
-          imgData.put((byte) ((pixelValue >> 16) & 0xFF));
-          imgData.put((byte) ((pixelValue >> 8) & 0xFF));
-          imgData.put((byte) (pixelValue & 0xFF));
-        } else { // Float model
-          imgData.putFloat((((pixelValue >> 16) & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
-          imgData.putFloat((((pixelValue >> 8) & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
-          imgData.putFloat(((pixelValue & 0xFF) - IMAGE_MEAN) / IMAGE_STD);
-        }
-      }
+    inputPacker.pack(intValues, inputSize * inputSize, imgData);
+    if (metrics != null && logStats) {
+      metrics.endStage(Stage.PREPROCESS);
     }
     Trace.endSection(); // preprocessBitmap
 
-    // Copy the input data into TensorFlow.
+    // The outputs are copied to the buffers' positions.
     Trace.beginSection("feed");
-    outputLocations = new float[1][NUM_DETECTIONS][4];
-    outputClasses = new float[1][NUM_DETECTIONS];
-    outputScores = new float[1][NUM_DETECTIONS];
-    numDetections = new float[1];
-
-    Object[] inputArray = {imgData};
-    Map<Integer, Object> outputMap = new HashMap<>();
-    outputMap.put(0, outputLocations);
-    outputMap.put(1, outputClasses);
-    outputMap.put(2, outputScores);
-    outputMap.put(3, numDetections);
+    for (final ByteBuffer output : outputs) {
+      output.rewind();
+    }
     Trace.endSection();
 
     // Run the inference call.
     Trace.beginSection("run");
     tfLite.runForMultipleInputsOutputs(inputArray, outputMap);
+    if (metrics != null && logStats) {
+      metrics.endStage(Stage.INVOKE);
+    }
     Trace.endSection();
 
-    // Show the best detections.
-    // after scaling them back to the input size.
-    final ArrayList<Recognition> recognitions = new ArrayList<>(NUM_DETECTIONS);
-    for (int i = 0; i < NUM_DETECTIONS; ++i) {
+    // Keep what the threshold profile accepts, and scale it back to the input size.
+    final int count = Math.min((int) numDetections.getFloat(0), NUM_DETECTIONS);
+    final int selectedCount = selector.select(locations, classes, scores, count, selected);
+    final ArrayList<Recognition> recognitions = new ArrayList<>(selectedCount);
+    for (int s = 0; s < selectedCount; ++s) {
+      final int i = selected[s];
+      final int classIndex = classIndices[(int) classes.get(i) + LABEL_OFFSET];
       final RectF detection =
           new RectF(
-              outputLocations[0][i][1] * inputSize,
-              outputLocations[0][i][0] * inputSize,
-              outputLocations[0][i][3] * inputSize,
-              outputLocations[0][i][2] * inputSize);
-      // SSD Mobilenet V1 Model assumes class 0 is background class
-      // in label file and class labels start from 1 to number_of_classes+1,
-      // while outputClasses correspond to class index from 0 to number_of_classes
-      int labelOffset = 1;
+              locations.get(4 * i + 1) * inputSize,
+              locations.get(4 * i) * inputSize,
+              locations.get(4 * i + 3) * inputSize,
+              locations.get(4 * i + 2) * inputSize);
       recognitions.add(
           new Recognition(
               "" + i,
-              labels.get((int) outputClasses[0][i] + labelOffset),
-              outputScores[0][i],
+              classIndex,
+              labelTable.getName(classIndex),
+              scores.get(i),
               detection));
     }
     Trace.endSection(); // "recognizeImage"
@@ -219,15 +305,51 @@ public class TFLiteObjectDetectionAPIModel implements Classifier {
   }
 
   @Override
-  public void enableStatLogging(final boolean logStats) {}
+  public void enableStatLogging(final boolean logStats) {
+    this.logStats = logStats;
+  }
 
   @Override
   public String getStatString() {
-    return "";
+    if (metrics == null) {
+      return "";
+    }
+    return metrics.getStageString(Stage.PREPROCESS)
+        + "\n"
+        + metrics.getStageString(Stage.INVOKE)
+        + "\n";
   }
 
   @Override
-  public void close() {}
+  public void setMetrics(final PipelineMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void setThresholdProfile(final ThresholdProfile profile) {
+    selector = new DetectionSelector(profile, labels, LABEL_OFFSET, NUM_DETECTIONS);
+  }
+
+  @Override
+  public void setLabelTable(final LabelTable labels) {
+    final int[] classIndices = labels.resolve(this.labels);
+    for (int i = 0; i < classIndices.length; ++i) {
+      final String label = this.labels.get(i);
+      if (classIndices[i] == LabelTable.UNKNOWN && !label.equals(LabelTable.UNKNOWN_LABEL)) {
+        LOGGER.w("Label %s is not in the label table, it won't be announced", label);
+      }
+    }
+    labelTable = labels;
+    this.classIndices = classIndices;
+  }
+
+  @Override
+  public void close() {
+    if (tfLite != null) {
+      tfLite.close();
+      tfLite = null;
+    }
+  }
 
   public void setNumThreads(int num_threads) {
     if (tfLite != null) tfLite.setNumThreads(num_threads);
@@ -30,15 +30,16 @@ import android.util.TypedValue;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
 import org.asmita.objectdetection.env.BorderedText;
 import org.asmita.objectdetection.env.ImageUtils;
 import org.asmita.objectdetection.env.Logger;
-import org.asmita.objectdetection.tflite.Classifier.Recognition;
 
-/** A tracker that handles non-max suppression and matches existing objects to new detections. */
+/** Draws the tracks of an {@link ObjectTracker} over the camera preview. */
 public class MultiBoxTracker {
   private static final float TEXT_SIZE_DIP = 18;
-  private static final float MIN_SIZE = 16.0f;
   private static final int[] COLORS = {
     Color.BLUE,
     Color.RED,
@@ -56,10 +57,12 @@ public class MultiBoxTracker {
     Color.parseColor("#AA33AA"),
     Color.parseColor("#0D0068")
   };
+  /** At most this many objects should be tracked, so that each gets its own color. */
+  public static final int MAX_TRACKS = COLORS.length;
   final List<Pair<Float, RectF>> screenRects = new LinkedList<Pair<Float, RectF>>();
   private final Logger logger = new Logger();
   private final Queue<Integer> availableColors = new LinkedList<Integer>();
-  private final List<TrackedRecognition> trackedObjects = new LinkedList<TrackedRecognition>();
+  private final ObjectTracker objectTracker;
   private final Paint boxPaint = new Paint();
   private final float textSizePx;
   private final BorderedText borderedText;
@@ -67,8 +70,10 @@ public class MultiBoxTracker {
   private int frameWidth;
   private int frameHeight;
   private int sensorOrientation;
+  private boolean renderingEnabled = true;
 
-  public MultiBoxTracker(final Context context) {
+  public MultiBoxTracker(final Context context, final ObjectTracker objectTracker) {
+    this.objectTracker = objectTracker;
     for (final int color : COLORS) {
       availableColors.add(color);
     }
@@ -93,6 +98,14 @@ public class MultiBoxTracker {
     this.sensorOrientation = sensorOrientation;
   }
 
+  /** Skips computing screen rectangles for debug drawing while nothing is rendered. */
+  public synchronized void setRenderingEnabled(final boolean renderingEnabled) {
+    this.renderingEnabled = renderingEnabled;
+    if (!renderingEnabled) {
+      screenRects.clear();
+    }
+  }
+
   public synchronized void drawDebug(final Canvas canvas) {
     final Paint textPaint = new Paint();
     textPaint.setColor(Color.WHITE);
@@ -111,9 +124,28 @@ public class MultiBoxTracker {
     }
   }
 
-  public synchronized void trackResults(final List<Recognition> results, final long timestamp) {
-    logger.i("Processing %d results from %d", results.size(), timestamp);
-    processResults(results);
+  /**
+   * Keeps the raw detections of the last frame, in frame coordinates, for {@link #drawDebug}.
+   * Nothing is kept while rendering is disabled.
+   */
+  public synchronized void setDebugResults(final List<Detection> results) {
+    screenRects.clear();
+    if (!renderingEnabled || getFrameToCanvasMatrix() == null) {
+      return;
+    }
+    final Matrix rgbFrameToScreen = new Matrix(getFrameToCanvasMatrix());
+
+    for (final Detection result : results) {
+      final Box location = result.location;
+      final RectF detectionFrameRect =
+          new RectF(location.left, location.top, location.right, location.bottom);
+      final RectF detectionScreenRect = new RectF();
+      rgbFrameToScreen.mapRect(detectionScreenRect, detectionFrameRect);
+
+      logger.v("Result! Frame: %s mapped to screen: %s", location, detectionScreenRect);
+
+      screenRects.add(new Pair<Float, RectF>(result.confidence, detectionScreenRect));
+    }
   }
 
   private Matrix getFrameToCanvasMatrix() {
@@ -134,78 +166,27 @@ public class MultiBoxTracker {
             (int) (multiplier * (rotated ? frameWidth : frameHeight)),
             sensorOrientation,
             false);
-    for (final TrackedRecognition recognition : trackedObjects) {
-      final RectF trackedPos = new RectF(recognition.location);
+    final List<ObjectTracker.Track> tracks = objectTracker.getTracks();
+    for (int i = 0; i < tracks.size(); ++i) {
+      final ObjectTracker.Track recognition = tracks.get(i);
+      final Box location = recognition.location;
+      final RectF trackedPos =
+          new RectF(location.left, location.top, location.right, location.bottom);
 
       getFrameToCanvasMatrix().mapRect(trackedPos);
-      boxPaint.setColor(recognition.color);
+      boxPaint.setColor(COLORS[i % COLORS.length]);
 
       float cornerSize = Math.min(trackedPos.width(), trackedPos.height()) / 8.0f;
       canvas.drawRoundRect(trackedPos, cornerSize, cornerSize, boxPaint);
 
       final String labelString =
           !TextUtils.isEmpty(recognition.title)
-              ? String.format("%s %.2f", recognition.title, (100 * recognition.detectionConfidence))
-              : String.format("%.2f", (100 * recognition.detectionConfidence));
+              ? String.format("%s %.2f", recognition.title, (100 * recognition.confidence))
+              : String.format("%.2f", (100 * recognition.confidence));
       //            borderedText.drawText(canvas, trackedPos.left + cornerSize, trackedPos.top,
       // labelString);
       borderedText.drawText(
           canvas, trackedPos.left + cornerSize, trackedPos.top, labelString + "%", boxPaint);
     }
   }
-
-  private void processResults(final List<Recognition> results) {
-    final List<Pair<Float, Recognition>> rectsToTrack = new LinkedList<Pair<Float, Recognition>>();
-
-    screenRects.clear();
-    final Matrix rgbFrameToScreen = new Matrix(getFrameToCanvasMatrix());
-
-    for (final Recognition result : results) {
-      if (result.getLocation() == null) {
-        continue;
-      }
-      final RectF detectionFrameRect = new RectF(result.getLocation());
-
-      final RectF detectionScreenRect = new RectF();
-      rgbFrameToScreen.mapRect(detectionScreenRect, detectionFrameRect);
-
-      logger.v(
-          "Result! Frame: " + result.getLocation() + " mapped to screen:" + detectionScreenRect);
-
-      screenRects.add(new Pair<Float, RectF>(result.getConfidence(), detectionScreenRect));
-
-      if (detectionFrameRect.width() < MIN_SIZE || detectionFrameRect.height() < MIN_SIZE) {
-        logger.w("Degenerate rectangle! " + detectionFrameRect);
-        continue;
-      }
-
-      rectsToTrack.add(new Pair<Float, Recognition>(result.getConfidence(), result));
-    }
-
-    if (rectsToTrack.isEmpty()) {
-      logger.v("Nothing to track, aborting.");
-      return;
-    }
-
-    trackedObjects.clear();
-    for (final Pair<Float, Recognition> potential : rectsToTrack) {
-      final TrackedRecognition trackedRecognition = new TrackedRecognition();
-      trackedRecognition.detectionConfidence = potential.first;
-      trackedRecognition.location = new RectF(potential.second.getLocation());
-      trackedRecognition.title = potential.second.getTitle();
-      trackedRecognition.color = COLORS[trackedObjects.size()];
-      trackedObjects.add(trackedRecognition);
-
-      if (trackedObjects.size() >= COLORS.length) {
-        break;
-      }
-    }
-  }
-
-  private static class TrackedRecognition {
-    RectF location;
-    float detectionConfidence;
-    int color;
-    String title;
-  }
 }
@@ -0,0 +1,86 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.replay.BlackBoxRecorder;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What the black box costs the pipeline per frame: keeping the subsampled luma of the frame, and
+ * keeping the frame's detections and tracks. Both should stay allocation free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlackBoxBenchmark {
+  private static final int LUMA_WIDTH = 160;
+  private static final int LUMA_HEIGHT = 120;
+  private static final int FRAMES = 150;
+  private static final long WINDOW_NS = 10000000000L;
+  private static final int DETECTIONS = 10;
+  private static final long FRAME_INTERVAL_NS = 33000000L;
+
+  @Param({"640x480", "1280x720", "1920x1080"})
+  public String size;
+
+  private Frame frame;
+  private BlackBoxRecorder recorder;
+  private List<Detection> detections;
+  private List<ObjectTracker.Track> tracks;
+  private long frameNumber = 0;
+
+  @Setup
+  public void setUp() {
+    final String[] dims = size.split("x");
+    final int width = Integer.parseInt(dims[0]);
+    final int height = Integer.parseInt(dims[1]);
+    final int[] pixels = new int[width * height];
+    final Random random = new Random(0);
+    for (int i = 0; i < pixels.length; ++i) {
+      pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+    }
+    frame = new Frame(width, height);
+    frame.set(pixels, 0, 0);
+    recorder = new BlackBoxRecorder(LUMA_WIDTH, LUMA_HEIGHT, FRAMES, WINDOW_NS);
+
+    detections = SyntheticDetections.generate(DETECTIONS, 1, Math.min(width, height)).get(0);
+    final ObjectTracker tracker = new ObjectTracker(DETECTIONS);
+    tracker.setFrameSize(width, height);
+    tracker.update(detections, 0);
+    tracks = tracker.getTracks();
+  }
+
+  @Benchmark
+  public BlackBoxRecorder addFrame() {
+    ++frameNumber;
+    frame.set(frame.getPixels(), frameNumber, frameNumber * FRAME_INTERVAL_NS);
+    recorder.addFrame(frame);
+    return recorder;
+  }
+
+  @Benchmark
+  public BlackBoxRecorder addFrameAndObjects() {
+    ++frameNumber;
+    frame.set(frame.getPixels(), frameNumber, frameNumber * FRAME_INTERVAL_NS);
+    recorder.addFrame(frame);
+    recorder.setObjects(frameNumber, detections, tracks);
+    return recorder;
+  }
+}
@@ -0,0 +1,65 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.asmita.objectdetection.core.image.InputPacker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Packing of the detector input bitmap into the model's input tensor. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputPackingBenchmark {
+  private static final float IMAGE_MEAN = 128.0f;
+  private static final float IMAGE_STD = 128.0f;
+
+  @Param({"300"})
+  public int inputSize;
+
+  private int[] pixels;
+  private InputPacker quantizedPacker;
+  private InputPacker floatPacker;
+  private ByteBuffer quantizedInput;
+  private ByteBuffer floatInput;
+
+  @Setup
+  public void setUp() {
+    final int count = inputSize * inputSize;
+    pixels = new int[count];
+    final Random random = new Random(0);
+    for (int i = 0; i < count; ++i) {
+      pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+    }
+    quantizedPacker = InputPacker.quantized(inputSize);
+    floatPacker = InputPacker.normalized(inputSize, IMAGE_MEAN, IMAGE_STD);
+    quantizedInput = ByteBuffer.allocateDirect(count * 3).order(ByteOrder.nativeOrder());
+    floatInput = ByteBuffer.allocateDirect(count * 3 * 4).order(ByteOrder.nativeOrder());
+  }
+
+  @Benchmark
+  public ByteBuffer packQuantized() {
+    quantizedPacker.pack(pixels, inputSize * inputSize, quantizedInput);
+    return quantizedInput;
+  }
+
+  @Benchmark
+  public ByteBuffer packFloat() {
+    floatPacker.pack(pixels, inputSize * inputSize, floatInput);
+    return floatInput;
+  }
+}
@@ -0,0 +1,85 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.image.YuvConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of NV21 frames, from a byte array as the legacy camera delivers them and from a direct
+ * buffer as recordings are replayed. The region cases convert only the centred square a 300x300
+ * model input is cropped from, sampled no finer than the input takes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Nv21ConversionBenchmark {
+  private static final int INPUT_SIZE = 300;
+
+  @Param({"320x240", "640x480", "1280x720", "1920x1080"})
+  public String size;
+
+  private int width;
+  private int height;
+  private byte[] input;
+  private ByteBuffer directInput;
+  private FrameRegion inputRegion;
+  private int[] output;
+
+  @Setup
+  public void setUp() {
+    final String[] dims = size.split("x");
+    width = Integer.parseInt(dims[0]);
+    height = Integer.parseInt(dims[1]);
+    input = new byte[width * height * 3 / 2];
+    new Random(0).nextBytes(input);
+    directInput = ByteBuffer.allocateDirect(input.length);
+    directInput.put(input);
+    directInput.rewind();
+    // Centred, as with a quarter turn rotation and the aspect ratio kept.
+    final int side = Math.min(width, height);
+    inputRegion =
+        new FrameRegion(
+            (width - side) / 2, (height - side) / 2, side, side, Math.max(1, side / INPUT_SIZE));
+    output = new int[width * height];
+  }
+
+  @Benchmark
+  public int[] convertByteArray() {
+    YuvConverter.convertYUV420SPToARGB8888(input, width, height, output);
+    return output;
+  }
+
+  @Benchmark
+  public int[] convertDirectBuffer() {
+    YuvConverter.convertYUV420SPToARGB8888(directInput, width, height, output);
+    return output;
+  }
+
+  @Benchmark
+  public int[] convertByteArrayInputRegion() {
+    YuvConverter.convertYUV420SPToARGB8888(input, width, height, inputRegion, output);
+    return output;
+  }
+
+  @Benchmark
+  public int[] convertDirectBufferInputRegion() {
+    YuvConverter.convertYUV420SPToARGB8888(directInput, width, height, inputRegion, output);
+    return output;
+  }
+}
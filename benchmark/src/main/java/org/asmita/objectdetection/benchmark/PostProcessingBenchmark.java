@@ -0,0 +1,235 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.asmita.objectdetection.core.DetectionPipeline;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.DetectionSelector;
+import org.asmita.objectdetection.core.detection.DetectorBackend;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.detection.ThresholdProfile;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.asmita.objectdetection.core.scene.Position;
+import org.asmita.objectdetection.core.scene.SceneChange;
+import org.asmita.objectdetection.core.scene.ScenePhraser;
+import org.asmita.objectdetection.core.scene.SceneState;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Everything that runs on each frame after inference: selecting from the model's raw output,
+ * confidence filtering, position
+ * classification, scene state, phrasing and tracking. Run with the GC profiler (the default of the
+ * {@code jmh} task) to see the allocation rate per frame next to the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostProcessingBenchmark {
+  private static final int INPUT_SIZE = 300;
+  private static final int FRAME_WIDTH = 640;
+  private static final int FRAME_HEIGHT = 480;
+  private static final int SEQUENCE_FRAMES = 16;
+  private static final long FRAME_INTERVAL_NS = 33000000L;
+  private static final float MIN_CONFIDENCE = 0.6f;
+  // High enough that no detection is cut off, so the cost scales with the detection count.
+  private static final int MAX_TRACKS = 100;
+  private static final float MAX_IOU = 0.6f;
+
+  /** Replays the synthetic sequence as if it were the model's output. */
+  private static class SequenceBackend implements DetectorBackend {
+    private final List<List<Detection>> sequence;
+    private int next = 0;
+
+    SequenceBackend(final List<List<Detection>> sequence) {
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int getInputSize() {
+      return INPUT_SIZE;
+    }
+
+    @Override
+    public void setInput(final Frame frame, final Transform frameToInput) {}
+
+    @Override
+    public void cropInput(final Transform frameToInput) {}
+
+    @Override
+    public List<Detection> detect() {
+      final List<Detection> detections = sequence.get(next);
+      next = (next + 1) % sequence.size();
+      return detections;
+    }
+  }
+
+  @Param({"0", "1", "10", "100"})
+  public int detections;
+
+  private List<List<Detection>> inputSequence;
+  private List<List<Detection>> frameSequence;
+  private DetectionPipeline pipeline;
+  private final Frame frame = new Frame(FRAME_WIDTH, FRAME_HEIGHT);
+  private ObjectTracker tracker;
+  private SceneState sceneState;
+  private final ScenePhraser scenePhraser = new ScenePhraser(SyntheticDetections.LABELS);
+  private final List<SceneChange> sceneChanges = new ArrayList<>();
+  private final List<SceneChange> wholeScene = new ArrayList<>();
+  private int frameIndex = 0;
+  private long frameNumber = 0;
+  private long timestampNs = 0;
+  private DetectionSelector selector;
+  private FloatBuffer rawBoxes;
+  private FloatBuffer rawClasses;
+  private FloatBuffer rawScores;
+  private int[] selected;
+
+  @Setup
+  public void setUp() {
+    inputSequence = SyntheticDetections.generate(detections, SEQUENCE_FRAMES, INPUT_SIZE);
+    pipeline =
+        new DetectionPipeline(
+            new SequenceBackend(inputSequence),
+            SyntheticDetections.LABELS,
+            MIN_CONFIDENCE,
+            MAX_TRACKS);
+    pipeline.configure(FRAME_WIDTH, FRAME_HEIGHT, 90, true);
+
+    final Transform inputToFrame = pipeline.getFrameToInput().invert();
+    frameSequence = new ArrayList<>(SEQUENCE_FRAMES);
+    for (final List<Detection> input : inputSequence) {
+      final List<Detection> mapped = new ArrayList<>(input.size());
+      for (final Detection detection : input) {
+        final Box location = new Box();
+        inputToFrame.mapBox(detection.location, location);
+        mapped.add(
+            new Detection(
+                detection.classIndex, detection.title, detection.confidence, location));
+      }
+      frameSequence.add(mapped);
+    }
+    tracker = new ObjectTracker(MAX_TRACKS);
+    tracker.setFrameSize(FRAME_WIDTH, FRAME_HEIGHT);
+    sceneState = new SceneState(SyntheticDetections.LABELS.size());
+
+    // A fresh scene after enough frames for every object to be accepted, i.e. the longest
+    // announcement this scene produces.
+    final SceneState fresh = new SceneState(SyntheticDetections.LABELS.size());
+    for (int f = 0; f < SEQUENCE_FRAMES; ++f) {
+      observe(fresh, inputSequence.get(f));
+    }
+    fresh.collectChanges(wholeScene);
+
+    // The first frame as a model's raw output: normalized boxes, class indices and scores, in
+    // direct buffers like the model wrapper's output tensors.
+    final List<Detection> raw = inputSequence.get(0);
+    final List<String> labels = new ArrayList<>();
+    rawBoxes = allocateOutput(4 * raw.size());
+    rawClasses = allocateOutput(raw.size());
+    rawScores = allocateOutput(raw.size());
+    for (int i = 0; i < raw.size(); ++i) {
+      final Detection detection = raw.get(i);
+      if (!labels.contains(detection.title)) {
+        labels.add(detection.title);
+      }
+      final Box box = detection.location;
+      rawBoxes.put(4 * i, box.top / INPUT_SIZE);
+      rawBoxes.put(4 * i + 1, box.left / INPUT_SIZE);
+      rawBoxes.put(4 * i + 2, box.bottom / INPUT_SIZE);
+      rawBoxes.put(4 * i + 3, box.right / INPUT_SIZE);
+      rawClasses.put(i, labels.indexOf(detection.title));
+      rawScores.put(i, detection.confidence);
+    }
+    selector =
+        new DetectionSelector(
+            new ThresholdProfile(MIN_CONFIDENCE).setTopK(MAX_TRACKS).setMaxIou(MAX_IOU),
+            labels,
+            0,
+            raw.size());
+    selected = new int[raw.size()];
+  }
+
+  private static FloatBuffer allocateOutput(final int floats) {
+    return ByteBuffer.allocateDirect(4 * floats).order(ByteOrder.nativeOrder()).asFloatBuffer();
+  }
+
+  private List<Detection> nextInput() {
+    frameIndex = (frameIndex + 1) % SEQUENCE_FRAMES;
+    timestampNs += FRAME_INTERVAL_NS;
+    return inputSequence.get(frameIndex);
+  }
+
+  private static void observe(final SceneState sceneState, final List<Detection> detections) {
+    sceneState.beginFrame();
+    for (final Detection detection : detections) {
+      sceneState.observe(
+          detection.classIndex,
+          Position.classify(detection.location.left, detection.location.right, INPUT_SIZE));
+    }
+    sceneState.endFrame();
+  }
+
+  /** The whole per-frame path: filtering, scene state, mapping to the frame and tracking. */
+  @Benchmark
+  public String pipelineFrame() {
+    frame.set(null, ++frameNumber, timestampNs += FRAME_INTERVAL_NS);
+    pipeline.setInput(frame);
+    pipeline.process();
+    return pipeline.nextAnnouncement();
+  }
+
+  /** Thresholds, ordering, class-aware suppression and top K on the model's raw output. */
+  @Benchmark
+  public int selectRawOutput() {
+    return selector.select(rawBoxes, rawClasses, rawScores, rawScores.capacity(), selected);
+  }
+
+  @Benchmark
+  public void classifyPositions(final Blackhole blackhole) {
+    for (final Detection detection : nextInput()) {
+      blackhole.consume(
+          Position.classify(detection.location.left, detection.location.right, INPUT_SIZE));
+    }
+  }
+
+  /** Scene bookkeeping and change collection, i.e. deciding which objects to speak about. */
+  @Benchmark
+  public List<SceneChange> updateScene() {
+    observe(sceneState, nextInput());
+    sceneChanges.clear();
+    sceneState.collectChanges(sceneChanges);
+    return sceneChanges;
+  }
+
+  @Benchmark
+  public String phraseWholeScene() {
+    return scenePhraser.phrase(wholeScene);
+  }
+
+  @Benchmark
+  public List<ObjectTracker.Track> updateTracks() {
+    nextInput();
+    tracker.update(frameSequence.get(frameIndex), timestampNs);
+    return tracker.getTracks();
+  }
+}
@@ -0,0 +1,64 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.geometry.Box;
+
+/**
+ * Sequences of detections that resemble a detector's output on consecutive frames: a fixed set of
+ * objects whose boxes jitter a little from frame to frame, with a few scoring below the threshold.
+ */
+final class SyntheticDetections {
+  private static final String[] TITLES = {
+    "person", "chair", "car", "bicycle", "dog", "bottle", "cup", "couch", "bus", "tv"
+  };
+
+  /** The table the detections' class indices come from. */
+  static final LabelTable LABELS = LabelTable.of(Arrays.asList(TITLES));
+
+  private SyntheticDetections() {}
+
+  /**
+   * @param count detections per frame.
+   * @param frames frames in the sequence.
+   * @param size side of the square space the boxes are placed in.
+   */
+  static List<List<Detection>> generate(final int count, final int frames, final float size) {
+    final Random random = new Random(count);
+    final String[] titles = new String[count];
+    final Box[] boxes = new Box[count];
+    final float[] confidences = new float[count];
+    for (int i = 0; i < count; ++i) {
+      titles[i] = TITLES[random.nextInt(TITLES.length)];
+      final float width = size * (0.05f + random.nextFloat() * 0.4f);
+      final float height = size * (0.05f + random.nextFloat() * 0.4f);
+      final float left = random.nextFloat() * (size - width);
+      final float top = random.nextFloat() * (size - height);
+      boxes[i] = new Box(left, top, left + width, top + height);
+      confidences[i] = 0.3f + random.nextFloat() * 0.7f;
+    }
+
+    final List<List<Detection>> sequence = new ArrayList<>(frames);
+    final float jitter = size * 0.01f;
+    for (int f = 0; f < frames; ++f) {
+      final List<Detection> detections = new ArrayList<>(count);
+      for (int i = 0; i < count; ++i) {
+        final float dx = (random.nextFloat() - 0.5f) * jitter;
+        final float dy = (random.nextFloat() - 0.5f) * jitter;
+        final Box box = boxes[i];
+        detections.add(
+            new Detection(
+                LABELS.indexOf(titles[i]),
+                titles[i],
+                confidences[i],
+                new Box(box.left + dx, box.top + dy, box.right + dx, box.bottom + dy)));
+      }
+      sequence.add(detections);
+    }
+    return sequence;
+  }
+}
@@ -0,0 +1,81 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The geometry behind {@code ImageUtils.getTransformationMatrix}: building the frame to detector
+ * input transform, inverting it, and mapping detections back into the frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+  private static final int INPUT_SIZE = 300;
+  private static final int BOX_COUNT = 100;
+
+  @Param({"320x240", "640x480", "1280x720", "1920x1080"})
+  public String size;
+
+  @Param({"0", "90"})
+  public int rotation;
+
+  private int width;
+  private int height;
+  private Transform inputToFrame;
+  private final Box[] boxes = new Box[BOX_COUNT];
+  private final Box mapped = new Box();
+  private final float[] values = new float[9];
+
+  @Setup
+  public void setUp() {
+    final String[] dims = size.split("x");
+    width = Integer.parseInt(dims[0]);
+    height = Integer.parseInt(dims[1]);
+    inputToFrame = Transform.between(width, height, INPUT_SIZE, INPUT_SIZE, rotation, true).invert();
+    final Random random = new Random(0);
+    for (int i = 0; i < BOX_COUNT; ++i) {
+      final float left = random.nextFloat() * INPUT_SIZE;
+      final float top = random.nextFloat() * INPUT_SIZE;
+      boxes[i] =
+          new Box(left, top, left + random.nextFloat() * 50, top + random.nextFloat() * 50);
+    }
+  }
+
+  @Benchmark
+  public float[] between() {
+    Transform.between(width, height, INPUT_SIZE, INPUT_SIZE, rotation, true).getValues(values);
+    return values;
+  }
+
+  @Benchmark
+  public Transform betweenAndInvert() {
+    return Transform.between(width, height, INPUT_SIZE, INPUT_SIZE, rotation, true).invert();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BOX_COUNT)
+  public Box mapBox() {
+    for (final Box box : boxes) {
+      inputToFrame.mapBox(box, mapped);
+    }
+    return mapped;
+  }
+}
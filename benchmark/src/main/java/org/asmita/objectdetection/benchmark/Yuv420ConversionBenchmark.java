@@ -0,0 +1,88 @@
+package org.asmita.objectdetection.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.image.YuvConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of Camera2 YUV_420_888 frames, whose planes may have padded rows and interleaved
+ * chroma, whole or only the region a 300x300 model input is taken from.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Yuv420ConversionBenchmark {
+  private static final int INPUT_SIZE = 300;
+
+  @Param({"320x240", "640x480", "1280x720", "1920x1080"})
+  public String size;
+
+  // Bytes of padding after each row. Odd values defeat any alignment the row length had.
+  @Param({"0", "17"})
+  public int rowPadding;
+
+  // 1 for planar chroma, 2 for semi-planar chroma exposed as two interleaved planes.
+  @Param({"1", "2"})
+  public int uvPixelStride;
+
+  private int width;
+  private int height;
+  private int yRowStride;
+  private int uvRowStride;
+  private byte[] yData;
+  private byte[] uData;
+  private byte[] vData;
+  private FrameRegion inputRegion;
+  private int[] output;
+
+  @Setup
+  public void setUp() {
+    final String[] dims = size.split("x");
+    width = Integer.parseInt(dims[0]);
+    height = Integer.parseInt(dims[1]);
+    yRowStride = width + rowPadding;
+    uvRowStride = (width + 1) / 2 * uvPixelStride + rowPadding;
+    final Random random = new Random(0);
+    yData = new byte[yRowStride * height];
+    uData = new byte[uvRowStride * ((height + 1) / 2)];
+    vData = new byte[uData.length];
+    random.nextBytes(yData);
+    random.nextBytes(uData);
+    random.nextBytes(vData);
+    // Centred, as with a quarter turn rotation and the aspect ratio kept.
+    final int side = Math.min(width, height);
+    inputRegion =
+        new FrameRegion(
+            (width - side) / 2, (height - side) / 2, side, side, Math.max(1, side / INPUT_SIZE));
+    output = new int[width * height];
+  }
+
+  @Benchmark
+  public int[] convertYUV420ToARGB8888() {
+    YuvConverter.convertYUV420ToARGB8888(
+        yData, uData, vData, width, height, yRowStride, uvRowStride, uvPixelStride, output);
+    return output;
+  }
+
+  @Benchmark
+  public int[] convertInputRegion() {
+    YuvConverter.convertYUV420ToARGB8888(
+        yData, uData, vData, yRowStride, uvRowStride, uvPixelStride, inputRegion, output);
+    return output;
+  }
+}
@@ -0,0 +1,411 @@
+package org.asmita.objectdetection.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.DetectorBackend;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.detection.NonMaxSuppression;
+import org.asmita.objectdetection.core.detection.TileLayout;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics;
+import org.asmita.objectdetection.core.metrics.PipelineMetrics.Stage;
+import org.asmita.objectdetection.core.scene.Position;
+import org.asmita.objectdetection.core.scene.SceneChange;
+import org.asmita.objectdetection.core.scene.ScenePhraser;
+import org.asmita.objectdetection.core.scene.SceneState;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+
+/**
+ * Everything between a camera frame and what the user is told: inference through a {@link
+ * DetectorBackend}, confidence filtering, coordinate transforms, tracking, scene state and phrasing.
+ * Has no platform dependencies, so it runs the same on a device and on the JVM.
+ *
+ * <p>{@link #setInput} is called on the camera thread; everything else on a single processing
+ * thread.
+ *
+ * <p>With tiling on, every frame is also run through the model in one or two tiles, taking the
+ * tiles in turn, so that objects too small to survive the downscaling to the model input are still
+ * found without any frame paying for the whole grid. What a tile found and the whole frame didn't
+ * is carried over until the tile runs again, and merged with what the model finds in each frame,
+ * so that tracking and the scene state see those objects on consecutive frames.
+ */
+public class DetectionPipeline {
+  private static final Position[] POSITIONS = Position.values();
+  // Detections of the same class from different tiles or passes above either overlap are merged.
+  private static final float TILE_MAX_IOU = 0.5f;
+  private static final float TILE_MAX_CONTAINMENT = 0.8f;
+
+  /** Output of one {@link #process()} call. Reused, valid until the next call. */
+  public static class Result {
+    /** Detections that passed the filter, in the backend's input space. */
+    public final List<Detection> detections = new ArrayList<>();
+    /** The same detections in frame coordinates. */
+    public final List<Detection> frameDetections = new ArrayList<>();
+    /** Area of the largest object at each {@link Position}, as a fraction of the input. */
+    public final float[] largestAreaByPosition = new float[POSITIONS.length];
+    /** The frame the detections were found in. */
+    public long frameNumber;
+    /** Capture time of that frame. */
+    public long timestampNs;
+    /** Number of tiles the frame was also run through the model in. */
+    public int tilesRun;
+  }
+
+  /** An object about to reach the user. */
+  public static class Hazard {
+    public final int classIndex;
+    public final String title;
+    public final Position position;
+    public final float timeToCollisionSec;
+    /** The warning to speak. */
+    public final String phrase;
+    /** Capture time of the frame the hazard was seen in. */
+    public final long timestampNs;
+
+    Hazard(
+        final int classIndex,
+        final String title,
+        final Position position,
+        final float timeToCollisionSec,
+        final String phrase,
+        final long timestampNs) {
+      this.classIndex = classIndex;
+      this.title = title;
+      this.position = position;
+      this.timeToCollisionSec = timeToCollisionSec;
+      this.phrase = phrase;
+      this.timestampNs = timestampNs;
+    }
+  }
+
+  /** The tile grid and what each tile found when it last ran. */
+  private static class Tiling {
+    final TileLayout layout;
+    final int tilesPerFrame;
+    // Per tile, in frame coordinates: what it found that the whole frame didn't.
+    final List<List<Detection>> tileOnlyDetections = new ArrayList<>();
+    int nextTile;
+
+    Tiling(final TileLayout layout, final int tilesPerFrame) {
+      this.layout = layout;
+      this.tilesPerFrame = Math.min(tilesPerFrame, layout.getTileCount());
+      for (int i = 0; i < layout.getTileCount(); ++i) {
+        tileOnlyDetections.add(new ArrayList<Detection>());
+      }
+    }
+
+    void clear() {
+      for (final List<Detection> detections : tileOnlyDetections) {
+        detections.clear();
+      }
+    }
+  }
+
+  private final DetectorBackend backend;
+  private final LabelTable labels;
+  private final float minConfidence;
+  private final ObjectTracker tracker;
+  private final SceneState sceneState;
+  private final ScenePhraser scenePhraser;
+  private final List<SceneChange> sceneChanges = new ArrayList<>();
+  private final Result result = new Result();
+  private Transform frameToInput;
+  private Transform inputToFrame;
+  private FrameRegion inputRegion;
+  private PipelineMetrics metrics;
+  private final List<Detection> tileCandidates = new ArrayList<>();
+  private final List<Detection> wholeFrameCandidates = new ArrayList<>();
+  private final List<Detection> tileDetections = new ArrayList<>();
+  private int frameWidth;
+  private int frameHeight;
+  private int rotation;
+  private volatile Tiling tiling;
+  private volatile long inputFrameNumber;
+  private volatile long inputTimestampNs;
+  private volatile long inputTrackingTimestampNs;
+
+  /**
+   * @param labels the table the backend's class indices come from. Classes it doesn't announce are
+   *     tracked but never spoken about.
+   * @param minConfidence detections below this are dropped.
+   * @param maxTracks most objects tracked at once.
+   */
+  public DetectionPipeline(
+      final DetectorBackend backend,
+      final LabelTable labels,
+      final float minConfidence,
+      final int maxTracks) {
+    this.backend = backend;
+    this.labels = labels;
+    this.minConfidence = minConfidence;
+    this.tracker = new ObjectTracker(maxTracks);
+    this.sceneState = new SceneState(labels.size());
+    this.scenePhraser = new ScenePhraser(labels);
+  }
+
+  /**
+   * Sets the camera frame size and the rotation that makes it upright. Must be called before the
+   * first frame.
+   */
+  public void configure(
+      final int frameWidth,
+      final int frameHeight,
+      final int rotation,
+      final boolean maintainAspectRatio) {
+    final int inputSize = backend.getInputSize();
+    frameToInput =
+        Transform.between(
+            frameWidth, frameHeight, inputSize, inputSize, rotation, maintainAspectRatio);
+    inputToFrame = frameToInput.invert();
+    inputRegion = inputRegion(frameWidth, frameHeight, inputSize);
+    tracker.setFrameSize(frameWidth, frameHeight);
+    final Tiling tiling = this.tiling;
+    if (tiling != null) {
+      tiling.clear();
+    }
+    this.frameWidth = frameWidth;
+    this.frameHeight = frameHeight;
+    this.rotation = rotation;
+  }
+
+  /**
+   * The part of the frame the model input is cropped from, subsampled as far as the input size
+   * allows, or null if it is the whole frame at full resolution.
+   */
+  private FrameRegion inputRegion(
+      final int frameWidth, final int frameHeight, final int inputSize) {
+    final Box bounds = new Box();
+    inputToFrame.mapBox(new Box(0, 0, inputSize, inputSize), bounds);
+    final int left = Math.max(0, (int) Math.floor(bounds.left));
+    final int top = Math.max(0, (int) Math.floor(bounds.top));
+    final int width = Math.min(frameWidth, (int) Math.ceil(bounds.right)) - left;
+    final int height = Math.min(frameHeight, (int) Math.ceil(bounds.bottom)) - top;
+    // Both sides are scaled to the input size, so neither may drop below it.
+    final int step = Math.max(1, Math.min(width, height) / inputSize);
+    final FrameRegion region = new FrameRegion(left, top, width, height, step);
+    return region.isWhole(frameWidth, frameHeight) ? null : region;
+  }
+
+  /**
+   * Runs every frame through {@code tilesPerFrame} tiles as well, taking the tiles of a grid of
+   * {@code columns x rows} overlapping tiles of the unrotated frame in turn. Each tile takes about
+   * one more inference. Must be called after {@link #configure}; 0 tiles per frame turns tiling
+   * off.
+   */
+  public void setTiling(final int columns, final int rows, final int tilesPerFrame) {
+    tiling =
+        tilesPerFrame > 0
+            ? new Tiling(
+                new TileLayout(
+                    frameWidth, frameHeight, rotation, backend.getInputSize(), columns, rows),
+                tilesPerFrame)
+            : null;
+  }
+
+  /**
+   * Records the crop, postprocessing and tracking stages into {@code metrics}, which also has to be
+   * given to the backend for the stages in between. Must be called before the first frame.
+   */
+  public void setMetrics(final PipelineMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * The part of the frame that needs converting for the next {@link #setInput}, at the resolution
+   * the model can use: the window the input is cropped from, sampled no finer than the input size.
+   * Null if the whole frame is needed, which tiling does since its tiles cover all of it.
+   */
+  public FrameRegion getInputRegion() {
+    return tiling == null ? inputRegion : null;
+  }
+
+  public Transform getFrameToInput() {
+    return frameToInput;
+  }
+
+  public ObjectTracker getTracker() {
+    return tracker;
+  }
+
+  /** Hands a frame to the backend. The frame may be reused as soon as this returns. */
+  public void setInput(final Frame frame) {
+    final long startNs = metrics != null ? metrics.nowNs() : 0;
+    backend.setInput(frame, frameToInput);
+    inputFrameNumber = frame.getFrameNumber();
+    inputTimestampNs = frame.getTimestampNs();
+    inputTrackingTimestampNs = frame.getTrackingTimestampNs();
+    if (metrics != null) {
+      metrics.record(Stage.CROP, startNs, inputTimestampNs);
+    }
+  }
+
+  /** Runs detection on the last input and updates tracks and scene state. */
+  public Result process() {
+    final long timestampNs = inputTimestampNs;
+    if (metrics != null) {
+      metrics.beginFrame(timestampNs);
+    }
+    result.frameNumber = inputFrameNumber;
+    result.timestampNs = timestampNs;
+    result.detections.clear();
+    result.frameDetections.clear();
+    final Tiling tiling = this.tiling;
+    result.tilesRun = 0;
+    if (tiling != null) {
+      detectTiled(tiling);
+    } else {
+      for (final Detection detection : backend.detect()) {
+        if (detection.location != null && detection.confidence >= minConfidence) {
+          result.detections.add(detection);
+        }
+      }
+      for (final Detection detection : result.detections) {
+        final Box location = new Box();
+        inputToFrame.mapBox(detection.location, location);
+        result.frameDetections.add(
+            new Detection(
+                detection.classIndex, detection.title, detection.confidence, location));
+      }
+    }
+
+    updateScene(result.detections);
+
+    if (metrics != null) {
+      metrics.endStage(Stage.POSTPROCESS);
+    }
+    tracker.update(result.frameDetections, inputTrackingTimestampNs);
+    if (metrics != null) {
+      metrics.endStage(Stage.TRACK);
+    }
+    return result;
+  }
+
+  /**
+   * Runs the model on the whole frame and on the next tiles in turn, and merges what the whole
+   * frame found with what every tile found when it last ran, in frame coordinates. Fills both
+   * detection lists of the result.
+   */
+  private void detectTiled(final Tiling tiling) {
+    wholeFrameCandidates.clear();
+    addCandidates(backend.detect(), inputToFrame, wholeFrameCandidates);
+    for (int n = 0; n < tiling.tilesPerFrame; ++n) {
+      final int tile = tiling.nextTile;
+      tiling.nextTile = (tile + 1) % tiling.layout.getTileCount();
+      backend.cropInput(tiling.layout.getFrameToInput(tile));
+      tileDetections.clear();
+      addCandidates(backend.detect(), tiling.layout.getInputToFrame(tile), tileDetections);
+      final List<Detection> tileOnly = tiling.tileOnlyDetections.get(tile);
+      tileOnly.clear();
+      for (final Detection detection : tileDetections) {
+        if (!NonMaxSuppression.overlapsAny(
+            detection, wholeFrameCandidates, TILE_MAX_IOU, TILE_MAX_CONTAINMENT)) {
+          tileOnly.add(detection);
+        }
+      }
+    }
+    result.tilesRun = tiling.tilesPerFrame;
+
+    tileCandidates.clear();
+    tileCandidates.addAll(wholeFrameCandidates);
+    for (final List<Detection> tileOnly : tiling.tileOnlyDetections) {
+      tileCandidates.addAll(tileOnly);
+    }
+    mergeTileCandidates();
+  }
+
+  /**
+   * Merges the tile candidates into the frame detections of the result, and maps them to the input
+   * for its detections.
+   */
+  private void mergeTileCandidates() {
+    NonMaxSuppression.suppress(
+        tileCandidates, TILE_MAX_IOU, TILE_MAX_CONTAINMENT, result.frameDetections);
+    for (final Detection detection : result.frameDetections) {
+      final Box location = new Box();
+      frameToInput.mapBox(detection.location, location);
+      result.detections.add(
+          new Detection(detection.classIndex, detection.title, detection.confidence, location));
+    }
+  }
+
+  /** Adds the detections that pass the filter to {@code candidates}, mapped to the frame. */
+  private void addCandidates(
+      final List<Detection> detections,
+      final Transform inputToFrame,
+      final List<Detection> candidates) {
+    for (final Detection detection : detections) {
+      if (detection.location != null && detection.confidence >= minConfidence) {
+        final Box location = new Box();
+        inputToFrame.mapBox(detection.location, location);
+        candidates.add(
+            new Detection(
+                detection.classIndex, detection.title, detection.confidence, location));
+      }
+    }
+  }
+
+  private void updateScene(final List<Detection> detections) {
+    final float inputWidth = backend.getInputSize();
+    final float inputArea = inputWidth * inputWidth;
+    Arrays.fill(result.largestAreaByPosition, 0.0f);
+    sceneState.beginFrame();
+    for (final Detection detection : detections) {
+      if (!labels.isAnnounced(detection.classIndex)) {
+        continue;
+      }
+      final Box location = detection.location;
+      final Position position = Position.classify(location.left, location.right, inputWidth);
+      sceneState.observe(detection.classIndex, position);
+      final int p = position.ordinal();
+      result.largestAreaByPosition[p] =
+          Math.max(result.largestAreaByPosition[p], location.area() / inputArea);
+    }
+    sceneState.endFrame();
+  }
+
+  /** Makes the next announcement describe the whole scene instead of what changed. */
+  public void announceWholeScene() {
+    sceneState.resetAnnounced();
+  }
+
+  /**
+   * Returns what changed in the scene since the last announcement, phrased to be spoken, or null if
+   * nothing did. The changes count as announced.
+   */
+  public String nextAnnouncement() {
+    sceneChanges.clear();
+    sceneState.collectChanges(sceneChanges);
+    if (sceneChanges.isEmpty()) {
+      return null;
+    }
+    return scenePhraser.phrase(sceneChanges);
+  }
+
+  /**
+   * Returns the object of the last frame expected to reach the user within {@code
+   * maxTimeToCollisionSec}, unless it was warned about recently. Returns null otherwise.
+   */
+  public Hazard findHazard(final float maxTimeToCollisionSec) {
+    final ObjectTracker.ApproachingObject approaching =
+        tracker.findImminentCollision(maxTimeToCollisionSec);
+    if (approaching == null) {
+      return null;
+    }
+    final Box location = new Box();
+    frameToInput.mapBox(approaching.location, location);
+    final Position position =
+        Position.classify(location.left, location.right, backend.getInputSize());
+    return new Hazard(
+        approaching.classIndex,
+        approaching.title,
+        position,
+        approaching.timeToCollisionSec,
+        scenePhraser.phraseHazard(approaching.classIndex, position),
+        result.timestampNs);
+  }
+}
@@ -0,0 +1,31 @@
+package org.asmita.objectdetection.core.detection;
+
+import org.asmita.objectdetection.core.geometry.Box;
+
+/** An object found by a {@link DetectorBackend}. */
+public class Detection {
+  /** Class index in the app's {@link LabelTable}. */
+  public final int classIndex;
+
+  /** Display name of the class. */
+  public final String title;
+
+  /** How sure the detector is, between 0 and 1. */
+  public final float confidence;
+
+  /** Location within the coordinate space the detection was reported in. */
+  public final Box location;
+
+  public Detection(
+      final int classIndex, final String title, final float confidence, final Box location) {
+    this.classIndex = classIndex;
+    this.title = title;
+    this.confidence = confidence;
+    this.location = location;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s (%.1f%%) %s", title, confidence * 100.0f, location);
+  }
+}
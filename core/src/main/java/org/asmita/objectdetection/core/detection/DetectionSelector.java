@@ -0,0 +1,119 @@
+package org.asmita.objectdetection.core.detection;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * Applies a {@link ThresholdProfile} to the raw output of an SSD style detection model: boxes,
+ * class indices and scores in parallel buffers, read in place, so they can be the very buffers the
+ * model wrote its output tensors to. One pass over the buffers finds the detections above their
+ * class's threshold; only those are ordered, suppressed and counted against the top K, and the
+ * result is a list of detection indices, so callers build objects for the survivors alone. Nothing
+ * is allocated per call.
+ */
+public class DetectionSelector {
+  private final float[] thresholds;
+  private final int labelOffset;
+  private final int topK;
+  private final float maxIou;
+  private final int[] candidates;
+
+  /**
+   * @param labels the model's labels, indexed by class index plus {@code labelOffset}.
+   * @param labelOffset added to an output class index to find its label.
+   * @param maxDetections the most detections the model outputs.
+   */
+  public DetectionSelector(
+      final ThresholdProfile profile,
+      final List<String> labels,
+      final int labelOffset,
+      final int maxDetections) {
+    this.thresholds = profile.resolve(labels);
+    this.labelOffset = labelOffset;
+    this.topK = profile.getTopK();
+    this.maxIou = profile.getMaxIou();
+    this.candidates = new int[maxDetections];
+  }
+
+  /**
+   * Writes the indices of the detections to report to {@code selected}, most confident first.
+   *
+   * @param boxes four values per detection, {@code top, left, bottom, right} in any consistent
+   *     unit.
+   * @param classes class index of each detection.
+   * @param scores confidence of each detection.
+   * @param count number of valid detections in the buffers.
+   * @param selected receives the indices, needs room for {@code count} of them.
+   * @return the number of indices written.
+   */
+  public int select(
+      final FloatBuffer boxes,
+      final FloatBuffer classes,
+      final FloatBuffer scores,
+      final int count,
+      final int[] selected) {
+    int candidateCount = 0;
+    for (int i = 0; i < count; ++i) {
+      final int label = (int) classes.get(i) + labelOffset;
+      final float score = scores.get(i);
+      if (label < 0 || label >= thresholds.length || !(score >= thresholds[label])) {
+        continue;
+      }
+      // Insertion sort: there are only a handful of candidates, usually already in order.
+      int j = candidateCount++;
+      while (j > 0 && scores.get(candidates[j - 1]) < score) {
+        candidates[j] = candidates[j - 1];
+        --j;
+      }
+      candidates[j] = i;
+    }
+
+    int selectedCount = 0;
+    for (int c = 0; c < candidateCount && selectedCount < topK; ++c) {
+      final int i = candidates[c];
+      if (!overlapsSelected(boxes, classes, i, selected, selectedCount)) {
+        selected[selectedCount++] = i;
+      }
+    }
+    return selectedCount;
+  }
+
+  private boolean overlapsSelected(
+      final FloatBuffer boxes,
+      final FloatBuffer classes,
+      final int i,
+      final int[] selected,
+      final int selectedCount) {
+    if (maxIou >= 1.0f) {
+      return false;
+    }
+    for (int s = 0; s < selectedCount; ++s) {
+      final int k = selected[s];
+      if ((int) classes.get(k) == (int) classes.get(i)
+          && intersectionOverUnion(boxes, 4 * i, 4 * k) > maxIou) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static float intersectionOverUnion(final FloatBuffer boxes, final int a, final int b) {
+    final float aTop = boxes.get(a);
+    final float aLeft = boxes.get(a + 1);
+    final float aBottom = boxes.get(a + 2);
+    final float aRight = boxes.get(a + 3);
+    final float bTop = boxes.get(b);
+    final float bLeft = boxes.get(b + 1);
+    final float bBottom = boxes.get(b + 2);
+    final float bRight = boxes.get(b + 3);
+    final float intersectionHeight = Math.min(aBottom, bBottom) - Math.max(aTop, bTop);
+    final float intersectionWidth = Math.min(aRight, bRight) - Math.max(aLeft, bLeft);
+    if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+      return 0.0f;
+    }
+    final float intersection = intersectionWidth * intersectionHeight;
+    final float union =
+        (aBottom - aTop) * (aRight - aLeft) + (bBottom - bTop) * (bRight - bLeft) - intersection;
+    return union > 0 ? intersection / union : 0.0f;
+  }
+}
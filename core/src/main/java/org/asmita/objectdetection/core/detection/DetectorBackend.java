@@ -0,0 +1,30 @@
+package org.asmita.objectdetection.core.detection;
+
+import java.util.List;
+import org.asmita.objectdetection.core.geometry.Transform;
+
+/**
+ * Runs inference for a {@link DetectionPipeline}. Implementations wrap the actual model runtime; a
+ * stub that returns canned detections is enough to run the rest of the pipeline off-device.
+ */
+public interface DetectorBackend {
+  /** Side of the square input the model runs on. Detections are reported in this space. */
+  int getInputSize();
+
+  /**
+   * Copies the part of {@code frame} the model sees into the backend's input, applying {@code
+   * frameToInput}. The frame may be reused as soon as this returns.
+   */
+  void setInput(Frame frame, Transform frameToInput);
+
+  /**
+   * Draws another view of the frame last passed to {@link #setInput}, applying another transform,
+   * for the next {@link #detect} to run on, so that one frame can be run through the model several
+   * times, e.g. tile by tile. The input {@link #setInput} drew is kept for whoever reads it and
+   * for the calls after that.
+   */
+  void cropInput(Transform frameToInput);
+
+  /** Runs the model on the view drawn by {@link #cropInput} since the last call, or the input. */
+  List<Detection> detect();
+}
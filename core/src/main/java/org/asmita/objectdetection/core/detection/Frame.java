@@ -0,0 +1,105 @@
+package org.asmita.objectdetection.core.detection;
+
+import org.asmita.objectdetection.core.image.FrameRegion;
+
+/**
+ * A camera frame as packed ARGB pixels, row by row without padding, along with when it was captured.
+ * Frames are reused: the pixels are only valid until the source hands out its next frame.
+ *
+ * <p>The pixels may cover only a {@link FrameRegion} of the frame, when that is all the consumers
+ * need. {@link #width} and {@link #height} are always those of the whole frame, which is the space
+ * detections and tracks are in.
+ */
+public class Frame {
+  public final int width;
+  public final int height;
+  private int[] pixels;
+  private FrameRegion region;
+  private long frameNumber;
+  private long timestampNs;
+  private long trackingTimestampNs;
+
+  public Frame(final int width, final int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @param pixels {@code width * height} ARGB pixels.
+   * @param frameNumber position of the frame in the camera's output, counting dropped frames.
+   * @param timestampNs capture time on a monotonic clock.
+   */
+  public void set(final int[] pixels, final long frameNumber, final long timestampNs) {
+    set(pixels, null, frameNumber, timestampNs);
+  }
+
+  /**
+   * @param pixels the ARGB pixels of {@code region}, {@code region.getOutputWidth() *
+   *     region.getOutputHeight()} of them.
+   * @param region the part of the frame the pixels cover, or null for all of it.
+   * @param frameNumber position of the frame in the camera's output, counting dropped frames.
+   * @param timestampNs capture time on a monotonic clock.
+   */
+  public void set(
+      final int[] pixels,
+      final FrameRegion region,
+      final long frameNumber,
+      final long timestampNs) {
+    set(pixels, region, frameNumber, timestampNs, timestampNs);
+  }
+
+  /**
+   * Same as {@link #set(int[], FrameRegion, long, long)} for a frame whose motion is measured on a
+   * different clock than its capture time, such as a recording replayed faster than it was
+   * recorded.
+   *
+   * @param trackingTimestampNs time the tracker places the frame at.
+   */
+  public void set(
+      final int[] pixels,
+      final FrameRegion region,
+      final long frameNumber,
+      final long timestampNs,
+      final long trackingTimestampNs) {
+    this.pixels = pixels;
+    this.region = region;
+    this.frameNumber = frameNumber;
+    this.timestampNs = timestampNs;
+    this.trackingTimestampNs = trackingTimestampNs;
+  }
+
+  public int[] getPixels() {
+    return pixels;
+  }
+
+  /** The part of the frame the pixels cover, or null if they cover all of it. */
+  public FrameRegion getRegion() {
+    return region;
+  }
+
+  /** Width of the pixels, the frame's unless they only cover a region. */
+  public int getPixelsWidth() {
+    return region != null ? region.getOutputWidth() : width;
+  }
+
+  /** Height of the pixels, the frame's unless they only cover a region. */
+  public int getPixelsHeight() {
+    return region != null ? region.getOutputHeight() : height;
+  }
+
+  public long getFrameNumber() {
+    return frameNumber;
+  }
+
+  public long getTimestampNs() {
+    return timestampNs;
+  }
+
+  /**
+   * Time the tracker places the frame at. The capture time, unless the frame was set with a
+   * separate one.
+   */
+  public long getTrackingTimestampNs() {
+    return trackingTimestampNs;
+  }
+}
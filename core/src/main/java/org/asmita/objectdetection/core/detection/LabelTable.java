@@ -0,0 +1,182 @@
+package org.asmita.objectdetection.core.detection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes the app's models report, each under one class index however many models know it,
+ * with what is needed to show and speak it: the display name, the spoken singular and plural and
+ * a hazard category. Per-frame code compares and counts class indices; strings are only looked up
+ * to be drawn or spoken. Immutable, built once from the models' label maps.
+ */
+public final class LabelTable {
+  /** Label map entry for the classes a model wasn't trained on. */
+  public static final String UNKNOWN_LABEL = "???";
+  /** Class index of {@link #UNKNOWN_LABEL}, and of labels that aren't in the table. */
+  public static final int UNKNOWN = 0;
+
+  /** How dangerous it is to walk into an object of a class. */
+  public enum Hazard {
+    NONE,
+    PERSON,
+    VEHICLE,
+    /** Street furniture and the like, which doesn't move but is easy to walk into. */
+    OBSTACLE
+  }
+
+  // Labels of the COCO label map that don't follow the regular plural rules.
+  private static final Map<String, String> IRREGULAR_PLURALS = new HashMap<>();
+
+  static {
+    IRREGULAR_PLURALS.put("person", "people");
+    IRREGULAR_PLURALS.put("mouse", "mice");
+    IRREGULAR_PLURALS.put("knife", "knives");
+    IRREGULAR_PLURALS.put("sheep", "sheep");
+    IRREGULAR_PLURALS.put("skis", "skis");
+    IRREGULAR_PLURALS.put("scissors", "scissors");
+    IRREGULAR_PLURALS.put("broccoli", "broccoli");
+  }
+
+  /** Collects labels and their hazard categories. */
+  public static class Builder {
+    private final List<String> labels = new ArrayList<>();
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final Map<String, Hazard> hazards = new HashMap<>();
+
+    public Builder() {
+      add(UNKNOWN_LABEL);
+    }
+
+    /** Adds {@code label} unless it is already in, and returns its class index. */
+    public int add(final String label) {
+      Integer index = indices.get(label);
+      if (index == null) {
+        index = labels.size();
+        labels.add(label);
+        indices.put(label, index);
+      }
+      return index;
+    }
+
+    /** Adds every label of a model's label map. */
+    public Builder addAll(final List<String> labels) {
+      for (final String label : labels) {
+        add(label);
+      }
+      return this;
+    }
+
+    /** Sets the hazard category of {@code label}, if it is ever added. */
+    public Builder setHazard(final String label, final Hazard hazard) {
+      hazards.put(label, hazard);
+      return this;
+    }
+
+    public LabelTable build() {
+      return new LabelTable(this);
+    }
+  }
+
+  private final Map<String, Integer> indices;
+  private final String[] names;
+  private final String[] plurals;
+  private final Hazard[] hazards;
+
+  private LabelTable(final Builder builder) {
+    indices = new HashMap<>(builder.indices);
+    names = builder.labels.toArray(new String[0]);
+    plurals = new String[names.length];
+    hazards = new Hazard[names.length];
+    for (int i = 0; i < names.length; ++i) {
+      plurals[i] = plural(names[i]);
+      final Hazard hazard = builder.hazards.get(names[i]);
+      hazards[i] = hazard != null ? hazard : Hazard.NONE;
+    }
+  }
+
+  /** A table of the labels of a single model. */
+  public static LabelTable of(final List<String> labels) {
+    return new Builder().addAll(labels).build();
+  }
+
+  /** Number of classes, {@link #UNKNOWN} included. */
+  public int size() {
+    return names.length;
+  }
+
+  /** Class index of {@code label}, or {@link #UNKNOWN} if it isn't in the table. */
+  public int indexOf(final String label) {
+    final Integer index = indices.get(label);
+    return index != null ? index : UNKNOWN;
+  }
+
+  /** Class index of each label of a model's label map, in the order of {@code labels}. */
+  public int[] resolve(final List<String> labels) {
+    final int[] resolved = new int[labels.size()];
+    for (int i = 0; i < resolved.length; ++i) {
+      resolved[i] = indexOf(labels.get(i));
+    }
+    return resolved;
+  }
+
+  /**
+   * The labels of a model's label map that aren't in the table, other than {@link #UNKNOWN_LABEL}.
+   * A model with any would report those classes as {@link #UNKNOWN}.
+   */
+  public List<String> unresolved(final List<String> labels) {
+    final List<String> unresolved = new ArrayList<>();
+    final int[] resolved = resolve(labels);
+    for (int i = 0; i < resolved.length; ++i) {
+      if (resolved[i] == UNKNOWN && !UNKNOWN_LABEL.equals(labels.get(i))) {
+        unresolved.add(labels.get(i));
+      }
+    }
+    return unresolved;
+  }
+
+  /** Whether the class is a known one the user may be told about. */
+  public boolean isAnnounced(final int classIndex) {
+    return classIndex != UNKNOWN;
+  }
+
+  /** Name of the class as the label map gives it, for display. */
+  public String getName(final int classIndex) {
+    return names[classIndex];
+  }
+
+  /** How one object of the class is spoken, e.g. "person". */
+  public String getSingular(final int classIndex) {
+    return names[classIndex];
+  }
+
+  /** How several objects of the class are spoken, e.g. "people". */
+  public String getPlural(final int classIndex) {
+    return plurals[classIndex];
+  }
+
+  public Hazard getHazard(final int classIndex) {
+    return hazards[classIndex];
+  }
+
+  private static String plural(final String label) {
+    final String irregular = IRREGULAR_PLURALS.get(label);
+    if (irregular != null) {
+      return irregular;
+    }
+    if (label.endsWith("s")
+        || label.endsWith("x")
+        || label.endsWith("ch")
+        || label.endsWith("sh")) {
+      return label + "es";
+    }
+    return label + "s";
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(names);
+  }
+}
@@ -0,0 +1,396 @@
+package org.asmita.objectdetection.core.detection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+
+/**
+ * Runs specialist detectors next to a primary one and merges what they find into one stream, in
+ * the primary's input space.
+ *
+ * <p>The primary runs on every frame. Each specialist runs at most once per its interval, in
+ * priority order, while the inference time spent per second stays within a budget: time is
+ * credited as frames arrive, every inference is charged its measured cost, and a specialist only
+ * starts if its running mean cost is covered after reserving the primary's. Specialists are loaded
+ * on the loader executor the first time they are due, at most one starting per frame, and run from
+ * the first frame after their load finished; frames don't wait for a load, they go on without the
+ * specialist meanwhile. When loading one would exceed the memory budget, the least recently used
+ * ones are released first, on the same executor.
+ *
+ * <p>What a specialist found is merged into every frame until its next run, or until its interval
+ * has passed without one, so that tracking and the scene state see those objects on consecutive
+ * frames rather than once per interval.
+ *
+ * <p>Like any backend, {@link #setInput} is called on the camera thread and {@link #detect} on the
+ * processing thread, never at the same time.
+ */
+public class MultiModelBackend implements DetectorBackend {
+  /** Loads and releases a specialist, on the loader executor. */
+  public interface Loader {
+    DetectorBackend load() throws IOException;
+
+    void release(DetectorBackend backend);
+  }
+
+  // Detections of the same class from different models overlapping more than this are one.
+  private static final float MAX_MERGE_IOU = 0.5f;
+  // Weight of the latest inference in each model's running mean cost.
+  private static final float COST_SMOOTHING = 0.2f;
+
+  /** A load on the loader executor, handed over to the processing thread once done. */
+  private static class PendingLoad {
+    // Null if the load failed, only read once done is set.
+    volatile DetectorBackend backend;
+    volatile boolean done = false;
+  }
+
+  private static class Specialist {
+    final String name;
+    final Loader loader;
+    final int inputSize;
+    final long memoryBytes;
+    final long intervalNs;
+    final int priority;
+    DetectorBackend backend;
+    PendingLoad pendingLoad;
+    // Found by the last run, in the primary's input space.
+    final List<Detection> lastDetections = new ArrayList<>();
+    Transform frameToInput;
+    Transform inputToPrimary;
+    boolean failed = false;
+    boolean due = false;
+    long lastRunNs = Long.MIN_VALUE;
+    // Last run or load, whichever is later.
+    long lastUsedNs = Long.MIN_VALUE;
+    long meanCostNs = 0;
+    long runs = 0;
+    long loads = 0;
+
+    Specialist(
+        final String name,
+        final Loader loader,
+        final int inputSize,
+        final long memoryBytes,
+        final long intervalNs,
+        final int priority) {
+      this.name = name;
+      this.loader = loader;
+      this.inputSize = inputSize;
+      this.memoryBytes = memoryBytes;
+      this.intervalNs = intervalNs;
+      this.priority = priority;
+    }
+  }
+
+  private final DetectorBackend primary;
+  private final long memoryBudgetBytes;
+  private final long inferenceBudgetNs;
+  private final LongSupplier clockNs;
+  private final Executor loaderExecutor;
+  // In priority order, most important first.
+  private final List<Specialist> specialists = new ArrayList<>();
+  private final List<Detection> candidates = new ArrayList<>();
+  private final List<Detection> merged = new ArrayList<>();
+  private Transform frameToInput;
+  // Taken by the loaded specialists and the ones being loaded.
+  private long loadedBytes = 0;
+  private long creditNs = 0;
+  private long lastFrameNs = Long.MIN_VALUE;
+  private long primaryMeanCostNs = 0;
+  private boolean specialistsPending = false;
+
+  /**
+   * @param memoryBudgetBytes most memory the loaded specialists may take.
+   * @param inferenceBudgetNs most inference time, primary included, to spend per second.
+   * @param clockNs monotonic clock inferences are timed with.
+   * @param loaderExecutor runs the specialists' loads and releases one at a time, in order, off the
+   *     processing thread.
+   */
+  public MultiModelBackend(
+      final DetectorBackend primary,
+      final long memoryBudgetBytes,
+      final long inferenceBudgetNs,
+      final LongSupplier clockNs,
+      final Executor loaderExecutor) {
+    this.primary = primary;
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.inferenceBudgetNs = inferenceBudgetNs;
+    this.clockNs = clockNs;
+    this.loaderExecutor = loaderExecutor;
+  }
+
+  /**
+   * Registers a specialist. Its labels should not clash with the primary's unless both mean the
+   * same thing, since overlapping detections with the same label are merged.
+   *
+   * @param inputSize side of the specialist's square input.
+   * @param memoryBytes memory the specialist takes once loaded.
+   * @param intervalNs shortest time between two of its runs.
+   * @param priority lower runs first when the budget doesn't stretch to every due specialist.
+   */
+  public synchronized void addSpecialist(
+      final String name,
+      final Loader loader,
+      final int inputSize,
+      final long memoryBytes,
+      final long intervalNs,
+      final int priority) {
+    int i = 0;
+    while (i < specialists.size() && specialists.get(i).priority <= priority) {
+      ++i;
+    }
+    specialists.add(
+        i, new Specialist(name, loader, inputSize, memoryBytes, intervalNs, priority));
+  }
+
+  @Override
+  public int getInputSize() {
+    return primary.getInputSize();
+  }
+
+  @Override
+  public synchronized void setInput(final Frame frame, final Transform frameToInput) {
+    primary.setInput(frame, frameToInput);
+    if (specialists.isEmpty()) {
+      return;
+    }
+    if (frameToInput != this.frameToInput) {
+      this.frameToInput = frameToInput;
+      for (final Specialist specialist : specialists) {
+        // The specialist sees what the primary sees, scaled to its own input size.
+        final float scale = specialist.inputSize / (float) primary.getInputSize();
+        specialist.frameToInput = frameToInput.then(Transform.scale(scale, scale));
+        specialist.inputToPrimary = Transform.scale(1 / scale, 1 / scale);
+        // They were in the old input space.
+        specialist.lastDetections.clear();
+      }
+    }
+
+    final long nowNs = frame.getTimestampNs();
+    for (final Specialist specialist : specialists) {
+      if (specialist.pendingLoad != null && specialist.pendingLoad.done) {
+        finishLoad(specialist, nowNs);
+      }
+    }
+    if (lastFrameNs != Long.MIN_VALUE) {
+      // Credit never exceeds a second's budget, so longer gaps don't count for more.
+      final long elapsedNs = Math.min(nowNs - lastFrameNs, 1000000000L);
+      creditNs =
+          Math.min(inferenceBudgetNs, creditNs + elapsedNs * inferenceBudgetNs / 1000000000L);
+    }
+    lastFrameNs = nowNs;
+
+    long availableNs = creditNs - primaryMeanCostNs;
+    for (final Specialist specialist : specialists) {
+      specialist.due =
+          !specialist.failed
+              && (specialist.lastRunNs == Long.MIN_VALUE
+                  || nowNs - specialist.lastRunNs >= specialist.intervalNs)
+              && specialist.meanCostNs <= availableNs;
+      if (specialist.due && specialist.backend != null) {
+        specialist.backend.setInput(frame, specialist.frameToInput);
+        availableNs -= specialist.meanCostNs;
+      }
+    }
+    specialistsPending = true;
+  }
+
+  @Override
+  public synchronized void cropInput(final Transform frameToInput) {
+    primary.cropInput(frameToInput);
+  }
+
+  /**
+   * Runs the primary and, on the first call after {@link #setInput}, the specialists due for the
+   * frame, merging in what the specialists found last. The list is reused by the next call.
+   */
+  @Override
+  public synchronized List<Detection> detect() {
+    long startNs = clockNs.getAsLong();
+    final List<Detection> detections = primary.detect();
+    long endNs = clockNs.getAsLong();
+    primaryMeanCostNs =
+        primaryMeanCostNs == 0 ? endNs - startNs : smooth(primaryMeanCostNs, endNs - startNs);
+    creditNs -= endNs - startNs;
+    if (!specialistsPending) {
+      return detections;
+    }
+    specialistsPending = false;
+
+    candidates.clear();
+    candidates.addAll(detections);
+    boolean merging = false;
+    boolean loaded = false;
+    for (final Specialist specialist : specialists) {
+      if (!specialist.due) {
+        continue;
+      }
+      if (specialist.backend == null) {
+        if (!loaded && specialist.pendingLoad == null) {
+          loaded = true;
+          load(specialist);
+        }
+        continue;
+      }
+      startNs = endNs;
+      specialist.lastDetections.clear();
+      for (final Detection detection : specialist.backend.detect()) {
+        if (detection.location != null) {
+          final Box location = new Box();
+          specialist.inputToPrimary.mapBox(detection.location, location);
+          specialist.lastDetections.add(
+              new Detection(
+                  detection.classIndex, detection.title, detection.confidence, location));
+        }
+      }
+      endNs = clockNs.getAsLong();
+      specialist.meanCostNs =
+          specialist.runs == 0 ? endNs - startNs : smooth(specialist.meanCostNs, endNs - startNs);
+      creditNs -= endNs - startNs;
+      specialist.lastRunNs = lastFrameNs;
+      specialist.lastUsedNs = lastFrameNs;
+      ++specialist.runs;
+    }
+    for (final Specialist specialist : specialists) {
+      if (specialist.lastDetections.isEmpty()) {
+        continue;
+      }
+      if (lastFrameNs - specialist.lastRunNs >= specialist.intervalNs) {
+        // Due again but not run, what it found is too old to keep reporting.
+        specialist.lastDetections.clear();
+        continue;
+      }
+      candidates.addAll(specialist.lastDetections);
+      merging = true;
+    }
+    if (!merging) {
+      return detections;
+    }
+    merged.clear();
+    NonMaxSuppression.suppress(candidates, MAX_MERGE_IOU, 1.0f, merged);
+    return merged;
+  }
+
+  /** Starts loading the specialist on the loader executor, its memory taken from now on. */
+  private void load(final Specialist specialist) {
+    if (specialist.memoryBytes > memoryBudgetBytes) {
+      specialist.failed = true;
+      return;
+    }
+    while (loadedBytes + specialist.memoryBytes > memoryBudgetBytes) {
+      if (!releaseLeastRecentlyUsed()) {
+        // Only loads still running hold the memory, try again once they are done.
+        return;
+      }
+    }
+    loadedBytes += specialist.memoryBytes;
+    final PendingLoad load = new PendingLoad();
+    specialist.pendingLoad = load;
+    final Loader loader = specialist.loader;
+    loaderExecutor.execute(
+        () -> {
+          try {
+            load.backend = loader.load();
+          } catch (final IOException | RuntimeException e) {
+            // Left null, the processing thread sees the load failed.
+          }
+          load.done = true;
+        });
+  }
+
+  /** Takes over the specialist's finished load, before the frame at {@code nowNs} is set. */
+  private void finishLoad(final Specialist specialist, final long nowNs) {
+    final DetectorBackend backend = specialist.pendingLoad.backend;
+    specialist.pendingLoad = null;
+    if (backend == null) {
+      // Missing or broken models stay off rather than being retried on every frame.
+      specialist.failed = true;
+      loadedBytes -= specialist.memoryBytes;
+      return;
+    }
+    specialist.backend = backend;
+    specialist.lastUsedNs = nowNs;
+    ++specialist.loads;
+  }
+
+  /** Releases the loaded specialist used longest ago, returning false if none is loaded. */
+  private boolean releaseLeastRecentlyUsed() {
+    Specialist oldest = null;
+    for (final Specialist specialist : specialists) {
+      if (specialist.backend != null
+          && (oldest == null || specialist.lastUsedNs < oldest.lastUsedNs)) {
+        oldest = specialist;
+      }
+    }
+    if (oldest == null) {
+      return false;
+    }
+    release(oldest);
+    return true;
+  }
+
+  private void release(final Specialist specialist) {
+    final Loader loader = specialist.loader;
+    final DetectorBackend backend = specialist.backend;
+    loaderExecutor.execute(() -> loader.release(backend));
+    specialist.backend = null;
+    specialist.lastDetections.clear();
+    loadedBytes -= specialist.memoryBytes;
+  }
+
+  /**
+   * Releases every loaded specialist, and those still loading once their load is done. They are
+   * loaded again when next due.
+   */
+  public synchronized void releaseAll() {
+    for (final Specialist specialist : specialists) {
+      if (specialist.backend != null) {
+        release(specialist);
+      }
+      final PendingLoad load = specialist.pendingLoad;
+      if (load != null) {
+        final Loader loader = specialist.loader;
+        // Runs after the load, the executor keeps their order.
+        loaderExecutor.execute(
+            () -> {
+              if (load.backend != null) {
+                loader.release(load.backend);
+              }
+            });
+        specialist.pendingLoad = null;
+        loadedBytes -= specialist.memoryBytes;
+      }
+    }
+  }
+
+  private static long smooth(final long meanNs, final long sampleNs) {
+    return meanNs + (long) (COST_SMOOTHING * (sampleNs - meanNs));
+  }
+
+  /** Mean inference time of each model, and how often each specialist ran and was loaded. */
+  public synchronized String getStatString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.US, "primary: mean=%.1fms\n", primaryMeanCostNs / 1e6));
+    for (final Specialist specialist : specialists) {
+      sb.append(
+          String.format(
+              Locale.US,
+              "%s: runs=%d mean=%.1fms loads=%d%s\n",
+              specialist.name,
+              specialist.runs,
+              specialist.meanCostNs / 1e6,
+              specialist.loads,
+              specialist.failed
+                  ? " failed"
+                  : specialist.backend != null
+                      ? " loaded"
+                      : specialist.pendingLoad != null ? " loading" : ""));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,74 @@
+package org.asmita.objectdetection.core.detection;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.asmita.objectdetection.core.geometry.Box;
+
+/** Greedy non-maximum suppression among detections of the same class. */
+public final class NonMaxSuppression {
+  private static final Comparator<Detection> BY_CONFIDENCE =
+      new Comparator<Detection>() {
+        @Override
+        public int compare(final Detection a, final Detection b) {
+          return Float.compare(b.confidence, a.confidence);
+        }
+      };
+
+  private NonMaxSuppression() {}
+
+  /**
+   * Adds {@code detections} to {@code kept}, most confident first, skipping any that overlaps a
+   * kept detection of the same class by more than {@code maxIou}, or that lies more than {@code
+   * maxContainment} inside one or contains it that much. The containment test catches the part of
+   * an object a tile cut off, whose box is much smaller than the whole object's.
+   *
+   * @param detections sorted in place by decreasing confidence.
+   */
+  public static void suppress(
+      final List<Detection> detections,
+      final float maxIou,
+      final float maxContainment,
+      final List<Detection> kept) {
+    Collections.sort(detections, BY_CONFIDENCE);
+    final int firstKept = kept.size();
+    for (final Detection candidate : detections) {
+      if (!overlapsKept(candidate, kept, firstKept, maxIou, maxContainment)) {
+        kept.add(candidate);
+      }
+    }
+  }
+
+  /**
+   * Whether {@code candidate} overlaps any of {@code others} of the same class by the measures
+   * {@link #suppress} uses.
+   */
+  public static boolean overlapsAny(
+      final Detection candidate,
+      final List<Detection> others,
+      final float maxIou,
+      final float maxContainment) {
+    return overlapsKept(candidate, others, 0, maxIou, maxContainment);
+  }
+
+  private static boolean overlapsKept(
+      final Detection candidate,
+      final List<Detection> kept,
+      final int firstKept,
+      final float maxIou,
+      final float maxContainment) {
+    for (int i = firstKept; i < kept.size(); ++i) {
+      final Detection other = kept.get(i);
+      if (other.classIndex != candidate.classIndex) {
+        continue;
+      }
+      final Box a = candidate.location;
+      final Box b = other.location;
+      if (Box.intersectionOverUnion(a, b) > maxIou
+          || Box.intersectionOverSmaller(a, b) > maxContainment) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
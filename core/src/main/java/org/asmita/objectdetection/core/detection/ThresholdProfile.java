@@ -0,0 +1,78 @@
+package org.asmita.objectdetection.core.detection;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which of a model's raw detections are worth reporting: a confidence threshold per class, classes
+ * that are never reported, how many detections are reported at most, and how much two detections
+ * of the same class may overlap before the less confident one is dropped. Classes are named by
+ * their labels; {@link DetectionSelector} resolves them against a model's label list once.
+ */
+public class ThresholdProfile {
+  private final float defaultThreshold;
+  private final Map<String, Float> thresholds = new HashMap<>();
+  private final Set<String> disabled = new HashSet<>();
+  private int topK = Integer.MAX_VALUE;
+  private float maxIou = 1.0f;
+
+  /** @param defaultThreshold lowest confidence reported for classes without their own threshold. */
+  public ThresholdProfile(final float defaultThreshold) {
+    this.defaultThreshold = defaultThreshold;
+  }
+
+  public ThresholdProfile setThreshold(final String label, final float threshold) {
+    thresholds.put(label, threshold);
+    return this;
+  }
+
+  /** Never reports {@code label}. */
+  public ThresholdProfile disable(final String label) {
+    disabled.add(label);
+    return this;
+  }
+
+  /** Reports at most the {@code topK} most confident detections. */
+  public ThresholdProfile setTopK(final int topK) {
+    this.topK = topK;
+    return this;
+  }
+
+  /**
+   * Drops a detection that overlaps a more confident one of the same class by more than {@code
+   * maxIou} intersection over union. 1 keeps every detection.
+   */
+  public ThresholdProfile setMaxIou(final float maxIou) {
+    this.maxIou = maxIou;
+    return this;
+  }
+
+  /** Lowest confidence reported for {@code label}, infinite if it is never reported. */
+  public float getThreshold(final String label) {
+    if (disabled.contains(label)) {
+      return Float.POSITIVE_INFINITY;
+    }
+    final Float threshold = thresholds.get(label);
+    return threshold != null ? threshold : defaultThreshold;
+  }
+
+  public int getTopK() {
+    return topK;
+  }
+
+  public float getMaxIou() {
+    return maxIou;
+  }
+
+  /** Returns the threshold of each label, in the order of {@code labels}. */
+  public float[] resolve(final List<String> labels) {
+    final float[] resolved = new float[labels.size()];
+    for (int i = 0; i < resolved.length; ++i) {
+      resolved[i] = getThreshold(labels.get(i));
+    }
+    return resolved;
+  }
+}
@@ -0,0 +1,72 @@
+package org.asmita.objectdetection.core.detection;
+
+import org.asmita.objectdetection.core.geometry.Transform;
+
+/**
+ * Overlapping square tiles covering a frame, each with the transforms between the frame and a
+ * model input showing just that tile. Running the model tile by tile sees small and distant
+ * objects at close to the frame's own resolution instead of squashed into a single input.
+ */
+public class TileLayout {
+  /** Fraction of a tile's side shared with each neighbour, so objects on a seam are whole in one. */
+  public static final float OVERLAP = 0.2f;
+
+  private final int side;
+  private final Transform[] frameToInput;
+  private final Transform[] inputToFrame;
+
+  /**
+   * @param rotation rotation that makes the frame upright, as for {@link Transform#between}.
+   * @param columns tiles across the frame's width, before rotation.
+   * @param rows tiles down the frame's height, before rotation.
+   */
+  public TileLayout(
+      final int frameWidth,
+      final int frameHeight,
+      final int rotation,
+      final int inputSize,
+      final int columns,
+      final int rows) {
+    // The smallest square side that lets the grid cover the frame with the given overlap.
+    final float coveredColumns = columns - (columns - 1) * OVERLAP;
+    final float coveredRows = rows - (rows - 1) * OVERLAP;
+    side =
+        Math.min(
+            Math.min(frameWidth, frameHeight),
+            (int) Math.ceil(Math.max(frameWidth / coveredColumns, frameHeight / coveredRows)));
+
+    frameToInput = new Transform[columns * rows];
+    inputToFrame = new Transform[columns * rows];
+    final Transform tileToInput =
+        Transform.between(side, side, inputSize, inputSize, rotation, false);
+    for (int row = 0; row < rows; ++row) {
+      final int top = rows > 1 ? row * (frameHeight - side) / (rows - 1) : (frameHeight - side) / 2;
+      for (int column = 0; column < columns; ++column) {
+        final int left =
+            columns > 1
+                ? column * (frameWidth - side) / (columns - 1)
+                : (frameWidth - side) / 2;
+        final int i = row * columns + column;
+        frameToInput[i] = Transform.translate(-left, -top).then(tileToInput);
+        inputToFrame[i] = frameToInput[i].invert();
+      }
+    }
+  }
+
+  public int getTileCount() {
+    return frameToInput.length;
+  }
+
+  /** Side of every tile, in frame pixels. */
+  public int getTileSide() {
+    return side;
+  }
+
+  public Transform getFrameToInput(final int tile) {
+    return frameToInput[tile];
+  }
+
+  public Transform getInputToFrame(final int tile) {
+    return inputToFrame[tile];
+  }
+}
@@ -0,0 +1,81 @@
+package org.asmita.objectdetection.core.geometry;
+
+/** An axis aligned rectangle in floating point coordinates. */
+public class Box {
+  public float left;
+  public float top;
+  public float right;
+  public float bottom;
+
+  public Box() {}
+
+  public Box(final float left, final float top, final float right, final float bottom) {
+    set(left, top, right, bottom);
+  }
+
+  public Box(final Box other) {
+    set(other);
+  }
+
+  public void set(final float left, final float top, final float right, final float bottom) {
+    this.left = left;
+    this.top = top;
+    this.right = right;
+    this.bottom = bottom;
+  }
+
+  public void set(final Box other) {
+    set(other.left, other.top, other.right, other.bottom);
+  }
+
+  public float width() {
+    return right - left;
+  }
+
+  public float height() {
+    return bottom - top;
+  }
+
+  public float area() {
+    return width() * height();
+  }
+
+  public float centerX() {
+    return (left + right) * 0.5f;
+  }
+
+  public float centerY() {
+    return (top + bottom) * 0.5f;
+  }
+
+  /** Returns the intersection over union of two boxes, 0 if they don't overlap. */
+  public static float intersectionOverUnion(final Box a, final Box b) {
+    final float intersectionWidth = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+    final float intersectionHeight = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+    if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+      return 0.0f;
+    }
+    final float intersection = intersectionWidth * intersectionHeight;
+    final float union = a.area() + b.area() - intersection;
+    return union > 0 ? intersection / union : 0.0f;
+  }
+
+  /**
+   * Returns the intersection of two boxes over the area of the smaller one, so 1 if one contains
+   * the other and 0 if they don't overlap.
+   */
+  public static float intersectionOverSmaller(final Box a, final Box b) {
+    final float intersectionWidth = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+    final float intersectionHeight = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+    if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+      return 0.0f;
+    }
+    final float smaller = Math.min(a.area(), b.area());
+    return smaller > 0 ? intersectionWidth * intersectionHeight / smaller : 0.0f;
+  }
+
+  @Override
+  public String toString() {
+    return "Box(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+  }
+}
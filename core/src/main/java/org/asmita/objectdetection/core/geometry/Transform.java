@@ -0,0 +1,186 @@
+package org.asmita.objectdetection.core.geometry;
+
+/**
+ * An immutable 2D affine transform, {@code x' = a x + b y + c} and {@code y' = d x + e y + f}. The
+ * values are laid out like the first two rows of an {@code android.graphics.Matrix}, so that
+ * Android code can convert with {@code Matrix.setValues}.
+ */
+public final class Transform {
+  private final float a;
+  private final float b;
+  private final float c;
+  private final float d;
+  private final float e;
+  private final float f;
+
+  private static final Transform IDENTITY = new Transform(1, 0, 0, 0, 1, 0);
+
+  private Transform(
+      final float a, final float b, final float c, final float d, final float e, final float f) {
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.d = d;
+    this.e = e;
+    this.f = f;
+  }
+
+  public static Transform identity() {
+    return IDENTITY;
+  }
+
+  public static Transform translate(final float dx, final float dy) {
+    return new Transform(1, 0, dx, 0, 1, dy);
+  }
+
+  public static Transform scale(final float sx, final float sy) {
+    return new Transform(sx, 0, 0, 0, sy, 0);
+  }
+
+  /** Rotates clockwise in screen coordinates, where y points down. */
+  public static Transform rotate(final float degrees) {
+    final double radians = Math.toRadians(degrees);
+    float sin = (float) Math.sin(radians);
+    float cos = (float) Math.cos(radians);
+    // Keep quarter turns exact so that mapped boxes don't pick up rounding noise.
+    if (degrees % 90 == 0) {
+      sin = Math.round(sin);
+      cos = Math.round(cos);
+    }
+    return new Transform(cos, -sin, 0, sin, cos, 0);
+  }
+
+  /**
+   * Returns a transform from one reference frame into another. Handles cropping (if maintaining
+   * aspect ratio is desired) and rotation.
+   *
+   * @param srcWidth Width of source frame.
+   * @param srcHeight Height of source frame.
+   * @param dstWidth Width of destination frame.
+   * @param dstHeight Height of destination frame.
+   * @param applyRotation Amount of rotation to apply from one frame to another. Must be a multiple
+   *     of 90.
+   * @param maintainAspectRatio If true, will ensure that scaling in x and y remains constant,
+   *     cropping the image if necessary.
+   */
+  public static Transform between(
+      final int srcWidth,
+      final int srcHeight,
+      final int dstWidth,
+      final int dstHeight,
+      final int applyRotation,
+      final boolean maintainAspectRatio) {
+    Transform transform = IDENTITY;
+
+    if (applyRotation != 0) {
+      // Translate so center of image is at origin, then rotate around it.
+      transform =
+          transform
+              .then(translate(-srcWidth / 2.0f, -srcHeight / 2.0f))
+              .then(rotate(applyRotation));
+    }
+
+    // Account for the already applied rotation, if any, and then determine how
+    // much scaling is needed for each axis.
+    final boolean transpose = (Math.abs(applyRotation) + 90) % 180 == 0;
+
+    final int inWidth = transpose ? srcHeight : srcWidth;
+    final int inHeight = transpose ? srcWidth : srcHeight;
+
+    // Apply scaling if necessary.
+    if (inWidth != dstWidth || inHeight != dstHeight) {
+      final float scaleFactorX = dstWidth / (float) inWidth;
+      final float scaleFactorY = dstHeight / (float) inHeight;
+
+      if (maintainAspectRatio) {
+        // Scale by minimum factor so that dst is filled completely while
+        // maintaining the aspect ratio. Some image may fall off the edge.
+        final float scaleFactor = Math.max(scaleFactorX, scaleFactorY);
+        transform = transform.then(scale(scaleFactor, scaleFactor));
+      } else {
+        // Scale exactly to fill dst from src.
+        transform = transform.then(scale(scaleFactorX, scaleFactorY));
+      }
+    }
+
+    if (applyRotation != 0) {
+      // Translate back from origin centered reference to destination frame.
+      transform = transform.then(translate(dstWidth / 2.0f, dstHeight / 2.0f));
+    }
+
+    return transform;
+  }
+
+  /** Returns the transform that applies this one and then {@code next}. */
+  public Transform then(final Transform next) {
+    return new Transform(
+        next.a * a + next.b * d,
+        next.a * b + next.b * e,
+        next.a * c + next.b * f + next.c,
+        next.d * a + next.e * d,
+        next.d * b + next.e * e,
+        next.d * c + next.e * f + next.f);
+  }
+
+  /** Returns the inverse transform, or null if this one can't be inverted. */
+  public Transform invert() {
+    final float determinant = a * e - b * d;
+    if (determinant == 0) {
+      return null;
+    }
+    final float inv = 1.0f / determinant;
+    return new Transform(
+        e * inv,
+        -b * inv,
+        (b * f - c * e) * inv,
+        -d * inv,
+        a * inv,
+        (c * d - a * f) * inv);
+  }
+
+  public float mapX(final float x, final float y) {
+    return a * x + b * y + c;
+  }
+
+  public float mapY(final float x, final float y) {
+    return d * x + e * y + f;
+  }
+
+  /**
+   * Maps the corners of {@code src} and stores their bounding box in {@code dst}, which may be the
+   * same object.
+   */
+  public void mapBox(final Box src, final Box dst) {
+    final float x0 = mapX(src.left, src.top);
+    final float y0 = mapY(src.left, src.top);
+    final float x1 = mapX(src.right, src.bottom);
+    final float y1 = mapY(src.right, src.bottom);
+    if (b == 0 && d == 0 || a == 0 && e == 0) {
+      // Axis aligned, so two opposite corners are enough.
+      dst.set(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
+      return;
+    }
+    final float x2 = mapX(src.right, src.top);
+    final float y2 = mapY(src.right, src.top);
+    final float x3 = mapX(src.left, src.bottom);
+    final float y3 = mapY(src.left, src.bottom);
+    dst.set(
+        Math.min(Math.min(x0, x1), Math.min(x2, x3)),
+        Math.min(Math.min(y0, y1), Math.min(y2, y3)),
+        Math.max(Math.max(x0, x1), Math.max(x2, x3)),
+        Math.max(Math.max(y0, y1), Math.max(y2, y3)));
+  }
+
+  /** Writes the transform as the nine values of a 3x3 matrix in row-major order. */
+  public void getValues(final float[] values) {
+    values[0] = a;
+    values[1] = b;
+    values[2] = c;
+    values[3] = d;
+    values[4] = e;
+    values[5] = f;
+    values[6] = 0;
+    values[7] = 0;
+    values[8] = 1;
+  }
+}
@@ -0,0 +1,61 @@
+package org.asmita.objectdetection.core.image;
+
+import org.asmita.objectdetection.core.geometry.Transform;
+
+/**
+ * A window of a camera frame, sampled at every {@code step}th pixel in both directions. Converting
+ * only the window the model sees, at no more resolution than it takes, skips the pixels that would
+ * be cropped or scaled away right after. Immutable.
+ */
+public final class FrameRegion {
+  public final int left;
+  public final int top;
+  public final int width;
+  public final int height;
+  public final int step;
+
+  /**
+   * @param left first column of the window in the frame.
+   * @param top first row of the window in the frame.
+   * @param width columns of the window in the frame, before subsampling.
+   * @param height rows of the window in the frame, before subsampling.
+   * @param step subsampling factor, 1 for every pixel.
+   */
+  public FrameRegion(
+      final int left, final int top, final int width, final int height, final int step) {
+    if (left < 0 || top < 0 || step < 1 || width < step || height < step) {
+      throw new IllegalArgumentException(
+          "Invalid region " + width + "x" + height + "+" + left + "+" + top + " step " + step);
+    }
+    this.left = left;
+    this.top = top;
+    this.width = width;
+    this.height = height;
+    this.step = step;
+  }
+
+  /** Width of the converted region, in pixels. */
+  public int getOutputWidth() {
+    return width / step;
+  }
+
+  /** Height of the converted region, in pixels. */
+  public int getOutputHeight() {
+    return height / step;
+  }
+
+  /** Whether the region is every pixel of a {@code frameWidth x frameHeight} frame. */
+  public boolean isWhole(final int frameWidth, final int frameHeight) {
+    return left == 0 && top == 0 && width == frameWidth && height == frameHeight && step == 1;
+  }
+
+  /** Maps coordinates in the converted region to coordinates in the frame. */
+  public Transform toFrame() {
+    return Transform.scale(step, step).then(Transform.translate(left, top));
+  }
+
+  @Override
+  public String toString() {
+    return width + "x" + height + "+" + left + "+" + top + "/" + step;
+  }
+}
@@ -0,0 +1,128 @@
+package org.asmita.objectdetection.core.image;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Packs ARGB_8888 pixels into the RGB input tensor layouts of quantized and float models.
+ *
+ * <p>Pixels are converted a row at a time into an array, which is then written to the tensor in
+ * one bulk transfer. Float models normalize each channel to {@code (value - mean) / std}, looked up
+ * in a table of the 256 possible values per channel instead of computed per pixel.
+ */
+public final class InputPacker {
+  private static final int CHANNELS = 3;
+
+  private final int rowPixels;
+  private final byte[] byteRow;
+  private final float[] floatRow;
+  private final float[] red;
+  private final float[] green;
+  private final float[] blue;
+  private ByteBuffer out;
+  private FloatBuffer floatOut;
+
+  private InputPacker(final int rowPixels, final float[] mean, final float[] std) {
+    this.rowPixels = rowPixels;
+    if (mean == null) {
+      byteRow = new byte[rowPixels * CHANNELS];
+      floatRow = null;
+      red = green = blue = null;
+    } else {
+      byteRow = null;
+      floatRow = new float[rowPixels * CHANNELS];
+      red = normalizationTable(mean[0], std[0]);
+      green = normalizationTable(mean[1], std[1]);
+      blue = normalizationTable(mean[2], std[2]);
+    }
+  }
+
+  /** Writes one byte per channel, as quantized models expect. */
+  public static InputPacker quantized(final int rowPixels) {
+    return new InputPacker(rowPixels, null, null);
+  }
+
+  /**
+   * Writes one float per channel, normalized to {@code (value - mean) / std} with the same mean and
+   * standard deviation for every channel.
+   */
+  public static InputPacker normalized(final int rowPixels, final float mean, final float std) {
+    return normalized(rowPixels, new float[] {mean, mean, mean}, new float[] {std, std, std});
+  }
+
+  /**
+   * Writes one float per channel, normalized per channel.
+   *
+   * @param mean red, green and blue mean.
+   * @param std red, green and blue standard deviation.
+   */
+  public static InputPacker normalized(
+      final int rowPixels, final float[] mean, final float[] std) {
+    if (mean.length != CHANNELS || std.length != CHANNELS) {
+      throw new IllegalArgumentException("Need a mean and std for each of R, G and B");
+    }
+    return new InputPacker(rowPixels, mean, std);
+  }
+
+  private static float[] normalizationTable(final float mean, final float std) {
+    final float[] table = new float[256];
+    for (int value = 0; value < table.length; ++value) {
+      table[value] = (value - mean) / std;
+    }
+    return table;
+  }
+
+  /** Bytes the tensor takes per pixel. */
+  public int getBytesPerPixel() {
+    return floatRow != null ? CHANNELS * 4 : CHANNELS;
+  }
+
+  /**
+   * Writes the first {@code count} pixels to {@code out}, from its start. {@code out} must be in
+   * native byte order, and is best the same buffer on every call.
+   */
+  public void pack(final int[] pixels, final int count, final ByteBuffer out) {
+    if (floatRow != null) {
+      packFloat(pixels, count, out);
+    } else {
+      packQuantized(pixels, count, out);
+    }
+  }
+
+  private void packQuantized(final int[] pixels, final int count, final ByteBuffer out) {
+    out.rewind();
+    for (int start = 0; start < count; start += rowPixels) {
+      final int end = Math.min(start + rowPixels, count);
+      int o = 0;
+      for (int i = start; i < end; ++i) {
+        final int pixelValue = pixels[i];
+        byteRow[o++] = (byte) (pixelValue >> 16);
+        byteRow[o++] = (byte) (pixelValue >> 8);
+        byteRow[o++] = (byte) pixelValue;
+      }
+      out.put(byteRow, 0, o);
+    }
+  }
+
+  private void packFloat(final int[] pixels, final int count, final ByteBuffer out) {
+    if (out != this.out) {
+      // The view is kept, making a new one per call would allocate.
+      this.out = out;
+      out.rewind();
+      floatOut = out.asFloatBuffer();
+    }
+    final FloatBuffer floatOut = this.floatOut;
+    floatOut.rewind();
+    for (int start = 0; start < count; start += rowPixels) {
+      final int end = Math.min(start + rowPixels, count);
+      int o = 0;
+      for (int i = start; i < end; ++i) {
+        final int pixelValue = pixels[i];
+        floatRow[o++] = red[(pixelValue >> 16) & 0xFF];
+        floatRow[o++] = green[(pixelValue >> 8) & 0xFF];
+        floatRow[o++] = blue[pixelValue & 0xFF];
+      }
+      floatOut.put(floatRow, 0, o);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package org.asmita.objectdetection.core.image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts camera frames in the YUV 4:2:0 layouts to ARGB_8888 pixels.
+ *
+ * <p>Each layout can also be converted for just a {@link FrameRegion}, into a compact array of
+ * {@code region.getOutputWidth() * region.getOutputHeight()} pixels: only the rows and columns
+ * that are sampled are read.
+ */
+public final class YuvConverter {
+  // This value is 2 ^ 18 - 1, and is used to clamp the RGB values before their ranges
+  // are normalized to eight bits.
+  static final int kMaxChannelValue = 262143;
+
+  private YuvConverter() {}
+
+  public static void convertYUV420SPToARGB8888(byte[] input, int width, int height, int[] output) {
+    final int frameSize = width * height;
+    for (int j = 0, yp = 0; j < height; j++) {
+      int uvp = frameSize + (j >> 1) * width;
+      int u = 0;
+      int v = 0;
+
+      for (int i = 0; i < width; i++, yp++) {
+        int y = 0xff & input[yp];
+        if ((i & 1) == 0) {
+          v = 0xff & input[uvp++];
+          u = 0xff & input[uvp++];
+        }
+
+        output[yp] = YUV2RGB(y, u, v);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #convertYUV420SPToARGB8888(byte[], int, int, int[])} for a frame that is read in
+   * place, e.g. from a memory-mapped recording, starting at the buffer's current position.
+   */
+  public static void convertYUV420SPToARGB8888(
+      ByteBuffer input, int width, int height, int[] output) {
+    final int base = input.position();
+    final int frameSize = width * height;
+    for (int j = 0, yp = 0; j < height; j++) {
+      int uvp = base + frameSize + (j >> 1) * width;
+      int u = 0;
+      int v = 0;
+
+      for (int i = 0; i < width; i++, yp++) {
+        int y = 0xff & input.get(base + yp);
+        if ((i & 1) == 0) {
+          v = 0xff & input.get(uvp++);
+          u = 0xff & input.get(uvp++);
+        }
+
+        output[yp] = YUV2RGB(y, u, v);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #convertYUV420SPToARGB8888(byte[], int, int, int[])} for the pixels of {@code
+   * region} only.
+   */
+  public static void convertYUV420SPToARGB8888(
+      byte[] input, int width, int height, FrameRegion region, int[] output) {
+    final int frameSize = width * height;
+    final int step = region.step;
+    final int outputWidth = region.getOutputWidth();
+    final int outputHeight = region.getOutputHeight();
+    for (int j = 0, row = region.top, op = 0; j < outputHeight; j++, row += step) {
+      final int rowStart = row * width;
+      final int uvRowStart = frameSize + (row >> 1) * width;
+      for (int i = 0, x = region.left; i < outputWidth; i++, x += step) {
+        // V and U of the pixel pair x is in.
+        final int uvp = uvRowStart + (x & ~1);
+        output[op++] =
+            YUV2RGB(0xff & input[rowStart + x], 0xff & input[uvp + 1], 0xff & input[uvp]);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #convertYUV420SPToARGB8888(ByteBuffer, int, int, int[])} for the pixels of
+   * {@code region} only.
+   */
+  public static void convertYUV420SPToARGB8888(
+      ByteBuffer input, int width, int height, FrameRegion region, int[] output) {
+    final int base = input.position();
+    final int frameSize = width * height;
+    final int step = region.step;
+    final int outputWidth = region.getOutputWidth();
+    final int outputHeight = region.getOutputHeight();
+    for (int j = 0, row = region.top, op = 0; j < outputHeight; j++, row += step) {
+      final int rowStart = base + row * width;
+      final int uvRowStart = base + frameSize + (row >> 1) * width;
+      for (int i = 0, x = region.left; i < outputWidth; i++, x += step) {
+        final int uvp = uvRowStart + (x & ~1);
+        output[op++] =
+            YUV2RGB(
+                0xff & input.get(rowStart + x), 0xff & input.get(uvp + 1), 0xff & input.get(uvp));
+      }
+    }
+  }
+
+  private static int YUV2RGB(int y, int u, int v) {
+    // Adjust and check YUV values
+    y = (y - 16) < 0 ? 0 : (y - 16);
+    u -= 128;
+    v -= 128;
+
+    // This is the floating point equivalent. We do the conversion in integer
+    // because some Android devices do not have floating point in hardware.
+    // nR = (int)(1.164 * nY + 2.018 * nU);
+    // nG = (int)(1.164 * nY - 0.813 * nV - 0.391 * nU);
+    // nB = (int)(1.164 * nY + 1.596 * nV);
+    int y1192 = 1192 * y;
+    int r = (y1192 + 1634 * v);
+    int g = (y1192 - 833 * v - 400 * u);
+    int b = (y1192 + 2066 * u);
+
+    // Clipping RGB values to be inside boundaries [ 0 , kMaxChannelValue ]
+    r = r > kMaxChannelValue ? kMaxChannelValue : (r < 0 ? 0 : r);
+    g = g > kMaxChannelValue ? kMaxChannelValue : (g < 0 ? 0 : g);
+    b = b > kMaxChannelValue ? kMaxChannelValue : (b < 0 ? 0 : b);
+
+    return 0xff000000 | ((r << 6) & 0xff0000) | ((g >> 2) & 0xff00) | ((b >> 10) & 0xff);
+  }
+
+  public static void convertYUV420ToARGB8888(
+      byte[] yData,
+      byte[] uData,
+      byte[] vData,
+      int width,
+      int height,
+      int yRowStride,
+      int uvRowStride,
+      int uvPixelStride,
+      int[] out) {
+    int yp = 0;
+    for (int j = 0; j < height; j++) {
+      int pY = yRowStride * j;
+      int pUV = uvRowStride * (j >> 1);
+
+      for (int i = 0; i < width; i++) {
+        int uv_offset = pUV + (i >> 1) * uvPixelStride;
+
+        out[yp++] = YUV2RGB(0xff & yData[pY + i], 0xff & uData[uv_offset], 0xff & vData[uv_offset]);
+      }
+    }
+  }
+  /**
+   * Same as {@link #convertYUV420ToARGB8888(byte[], byte[], byte[], int, int, int, int, int,
+   * int[])} for the pixels of {@code region} only.
+   */
+  public static void convertYUV420ToARGB8888(
+      byte[] yData,
+      byte[] uData,
+      byte[] vData,
+      int yRowStride,
+      int uvRowStride,
+      int uvPixelStride,
+      FrameRegion region,
+      int[] out) {
+    final int step = region.step;
+    final int outputWidth = region.getOutputWidth();
+    final int outputHeight = region.getOutputHeight();
+    int yp = 0;
+    for (int j = 0, row = region.top; j < outputHeight; j++, row += step) {
+      int pY = yRowStride * row;
+      int pUV = uvRowStride * (row >> 1);
+
+      for (int i = 0, x = region.left; i < outputWidth; i++, x += step) {
+        int uv_offset = pUV + (x >> 1) * uvPixelStride;
+
+        out[yp++] = YUV2RGB(0xff & yData[pY + x], 0xff & uData[uv_offset], 0xff & vData[uv_offset]);
+      }
+    }
+  }
+}
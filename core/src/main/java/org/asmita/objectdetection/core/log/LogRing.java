@@ -0,0 +1,227 @@
+package org.asmita.objectdetection.core.log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the most recent log records in memory, unformatted, so that logging on the hot path costs a
+ * few array writes and no garbage, while the last minutes of logs can still be written out after an
+ * incident.
+ *
+ * <p>Records have a fixed size: a header word (level, argument count and kinds), the time, and up
+ * to {@link #MAX_ARGS} arguments, stored as raw bits for primitives and as references for objects
+ * in a parallel array. The format string and message prefix are kept by reference as well, so
+ * nothing is formatted until {@link #dump}.
+ */
+public class LogRing {
+  public static final int MAX_ARGS = 4;
+
+  private static final int WORDS_PER_RECORD = 2 + MAX_ARGS;
+  // Prefix, format and thread name, then the object arguments.
+  private static final int REFS_PER_RECORD = 3 + MAX_ARGS;
+  private static final int KIND_LONG = 0;
+  private static final int KIND_DOUBLE = 1;
+  private static final int KIND_OBJECT = 2;
+  private static final int KIND_BITS = 2;
+  private static final String LEVEL_LETTERS = "??VDIWEA";
+
+  private final int capacity;
+  private final long[] words;
+  private final Object[] refs;
+  private final LongSupplier clockNs;
+  private long written = 0;
+
+  /**
+   * @param capacity number of records kept, rounded up to a power of two.
+   * @param clockNs the clock records are stamped with.
+   */
+  public LogRing(final int capacity, final LongSupplier clockNs) {
+    this.capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.words = new long[this.capacity * WORDS_PER_RECORD];
+    this.refs = new Object[this.capacity * REFS_PER_RECORD];
+    this.clockNs = clockNs;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public synchronized void add(final int level, final String prefix, final String format) {
+    claim(level, prefix, format, 0, 0);
+  }
+
+  public synchronized void add(
+      final int level, final String prefix, final String format, final long a) {
+    final int slot = claim(level, prefix, format, 1, KIND_LONG);
+    words[slot * WORDS_PER_RECORD + 2] = a;
+  }
+
+  public synchronized void add(
+      final int level, final String prefix, final String format, final long a, final long b) {
+    final int slot = claim(level, prefix, format, 2, KIND_LONG | KIND_LONG << KIND_BITS);
+    final int w = slot * WORDS_PER_RECORD;
+    words[w + 2] = a;
+    words[w + 3] = b;
+  }
+
+  public synchronized void add(
+      final int level,
+      final String prefix,
+      final String format,
+      final long a,
+      final long b,
+      final long c) {
+    final int slot =
+        claim(
+            level,
+            prefix,
+            format,
+            3,
+            KIND_LONG | KIND_LONG << KIND_BITS | KIND_LONG << 2 * KIND_BITS);
+    final int w = slot * WORDS_PER_RECORD;
+    words[w + 2] = a;
+    words[w + 3] = b;
+    words[w + 4] = c;
+  }
+
+  public synchronized void add(
+      final int level, final String prefix, final String format, final double a) {
+    final int slot = claim(level, prefix, format, 1, KIND_DOUBLE);
+    words[slot * WORDS_PER_RECORD + 2] = Double.doubleToRawLongBits(a);
+  }
+
+  public synchronized void add(
+      final int level, final String prefix, final String format, final Object a) {
+    final int slot = claim(level, prefix, format, 1, KIND_OBJECT);
+    refs[slot * REFS_PER_RECORD + 3] = a;
+  }
+
+  public synchronized void add(
+      final int level, final String prefix, final String format, final Object a, final Object b) {
+    final int slot = claim(level, prefix, format, 2, KIND_OBJECT | KIND_OBJECT << KIND_BITS);
+    final int r = slot * REFS_PER_RECORD;
+    refs[r + 3] = a;
+    refs[r + 4] = b;
+  }
+
+  /**
+   * Records a message with arbitrary arguments. Messages with more than {@link #MAX_ARGS}
+   * arguments are formatted right away.
+   */
+  public synchronized void add(
+      final int level, final String prefix, final String format, final Object[] args) {
+    if (args.length > MAX_ARGS) {
+      claim(level, prefix, formatOrRaw(format, args), 0, 0);
+      return;
+    }
+    int kinds = 0;
+    for (int i = 0; i < args.length; ++i) {
+      kinds |= KIND_OBJECT << i * KIND_BITS;
+    }
+    final int slot = claim(level, prefix, format, args.length, kinds);
+    System.arraycopy(args, 0, refs, slot * REFS_PER_RECORD + 3, args.length);
+  }
+
+  /** Fills in the fixed part of the next record and returns its slot. */
+  private int claim(
+      final int level,
+      final String prefix,
+      final String format,
+      final int argCount,
+      final int kinds) {
+    final int slot = (int) (written++ & (capacity - 1));
+    final int w = slot * WORDS_PER_RECORD;
+    final int r = slot * REFS_PER_RECORD;
+    words[w] = (long) kinds << 16 | argCount << 8 | level;
+    words[w + 1] = clockNs.getAsLong();
+    refs[r] = prefix;
+    refs[r + 1] = format;
+    refs[r + 2] = Thread.currentThread().getName();
+    // Drop references to the arguments of the record this one replaces.
+    for (int i = 0; i < MAX_ARGS; ++i) {
+      refs[r + 3 + i] = null;
+    }
+    return slot;
+  }
+
+  /** Forgets all records. */
+  public synchronized void clear() {
+    written = 0;
+    for (int i = 0; i < refs.length; ++i) {
+      refs[i] = null;
+    }
+  }
+
+  /**
+   * Formats the records, oldest first, one line each: seconds on the ring's clock, thread, level
+   * and message.
+   */
+  public synchronized void dump(final PrintWriter out) {
+    final long count = Math.min(written, capacity);
+    final Object[] args = new Object[MAX_ARGS];
+    for (long i = written - count; i < written; ++i) {
+      final int slot = (int) (i & (capacity - 1));
+      final int w = slot * WORDS_PER_RECORD;
+      final int r = slot * REFS_PER_RECORD;
+      final long header = words[w];
+      final int level = (int) (header & 0xff);
+      final int argCount = (int) (header >>> 8 & 0xff);
+      final int kinds = (int) (header >>> 16);
+      for (int a = 0; a < argCount; ++a) {
+        final long bits = words[w + 2 + a];
+        switch (kinds >>> a * KIND_BITS & ((1 << KIND_BITS) - 1)) {
+          case KIND_LONG:
+            args[a] = bits;
+            break;
+          case KIND_DOUBLE:
+            args[a] = Double.longBitsToDouble(bits);
+            break;
+          default:
+            args[a] = refs[r + 3 + a];
+            break;
+        }
+      }
+      final Object[] recordArgs = new Object[argCount];
+      System.arraycopy(args, 0, recordArgs, 0, argCount);
+
+      final long timeNs = words[w + 1];
+      out.print(
+          String.format(
+              Locale.US,
+              "%d.%06d %s %c ",
+              timeNs / 1000000000,
+              timeNs / 1000 % 1000000,
+              refs[r + 2],
+              level < LEVEL_LETTERS.length() ? LEVEL_LETTERS.charAt(level) : '?'));
+      out.print(refs[r]);
+      out.println(formatOrRaw((String) refs[r + 1], recordArgs));
+    }
+  }
+
+  /** Replaces {@code file} with the formatted records. */
+  public void dump(final File file) throws IOException {
+    try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+      dump(out);
+    }
+  }
+
+  private static String formatOrRaw(final String format, final Object[] args) {
+    if (args.length == 0) {
+      return format;
+    }
+    try {
+      return String.format(format, args);
+    } catch (final IllegalFormatException e) {
+      final StringBuilder sb = new StringBuilder(format);
+      for (final Object arg : args) {
+        sb.append(' ').append(arg);
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package org.asmita.objectdetection.core.metrics;
+
+import java.io.PrintWriter;
+
+/**
+ * Histogram of durations in microseconds with a fixed set of log-linear buckets: every power of two
+ * is split into 16 buckets, so percentiles are exact to within about 6% up to half an hour.
+ * Recording never allocates.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 31;
+  private static final long MAX_TRACKABLE_US = (1L << MAX_EXPONENT) - 1;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKETS];
+  private long count;
+  private long sumUs;
+  private long maxUs;
+
+  /** Records one duration. Negative durations count as zero. */
+  public synchronized void record(final long valueUs) {
+    final long value = Math.max(0, valueUs);
+    ++counts[bucketOf(Math.min(value, MAX_TRACKABLE_US))];
+    ++count;
+    sumUs += value;
+    maxUs = Math.max(maxUs, value);
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getMaxUs() {
+    return maxUs;
+  }
+
+  public synchronized long getMeanUs() {
+    return count > 0 ? sumUs / count : 0;
+  }
+
+  /**
+   * Returns the duration that {@code percentile} percent of the recorded durations are at or
+   * below, rounded up to the end of its bucket.
+   */
+  public synchronized long getPercentileUs(final double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; ++i) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), maxUs);
+      }
+    }
+    return maxUs;
+  }
+
+  public synchronized void reset() {
+    for (int i = 0; i < BUCKETS; ++i) {
+      counts[i] = 0;
+    }
+    count = 0;
+    sumUs = 0;
+    maxUs = 0;
+  }
+
+  /** Appends e.g. "n=120 mean=31.2ms p50=30.1ms p90=40.0ms p99=52.3ms max=61.0ms". */
+  public synchronized void appendSummary(final StringBuilder sb) {
+    sb.append("n=").append(count);
+    appendMs(sb, " mean=", getMeanUs());
+    appendMs(sb, " p50=", getPercentileUs(50));
+    appendMs(sb, " p90=", getPercentileUs(90));
+    appendMs(sb, " p99=", getPercentileUs(99));
+    appendMs(sb, " max=", maxUs);
+  }
+
+  /** Writes one "{@code prefix},bucket upper bound in us,count" line per non-empty bucket. */
+  public synchronized void writeBuckets(final PrintWriter out, final String prefix) {
+    for (int i = 0; i < BUCKETS; ++i) {
+      if (counts[i] > 0) {
+        out.print(prefix);
+        out.print(',');
+        out.print(highestValueIn(i));
+        out.print(',');
+        out.println(counts[i]);
+      }
+    }
+  }
+
+  private static void appendMs(final StringBuilder sb, final String label, final long us) {
+    sb.append(label).append(us / 1000).append('.').append(us / 100 % 10).append("ms");
+  }
+
+  private static int bucketOf(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  private static long highestValueIn(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,202 @@
+package org.asmita.objectdetection.core.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import org.asmita.objectdetection.core.trace.TraceRecorder;
+
+/**
+ * Latency of every pipeline stage, the age of the frame when each stage finished, dropped frames
+ * and garbage collections. Cheap enough to stay on: recording is a clock read and a few array
+ * updates.
+ *
+ * <p>{@link Stage#CONVERSION} and {@link Stage#CROP} run on the camera thread and are recorded
+ * with {@link #record}. The remaining stages run one after another on the processing thread,
+ * between {@link #beginFrame} and the {@link #endStage} of {@link Stage#ANNOUNCE}.
+ *
+ * <p>With a {@link TraceRecorder} set, every recorded stage also becomes a span of the trace.
+ */
+public class PipelineMetrics {
+  public enum Stage {
+    /** YUV to RGB conversion of the camera frame. */
+    CONVERSION,
+    /** Scaling and rotating the frame into the detector input. */
+    CROP,
+    /** Packing the detector input into the input tensor. */
+    PREPROCESS,
+    /** Running the model. */
+    INVOKE,
+    /** Decoding the model output, filtering and mapping detections. */
+    POSTPROCESS,
+    TRACK,
+    /** Deciding what to tell the user and handing it to speech and haptics. */
+    ANNOUNCE
+  }
+
+  public enum Drop {
+    /** A camera frame arrived while the previous one was still being converted. */
+    CAMERA_BUSY,
+    /** A converted frame arrived while the detector was still busy with an earlier one. */
+    DETECTOR_BUSY,
+    /** A frame arrived before the detector was set up. */
+    NOT_READY
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+  private static final Drop[] DROPS = Drop.values();
+
+  private final LongSupplier clockNs;
+  private final LongSupplier gcCount;
+  private final LatencyHistogram[] latency = new LatencyHistogram[STAGES.length];
+  private final LatencyHistogram[] frameAge = new LatencyHistogram[STAGES.length];
+  private final AtomicLongArray drops = new AtomicLongArray(DROPS.length);
+  private volatile TraceRecorder tracer;
+  // Only touched on the processing thread.
+  private long frameCaptureNs;
+  private long stageStartNs;
+  private long lastGcCount;
+  private volatile long frames;
+  private volatile long framesWithGc;
+  private volatile long startGcCount;
+
+  /**
+   * @param clockNs the clock frame capture times are taken with.
+   * @param gcCount garbage collections since the process started, or a negative value if the
+   *     runtime doesn't tell.
+   */
+  public PipelineMetrics(final LongSupplier clockNs, final LongSupplier gcCount) {
+    this.clockNs = clockNs;
+    this.gcCount = gcCount;
+    for (int i = 0; i < STAGES.length; ++i) {
+      latency[i] = new LatencyHistogram();
+      frameAge[i] = new LatencyHistogram();
+    }
+    reset();
+  }
+
+  public void setTracer(final TraceRecorder tracer) {
+    this.tracer = tracer;
+  }
+
+  public long nowNs() {
+    return clockNs.getAsLong();
+  }
+
+  /**
+   * Records a stage that started at {@code startNs} and finished now, for a frame captured at
+   * {@code captureNs}. Returns now, the start of whatever follows.
+   */
+  public long record(final Stage stage, final long startNs, final long captureNs) {
+    final long nowNs = clockNs.getAsLong();
+    latency[stage.ordinal()].record((nowNs - startNs) / 1000);
+    frameAge[stage.ordinal()].record((nowNs - captureNs) / 1000);
+    final TraceRecorder tracer = this.tracer;
+    if (tracer != null) {
+      tracer.complete(stage.name(), startNs, nowNs);
+    }
+    return nowNs;
+  }
+
+  /** Starts the processing thread stages of a frame captured at {@code captureNs}. */
+  public void beginFrame(final long captureNs) {
+    frameCaptureNs = captureNs;
+    ++frames;
+    final long gcs = gcCount.getAsLong();
+    if (gcs > lastGcCount && lastGcCount >= 0) {
+      ++framesWithGc;
+    }
+    lastGcCount = gcs;
+    stageStartNs = clockNs.getAsLong();
+  }
+
+  /** Ends a processing thread stage; the next one starts now. */
+  public void endStage(final Stage stage) {
+    stageStartNs = record(stage, stageStartNs, frameCaptureNs);
+  }
+
+  public void countDrop(final Drop drop) {
+    drops.incrementAndGet(drop.ordinal());
+    final TraceRecorder tracer = this.tracer;
+    if (tracer != null) {
+      tracer.instant(drop.name());
+    }
+  }
+
+  public LatencyHistogram getLatency(final Stage stage) {
+    return latency[stage.ordinal()];
+  }
+
+  public LatencyHistogram getFrameAge(final Stage stage) {
+    return frameAge[stage.ordinal()];
+  }
+
+  /** Forgets everything recorded so far. */
+  public void reset() {
+    for (int i = 0; i < STAGES.length; ++i) {
+      latency[i].reset();
+      frameAge[i].reset();
+    }
+    for (int i = 0; i < DROPS.length; ++i) {
+      drops.set(i, 0);
+    }
+    frames = 0;
+    framesWithGc = 0;
+    startGcCount = gcCount.getAsLong();
+    lastGcCount = startGcCount;
+  }
+
+  /** Returns the latency and frame age percentiles of one stage on a single line. */
+  public String getStageString(final Stage stage) {
+    final StringBuilder sb = new StringBuilder();
+    appendStage(sb, stage);
+    return sb.toString();
+  }
+
+  /** Returns percentiles of every stage, the drop counters and the GC counts. */
+  public String getStatString() {
+    final StringBuilder sb = new StringBuilder();
+    for (final Stage stage : STAGES) {
+      appendStage(sb, stage);
+      sb.append('\n');
+    }
+    sb.append("frames=").append(frames);
+    for (final Drop drop : DROPS) {
+      sb.append(" dropped.").append(drop).append('=').append(drops.get(drop.ordinal()));
+    }
+    final long gcs = gcCount.getAsLong();
+    if (gcs >= 0 && startGcCount >= 0) {
+      sb.append(" gc=").append(gcs - startGcCount).append(" framesWithGc=").append(framesWithGc);
+    }
+    sb.append('\n');
+    return sb.toString();
+  }
+
+  /**
+   * Writes {@link #getStatString()} followed by the raw histograms as
+   * "stage,latency|age,bucket upper bound in us,count" lines, replacing {@code file}.
+   */
+  public void dump(final File file) throws IOException {
+    try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+      out.print(getStatString());
+      out.println();
+      out.println("stage,kind,upper_us,count");
+      for (final Stage stage : STAGES) {
+        latency[stage.ordinal()].writeBuckets(out, stage + ",latency");
+        frameAge[stage.ordinal()].writeBuckets(out, stage + ",age");
+      }
+    }
+  }
+
+  private void appendStage(final StringBuilder sb, final Stage stage) {
+    sb.append(stage).append(": ");
+    latency[stage.ordinal()].appendSummary(sb);
+    sb.append(" | age p50=");
+    final LatencyHistogram age = frameAge[stage.ordinal()];
+    final long p50 = age.getPercentileUs(50);
+    final long p99 = age.getPercentileUs(99);
+    sb.append(p50 / 1000).append("ms p99=").append(p99 / 1000).append("ms");
+  }
+}
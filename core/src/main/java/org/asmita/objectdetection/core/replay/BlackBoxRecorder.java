@@ -0,0 +1,348 @@
+package org.asmita.objectdetection.core.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+
+/**
+ * Keeps the last few seconds of what the pipeline saw and did, so that there is something to look
+ * at when the user reports a missed warning or the app crashes.
+ *
+ * <p>Each processed frame is kept as its luma, subsampled to fit {@code maxWidth x maxHeight},
+ * along with the detections and tracks found in it. Spoken utterances are kept alongside. All of
+ * it lives in slots allocated up front, so recording a frame is a subsampled copy and recording
+ * its objects copies a few numbers and references; nothing is allocated or compressed on the
+ * pipeline's threads. {@link #flush} compresses and writes the ring, and should run on a
+ * low-priority thread. It copies one slot at a time out of the ring, so recording goes on
+ * meanwhile.
+ *
+ * <p>Every flush appends a block to the file, so earlier reports are kept. A block is big endian,
+ * as written by {@link DataOutputStream}: magic {@code "BBOX"}, version, wall clock time of the
+ * flush in milliseconds, the reason as a UTF string, then the length and bytes of a deflated
+ * payload. The payload holds, for each frame, a 1 byte followed by frame number, capture time in
+ * nanoseconds, luma width, height and bytes, the detections (count, then title, confidence, left,
+ * top, right, bottom) and the tracks (count, then id, title, confidence, left, top, right, bottom,
+ * time to collision in seconds), all in frame coordinates. A 0 byte ends the frames, followed by
+ * the count of utterances and the time, priority and text of each.
+ */
+public class BlackBoxRecorder {
+  public static final int MAGIC = 0x42424f58; // "BBOX"
+  public static final int VERSION = 1;
+  // Detections and tracks kept per frame.
+  private static final int MAX_OBJECTS = 16;
+  private static final int MAX_UTTERANCES = 64;
+  private static final byte FRAME_MARKER = 1;
+  private static final byte END_MARKER = 0;
+
+  private static class FrameSlot {
+    final byte[] luma;
+    int width;
+    int height;
+    long sequence = -1;
+    long frameNumber;
+    long timestampNs;
+    int detectionCount;
+    final String[] detectionTitles = new String[MAX_OBJECTS];
+    final float[] detectionConfidences = new float[MAX_OBJECTS];
+    final float[] detectionBoxes = new float[4 * MAX_OBJECTS];
+    int trackCount;
+    final int[] trackIds = new int[MAX_OBJECTS];
+    final String[] trackTitles = new String[MAX_OBJECTS];
+    final float[] trackConfidences = new float[MAX_OBJECTS];
+    final float[] trackBoxes = new float[4 * MAX_OBJECTS];
+    final float[] timesToCollision = new float[MAX_OBJECTS];
+
+    FrameSlot(final int lumaSize) {
+      luma = new byte[lumaSize];
+    }
+
+    void copyTo(final FrameSlot other) {
+      System.arraycopy(luma, 0, other.luma, 0, width * height);
+      other.width = width;
+      other.height = height;
+      other.sequence = sequence;
+      other.frameNumber = frameNumber;
+      other.timestampNs = timestampNs;
+      other.detectionCount = detectionCount;
+      System.arraycopy(detectionTitles, 0, other.detectionTitles, 0, detectionCount);
+      System.arraycopy(detectionConfidences, 0, other.detectionConfidences, 0, detectionCount);
+      System.arraycopy(detectionBoxes, 0, other.detectionBoxes, 0, 4 * detectionCount);
+      other.trackCount = trackCount;
+      System.arraycopy(trackIds, 0, other.trackIds, 0, trackCount);
+      System.arraycopy(trackTitles, 0, other.trackTitles, 0, trackCount);
+      System.arraycopy(trackConfidences, 0, other.trackConfidences, 0, trackCount);
+      System.arraycopy(trackBoxes, 0, other.trackBoxes, 0, 4 * trackCount);
+      System.arraycopy(timesToCollision, 0, other.timesToCollision, 0, trackCount);
+    }
+  }
+
+  private final int maxWidth;
+  private final int maxHeight;
+  private final long windowNs;
+  private final FrameSlot[] slots;
+  private final long[] utteranceTimestampsNs = new long[MAX_UTTERANCES];
+  private final String[] utterancePriorities = new String[MAX_UTTERANCES];
+  private final String[] utteranceTexts = new String[MAX_UTTERANCES];
+  private final Object flushLock = new Object();
+  private long framesWritten = 0;
+  private long utterancesWritten = 0;
+
+  /**
+   * @param maxWidth largest width of the kept luma; frames are subsampled by a whole factor.
+   * @param maxHeight largest height of the kept luma.
+   * @param frameCount frames kept, which bounds the memory used to about {@code frameCount *
+   *     maxWidth * maxHeight} bytes.
+   * @param windowNs how far back from the newest frame a flush reaches.
+   */
+  public BlackBoxRecorder(
+      final int maxWidth, final int maxHeight, final int frameCount, final long windowNs) {
+    this.maxWidth = maxWidth;
+    this.maxHeight = maxHeight;
+    this.windowNs = windowNs;
+    this.slots = new FrameSlot[frameCount];
+    for (int i = 0; i < frameCount; ++i) {
+      slots[i] = new FrameSlot(maxWidth * maxHeight);
+    }
+  }
+
+  /**
+   * Records the luma of {@code frame}, black where it wasn't converted. Its objects follow with
+   * {@link #setObjects}.
+   */
+  public synchronized void addFrame(final Frame frame) {
+    final int[] pixels = frame.getPixels();
+    final int step =
+        Math.max(
+            (frame.width + maxWidth - 1) / maxWidth, (frame.height + maxHeight - 1) / maxHeight);
+    final FrameSlot slot = slots[(int) (framesWritten % slots.length)];
+    slot.width = frame.width / step;
+    slot.height = frame.height / step;
+    final byte[] luma = slot.luma;
+    final FrameRegion region = frame.getRegion();
+    int out = 0;
+    if (region == null) {
+      for (int y = 0; y < slot.height; ++y) {
+        int in = y * step * frame.width;
+        for (int x = 0; x < slot.width; ++x, in += step) {
+          luma[out++] = luma(pixels[in]);
+        }
+      }
+    } else {
+      // Only a region was converted. Samples outside it are black, so that the recording stays
+      // aligned with the objects, which are in frame coordinates.
+      final int pixelsWidth = region.getOutputWidth();
+      final int pixelsHeight = region.getOutputHeight();
+      for (int y = 0; y < slot.height; ++y) {
+        final int regionY = y * step - region.top;
+        final int row = regionY >= 0 ? regionY / region.step : pixelsHeight;
+        for (int x = 0; x < slot.width; ++x) {
+          final int regionX = x * step - region.left;
+          final int column = regionX >= 0 ? regionX / region.step : pixelsWidth;
+          luma[out++] =
+              row < pixelsHeight && column < pixelsWidth
+                  ? luma(pixels[row * pixelsWidth + column])
+                  : 0;
+        }
+      }
+    }
+    slot.sequence = framesWritten++;
+    slot.frameNumber = frame.getFrameNumber();
+    slot.timestampNs = frame.getTimestampNs();
+    slot.detectionCount = 0;
+    slot.trackCount = 0;
+  }
+
+  /** BT.601 luma in 8-bit fixed point. */
+  private static byte luma(final int argb) {
+    return (byte)
+        ((77 * ((argb >> 16) & 0xff) + 150 * ((argb >> 8) & 0xff) + 29 * (argb & 0xff)) >> 8);
+  }
+
+  /**
+   * Records what was found in the frame numbered {@code frameNumber}, if it is still among the
+   * most recent ones.
+   *
+   * @param detections detections in frame coordinates.
+   * @param tracks the tracker's tracks after the frame.
+   */
+  public synchronized void setObjects(
+      final long frameNumber,
+      final List<Detection> detections,
+      final List<ObjectTracker.Track> tracks) {
+    final FrameSlot slot = findSlot(frameNumber);
+    if (slot == null) {
+      return;
+    }
+    slot.detectionCount = Math.min(detections.size(), MAX_OBJECTS);
+    for (int i = 0; i < slot.detectionCount; ++i) {
+      final Detection detection = detections.get(i);
+      slot.detectionTitles[i] = detection.title;
+      slot.detectionConfidences[i] = detection.confidence;
+      putBox(detection.location, slot.detectionBoxes, i);
+    }
+    slot.trackCount = Math.min(tracks.size(), MAX_OBJECTS);
+    for (int i = 0; i < slot.trackCount; ++i) {
+      final ObjectTracker.Track track = tracks.get(i);
+      slot.trackIds[i] = track.id;
+      slot.trackTitles[i] = track.title;
+      slot.trackConfidences[i] = track.confidence;
+      putBox(track.location, slot.trackBoxes, i);
+      slot.timesToCollision[i] = track.timeToCollisionSec;
+    }
+  }
+
+  /** Records that {@code text} started playing at {@code timestampNs}, on the frames' clock. */
+  public synchronized void addUtterance(
+      final long timestampNs, final String priority, final String text) {
+    final int i = (int) (utterancesWritten++ % MAX_UTTERANCES);
+    utteranceTimestampsNs[i] = timestampNs;
+    utterancePriorities[i] = priority;
+    utteranceTexts[i] = text;
+  }
+
+  private FrameSlot findSlot(final long frameNumber) {
+    // Objects arrive shortly after their frame, so only the newest few slots are searched.
+    final long oldest = Math.max(0, framesWritten - Math.min(slots.length, 4));
+    for (long sequence = framesWritten - 1; sequence >= oldest; --sequence) {
+      final FrameSlot slot = slots[(int) (sequence % slots.length)];
+      if (slot.frameNumber == frameNumber) {
+        return slot;
+      }
+    }
+    return null;
+  }
+
+  private static void putBox(final Box box, final float[] boxes, final int i) {
+    boxes[4 * i] = box.left;
+    boxes[4 * i + 1] = box.top;
+    boxes[4 * i + 2] = box.right;
+    boxes[4 * i + 3] = box.bottom;
+  }
+
+  /**
+   * Compresses the last {@code windowNs} of frames and utterances and appends them as a block to
+   * {@code file}. Blocking; call it on a low-priority thread, or on the crashing thread from an
+   * uncaught exception handler.
+   *
+   * @return the number of frames written.
+   */
+  public int flush(final File file, final String reason) throws IOException {
+    synchronized (flushLock) {
+      final long firstSequence;
+      final long endSequence;
+      final long newestTimestampNs;
+      final long[] utteranceTimestampsNs;
+      final String[] utterancePriorities;
+      final String[] utteranceTexts;
+      final long utteranceEnd;
+      synchronized (this) {
+        endSequence = framesWritten;
+        firstSequence = Math.max(0, framesWritten - slots.length);
+        newestTimestampNs =
+            framesWritten > 0
+                ? slots[(int) ((framesWritten - 1) % slots.length)].timestampNs
+                : Long.MIN_VALUE;
+        utteranceTimestampsNs = this.utteranceTimestampsNs.clone();
+        utterancePriorities = this.utterancePriorities.clone();
+        utteranceTexts = this.utteranceTexts.clone();
+        utteranceEnd = utterancesWritten;
+      }
+      final long startNs = newestTimestampNs - windowNs;
+
+      final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      int frameCount = 0;
+      try (final DataOutputStream out =
+          new DataOutputStream(new DeflaterOutputStream(compressed, deflater, 1 << 16))) {
+        final FrameSlot copy = new FrameSlot(maxWidth * maxHeight);
+        for (long sequence = firstSequence; sequence < endSequence; ++sequence) {
+          synchronized (this) {
+            final FrameSlot slot = slots[(int) (sequence % slots.length)];
+            // Overwritten since the flush started.
+            if (slot.sequence != sequence) {
+              continue;
+            }
+            slot.copyTo(copy);
+          }
+          if (copy.timestampNs < startNs) {
+            continue;
+          }
+          writeFrame(out, copy);
+          ++frameCount;
+        }
+        out.writeByte(END_MARKER);
+
+        final long firstUtterance = Math.max(0, utteranceEnd - MAX_UTTERANCES);
+        int utteranceCount = 0;
+        for (long u = firstUtterance; u < utteranceEnd; ++u) {
+          if (utteranceTimestampsNs[(int) (u % MAX_UTTERANCES)] >= startNs) {
+            ++utteranceCount;
+          }
+        }
+        out.writeInt(utteranceCount);
+        for (long u = firstUtterance; u < utteranceEnd; ++u) {
+          final int i = (int) (u % MAX_UTTERANCES);
+          if (utteranceTimestampsNs[i] >= startNs) {
+            out.writeLong(utteranceTimestampsNs[i]);
+            out.writeUTF(String.valueOf(utterancePriorities[i]));
+            out.writeUTF(String.valueOf(utteranceTexts[i]));
+          }
+        }
+      } finally {
+        deflater.end();
+      }
+
+      try (final DataOutputStream out =
+          new DataOutputStream(new FileOutputStream(file, true))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeUTF(reason);
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+      }
+      return frameCount;
+    }
+  }
+
+  private static void writeFrame(final DataOutputStream out, final FrameSlot slot)
+      throws IOException {
+    out.writeByte(FRAME_MARKER);
+    out.writeLong(slot.frameNumber);
+    out.writeLong(slot.timestampNs);
+    out.writeInt(slot.width);
+    out.writeInt(slot.height);
+    out.write(slot.luma, 0, slot.width * slot.height);
+    out.writeInt(slot.detectionCount);
+    for (int i = 0; i < slot.detectionCount; ++i) {
+      out.writeUTF(String.valueOf(slot.detectionTitles[i]));
+      out.writeFloat(slot.detectionConfidences[i]);
+      writeBox(out, slot.detectionBoxes, i);
+    }
+    out.writeInt(slot.trackCount);
+    for (int i = 0; i < slot.trackCount; ++i) {
+      out.writeInt(slot.trackIds[i]);
+      out.writeUTF(String.valueOf(slot.trackTitles[i]));
+      out.writeFloat(slot.trackConfidences[i]);
+      writeBox(out, slot.trackBoxes, i);
+      out.writeFloat(slot.timesToCollision[i]);
+    }
+  }
+
+  private static void writeBox(final DataOutputStream out, final float[] boxes, final int i)
+      throws IOException {
+    for (int j = 4 * i; j < 4 * i + 4; ++j) {
+      out.writeFloat(boxes[j]);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package org.asmita.objectdetection.core.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A recorded sequence of NV21 (YUV420 semi-planar) frames with their capture timestamps, memory
+ * mapped so that frames are read straight from the page cache without copying.
+ *
+ * <p>The file is little endian: a header of magic {@code "YUVR"}, version, width, height,
+ * rotation (degrees the sensor is turned from upright) and frame count as 32-bit ints, then the
+ * frames back to back, then one 64-bit capture timestamp in nanoseconds per frame.
+ */
+public class FrameRecording implements Closeable {
+  static final int MAGIC = 0x52565559; // "YUVR" read as a little endian int.
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 6 * 4;
+
+  private final RandomAccessFile file;
+  private final MappedByteBuffer buffer;
+  private final int width;
+  private final int height;
+  private final int rotation;
+  private final int frameCount;
+  private final int frameSize;
+  private final int timestampsOffset;
+
+  private FrameRecording(final RandomAccessFile file, final MappedByteBuffer buffer)
+      throws IOException {
+    this.file = file;
+    this.buffer = buffer;
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a frame recording");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported frame recording version " + buffer.getInt(4));
+    }
+    width = buffer.getInt(8);
+    height = buffer.getInt(12);
+    rotation = buffer.getInt(16);
+    frameCount = buffer.getInt(20);
+    frameSize = nv21Size(width, height);
+    timestampsOffset = HEADER_SIZE + frameSize * frameCount;
+    if ((long) HEADER_SIZE + (long) frameSize * frameCount + 8L * frameCount
+        > buffer.capacity()) {
+      throw new IOException("Frame recording is truncated");
+    }
+  }
+
+  /** Maps {@code file} for reading. */
+  public static FrameRecording open(final File file) throws IOException {
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      final MappedByteBuffer buffer =
+          randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+      return new FrameRecording(randomAccessFile, buffer);
+    } catch (final IOException | RuntimeException e) {
+      randomAccessFile.close();
+      throw e;
+    }
+  }
+
+  /** Size in bytes of an NV21 frame, with chroma planes rounded up for odd dimensions. */
+  public static int nv21Size(final int width, final int height) {
+    return width * height + ((width + 1) / 2) * ((height + 1) / 2) * 2;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getRotation() {
+    return rotation;
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  public long getTimestampNs(final int index) {
+    return buffer.getLong(timestampsOffset + 8 * index);
+  }
+
+  /**
+   * Returns a read-only view of frame {@code index}, positioned at its first byte. The view shares
+   * the mapping and is only valid until the recording is closed.
+   */
+  public ByteBuffer getFrame(final int index) {
+    final ByteBuffer frame = buffer.duplicate();
+    final int offset = HEADER_SIZE + frameSize * index;
+    frame.position(offset);
+    frame.limit(offset + frameSize);
+    return frame.slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+}
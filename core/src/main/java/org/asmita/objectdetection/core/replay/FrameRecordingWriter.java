@@ -0,0 +1,95 @@
+package org.asmita.objectdetection.core.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link FrameRecording}. Frames are streamed to the file as they are added; the
+ * timestamps and the frame count are written on {@link #close()}.
+ */
+public class FrameRecordingWriter implements Closeable {
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final int width;
+  private final int height;
+  private final int rotation;
+  private final int frameSize;
+  private long[] timestampsNs = new long[64];
+  private int frameCount = 0;
+
+  /**
+   * @param rotation degrees the sensor is turned from upright, as reported to {@code
+   *     onPreviewSizeChosen}.
+   */
+  public FrameRecordingWriter(
+      final File file, final int width, final int height, final int rotation) throws IOException {
+    this.file = new RandomAccessFile(file, "rw");
+    this.file.setLength(0);
+    this.channel = this.file.getChannel();
+    this.width = width;
+    this.height = height;
+    this.rotation = rotation;
+    this.frameSize = FrameRecording.nv21Size(width, height);
+    channel.position(FrameRecording.HEADER_SIZE);
+  }
+
+  /** Appends an NV21 frame, consuming the remaining bytes of {@code nv21}. */
+  public void addFrame(final ByteBuffer nv21, final long timestampNs) throws IOException {
+    if (nv21.remaining() != frameSize) {
+      throw new IllegalArgumentException(
+          "Expected " + frameSize + " bytes per frame, got " + nv21.remaining());
+    }
+    while (nv21.hasRemaining()) {
+      channel.write(nv21);
+    }
+    if (frameCount == timestampsNs.length) {
+      timestampsNs = Arrays.copyOf(timestampsNs, frameCount * 2);
+    }
+    timestampsNs[frameCount++] = timestampNs;
+  }
+
+  public void addFrame(final byte[] nv21, final long timestampNs) throws IOException {
+    addFrame(ByteBuffer.wrap(nv21), timestampNs);
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      final ByteBuffer timestamps =
+          ByteBuffer.allocate(8 * frameCount).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < frameCount; ++i) {
+        timestamps.putLong(timestampsNs[i]);
+      }
+      timestamps.flip();
+      while (timestamps.hasRemaining()) {
+        channel.write(timestamps);
+      }
+
+      final ByteBuffer header =
+          ByteBuffer.allocate(FrameRecording.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(FrameRecording.MAGIC);
+      header.putInt(FrameRecording.VERSION);
+      header.putInt(width);
+      header.putInt(height);
+      header.putInt(rotation);
+      header.putInt(frameCount);
+      header.flip();
+      channel.position(0);
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+    } finally {
+      file.close();
+    }
+  }
+}
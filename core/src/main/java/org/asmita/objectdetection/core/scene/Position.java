@@ -0,0 +1,43 @@
+package org.asmita.objectdetection.core.scene;
+
+/** Coarse horizontal position of an object relative to the user. */
+public enum Position {
+  LEFT("on your left"),
+  FRONT("in front of you"),
+  RIGHT("on your right");
+
+  /** How the position is spoken, e.g. "chair on your left". */
+  public final String phrase;
+
+  Position(final String phrase) {
+    this.phrase = phrase;
+  }
+
+  /**
+   * Classifies an object by its horizontal extent within a frame of the given width. Objects that
+   * straddle the centre, or end just short of it, are considered to be in front.
+   */
+  public static Position classify(
+      final float objectLeft, final float objectRight, final float frameWidth) {
+    final double frameCentre = frameWidth * 0.5;
+    final double rightEdgeDistanceFromCentre = (objectRight - frameCentre);
+    final double leftEdgeDistanceFromCentre = (objectLeft - frameCentre);
+
+    // left and right edge of object is on different sides of the centre -> object is in front
+    if (rightEdgeDistanceFromCentre * leftEdgeDistanceFromCentre < 0) {
+      return FRONT;
+    } else if (rightEdgeDistanceFromCentre < 0) {
+      if (Math.abs(rightEdgeDistanceFromCentre) <= frameWidth * 0.05
+          && Math.abs(leftEdgeDistanceFromCentre) <= frameWidth * 0.15) {
+        return FRONT;
+      }
+      return LEFT;
+    } else {
+      if (Math.abs(rightEdgeDistanceFromCentre) <= frameWidth * 0.15
+          && Math.abs(leftEdgeDistanceFromCentre) <= frameWidth * 0.05) {
+        return FRONT;
+      }
+      return RIGHT;
+    }
+  }
+}
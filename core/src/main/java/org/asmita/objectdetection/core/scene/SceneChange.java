@@ -0,0 +1,47 @@
+package org.asmita.objectdetection.core.scene;
+
+import org.asmita.objectdetection.core.detection.LabelTable;
+
+/** A difference between the scene the user was last told about and the current scene. */
+public class SceneChange {
+  public enum Type {
+    /** A class appeared at a position where it wasn't before. */
+    ADDED,
+    /** A class is no longer seen at a position. */
+    REMOVED,
+    /** A class left one position and appeared at another. */
+    MOVED,
+    /** The number of objects of a class at a position changed. */
+    COUNT_CHANGED
+  }
+
+  public final Type type;
+  /** Class index in the app's {@link LabelTable}. */
+  public final int classIndex;
+  public final Position position;
+  /** Where a moved class was before; null for every other type. */
+  public final Position previousPosition;
+  public final int count;
+  public final int previousCount;
+
+  public SceneChange(
+      final Type type,
+      final int classIndex,
+      final Position position,
+      final Position previousPosition,
+      final int count,
+      final int previousCount) {
+    this.type = type;
+    this.classIndex = classIndex;
+    this.position = position;
+    this.previousPosition = previousPosition;
+    this.count = count;
+    this.previousCount = previousCount;
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + count + "x #" + classIndex + " " + position
+        + (previousPosition != null ? " (was " + previousPosition + ")" : "");
+  }
+}
@@ -0,0 +1,74 @@
+package org.asmita.objectdetection.core.scene;
+
+import java.util.List;
+import org.asmita.objectdetection.core.detection.LabelTable;
+
+/** Turns scene changes into short phrases, e.g. "two chairs in front of you, dog now on your left". */
+public class ScenePhraser {
+  private static final String[] NUMBER_WORDS = {
+    "no", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten"
+  };
+
+  private final LabelTable labels;
+  private final StringBuilder sentence = new StringBuilder();
+
+  /** @param labels the table the phrased class indices come from. */
+  public ScenePhraser(final LabelTable labels) {
+    this.labels = labels;
+  }
+
+  /** Returns the phrases for all changes joined into one utterance, or "" if there are none. */
+  public String phrase(final List<SceneChange> changes) {
+    sentence.setLength(0);
+    for (final SceneChange change : changes) {
+      if (sentence.length() > 0) {
+        sentence.append(", ");
+      }
+      appendPhrase(change);
+    }
+    return sentence.toString();
+  }
+
+  /** Returns an urgent warning such as "Watch out, car approaching on your left". */
+  public String phraseHazard(final int classIndex, final Position position) {
+    sentence.setLength(0);
+    sentence
+        .append("Watch out, ")
+        .append(labels.getSingular(classIndex))
+        .append(" approaching ")
+        .append(position.phrase);
+    return sentence.toString();
+  }
+
+  private void appendPhrase(final SceneChange change) {
+    switch (change.type) {
+      case ADDED:
+      case COUNT_CHANGED:
+        appendNoun(change.classIndex, change.count);
+        sentence.append(' ').append(change.position.phrase);
+        break;
+      case MOVED:
+        appendNoun(change.classIndex, change.count);
+        sentence.append(" now ").append(change.position.phrase);
+        break;
+      case REMOVED:
+        appendNoun(change.classIndex, change.previousCount);
+        sentence.append(" no longer ").append(change.position.phrase);
+        break;
+    }
+  }
+
+  /** Appends "chair", "two chairs", "three people" and so on. */
+  private void appendNoun(final int classIndex, final int count) {
+    if (count <= 1) {
+      sentence.append(labels.getSingular(classIndex));
+      return;
+    }
+    if (count < NUMBER_WORDS.length) {
+      sentence.append(NUMBER_WORDS[count]);
+    } else {
+      sentence.append(count);
+    }
+    sentence.append(' ').append(labels.getPlural(classIndex));
+  }
+}
@@ -0,0 +1,195 @@
+package org.asmita.objectdetection.core.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps the set of (class, position) facts that are currently believed to be true, together with
+ * how many objects each fact covers.
+ *
+ * <p>Detections flicker from frame to frame, so a change in the observed count only becomes part of
+ * the scene after it persisted for a few consecutive frames. Appearing is accepted faster than
+ * disappearing, since missing an object is worse than repeating one.
+ *
+ * <p>The state also remembers what was last announced, so {@link #collectChanges} only reports
+ * what the user hasn't been told yet.
+ */
+public class SceneState {
+  // Consecutive frames a higher count must be observed before it is accepted.
+  private static final int ENTER_FRAMES = 2;
+  // Consecutive frames a lower count must be observed before it is accepted.
+  private static final int EXIT_FRAMES = 4;
+
+  private static final Position[] POSITIONS = Position.values();
+
+  private static class LabelState {
+    final int classIndex;
+    boolean active = false;
+    final int[] observed = new int[POSITIONS.length];
+    final int[] stable = new int[POSITIONS.length];
+    final int[] candidate = new int[POSITIONS.length];
+    final int[] candidateFrames = new int[POSITIONS.length];
+    final int[] announced = new int[POSITIONS.length];
+
+    LabelState(final int classIndex) {
+      this.classIndex = classIndex;
+    }
+
+    boolean isEmpty() {
+      for (int p = 0; p < POSITIONS.length; ++p) {
+        if (stable[p] != 0 || candidateFrames[p] != 0 || announced[p] != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  // Indexed by class, allocated when the class is first seen and kept.
+  private final LabelState[] states;
+  // The states that hold anything, in the order their classes were first seen.
+  private final List<LabelState> labels = new ArrayList<>();
+
+  /** @param classCount size of the label table the observed class indices come from. */
+  public SceneState(final int classCount) {
+    states = new LabelState[classCount];
+  }
+
+  /** Starts a new frame; follow with {@link #observe} per detection and {@link #endFrame}. */
+  public void beginFrame() {
+    for (final LabelState state : labels) {
+      for (int p = 0; p < POSITIONS.length; ++p) {
+        state.observed[p] = 0;
+      }
+    }
+  }
+
+  public void observe(final int classIndex, final Position position) {
+    LabelState state = states[classIndex];
+    if (state == null) {
+      state = new LabelState(classIndex);
+      states[classIndex] = state;
+    }
+    if (!state.active) {
+      state.active = true;
+      labels.add(state);
+    }
+    ++state.observed[position.ordinal()];
+  }
+
+  /**
+   * Applies the observations of the current frame.
+   *
+   * @return true if the stable scene changed.
+   */
+  public boolean endFrame() {
+    boolean changed = false;
+    final Iterator<LabelState> it = labels.iterator();
+    while (it.hasNext()) {
+      final LabelState state = it.next();
+      for (int p = 0; p < POSITIONS.length; ++p) {
+        changed |= applyObservation(state, p);
+      }
+      if (state.isEmpty()) {
+        state.active = false;
+        it.remove();
+      }
+    }
+    return changed;
+  }
+
+  private static boolean applyObservation(final LabelState state, final int p) {
+    final int observed = state.observed[p];
+    if (observed == state.stable[p]) {
+      state.candidateFrames[p] = 0;
+      return false;
+    }
+    if (observed == state.candidate[p]) {
+      ++state.candidateFrames[p];
+    } else {
+      state.candidate[p] = observed;
+      state.candidateFrames[p] = 1;
+    }
+    final int requiredFrames = observed > state.stable[p] ? ENTER_FRAMES : EXIT_FRAMES;
+    if (state.candidateFrames[p] < requiredFrames) {
+      return false;
+    }
+    state.stable[p] = observed;
+    state.candidateFrames[p] = 0;
+    return true;
+  }
+
+  /**
+   * Appends everything that differs between the stable scene and what was last announced, and
+   * marks the stable scene as announced.
+   */
+  public void collectChanges(final List<SceneChange> changes) {
+    for (final LabelState state : labels) {
+      final int classIndex = state.classIndex;
+
+      int added = -1;
+      int removed = -1;
+      int numAdded = 0;
+      int numRemoved = 0;
+      for (int p = 0; p < POSITIONS.length; ++p) {
+        if (state.announced[p] == 0 && state.stable[p] > 0) {
+          added = p;
+          ++numAdded;
+        } else if (state.announced[p] > 0 && state.stable[p] == 0) {
+          removed = p;
+          ++numRemoved;
+        }
+      }
+      // A class that vanished from one position and showed up at another has moved.
+      final boolean moved = numAdded == 1 && numRemoved == 1;
+      if (moved) {
+        changes.add(
+            new SceneChange(
+                SceneChange.Type.MOVED,
+                classIndex,
+                POSITIONS[added],
+                POSITIONS[removed],
+                state.stable[added],
+                state.announced[removed]));
+      }
+
+      for (int p = 0; p < POSITIONS.length; ++p) {
+        final int was = state.announced[p];
+        final int now = state.stable[p];
+        state.announced[p] = now;
+        if (was == now || (moved && (p == added || p == removed))) {
+          continue;
+        }
+        final SceneChange.Type type =
+            was == 0
+                ? SceneChange.Type.ADDED
+                : (now == 0 ? SceneChange.Type.REMOVED : SceneChange.Type.COUNT_CHANGED);
+        changes.add(new SceneChange(type, classIndex, POSITIONS[p], null, now, was));
+      }
+    }
+  }
+
+  /** Forgets what was announced, so the next {@link #collectChanges} reports the whole scene. */
+  public void resetAnnounced() {
+    for (final LabelState state : labels) {
+      for (int p = 0; p < POSITIONS.length; ++p) {
+        state.announced[p] = 0;
+      }
+    }
+  }
+
+  /** Forgets the scene entirely. */
+  public void clear() {
+    for (final LabelState state : labels) {
+      Arrays.fill(state.observed, 0);
+      Arrays.fill(state.stable, 0);
+      Arrays.fill(state.candidate, 0);
+      Arrays.fill(state.candidateFrames, 0);
+      Arrays.fill(state.announced, 0);
+      state.active = false;
+    }
+    labels.clear();
+  }
+}
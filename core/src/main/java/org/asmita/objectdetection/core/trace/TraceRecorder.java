@@ -0,0 +1,259 @@
+package org.asmita.objectdetection.core.trace;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Records spans, async spans and counters into preallocated arrays, keeping the most recent events,
+ * and exports them as a Chrome trace-event JSON file that chrome://tracing and the Perfetto UI can
+ * open. Recording an event is a clock read and a few array writes, so the recorder can stay on for
+ * a whole session.
+ *
+ * <p>Names are kept by reference and should be constants. Exporting copies the events out under
+ * the lock and formats them outside it, so recording threads are only held up by the copy.
+ */
+public class TraceRecorder {
+  private static final byte PHASE_BEGIN = 'B';
+  private static final byte PHASE_END = 'E';
+  private static final byte PHASE_COMPLETE = 'X';
+  private static final byte PHASE_ASYNC_BEGIN = 'b';
+  private static final byte PHASE_ASYNC_END = 'e';
+  private static final byte PHASE_COUNTER = 'C';
+  private static final byte PHASE_INSTANT = 'i';
+
+  private final int capacity;
+  private final LongSupplier clockNs;
+  private final byte[] phases;
+  private final long[] timestampsNs;
+  // Duration of complete events, id of async events, raw bits of counter values.
+  private final long[] values;
+  private final long[] threadIds;
+  private final Object[] names;
+  private final Object[] threadNames;
+  private long written = 0;
+  private volatile boolean enabled = true;
+
+  /**
+   * @param capacity number of events kept, rounded up to a power of two.
+   * @param clockNs monotonic clock the events are stamped with.
+   */
+  public TraceRecorder(final int capacity, final LongSupplier clockNs) {
+    this.capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.clockNs = clockNs;
+    this.phases = new byte[this.capacity];
+    this.timestampsNs = new long[this.capacity];
+    this.values = new long[this.capacity];
+    this.threadIds = new long[this.capacity];
+    this.names = new Object[this.capacity];
+    this.threadNames = new Object[this.capacity];
+  }
+
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long nowNs() {
+    return clockNs.getAsLong();
+  }
+
+  /** Starts a span on the calling thread. Spans on a thread must nest. */
+  public void begin(final String name) {
+    if (enabled) {
+      add(PHASE_BEGIN, name, clockNs.getAsLong(), 0);
+    }
+  }
+
+  /** Ends the innermost span of the calling thread. */
+  public void end(final String name) {
+    if (enabled) {
+      add(PHASE_END, name, clockNs.getAsLong(), 0);
+    }
+  }
+
+  /** Records a span of the calling thread that has already finished. */
+  public void complete(final String name, final long startNs, final long endNs) {
+    if (enabled) {
+      add(PHASE_COMPLETE, name, startNs, endNs - startNs);
+    }
+  }
+
+  /**
+   * Starts a span that may end on another thread, such as a task on a library's worker. Spans with
+   * the same name are told apart by {@code id}.
+   */
+  public void beginAsync(final String name, final long id) {
+    if (enabled) {
+      add(PHASE_ASYNC_BEGIN, name, clockNs.getAsLong(), id);
+    }
+  }
+
+  public void endAsync(final String name, final long id) {
+    if (enabled) {
+      add(PHASE_ASYNC_END, name, clockNs.getAsLong(), id);
+    }
+  }
+
+  public void counter(final String name, final double value) {
+    if (enabled) {
+      add(PHASE_COUNTER, name, clockNs.getAsLong(), Double.doubleToRawLongBits(value));
+    }
+  }
+
+  public void instant(final String name) {
+    if (enabled) {
+      add(PHASE_INSTANT, name, clockNs.getAsLong(), 0);
+    }
+  }
+
+  private synchronized void add(
+      final byte phase, final String name, final long timestampNs, final long value) {
+    final int i = (int) (written++ & (capacity - 1));
+    final Thread thread = Thread.currentThread();
+    phases[i] = phase;
+    timestampsNs[i] = timestampNs;
+    values[i] = value;
+    threadIds[i] = thread.getId();
+    names[i] = name;
+    threadNames[i] = thread.getName();
+  }
+
+  /** Forgets all events. */
+  public synchronized void clear() {
+    written = 0;
+  }
+
+  /** The events kept at one point, oldest first. */
+  private static class Snapshot {
+    final int count;
+    final byte[] phases;
+    final long[] timestampsNs;
+    final long[] values;
+    final long[] threadIds;
+    final Object[] names;
+    final Object[] threadNames;
+
+    Snapshot(final int count) {
+      this.count = count;
+      this.phases = new byte[count];
+      this.timestampsNs = new long[count];
+      this.values = new long[count];
+      this.threadIds = new long[count];
+      this.names = new Object[count];
+      this.threadNames = new Object[count];
+    }
+  }
+
+  private synchronized Snapshot snapshot() {
+    final int count = (int) Math.min(written, capacity);
+    final Snapshot snapshot = new Snapshot(count);
+    // The oldest event is at the write position once the ring has wrapped, so copy in two runs.
+    final int start = (int) ((written - count) & (capacity - 1));
+    final int head = Math.min(count, capacity - start);
+    copy(start, snapshot, 0, head);
+    copy(0, snapshot, head, count - head);
+    return snapshot;
+  }
+
+  private void copy(final int from, final Snapshot to, final int at, final int length) {
+    System.arraycopy(phases, from, to.phases, at, length);
+    System.arraycopy(timestampsNs, from, to.timestampsNs, at, length);
+    System.arraycopy(values, from, to.values, at, length);
+    System.arraycopy(threadIds, from, to.threadIds, at, length);
+    System.arraycopy(names, from, to.names, at, length);
+    System.arraycopy(threadNames, from, to.threadNames, at, length);
+  }
+
+  /** Writes the events kept, oldest first, as a trace-event JSON object. */
+  public void writeJson(final PrintWriter out) {
+    final Snapshot events = snapshot();
+    final Map<Long, Object> threads = new HashMap<>();
+    out.println("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    boolean first = true;
+    for (int i = 0; i < events.count; ++i) {
+      final long tid = events.threadIds[i];
+      threads.put(tid, events.threadNames[i]);
+      if (!first) {
+        out.println(',');
+      }
+      first = false;
+      out.print("{\"name\":");
+      writeString(out, (String) events.names[i]);
+      out.print(",\"ph\":\"");
+      out.print((char) events.phases[i]);
+      out.print("\",\"pid\":1,\"tid\":");
+      out.print(tid);
+      out.print(",\"ts\":");
+      out.print(micros(events.timestampsNs[i]));
+      switch (events.phases[i]) {
+        case PHASE_COMPLETE:
+          out.print(",\"dur\":");
+          out.print(micros(events.values[i]));
+          break;
+        case PHASE_ASYNC_BEGIN:
+        case PHASE_ASYNC_END:
+          out.print(",\"cat\":\"async\",\"id\":");
+          out.print(events.values[i]);
+          break;
+        case PHASE_COUNTER:
+          final double value = Double.longBitsToDouble(events.values[i]);
+          out.print(",\"args\":{\"value\":");
+          // JSON has no infinities or NaN.
+          out.print(Double.isNaN(value) || Double.isInfinite(value) ? 0.0 : value);
+          out.print('}');
+          break;
+        case PHASE_INSTANT:
+          out.print(",\"s\":\"t\"");
+          break;
+        default:
+          break;
+      }
+      out.print('}');
+    }
+    for (final Map.Entry<Long, Object> thread : threads.entrySet()) {
+      if (!first) {
+        out.println(',');
+      }
+      first = false;
+      out.print("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+      out.print(thread.getKey());
+      out.print(",\"args\":{\"name\":");
+      writeString(out, String.valueOf(thread.getValue()));
+      out.print("}}");
+    }
+    out.println();
+    out.println("]}");
+  }
+
+  /** Replaces {@code file} with the trace. */
+  public void writeJson(final File file) throws IOException {
+    try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+      writeJson(out);
+    }
+  }
+
+  private static String micros(final long ns) {
+    return String.format(Locale.US, "%.3f", ns / 1000.0);
+  }
+
+  private static void writeString(final PrintWriter out, final String s) {
+    out.print('"');
+    for (int i = 0; i < s.length(); ++i) {
+      final char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.print('\\');
+        out.print(c);
+      } else if (c < 0x20) {
+        out.print(String.format("\\u%04x", (int) c));
+      } else {
+        out.print(c);
+      }
+    }
+    out.print('"');
+  }
+}
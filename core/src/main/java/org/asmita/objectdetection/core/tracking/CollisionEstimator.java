@@ -0,0 +1,112 @@
+package org.asmita.objectdetection.core.tracking;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Estimates time-to-collision per track from how fast its box expands.
+ *
+ * <p>The apparent size s of an object at distance Z is proportional to 1 / Z, so for an object
+ * approaching at constant speed d(ln s)/dt = 1 / TTC. The slope of ln s over the recent samples of a
+ * track is fitted with least squares, which only needs box areas and capture timestamps and no
+ * knowledge of the object's real size.
+ */
+public class CollisionEstimator {
+  private static final int MAX_SAMPLES = 10;
+  // Only samples this recent take part in the fit.
+  private static final long WINDOW_NS = 1200_000_000L;
+  // The fit needs this many samples spread over at least this long to be trusted.
+  private static final int MIN_SAMPLES = 3;
+  private static final long MIN_SPAN_NS = 250_000_000L;
+  // A track is alerted about at most once per this period.
+  private static final long ALERT_COOLDOWN_NS = 4000_000_000L;
+
+  private static class History {
+    final long[] timestampsNs = new long[MAX_SAMPLES];
+    final float[] logScales = new float[MAX_SAMPLES];
+    int count;
+    int next;
+    long lastAlertNs = Long.MIN_VALUE;
+  }
+
+  private final Map<Integer, History> histories = new HashMap<>();
+
+  /**
+   * Adds a sample for a track.
+   *
+   * @param area box area in any fixed coordinate frame.
+   * @return estimated seconds until the object reaches the camera, or {@link
+   *     Float#POSITIVE_INFINITY} if it isn't approaching or there isn't enough history yet.
+   */
+  public float update(final int trackId, final float area, final long timestampNs) {
+    History history = histories.get(trackId);
+    if (history == null) {
+      history = new History();
+      histories.put(trackId, history);
+    }
+    history.timestampsNs[history.next] = timestampNs;
+    history.logScales[history.next] = 0.5f * (float) Math.log(Math.max(area, 1e-6f));
+    history.next = (history.next + 1) % MAX_SAMPLES;
+    history.count = Math.min(history.count + 1, MAX_SAMPLES);
+    return timeToCollision(history, timestampNs);
+  }
+
+  private static float timeToCollision(final History history, final long nowNs) {
+    int n = 0;
+    long oldestNs = nowNs;
+    double sumT = 0;
+    double sumS = 0;
+    double sumTT = 0;
+    double sumTS = 0;
+    for (int i = 0; i < history.count; ++i) {
+      final long ageNs = nowNs - history.timestampsNs[i];
+      if (ageNs > WINDOW_NS || ageNs < 0) {
+        continue;
+      }
+      final double t = -ageNs / 1e9;
+      final double s = history.logScales[i];
+      sumT += t;
+      sumS += s;
+      sumTT += t * t;
+      sumTS += t * s;
+      oldestNs = Math.min(oldestNs, history.timestampsNs[i]);
+      ++n;
+    }
+    if (n < MIN_SAMPLES || nowNs - oldestNs < MIN_SPAN_NS) {
+      return Float.POSITIVE_INFINITY;
+    }
+    final double denominator = n * sumTT - sumT * sumT;
+    if (denominator <= 0) {
+      return Float.POSITIVE_INFINITY;
+    }
+    final double slope = (n * sumTS - sumT * sumS) / denominator;
+    return slope > 0 ? (float) (1.0 / slope) : Float.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Returns true, and starts the cooldown, if the track hasn't been alerted about recently.
+   */
+  public boolean tryAlert(final int trackId, final long timestampNs) {
+    final History history = histories.get(trackId);
+    if (history == null
+        || (history.lastAlertNs != Long.MIN_VALUE
+            && timestampNs - history.lastAlertNs < ALERT_COOLDOWN_NS)) {
+      return false;
+    }
+    history.lastAlertNs = timestampNs;
+    return true;
+  }
+
+  /** Drops tracks without a sample in the last window. */
+  public void prune(final long nowNs) {
+    final Iterator<History> it = histories.values().iterator();
+    while (it.hasNext()) {
+      final History history = it.next();
+      final int last = (history.next + MAX_SAMPLES - 1) % MAX_SAMPLES;
+      if (nowNs - history.timestampsNs[last] > WINDOW_NS) {
+        it.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package org.asmita.objectdetection.core.tracking;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.geometry.Box;
+
+/**
+ * Matches detections of consecutive frames into tracks and estimates each track's time to
+ * collision. Detections must be in frame coordinates.
+ */
+public class ObjectTracker {
+  private static final float MIN_SIZE = 16.0f;
+  // Minimum overlap for a detection to continue the track of a previous one of the same class.
+  private static final float MIN_TRACK_IOU = 0.3f;
+  // Boxes covering less of the frame than this are too far away and noisy for collision estimates.
+  private static final float MIN_COLLISION_AREA_FRACTION = 0.02f;
+
+  /** An object tracked in the last frame that had anything to track. Immutable. */
+  public static class Track {
+    public final int id;
+    /** Class index in the app's {@link LabelTable}. */
+    public final int classIndex;
+    public final String title;
+    public final float confidence;
+    /** Location in frame coordinates. */
+    public final Box location;
+    public final long timestampNs;
+    public final float timeToCollisionSec;
+
+    Track(
+        final int id,
+        final int classIndex,
+        final String title,
+        final float confidence,
+        final Box location,
+        final long timestampNs,
+        final float timeToCollisionSec) {
+      this.id = id;
+      this.classIndex = classIndex;
+      this.title = title;
+      this.confidence = confidence;
+      this.location = location;
+      this.timestampNs = timestampNs;
+      this.timeToCollisionSec = timeToCollisionSec;
+    }
+  }
+
+  /** A tracked object that is expected to reach the user soon. */
+  public static class ApproachingObject {
+    public final int classIndex;
+    public final String title;
+    /** Location in frame coordinates. */
+    public final Box location;
+    public final float timeToCollisionSec;
+
+    ApproachingObject(
+        final int classIndex,
+        final String title,
+        final Box location,
+        final float timeToCollisionSec) {
+      this.classIndex = classIndex;
+      this.title = title;
+      this.location = location;
+      this.timeToCollisionSec = timeToCollisionSec;
+    }
+  }
+
+  private final int maxTracks;
+  private final CollisionEstimator collisionEstimator = new CollisionEstimator();
+  private List<Track> tracks = new ArrayList<>();
+  private int frameWidth;
+  private int frameHeight;
+  private int nextTrackId = 0;
+  private long lastTimestampNs;
+
+  public ObjectTracker(final int maxTracks) {
+    this.maxTracks = maxTracks;
+  }
+
+  public synchronized void setFrameSize(final int width, final int height) {
+    frameWidth = width;
+    frameHeight = height;
+  }
+
+  /**
+   * @param timestampNs capture time of the frame the detections were found in, on a monotonic
+   *     clock.
+   */
+  public synchronized void update(final List<Detection> detections, final long timestampNs) {
+    lastTimestampNs = timestampNs;
+    processDetections(detections);
+    collisionEstimator.prune(timestampNs);
+  }
+
+  /** Returns the current tracks. The list is a snapshot and is safe to iterate on any thread. */
+  public synchronized List<Track> getTracks() {
+    return tracks;
+  }
+
+  /**
+   * Returns the object of the last frame that is expected to be reached soonest, if that is within
+   * {@code maxTimeToCollisionSec} and it wasn't reported recently. Returns null otherwise.
+   */
+  public synchronized ApproachingObject findImminentCollision(final float maxTimeToCollisionSec) {
+    Track closest = null;
+    for (final Track track : tracks) {
+      if (track.timestampNs == lastTimestampNs
+          && track.timeToCollisionSec <= maxTimeToCollisionSec
+          && (closest == null || track.timeToCollisionSec < closest.timeToCollisionSec)) {
+        closest = track;
+      }
+    }
+    if (closest == null || !collisionEstimator.tryAlert(closest.id, lastTimestampNs)) {
+      return null;
+    }
+    return new ApproachingObject(
+        closest.classIndex,
+        closest.title,
+        new Box(closest.location),
+        closest.timeToCollisionSec);
+  }
+
+  private void processDetections(final List<Detection> detections) {
+    final List<Detection> toTrack = new ArrayList<>();
+    for (final Detection detection : detections) {
+      if (detection.location == null
+          || detection.location.width() < MIN_SIZE
+          || detection.location.height() < MIN_SIZE) {
+        continue;
+      }
+      toTrack.add(detection);
+    }
+
+    if (toTrack.isEmpty()) {
+      return;
+    }
+
+    final List<Track> previousTracks = new LinkedList<>(tracks);
+    final List<Track> newTracks = new ArrayList<>(Math.min(toTrack.size(), maxTracks));
+    final float frameArea = (float) frameWidth * frameHeight;
+    for (final Detection detection : toTrack) {
+      final Box location = new Box(detection.location);
+      final Track previous = claimBestMatch(previousTracks, detection.classIndex, location);
+      final int id = previous != null ? previous.id : nextTrackId++;
+      final float area = location.area();
+      final float timeToCollision = collisionEstimator.update(id, area, lastTimestampNs);
+      newTracks.add(
+          new Track(
+              id,
+              detection.classIndex,
+              detection.title,
+              detection.confidence,
+              location,
+              lastTimestampNs,
+              area >= MIN_COLLISION_AREA_FRACTION * frameArea
+                  ? timeToCollision
+                  : Float.POSITIVE_INFINITY));
+
+      if (newTracks.size() >= maxTracks) {
+        break;
+      }
+    }
+    // Replaced rather than modified, so snapshots handed out earlier stay valid.
+    tracks = newTracks;
+  }
+
+  /**
+   * Removes and returns the previous track of the same class that overlaps {@code location} the
+   * most, or null if none overlaps enough to be the same object.
+   */
+  private static Track claimBestMatch(
+      final List<Track> previousTracks, final int classIndex, final Box location) {
+    Track best = null;
+    float bestIou = MIN_TRACK_IOU;
+    for (final Track previous : previousTracks) {
+      if (previous.classIndex != classIndex) {
+        continue;
+      }
+      final float iou = Box.intersectionOverUnion(previous.location, location);
+      if (iou >= bestIou) {
+        bestIou = iou;
+        best = previous;
+      }
+    }
+    if (best != null) {
+      previousTracks.remove(best);
+    }
+    return best;
+  }
+}
@@ -0,0 +1,147 @@
+package org.asmita.objectdetection.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.DetectorBackend;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+import org.junit.Test;
+
+public class DetectionPipelineTest {
+  private static final int INPUT_SIZE = 300;
+  private static final long FRAME_INTERVAL_NS = 100000000L;
+  private static final LabelTable LABELS =
+      LabelTable.of(Arrays.asList(LabelTable.UNKNOWN_LABEL, "person"));
+  private static final int PERSON = LABELS.indexOf("person");
+
+  /**
+   * Finds a person at a fixed place in the frame, but only in a tile: downscaled to the whole frame
+   * it is too small to be found.
+   */
+  private static class SmallObjectBackend implements DetectorBackend {
+    final Box object = new Box(300, 200, 330, 260);
+    final List<Transform> crops = new ArrayList<>();
+    Transform crop;
+    int detectCount;
+
+    @Override
+    public int getInputSize() {
+      return INPUT_SIZE;
+    }
+
+    @Override
+    public void setInput(final Frame frame, final Transform frameToInput) {
+      crop = null;
+    }
+
+    @Override
+    public void cropInput(final Transform frameToInput) {
+      crop = frameToInput;
+      crops.add(frameToInput);
+    }
+
+    @Override
+    public List<Detection> detect() {
+      ++detectCount;
+      final List<Detection> detections = new ArrayList<>();
+      if (crop != null) {
+        final Box location = new Box();
+        crop.mapBox(object, location);
+        if (location.left >= 0
+            && location.top >= 0
+            && location.right <= INPUT_SIZE
+            && location.bottom <= INPUT_SIZE) {
+          detections.add(new Detection(PERSON, "person", 0.9f, location));
+        }
+      }
+      // A crop is only for the next detection.
+      crop = null;
+      return detections;
+    }
+  }
+
+  private static DetectionPipeline.Result processFrame(
+      final DetectionPipeline pipeline, final Frame frame, final int i) {
+    frame.set(null, i, i * FRAME_INTERVAL_NS);
+    pipeline.setInput(frame);
+    return pipeline.process();
+  }
+
+  @Test
+  public void tilesAreRunInTurnAFewPerFrame() {
+    final SmallObjectBackend backend = new SmallObjectBackend();
+    final DetectionPipeline pipeline = new DetectionPipeline(backend, LABELS, 0.5f, 10);
+    pipeline.configure(640, 480, 90, false);
+    pipeline.setTiling(2, 2, 1);
+    final Frame frame = new Frame(640, 480);
+    for (int i = 0; i < 8; ++i) {
+      final int detectsBefore = backend.detectCount;
+      assertEquals(1, processFrame(pipeline, frame, i).tilesRun);
+      // The whole frame and one tile.
+      assertEquals(2, backend.detectCount - detectsBefore);
+    }
+    // Every tile of the 2x2 grid once, then again in the same order.
+    assertEquals(4, new HashSet<>(backend.crops.subList(0, 4)).size());
+    assertEquals(backend.crops.subList(0, 4), backend.crops.subList(4, 8));
+
+    pipeline.setTiling(2, 2, 2);
+    final int detectsBefore = backend.detectCount;
+    assertEquals(2, processFrame(pipeline, frame, 8).tilesRun);
+    assertEquals(3, backend.detectCount - detectsBefore);
+  }
+
+  @Test
+  public void objectsOnlyTheTilesFindAreAnnouncedAndTracked() {
+    final DetectionPipeline pipeline =
+        new DetectionPipeline(new SmallObjectBackend(), LABELS, 0.5f, 10);
+    pipeline.configure(640, 480, 90, false);
+    pipeline.setTiling(2, 2, 1);
+    final Frame frame = new Frame(640, 480);
+    final List<String> announcements = new ArrayList<>();
+    final Set<Integer> trackIds = new HashSet<>();
+    boolean found = false;
+    for (int i = 0; i < 40; ++i) {
+      final DetectionPipeline.Result result = processFrame(pipeline, frame, i);
+      if (found) {
+        // Carried over while the other tiles run.
+        assertEquals(1, result.frameDetections.size());
+      }
+      found |= !result.frameDetections.isEmpty();
+      final String announcement = pipeline.nextAnnouncement();
+      if (announcement != null) {
+        announcements.add(announcement);
+      }
+      for (final ObjectTracker.Track track : pipeline.getTracker().getTracks()) {
+        trackIds.add(track.id);
+      }
+    }
+    assertTrue(found);
+    assertEquals(Arrays.asList("person in front of you"), announcements);
+    assertEquals(1, trackIds.size());
+  }
+
+  @Test
+  public void carriedDetectionsAreDroppedWithTiling() {
+    final DetectionPipeline pipeline =
+        new DetectionPipeline(new SmallObjectBackend(), LABELS, 0.5f, 10);
+    pipeline.configure(640, 480, 90, false);
+    pipeline.setTiling(2, 2, 4);
+    final Frame frame = new Frame(640, 480);
+    assertEquals(1, processFrame(pipeline, frame, 0).frameDetections.size());
+
+    pipeline.setTiling(2, 2, 0);
+    final DetectionPipeline.Result result = processFrame(pipeline, frame, 1);
+    assertEquals(0, result.tilesRun);
+    assertEquals(0, result.frameDetections.size());
+  }
+}
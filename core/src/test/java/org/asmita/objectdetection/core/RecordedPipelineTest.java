@@ -0,0 +1,157 @@
+package org.asmita.objectdetection.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.DetectorBackend;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.asmita.objectdetection.core.image.YuvConverter;
+import org.asmita.objectdetection.core.replay.FrameRecording;
+import org.asmita.objectdetection.core.replay.FrameRecordingWriter;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+import org.junit.Test;
+
+/**
+ * Runs the pipeline the way the app does, off a recording and through a stub detector: frames are
+ * read from a {@link FrameRecording}, converted with {@link YuvConverter} and detected, tracked
+ * and announced by {@link DetectionPipeline}.
+ */
+public class RecordedPipelineTest {
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  private static final int ROTATION = 90;
+  private static final int FRAMES = 20;
+  private static final long FRAME_INTERVAL_NS = 33_000_000L;
+  private static final int INPUT_SIZE = 300;
+  private static final LabelTable LABELS =
+      LabelTable.of(Arrays.asList(LabelTable.UNKNOWN_LABEL, "person"));
+  private static final int PERSON = LABELS.indexOf("person");
+
+  /** Reports the bright pixels of a frame as one person. */
+  private static class BrightSpotBackend implements DetectorBackend {
+    Frame frame;
+    Transform frameToInput;
+
+    @Override
+    public int getInputSize() {
+      return INPUT_SIZE;
+    }
+
+    @Override
+    public void setInput(final Frame frame, final Transform frameToInput) {
+      this.frame = frame;
+      this.frameToInput = frameToInput;
+    }
+
+    @Override
+    public void cropInput(final Transform frameToInput) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Detection> detect() {
+      final int[] pixels = frame.getPixels();
+      final Box bounds = new Box(frame.width, frame.height, 0, 0);
+      for (int y = 0; y < frame.height; ++y) {
+        for (int x = 0; x < frame.width; ++x) {
+          if ((pixels[y * frame.width + x] & 0xff) > 128) {
+            bounds.set(
+                Math.min(bounds.left, x),
+                Math.min(bounds.top, y),
+                Math.max(bounds.right, x + 1),
+                Math.max(bounds.bottom, y + 1));
+          }
+        }
+      }
+      final List<Detection> detections = new ArrayList<>();
+      if (bounds.left < bounds.right) {
+        final Box location = new Box();
+        frameToInput.mapBox(bounds, location);
+        detections.add(new Detection(PERSON, "person", 0.9f, location));
+      }
+      return detections;
+    }
+  }
+
+  /** The bright box of frame {@code index}, moving right by two pixels a frame. */
+  private static Box object(final int index) {
+    final int left = 140 + 2 * index;
+    return new Box(left, 80, left + 40, 160);
+  }
+
+  private static void writeRecording(final File file) throws IOException {
+    final byte[] nv21 = new byte[FrameRecording.nv21Size(WIDTH, HEIGHT)];
+    try (FrameRecordingWriter writer = new FrameRecordingWriter(file, WIDTH, HEIGHT, ROTATION)) {
+      for (int i = 0; i < FRAMES; ++i) {
+        final Box object = object(i);
+        Arrays.fill(nv21, (byte) 128);
+        for (int y = 0; y < HEIGHT; ++y) {
+          for (int x = 0; x < WIDTH; ++x) {
+            final boolean inside =
+                x >= object.left && x < object.right && y >= object.top && y < object.bottom;
+            nv21[y * WIDTH + x] = (byte) (inside ? 235 : 16);
+          }
+        }
+        writer.addFrame(nv21, 1000_000_000L + i * FRAME_INTERVAL_NS);
+      }
+    }
+  }
+
+  @Test
+  public void recordedFramesAreDetectedTrackedAndAnnouncedOnce() throws IOException {
+    final File file = File.createTempFile("recording", ".yuv");
+    try {
+      writeRecording(file);
+      final List<String> announcements = new ArrayList<>();
+      final Set<Integer> trackIds = new HashSet<>();
+      try (FrameRecording recording = FrameRecording.open(file)) {
+        assertEquals(FRAMES, recording.getFrameCount());
+        final DetectionPipeline pipeline =
+            new DetectionPipeline(new BrightSpotBackend(), LABELS, 0.5f, 10);
+        pipeline.configure(
+            recording.getWidth(), recording.getHeight(), recording.getRotation(), false);
+        final Frame frame = new Frame(recording.getWidth(), recording.getHeight());
+        final int[] pixels = new int[recording.getWidth() * recording.getHeight()];
+        for (int i = 0; i < recording.getFrameCount(); ++i) {
+          YuvConverter.convertYUV420SPToARGB8888(
+              recording.getFrame(i), recording.getWidth(), recording.getHeight(), pixels);
+          frame.set(pixels, i, recording.getTimestampNs(i));
+          pipeline.setInput(frame);
+          final DetectionPipeline.Result result = pipeline.process();
+
+          assertEquals(i, result.frameNumber);
+          assertEquals(recording.getTimestampNs(i), result.timestampNs);
+          assertEquals(1, result.frameDetections.size());
+          final Box expected = object(i);
+          final Box location = result.frameDetections.get(0).location;
+          assertEquals(expected.left, location.left, 0.01f);
+          assertEquals(expected.top, location.top, 0.01f);
+          assertEquals(expected.right, location.right, 0.01f);
+          assertEquals(expected.bottom, location.bottom, 0.01f);
+
+          final String announcement = pipeline.nextAnnouncement();
+          if (announcement != null) {
+            announcements.add(announcement);
+          }
+          for (final ObjectTracker.Track track : pipeline.getTracker().getTracks()) {
+            trackIds.add(track.id);
+          }
+        }
+      }
+      assertEquals(Arrays.asList("person in front of you"), announcements);
+      assertEquals(1, trackIds.size());
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.asmita.objectdetection.core.detection;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class DetectionSelectorTest {
+  // Output class 0 is the first label after the placeholder, as in the COCO label map.
+  private static final List<String> LABELS =
+      Arrays.asList(LabelTable.UNKNOWN_LABEL, "person", "car");
+  private static final int PERSON = 0;
+  private static final int CAR = 1;
+
+  private final FloatBuffer boxes = FloatBuffer.allocate(40);
+  private final FloatBuffer classes = FloatBuffer.allocate(10);
+  private final FloatBuffer scores = FloatBuffer.allocate(10);
+  private int count = 0;
+
+  /** Adds a detection with a box of {@code top, left, bottom, right}. */
+  private void add(final int outputClass, final float score, final float... box) {
+    boxes.put(4 * count, box[0]).put(4 * count + 1, box[1]);
+    boxes.put(4 * count + 2, box[2]).put(4 * count + 3, box[3]);
+    classes.put(count, outputClass);
+    scores.put(count, score);
+    ++count;
+  }
+
+  private int[] select(final ThresholdProfile profile) {
+    final DetectionSelector selector = new DetectionSelector(profile, LABELS, 1, 10);
+    final int[] selected = new int[10];
+    final int selectedCount = selector.select(boxes, classes, scores, count, selected);
+    return Arrays.copyOf(selected, selectedCount);
+  }
+
+  @Test
+  public void keepsDetectionsAboveThresholdMostConfidentFirst() {
+    add(PERSON, 0.6f, 0, 0, 1, 1);
+    add(CAR, 0.4f, 0, 2, 1, 3);
+    add(PERSON, 0.9f, 2, 0, 3, 1);
+    assertArrayEquals(new int[] {2, 0}, select(new ThresholdProfile(0.5f)));
+  }
+
+  @Test
+  public void appliesPerClassThresholds() {
+    add(PERSON, 0.6f, 0, 0, 1, 1);
+    add(CAR, 0.7f, 0, 2, 1, 3);
+    assertArrayEquals(
+        new int[] {0}, select(new ThresholdProfile(0.5f).setThreshold("car", 0.8f)));
+    assertArrayEquals(new int[] {1}, select(new ThresholdProfile(0.5f).disable("person")));
+  }
+
+  @Test
+  public void suppressesOverlapsOfTheSameClassOnly() {
+    add(PERSON, 0.9f, 0, 0, 10, 10);
+    add(PERSON, 0.8f, 1, 1, 10, 10);
+    add(CAR, 0.7f, 1, 1, 10, 10);
+    add(PERSON, 0.6f, 20, 20, 30, 30);
+    assertArrayEquals(new int[] {0, 2, 3}, select(new ThresholdProfile(0.5f).setMaxIou(0.5f)));
+    assertArrayEquals(new int[] {0, 1, 2, 3}, select(new ThresholdProfile(0.5f)));
+  }
+
+  @Test
+  public void reportsAtMostTopK() {
+    add(PERSON, 0.6f, 0, 0, 1, 1);
+    add(PERSON, 0.7f, 2, 2, 3, 3);
+    add(PERSON, 0.8f, 4, 4, 5, 5);
+    assertArrayEquals(new int[] {2, 1}, select(new ThresholdProfile(0.5f).setTopK(2)));
+  }
+
+  @Test
+  public void ignoresClassesOutsideTheLabelMap() {
+    add(7, 0.9f, 0, 0, 1, 1);
+    add(-2, 0.9f, 0, 0, 1, 1);
+    add(CAR, 0.9f, 0, 0, 1, 1);
+    assertArrayEquals(new int[] {2}, select(new ThresholdProfile(0.5f)));
+  }
+
+  @Test
+  public void onlyReadsTheValidDetections() {
+    add(PERSON, 0.9f, 0, 0, 1, 1);
+    add(PERSON, 0.9f, 2, 2, 3, 3);
+    count = 1;
+    assertArrayEquals(new int[] {0}, select(new ThresholdProfile(0.5f)));
+  }
+}
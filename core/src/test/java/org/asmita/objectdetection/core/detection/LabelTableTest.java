@@ -0,0 +1,70 @@
+package org.asmita.objectdetection.core.detection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class LabelTableTest {
+  private static final List<String> COCO = Arrays.asList("???", "person", "bicycle", "car");
+  private static final List<String> SPECIALIST = Arrays.asList("???", "traffic light", "car");
+
+  @Test
+  public void classesOfSeveralModelsShareOneIndex() {
+    final LabelTable table = new LabelTable.Builder().addAll(COCO).addAll(SPECIALIST).build();
+    // The unknown class, the three COCO classes and the one new specialist class.
+    assertEquals(5, table.size());
+    assertEquals(3, table.indexOf("car"));
+    assertArrayEquals(new int[] {LabelTable.UNKNOWN, 4, 3}, table.resolve(SPECIALIST));
+  }
+
+  @Test
+  public void unknownLabelsResolveToUnknown() {
+    final LabelTable table = LabelTable.of(COCO);
+    assertEquals(LabelTable.UNKNOWN, table.indexOf(LabelTable.UNKNOWN_LABEL));
+    assertEquals(LabelTable.UNKNOWN, table.indexOf("giraffe"));
+    assertFalse(table.isAnnounced(LabelTable.UNKNOWN));
+    assertTrue(table.isAnnounced(table.indexOf("person")));
+  }
+
+  @Test
+  public void unresolvedListsLabelsMissingFromTheTable() {
+    final LabelTable table = LabelTable.of(COCO);
+    assertEquals(Collections.singletonList("traffic light"), table.unresolved(SPECIALIST));
+    assertTrue(table.unresolved(COCO).isEmpty());
+  }
+
+  @Test
+  public void pluralsFollowEnglishRules() {
+    final LabelTable table =
+        LabelTable.of(Arrays.asList("person", "bus", "box", "bench", "dish", "car", "skis"));
+    assertEquals("person", table.getSingular(table.indexOf("person")));
+    assertEquals("people", table.getPlural(table.indexOf("person")));
+    assertEquals("buses", table.getPlural(table.indexOf("bus")));
+    assertEquals("boxes", table.getPlural(table.indexOf("box")));
+    assertEquals("benches", table.getPlural(table.indexOf("bench")));
+    assertEquals("dishes", table.getPlural(table.indexOf("dish")));
+    assertEquals("cars", table.getPlural(table.indexOf("car")));
+    assertEquals("skis", table.getPlural(table.indexOf("skis")));
+  }
+
+  @Test
+  public void hazardsApplyToLabelsAddedBeforeOrAfter() {
+    final LabelTable table =
+        new LabelTable.Builder()
+            .addAll(COCO)
+            .setHazard("person", LabelTable.Hazard.PERSON)
+            .setHazard("traffic light", LabelTable.Hazard.OBSTACLE)
+            .addAll(SPECIALIST)
+            .build();
+    assertEquals(LabelTable.Hazard.PERSON, table.getHazard(table.indexOf("person")));
+    assertEquals(LabelTable.Hazard.OBSTACLE, table.getHazard(table.indexOf("traffic light")));
+    assertEquals(LabelTable.Hazard.NONE, table.getHazard(table.indexOf("bicycle")));
+    assertEquals(LabelTable.Hazard.NONE, table.getHazard(LabelTable.UNKNOWN));
+  }
+}
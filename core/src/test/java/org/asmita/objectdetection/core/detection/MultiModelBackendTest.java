@@ -0,0 +1,205 @@
+package org.asmita.objectdetection.core.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.junit.Test;
+
+public class MultiModelBackendTest {
+  private static final long MS = 1000000L;
+  private static final long FRAME_INTERVAL_NS = 100 * MS;
+  private static final int STAIRS = 3;
+  private static final int DOOR = 4;
+
+  private long nowNs = 0;
+  private final List<DetectorBackend> loaded = new ArrayList<>();
+  private final List<DetectorBackend> released = new ArrayList<>();
+  // Loads and releases handed to the executor and not run yet, in order.
+  private final List<Runnable> queued = new ArrayList<>();
+  private final Executor queue = queued::add;
+
+  /** A backend that takes {@code costNs} per inference and finds {@code detections}. */
+  private class FixedBackend implements DetectorBackend {
+    final int inputSize;
+    long costNs;
+    final List<Detection> detections = new ArrayList<>();
+
+    FixedBackend(final int inputSize, final long costNs) {
+      this.inputSize = inputSize;
+      this.costNs = costNs;
+    }
+
+    @Override
+    public int getInputSize() {
+      return inputSize;
+    }
+
+    @Override
+    public void setInput(final Frame frame, final Transform frameToInput) {}
+
+    @Override
+    public void cropInput(final Transform frameToInput) {}
+
+    @Override
+    public List<Detection> detect() {
+      nowNs += costNs;
+      return new ArrayList<>(detections);
+    }
+  }
+
+  /** Loads {@code specialist}, or fails to if it is null. */
+  private MultiModelBackend.Loader loader(final FixedBackend specialist) {
+    return new MultiModelBackend.Loader() {
+      @Override
+      public DetectorBackend load() throws IOException {
+        if (specialist == null) {
+          throw new IOException("Missing model");
+        }
+        loaded.add(specialist);
+        return specialist;
+      }
+
+      @Override
+      public void release(final DetectorBackend backend) {
+        released.add(backend);
+      }
+    };
+  }
+
+  private MultiModelBackend create(final long memoryBudgetBytes, final Executor executor) {
+    return new MultiModelBackend(
+        new FixedBackend(300, 10 * MS), memoryBudgetBytes, 700 * MS, () -> nowNs, executor);
+  }
+
+  /** A backend with one specialist, loaded as soon as it is handed to the executor. */
+  private MultiModelBackend create(final FixedBackend specialist, final long intervalNs) {
+    final MultiModelBackend backend = create(1L << 30, Runnable::run);
+    backend.addSpecialist("stairs", loader(specialist), 150, 0, intervalNs, 0);
+    return backend;
+  }
+
+  private FixedBackend stairs(final long costNs) {
+    return finding(STAIRS, "stairs", costNs);
+  }
+
+  private FixedBackend finding(final int classIndex, final String title, final long costNs) {
+    final FixedBackend specialist = new FixedBackend(150, costNs);
+    specialist.detections.add(new Detection(classIndex, title, 0.9f, new Box(10, 10, 50, 50)));
+    return specialist;
+  }
+
+  private final Frame frame = new Frame(640, 480);
+
+  /** Runs the frame numbered {@code i}, one frame interval after the one before. */
+  private List<Detection> detectFrame(final MultiModelBackend backend, final int i) {
+    frame.set(null, i, i * FRAME_INTERVAL_NS);
+    nowNs = i * FRAME_INTERVAL_NS;
+    backend.setInput(frame, Transform.identity());
+    return backend.detect();
+  }
+
+  /** Runs frames from {@code first} on and returns how many detections each reported, as digits. */
+  private String run(final MultiModelBackend backend, final int first, final int frames) {
+    final StringBuilder counts = new StringBuilder();
+    for (int i = first; i < first + frames; ++i) {
+      counts.append(detectFrame(backend, i).size());
+    }
+    return counts.toString();
+  }
+
+  private void runQueued() {
+    while (!queued.isEmpty()) {
+      queued.remove(0).run();
+    }
+  }
+
+  @Test
+  public void specialistDetectionsAreReportedOnEveryFrameOfTheirInterval() {
+    final MultiModelBackend backend = create(stairs(20 * MS), 500 * MS);
+    // Loaded on the first frame, run from the second on.
+    assertEquals("0111111111", run(backend, 0, 10));
+  }
+
+  @Test
+  public void specialistDetectionsAreMappedToThePrimaryInput() {
+    final MultiModelBackend backend = create(stairs(20 * MS), 500 * MS);
+    detectFrame(backend, 0);
+    detectFrame(backend, 1);
+    final Box location = detectFrame(backend, 2).get(0).location;
+    assertEquals(20, location.left, 1e-3f);
+    assertEquals(100, location.bottom, 1e-3f);
+  }
+
+  @Test
+  public void detectionsExpireWhenTheSpecialistDoesntRunAgain() {
+    final MultiModelBackend backend = create(stairs(2000 * MS), 300 * MS);
+    // Its first run costs more than the budget ever covers, so it doesn't run again and what it
+    // found is dropped once its interval has passed.
+    assertEquals("01110000", run(backend, 0, 8));
+  }
+
+  @Test
+  public void framesGoOnWithoutASpecialistStillLoading() {
+    final FixedBackend specialist = stairs(20 * MS);
+    final MultiModelBackend backend = create(1L << 30, queue);
+    backend.addSpecialist("stairs", loader(specialist), 150, 0, 500 * MS, 0);
+    assertEquals("0000", run(backend, 0, 4));
+    // One load was started, none ran on the processing thread.
+    assertEquals(1, queued.size());
+    assertTrue(loaded.isEmpty());
+    runQueued();
+    assertEquals("111", run(backend, 4, 3));
+    assertEquals(1, loaded.size());
+  }
+
+  @Test
+  public void failedLoadsAreNotRetried() {
+    final MultiModelBackend backend = create(1L << 30, Runnable::run);
+    backend.addSpecialist("stairs", loader(null), 150, 0, 100 * MS, 0);
+    assertEquals("00000", run(backend, 0, 5));
+    assertTrue(backend.getStatString().contains("stairs: runs=0 mean=0.0ms loads=0 failed"));
+  }
+
+  @Test
+  public void leastRecentlyUsedSpecialistIsReleasedOnTheExecutor() {
+    final FixedBackend stairs = stairs(20 * MS);
+    final FixedBackend door = finding(DOOR, "door", 20 * MS);
+    // Room for one of them only.
+    final MultiModelBackend backend = create(100, queue);
+    backend.addSpecialist("stairs", loader(stairs), 150, 100, 10000 * MS, 0);
+    backend.addSpecialist("door", loader(door), 150, 100, 10000 * MS, 1);
+    detectFrame(backend, 0);
+    runQueued();
+    // Stairs runs, then door is due too and only fits once stairs is released.
+    detectFrame(backend, 1);
+    assertTrue(released.isEmpty());
+    assertEquals(2, queued.size());
+    runQueued();
+    assertEquals(1, released.size());
+    assertSame(stairs, released.get(0));
+    assertSame(door, loaded.get(1));
+  }
+
+  @Test
+  public void releaseAllReleasesSpecialistsStillLoadingOnceLoaded() {
+    final FixedBackend specialist = stairs(20 * MS);
+    final MultiModelBackend backend = create(1L << 30, queue);
+    backend.addSpecialist("stairs", loader(specialist), 150, 0, 500 * MS, 0);
+    detectFrame(backend, 0);
+    backend.releaseAll();
+    runQueued();
+    assertEquals(1, released.size());
+    assertSame(specialist, released.get(0));
+    // Loaded again when next due.
+    assertEquals("0", run(backend, 1, 1));
+    runQueued();
+    assertEquals("1", run(backend, 2, 1));
+  }
+}
@@ -0,0 +1,78 @@
+package org.asmita.objectdetection.core.detection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.junit.Test;
+
+public class NonMaxSuppressionTest {
+  private static final int PERSON = 1;
+  private static final int CAR = 2;
+
+  private static Detection detection(
+      final int classIndex, final float confidence, final Box location) {
+    return new Detection(classIndex, "class " + classIndex, confidence, location);
+  }
+
+  @Test
+  public void keepsTheMostConfidentOfOverlappingDetections() {
+    final Detection weak = detection(PERSON, 0.6f, new Box(0, 0, 10, 10));
+    final Detection strong = detection(PERSON, 0.9f, new Box(1, 1, 11, 11));
+    final List<Detection> kept = new ArrayList<>();
+    NonMaxSuppression.suppress(new ArrayList<>(Arrays.asList(weak, strong)), 0.5f, 1.0f, kept);
+    assertEquals(Arrays.asList(strong), kept);
+  }
+
+  @Test
+  public void keepsOverlappingDetectionsOfDifferentClasses() {
+    final Detection person = detection(PERSON, 0.9f, new Box(0, 0, 10, 10));
+    final Detection car = detection(CAR, 0.6f, new Box(0, 0, 10, 10));
+    final List<Detection> kept = new ArrayList<>();
+    NonMaxSuppression.suppress(new ArrayList<>(Arrays.asList(car, person)), 0.5f, 1.0f, kept);
+    assertEquals(Arrays.asList(person, car), kept);
+  }
+
+  @Test
+  public void suppressesPartsContainedInAKeptDetection() {
+    final Detection whole = detection(PERSON, 0.9f, new Box(0, 0, 100, 100));
+    // Far below the IoU limit, but entirely inside the whole object.
+    final Detection part = detection(PERSON, 0.8f, new Box(0, 0, 30, 30));
+    final List<Detection> kept = new ArrayList<>();
+    NonMaxSuppression.suppress(new ArrayList<>(Arrays.asList(part, whole)), 0.5f, 1.0f, kept);
+    assertEquals(2, kept.size());
+    kept.clear();
+    NonMaxSuppression.suppress(new ArrayList<>(Arrays.asList(part, whole)), 0.5f, 0.8f, kept);
+    assertEquals(Arrays.asList(whole), kept);
+  }
+
+  @Test
+  public void onlyComparesWithWhatThisCallKept() {
+    final Detection earlier = detection(PERSON, 0.9f, new Box(0, 0, 10, 10));
+    final Detection candidate = detection(PERSON, 0.8f, new Box(0, 0, 10, 10));
+    final List<Detection> kept = new ArrayList<>(Arrays.asList(earlier));
+    NonMaxSuppression.suppress(new ArrayList<>(Arrays.asList(candidate)), 0.5f, 1.0f, kept);
+    assertEquals(Arrays.asList(earlier, candidate), kept);
+  }
+
+  @Test
+  public void overlapsAnyUsesTheSameMeasures() {
+    final List<Detection> others =
+        Arrays.asList(
+            detection(PERSON, 0.9f, new Box(0, 0, 100, 100)),
+            detection(CAR, 0.9f, new Box(200, 0, 300, 100)));
+    assertTrue(
+        NonMaxSuppression.overlapsAny(
+            detection(PERSON, 0.5f, new Box(10, 10, 30, 30)), others, 0.5f, 0.8f));
+    assertFalse(
+        NonMaxSuppression.overlapsAny(
+            detection(CAR, 0.5f, new Box(10, 10, 30, 30)), others, 0.5f, 0.8f));
+    assertFalse(
+        NonMaxSuppression.overlapsAny(
+            detection(PERSON, 0.5f, new Box(210, 10, 230, 30)), others, 0.5f, 0.8f));
+  }
+}
@@ -0,0 +1,81 @@
+package org.asmita.objectdetection.core.geometry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class TransformTest {
+  private static final float EPSILON = 1e-3f;
+
+  private static void assertMaps(
+      final Transform transform, final float x, final float y, final float toX, final float toY) {
+    assertEquals(toX, transform.mapX(x, y), EPSILON);
+    assertEquals(toY, transform.mapY(x, y), EPSILON);
+  }
+
+  private static void assertBox(final Box expected, final Box actual) {
+    assertEquals(expected.left, actual.left, EPSILON);
+    assertEquals(expected.top, actual.top, EPSILON);
+    assertEquals(expected.right, actual.right, EPSILON);
+    assertEquals(expected.bottom, actual.bottom, EPSILON);
+  }
+
+  @Test
+  public void thenAppliesThisTransformFirst() {
+    final Transform scaleThenTranslate =
+        Transform.scale(2, 3).then(Transform.translate(10, 20));
+    assertMaps(scaleThenTranslate, 1, 1, 12, 23);
+    final Transform translateThenScale =
+        Transform.translate(10, 20).then(Transform.scale(2, 3));
+    assertMaps(translateThenScale, 1, 1, 22, 63);
+  }
+
+  @Test
+  public void quarterTurnsAreClockwiseAndExact() {
+    final Transform rotation = Transform.rotate(90);
+    assertMaps(rotation, 1, 0, 0, 1);
+    assertMaps(rotation, 0, 1, -1, 0);
+    final float[] values = new float[9];
+    rotation.getValues(values);
+    assertEquals(0.0f, values[0], 0.0f);
+    assertEquals(0.0f, values[4], 0.0f);
+  }
+
+  @Test
+  public void invertUndoesTheTransform() {
+    final Transform transform =
+        Transform.rotate(90).then(Transform.scale(0.5f, 2)).then(Transform.translate(7, -3));
+    final Transform roundTrip = transform.then(transform.invert());
+    assertMaps(roundTrip, 13, 29, 13, 29);
+    assertNull(Transform.scale(0, 1).invert());
+  }
+
+  @Test
+  public void betweenScalesAFrameOntoTheInput() {
+    final Transform frameToInput = Transform.between(640, 480, 300, 300, 0, false);
+    assertMaps(frameToInput, 0, 0, 0, 0);
+    assertMaps(frameToInput, 640, 480, 300, 300);
+  }
+
+  @Test
+  public void betweenRotatesAndKeepsTheAspectRatio() {
+    // A landscape frame rotated upright; the square input sees its central 480x480.
+    final Transform frameToInput = Transform.between(640, 480, 300, 300, 90, true);
+    final Box input = new Box();
+    frameToInput.mapBox(new Box(80, 0, 560, 480), input);
+    assertBox(new Box(0, 0, 300, 300), input);
+    // The frame's top left corner ends up top right.
+    assertMaps(frameToInput, 80, 0, 300, 0);
+  }
+
+  @Test
+  public void mapBoxReturnsTheBoundsOfTheMappedCorners() {
+    final Box box = new Box(0, 0, 10, 20);
+    Transform.rotate(90).mapBox(box, box);
+    assertBox(new Box(-20, 0, 0, 10), box);
+    final Box rotated = new Box();
+    Transform.rotate(45).mapBox(new Box(0, 0, 10, 10), rotated);
+    assertBox(new Box(-7.071f, 0, 7.071f, 14.142f), rotated);
+  }
+}
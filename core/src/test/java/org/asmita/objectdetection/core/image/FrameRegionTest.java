@@ -0,0 +1,44 @@
+package org.asmita.objectdetection.core.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.asmita.objectdetection.core.geometry.Transform;
+import org.junit.Test;
+
+public class FrameRegionTest {
+  @Test
+  public void outputSizeDropsPartialSteps() {
+    final FrameRegion region = new FrameRegion(5, 1, 50, 44, 3);
+    assertEquals(16, region.getOutputWidth());
+    assertEquals(14, region.getOutputHeight());
+  }
+
+  @Test
+  public void wholeOnlyForEveryPixelOfTheFrame() {
+    assertTrue(new FrameRegion(0, 0, 64, 48, 1).isWhole(64, 48));
+    assertFalse(new FrameRegion(0, 0, 64, 48, 2).isWhole(64, 48));
+    assertFalse(new FrameRegion(1, 0, 63, 48, 1).isWhole(64, 48));
+    assertFalse(new FrameRegion(0, 0, 64, 48, 1).isWhole(64, 50));
+  }
+
+  @Test
+  public void toFrameMapsOutputPixelsToTheFramePixelsTheyWereSampledFrom() {
+    final Transform toFrame = new FrameRegion(8, 4, 48, 40, 2).toFrame();
+    assertEquals(8, toFrame.mapX(0, 0), 1e-6f);
+    assertEquals(4, toFrame.mapY(0, 0), 1e-6f);
+    assertEquals(8 + 2 * 23, toFrame.mapX(23, 19), 1e-6f);
+    assertEquals(4 + 2 * 19, toFrame.mapY(23, 19), 1e-6f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNegativeOffsets() {
+    new FrameRegion(-1, 0, 10, 10, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsRegionsSmallerThanAStep() {
+    new FrameRegion(0, 0, 10, 2, 3);
+  }
+}
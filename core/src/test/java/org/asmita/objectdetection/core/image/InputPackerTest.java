@@ -0,0 +1,118 @@
+package org.asmita.objectdetection.core.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+public class InputPackerTest {
+  private static final int SIZE = 30;
+  private static final float[] MEAN = {123.675f, 116.28f, 103.53f};
+  private static final float[] STD = {58.395f, 57.12f, 57.375f};
+
+  private final int[] pixels = new int[SIZE * SIZE];
+
+  public InputPackerTest() {
+    final Random random = new Random(7);
+    for (int i = 0; i < pixels.length; ++i) {
+      pixels[i] = random.nextInt();
+    }
+    // Every channel value at least once, extremes included.
+    for (int value = 0; value < 256; ++value) {
+      pixels[value] = 0xFF000000 | value << 16 | (255 - value) << 8 | value;
+    }
+  }
+
+  private static ByteBuffer allocate(final int bytes) {
+    return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+  }
+
+  private static byte[] bytes(final ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.capacity()];
+    buffer.rewind();
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /** The per-pixel loop InputPacker replaced. */
+  private static byte[] packQuantizedPerPixel(final int[] pixels, final int count) {
+    final ByteBuffer out = allocate(count * 3);
+    for (int i = 0; i < count; ++i) {
+      final int pixelValue = pixels[i];
+      out.put((byte) ((pixelValue >> 16) & 0xFF));
+      out.put((byte) ((pixelValue >> 8) & 0xFF));
+      out.put((byte) (pixelValue & 0xFF));
+    }
+    return bytes(out);
+  }
+
+  /** The per-pixel loop InputPacker replaced, with a mean and std per channel. */
+  private static byte[] packFloatPerPixel(
+      final int[] pixels, final int count, final float[] mean, final float[] std) {
+    final ByteBuffer out = allocate(count * 3 * 4);
+    for (int i = 0; i < count; ++i) {
+      final int pixelValue = pixels[i];
+      out.putFloat((((pixelValue >> 16) & 0xFF) - mean[0]) / std[0]);
+      out.putFloat((((pixelValue >> 8) & 0xFF) - mean[1]) / std[1]);
+      out.putFloat(((pixelValue & 0xFF) - mean[2]) / std[2]);
+    }
+    return bytes(out);
+  }
+
+  private byte[] pack(final InputPacker packer, final int count) {
+    final ByteBuffer out = allocate(count * packer.getBytesPerPixel());
+    packer.pack(pixels, count, out);
+    return bytes(out);
+  }
+
+  @Test
+  public void quantizedMatchesPerPixelPacking() {
+    final InputPacker packer = InputPacker.quantized(SIZE);
+    assertEquals(3, packer.getBytesPerPixel());
+    assertArrayEquals(packQuantizedPerPixel(pixels, pixels.length), pack(packer, pixels.length));
+  }
+
+  @Test
+  public void normalizedMatchesPerPixelPacking() {
+    final InputPacker packer = InputPacker.normalized(SIZE, 128.0f, 128.0f);
+    assertEquals(12, packer.getBytesPerPixel());
+    assertArrayEquals(
+        packFloatPerPixel(
+            pixels, pixels.length, new float[] {128, 128, 128}, new float[] {128, 128, 128}),
+        pack(packer, pixels.length));
+  }
+
+  @Test
+  public void perChannelNormalizationMatchesPerPixelPacking() {
+    assertArrayEquals(
+        packFloatPerPixel(pixels, pixels.length, MEAN, STD),
+        pack(InputPacker.normalized(SIZE, MEAN, STD), pixels.length));
+  }
+
+  @Test
+  public void countNeedNotBeWholeRows() {
+    final int count = SIZE * 3 + 7;
+    assertArrayEquals(
+        packQuantizedPerPixel(pixels, count), pack(InputPacker.quantized(SIZE), count));
+    assertArrayEquals(
+        packFloatPerPixel(pixels, count, MEAN, STD),
+        pack(InputPacker.normalized(SIZE, MEAN, STD), count));
+  }
+
+  @Test
+  public void reusedBufferIsOverwrittenFromTheStart() {
+    final InputPacker packer = InputPacker.normalized(SIZE, MEAN, STD);
+    final ByteBuffer out = allocate(pixels.length * packer.getBytesPerPixel());
+    packer.pack(new int[pixels.length], pixels.length, out);
+    packer.pack(pixels, pixels.length, out);
+    assertArrayEquals(packFloatPerPixel(pixels, pixels.length, MEAN, STD), bytes(out));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void needsAMeanAndStdPerChannel() {
+    InputPacker.normalized(SIZE, new float[] {128, 128}, new float[] {128, 128});
+  }
+}
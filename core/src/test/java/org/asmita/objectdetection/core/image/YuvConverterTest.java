@@ -0,0 +1,109 @@
+package org.asmita.objectdetection.core.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class YuvConverterTest {
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+  // Whole frame, odd offsets and sizes, and subsampling.
+  private static final FrameRegion[] REGIONS = {
+    new FrameRegion(0, 0, WIDTH, HEIGHT, 1),
+    new FrameRegion(7, 3, 31, 29, 1),
+    new FrameRegion(8, 0, 48, 48, 2),
+    new FrameRegion(5, 1, 50, 44, 3),
+  };
+
+  private final byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+
+  public YuvConverterTest() {
+    new Random(0).nextBytes(nv21);
+  }
+
+  /** The pixels of {@code region} picked out of a conversion of the whole frame. */
+  private static int[] crop(final int[] frame, final FrameRegion region) {
+    final int[] cropped = new int[region.getOutputWidth() * region.getOutputHeight()];
+    for (int y = 0, i = 0; y < region.getOutputHeight(); ++y) {
+      for (int x = 0; x < region.getOutputWidth(); ++x) {
+        final int row = region.top + y * region.step;
+        cropped[i++] = frame[row * WIDTH + region.left + x * region.step];
+      }
+    }
+    return cropped;
+  }
+
+  private static int[] outputFor(final FrameRegion region) {
+    return new int[region.getOutputWidth() * region.getOutputHeight()];
+  }
+
+  @Test
+  public void convertsBlackAndGrey() {
+    final byte[] frame = new byte[4 * 2 * 3 / 2];
+    Arrays.fill(frame, (byte) 128);
+    frame[0] = 16;
+    final int[] output = new int[8];
+    YuvConverter.convertYUV420SPToARGB8888(frame, 4, 2, output);
+    assertEquals(0xff000000, output[0]);
+    assertEquals(0xff828282, output[1]);
+  }
+
+  @Test
+  public void nv21RegionMatchesTheWholeFrame() {
+    final int[] frame = new int[WIDTH * HEIGHT];
+    YuvConverter.convertYUV420SPToARGB8888(nv21, WIDTH, HEIGHT, frame);
+    for (final FrameRegion region : REGIONS) {
+      final int[] output = outputFor(region);
+      YuvConverter.convertYUV420SPToARGB8888(nv21, WIDTH, HEIGHT, region, output);
+      assertArrayEquals(crop(frame, region), output);
+    }
+  }
+
+  @Test
+  public void nv21BufferRegionMatchesTheWholeFrame() {
+    final int[] frame = new int[WIDTH * HEIGHT];
+    YuvConverter.convertYUV420SPToARGB8888(nv21, WIDTH, HEIGHT, frame);
+    // The frame starts at the buffer's position.
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(nv21.length + 5);
+    buffer.position(5);
+    buffer.put(nv21);
+    for (final FrameRegion region : REGIONS) {
+      buffer.position(5);
+      final int[] output = outputFor(region);
+      YuvConverter.convertYUV420SPToARGB8888(buffer, WIDTH, HEIGHT, region, output);
+      assertArrayEquals(crop(frame, region), output);
+    }
+    final int[] whole = new int[WIDTH * HEIGHT];
+    buffer.position(5);
+    YuvConverter.convertYUV420SPToARGB8888(buffer, WIDTH, HEIGHT, whole);
+    assertArrayEquals(frame, whole);
+  }
+
+  @Test
+  public void planarRegionMatchesTheWholeFrame() {
+    // The NV21 frame as Camera2 exposes it: a padded luma plane and chroma planes interleaved
+    // with a pixel stride of 2.
+    final int yRowStride = WIDTH + 3;
+    final byte[] y = new byte[yRowStride * HEIGHT];
+    for (int row = 0; row < HEIGHT; ++row) {
+      System.arraycopy(nv21, row * WIDTH, y, row * yRowStride, WIDTH);
+    }
+    final byte[] v = Arrays.copyOfRange(nv21, WIDTH * HEIGHT, nv21.length);
+    final byte[] u = Arrays.copyOfRange(nv21, WIDTH * HEIGHT + 1, nv21.length);
+
+    final int[] expected = new int[WIDTH * HEIGHT];
+    YuvConverter.convertYUV420SPToARGB8888(nv21, WIDTH, HEIGHT, expected);
+    final int[] frame = new int[WIDTH * HEIGHT];
+    YuvConverter.convertYUV420ToARGB8888(y, u, v, WIDTH, HEIGHT, yRowStride, WIDTH, 2, frame);
+    assertArrayEquals(expected, frame);
+    for (final FrameRegion region : REGIONS) {
+      final int[] output = outputFor(region);
+      YuvConverter.convertYUV420ToARGB8888(y, u, v, yRowStride, WIDTH, 2, region, output);
+      assertArrayEquals(crop(frame, region), output);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package org.asmita.objectdetection.core.log;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class LogRingTest {
+  // Android's log levels.
+  private static final int DEBUG = 3;
+  private static final int INFO = 4;
+  private static final int ERROR = 6;
+
+  private long nowNs = 1_234_567_000L;
+  private final LogRing ring = new LogRing(4, () -> nowNs);
+
+  private List<String> dump() {
+    final StringWriter text = new StringWriter();
+    ring.dump(new PrintWriter(text, true));
+    final String dumped = text.toString();
+    return dumped.isEmpty() ? Arrays.<String>asList() : Arrays.asList(dumped.split("\r?\n"));
+  }
+
+  /** A dumped line's message, after the time, thread and level. */
+  private static String message(final String line) {
+    final String thread = Thread.currentThread().getName();
+    return line.substring(line.indexOf(' ' + thread + ' ') + thread.length() + 4);
+  }
+
+  @Test
+  public void capacityIsRoundedUpToAPowerOfTwo() {
+    assertEquals(8, new LogRing(5, () -> 0).getCapacity());
+    assertEquals(8, new LogRing(8, () -> 0).getCapacity());
+    assertEquals(16, new LogRing(9, () -> 0).getCapacity());
+  }
+
+  @Test
+  public void linesHaveTimeThreadLevelPrefixAndMessage() {
+    ring.add(INFO, "Tag: ", "started");
+    assertEquals(
+        Arrays.asList("1.234567 " + Thread.currentThread().getName() + " I Tag: started"), dump());
+  }
+
+  @Test
+  public void keepsOnlyTheNewestRecordsOldestFirst() {
+    for (long i = 0; i < 6; ++i) {
+      nowNs = i * 1000;
+      ring.add(DEBUG, "", "n=%d", i);
+    }
+    final List<String> lines = dump();
+    assertEquals(4, lines.size());
+    for (int i = 0; i < 4; ++i) {
+      assertEquals("n=" + (i + 2), message(lines.get(i)));
+      assertEquals("0.00000" + (i + 2) + " ", lines.get(i).substring(0, 9));
+    }
+  }
+
+  @Test
+  public void argumentsOfEveryKindAreFormattedOnDump() {
+    final LogRing ring = new LogRing(16, () -> 0);
+    ring.add(INFO, "", "%d", 1L);
+    ring.add(INFO, "", "%d/%d", 2L, 3L);
+    ring.add(INFO, "", "%d,%d,%d", 4L, 5L, 6L);
+    ring.add(INFO, "", "%.2f", 7.125);
+    ring.add(INFO, "", "%s", "eight");
+    ring.add(INFO, "", "%s %s", "nine", 10);
+    ring.add(INFO, "", "%s %d %.1f %s", new Object[] {"eleven", 12, 13.0, null});
+    // More arguments than a record holds are formatted right away.
+    ring.add(INFO, "", "%s%s%s%s%s", new Object[] {1, 2, 3, 4, 5});
+    final StringWriter text = new StringWriter();
+    ring.dump(new PrintWriter(text, true));
+    final String[] lines = text.toString().split("\r?\n");
+    final String[] expected = {
+      "1", "2/3", "4,5,6", "7.13", "eight", "nine 10", "eleven 12 13.0 null", "12345",
+    };
+    assertEquals(expected.length, lines.length);
+    for (int i = 0; i < expected.length; ++i) {
+      assertEquals(expected[i], message(lines[i]));
+    }
+  }
+
+  @Test
+  public void objectArgumentsAreFormattedWhenDumped() {
+    final StringBuilder state = new StringBuilder("before");
+    ring.add(INFO, "", "%s", state);
+    state.replace(0, state.length(), "after");
+    assertEquals("after", message(dump().get(0)));
+  }
+
+  @Test
+  public void malformedFormatsFallBackToTheRawArguments() {
+    ring.add(ERROR, "", "%d items", "x");
+    ring.add(ERROR, "", "%s and %s", "one");
+    ring.add(ERROR, "", "100%", 5L);
+    final List<String> lines = dump();
+    assertEquals("%d items x", message(lines.get(0)));
+    assertEquals("%s and %s one", message(lines.get(1)));
+    assertEquals("100% 5", message(lines.get(2)));
+  }
+
+  @Test
+  public void clearForgetsRecords() {
+    ring.add(INFO, "", "gone");
+    ring.clear();
+    assertEquals(0, dump().size());
+    ring.add(INFO, "", "kept");
+    assertEquals("kept", message(dump().get(0)));
+  }
+}
@@ -0,0 +1,111 @@
+package org.asmita.objectdetection.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  /** The upper bound of the bucket {@code valueUs} is counted in. */
+  private static long bucketBound(final long valueUs) {
+    final LatencyHistogram single = new LatencyHistogram();
+    single.record(valueUs);
+    final StringWriter buckets = new StringWriter();
+    single.writeBuckets(new PrintWriter(buckets, true), "x");
+    final String[] fields = buckets.toString().trim().split(",");
+    return Long.parseLong(fields[1]);
+  }
+
+  @Test
+  public void smallValuesAndTheFirstOctaveAreExact() {
+    for (long v = 0; v < 32; ++v) {
+      assertEquals(v, bucketBound(v));
+    }
+  }
+
+  @Test
+  public void bucketsSplitEachPowerOfTwoInSixteen() {
+    assertEquals(33, bucketBound(32));
+    assertEquals(33, bucketBound(33));
+    assertEquals(35, bucketBound(34));
+    assertEquals(1023, bucketBound(1000));
+    assertEquals(1023, bucketBound(1023));
+    assertEquals(1087, bucketBound(1024));
+  }
+
+  @Test
+  public void bucketBoundsAreWithinASixteenthAbove() {
+    final Random random = new Random(0);
+    for (int i = 0; i < 10000; ++i) {
+      final long v = 16 + random.nextInt(Integer.MAX_VALUE - 16);
+      final long bound = bucketBound(v);
+      assertTrue(v + " -> " + bound, bound >= v && bound <= v + v / 16);
+    }
+  }
+
+  @Test
+  public void percentilesOfAUniformSpread() {
+    for (int ms = 1; ms <= 100; ++ms) {
+      histogram.record(ms * 1000L);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(50500, histogram.getMeanUs());
+    assertEquals(100000, histogram.getMaxUs());
+    assertEquals(1000, histogram.getPercentileUs(0), 1000 / 16);
+    assertEquals(50000, histogram.getPercentileUs(50), 50000 / 16);
+    assertEquals(90000, histogram.getPercentileUs(90), 90000 / 16);
+    // Never above the largest value recorded.
+    assertEquals(100000, histogram.getPercentileUs(100));
+  }
+
+  @Test
+  public void percentileRanksRoundUp() {
+    for (long v = 0; v < 10; ++v) {
+      histogram.record(v);
+    }
+    assertEquals(4, histogram.getPercentileUs(50));
+    assertEquals(5, histogram.getPercentileUs(51));
+    assertEquals(9, histogram.getPercentileUs(99));
+  }
+
+  @Test
+  public void emptyHistogramReportsZero() {
+    assertEquals(0, histogram.getPercentileUs(50));
+    assertEquals(0, histogram.getMeanUs());
+  }
+
+  @Test
+  public void negativeAndHugeValuesAreClamped() {
+    histogram.record(-5);
+    assertEquals(0, histogram.getMaxUs());
+    assertEquals(0, histogram.getPercentileUs(100));
+
+    final long hugeUs = 1L << 40;
+    histogram.record(hugeUs);
+    assertEquals(hugeUs, histogram.getMaxUs());
+    assertEquals((1L << 31) - 1, histogram.getPercentileUs(100));
+  }
+
+  @Test
+  public void resetClearsEverything() {
+    histogram.record(1234);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMaxUs());
+    assertEquals(0, histogram.getPercentileUs(99));
+  }
+
+  @Test
+  public void summaryIsInMilliseconds() {
+    histogram.record(31200);
+    final StringBuilder sb = new StringBuilder();
+    histogram.appendSummary(sb);
+    assertEquals(
+        "n=1 mean=31.2ms p50=31.2ms p90=31.2ms p99=31.2ms max=31.2ms", sb.toString());
+  }
+}
@@ -0,0 +1,350 @@
+package org.asmita.objectdetection.core.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+import org.asmita.objectdetection.core.detection.Detection;
+import org.asmita.objectdetection.core.detection.Frame;
+import org.asmita.objectdetection.core.geometry.Box;
+import org.asmita.objectdetection.core.image.FrameRegion;
+import org.asmita.objectdetection.core.tracking.ObjectTracker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlackBoxRecorderTest {
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 48;
+  private static final long FRAME_INTERVAL_NS = 100_000_000L;
+
+  /** A block read back from the file. */
+  private static class Block {
+    long timeMs;
+    String reason;
+    int compressedSize;
+    int payloadSize;
+    final List<RecordedFrame> frames = new ArrayList<>();
+    final List<String> utterances = new ArrayList<>();
+  }
+
+  private static class RecordedFrame {
+    long frameNumber;
+    long timestampNs;
+    int width;
+    int height;
+    byte[] luma;
+    final List<String> detections = new ArrayList<>();
+    final List<String> tracks = new ArrayList<>();
+  }
+
+  private final Frame frame = new Frame(WIDTH, HEIGHT);
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("blackbox", ".bin");
+    file.delete();
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  /** Grey level of pixel ({@code x}, {@code y}) of the test frames, never black. */
+  private static int grey(final int x, final int y) {
+    return 1 + (x + 3 * y) % 200;
+  }
+
+  private static int[] greyFrame() {
+    final int[] pixels = new int[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; ++y) {
+      for (int x = 0; x < WIDTH; ++x) {
+        final int v = grey(x, y);
+        pixels[y * WIDTH + x] = 0xff000000 | v << 16 | v << 8 | v;
+      }
+    }
+    return pixels;
+  }
+
+  private static int[] uniformFrame(final int v) {
+    final int[] pixels = new int[WIDTH * HEIGHT];
+    Arrays.fill(pixels, 0xff000000 | v << 16 | v << 8 | v);
+    return pixels;
+  }
+
+  private static List<Block> readBlocks(final File file) throws IOException {
+    final List<Block> blocks = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      while (in.available() > 0) {
+        assertEquals(BlackBoxRecorder.MAGIC, in.readInt());
+        assertEquals(BlackBoxRecorder.VERSION, in.readInt());
+        final Block block = new Block();
+        block.timeMs = in.readLong();
+        block.reason = in.readUTF();
+        block.compressedSize = in.readInt();
+        final byte[] compressed = new byte[block.compressedSize];
+        in.readFully(compressed);
+        readPayload(compressed, block);
+        blocks.add(block);
+      }
+    }
+    return blocks;
+  }
+
+  private static void readPayload(final byte[] compressed, final Block block) throws IOException {
+    final CountingInflater inflated = new CountingInflater(compressed);
+    final DataInputStream in = new DataInputStream(inflated);
+    while (in.readByte() == 1) {
+      final RecordedFrame frame = new RecordedFrame();
+      frame.frameNumber = in.readLong();
+      frame.timestampNs = in.readLong();
+      frame.width = in.readInt();
+      frame.height = in.readInt();
+      frame.luma = new byte[frame.width * frame.height];
+      in.readFully(frame.luma);
+      for (int i = in.readInt(); i > 0; --i) {
+        frame.detections.add(
+            in.readUTF()
+                + " "
+                + in.readFloat()
+                + " "
+                + Arrays.toString(
+                    new float[] {in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat()}));
+      }
+      for (int i = in.readInt(); i > 0; --i) {
+        frame.tracks.add(
+            in.readInt()
+                + " "
+                + in.readUTF()
+                + " "
+                + in.readFloat()
+                + " "
+                + Arrays.toString(
+                    new float[] {in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat()})
+                + " "
+                + in.readFloat());
+      }
+      block.frames.add(frame);
+    }
+    for (int i = in.readInt(); i > 0; --i) {
+      block.utterances.add(in.readLong() + " " + in.readUTF() + " " + in.readUTF());
+    }
+    assertEquals(-1, in.read());
+    block.payloadSize = inflated.count;
+  }
+
+  /** Inflates a payload, counting the bytes it yields. */
+  private static class CountingInflater extends InflaterInputStream {
+    int count;
+
+    CountingInflater(final byte[] compressed) {
+      super(new ByteArrayInputStream(compressed));
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      final int n = super.read(b, off, len);
+      count += Math.max(0, n);
+      return n;
+    }
+  }
+
+  @Test
+  public void blocksAreAppendedWithTheirReason() throws IOException {
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(32, 24, 10, 10 * FRAME_INTERVAL_NS);
+    final long beforeMs = System.currentTimeMillis();
+    frame.set(uniformFrame(50), 1, FRAME_INTERVAL_NS);
+    recorder.addFrame(frame);
+    assertEquals(1, recorder.flush(file, "report a problem"));
+    frame.set(uniformFrame(60), 2, 2 * FRAME_INTERVAL_NS);
+    recorder.addFrame(frame);
+    assertEquals(2, recorder.flush(file, "crash"));
+
+    final List<Block> blocks = readBlocks(file);
+    assertEquals(2, blocks.size());
+    assertEquals("report a problem", blocks.get(0).reason);
+    assertEquals("crash", blocks.get(1).reason);
+    assertTrue(blocks.get(0).timeMs >= beforeMs);
+    assertTrue(blocks.get(1).timeMs <= System.currentTimeMillis());
+    assertEquals(1, blocks.get(0).frames.size());
+    assertEquals(2, blocks.get(1).frames.size());
+    assertEquals(2, blocks.get(1).frames.get(1).frameNumber);
+    assertEquals(2 * FRAME_INTERVAL_NS, blocks.get(1).frames.get(1).timestampNs);
+  }
+
+  @Test
+  public void payloadIsDeflated() throws IOException {
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(WIDTH, HEIGHT, 10, Long.MAX_VALUE / 2);
+    for (int i = 0; i < 10; ++i) {
+      frame.set(uniformFrame(100), i, i * FRAME_INTERVAL_NS);
+      recorder.addFrame(frame);
+    }
+    recorder.flush(file, "test");
+    final Block block = readBlocks(file).get(0);
+    assertEquals(10, block.frames.size());
+    assertTrue(block.payloadSize > 10 * WIDTH * HEIGHT);
+    assertTrue(block.compressedSize * 10 < block.payloadSize);
+  }
+
+  @Test
+  public void lumaIsSubsampledToFit() throws IOException {
+    // 64x48 doesn't fit 40x40, so every second pixel is kept.
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(40, 40, 4, FRAME_INTERVAL_NS);
+    frame.set(greyFrame(), 0, 0);
+    recorder.addFrame(frame);
+    recorder.flush(file, "test");
+    final RecordedFrame recorded = readBlocks(file).get(0).frames.get(0);
+    assertEquals(32, recorded.width);
+    assertEquals(24, recorded.height);
+    for (int y = 0; y < 24; ++y) {
+      for (int x = 0; x < 32; ++x) {
+        assertEquals(grey(2 * x, 2 * y), recorded.luma[y * 32 + x] & 0xff);
+      }
+    }
+  }
+
+  @Test
+  public void regionFramesAreBlackOutsideTheRegion() throws IOException {
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(32, 24, 4, FRAME_INTERVAL_NS);
+    // The middle of the frame, converted at every second pixel.
+    final FrameRegion region = new FrameRegion(16, 8, 32, 32, 2);
+    final int[] whole = greyFrame();
+    final int[] pixels = new int[region.getOutputWidth() * region.getOutputHeight()];
+    for (int r = 0; r < region.getOutputHeight(); ++r) {
+      for (int c = 0; c < region.getOutputWidth(); ++c) {
+        pixels[r * region.getOutputWidth() + c] =
+            whole[(region.top + 2 * r) * WIDTH + region.left + 2 * c];
+      }
+    }
+    frame.set(pixels, region, 0, 0);
+    recorder.addFrame(frame);
+    recorder.flush(file, "test");
+
+    final RecordedFrame recorded = readBlocks(file).get(0).frames.get(0);
+    assertEquals(32, recorded.width);
+    assertEquals(24, recorded.height);
+    for (int y = 0; y < 24; ++y) {
+      for (int x = 0; x < 32; ++x) {
+        final boolean inside = 2 * x >= 16 && 2 * x < 48 && 2 * y >= 8 && 2 * y < 40;
+        assertEquals(
+            "(" + x + ", " + y + ")",
+            inside ? grey(2 * x, 2 * y) : 0,
+            recorded.luma[y * 32 + x] & 0xff);
+      }
+    }
+  }
+
+  @Test
+  public void objectsAreKeptWithTheirFrame() throws IOException {
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(32, 24, 8, 10 * FRAME_INTERVAL_NS);
+    final ObjectTracker tracker = new ObjectTracker(4);
+    tracker.setFrameSize(WIDTH, HEIGHT);
+    final List<Detection> detections =
+        Collections.singletonList(new Detection(1, "chair", 0.75f, new Box(10, 12, 30, 40)));
+    tracker.update(detections, 0);
+    for (int i = 0; i < 6; ++i) {
+      frame.set(uniformFrame(10), 100 + i, i * FRAME_INTERVAL_NS);
+      recorder.addFrame(frame);
+    }
+    recorder.setObjects(105, detections, tracker.getTracks());
+    // Too far back, the slot isn't looked for.
+    recorder.setObjects(100, detections, tracker.getTracks());
+    recorder.flush(file, "test");
+
+    final List<RecordedFrame> frames = readBlocks(file).get(0).frames;
+    assertEquals(6, frames.size());
+    assertEquals(0, frames.get(0).detections.size());
+    final RecordedFrame newest = frames.get(5);
+    assertEquals(
+        Collections.singletonList("chair 0.75 [10.0, 12.0, 30.0, 40.0]"), newest.detections);
+    assertEquals(1, newest.tracks.size());
+    assertTrue(newest.tracks.get(0), newest.tracks.get(0).contains(" chair 0.75 "));
+  }
+
+  @Test
+  public void onlyTheWindowAndTheNewestFramesAreWritten() throws IOException {
+    // Room for 8 frames, of which the last 500ms are written.
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(32, 24, 8, 5 * FRAME_INTERVAL_NS);
+    for (int i = 0; i < 20; ++i) {
+      frame.set(uniformFrame(10), i, i * FRAME_INTERVAL_NS);
+      recorder.addFrame(frame);
+    }
+    recorder.addUtterance(3 * FRAME_INTERVAL_NS, "GUIDANCE", "too old");
+    recorder.addUtterance(17 * FRAME_INTERVAL_NS, "HAZARD", "chair ahead");
+    assertEquals(6, recorder.flush(file, "test"));
+
+    final Block block = readBlocks(file).get(0);
+    assertEquals(14, block.frames.get(0).frameNumber);
+    assertEquals(19, block.frames.get(5).frameNumber);
+    assertEquals(
+        Collections.singletonList(17 * FRAME_INTERVAL_NS + " HAZARD chair ahead"),
+        block.utterances);
+  }
+
+  @Test
+  public void emptyRecorderWritesAnEmptyBlock() throws IOException {
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(32, 24, 4, FRAME_INTERVAL_NS);
+    assertEquals(0, recorder.flush(file, "test"));
+    final Block block = readBlocks(file).get(0);
+    assertEquals(0, block.frames.size());
+    assertEquals(0, block.utterances.size());
+  }
+
+  @Test
+  public void framesRecordedDuringAFlushNeverTearIt() throws Exception {
+    // A small ring that is overwritten many times over while the flushes copy out of it.
+    final BlackBoxRecorder recorder = new BlackBoxRecorder(WIDTH, HEIGHT, 4, Long.MAX_VALUE / 2);
+    final int frames = 20000;
+    final Thread pipeline =
+        new Thread(
+            () -> {
+              final Frame frame = new Frame(WIDTH, HEIGHT);
+              final int[][] pixels = new int[256][];
+              for (int i = 0; i < frames; ++i) {
+                final int v = i & 0xff;
+                if (pixels[v] == null) {
+                  pixels[v] = uniformFrame(v);
+                }
+                frame.set(pixels[v], i, i);
+                recorder.addFrame(frame);
+                recorder.setObjects(
+                    i,
+                    Collections.singletonList(new Detection(1, "f" + i, 1f, new Box(0, 0, 1, 1))),
+                    Collections.<ObjectTracker.Track>emptyList());
+              }
+            });
+    pipeline.start();
+    while (pipeline.isAlive()) {
+      recorder.flush(file, "test");
+    }
+    pipeline.join();
+    recorder.flush(file, "test");
+
+    for (final Block block : readBlocks(file)) {
+      long previous = -1;
+      for (final RecordedFrame frame : block.frames) {
+        assertTrue(frame.frameNumber > previous);
+        previous = frame.frameNumber;
+        final byte[] expected = new byte[WIDTH * HEIGHT];
+        Arrays.fill(expected, (byte) frame.frameNumber);
+        assertArrayEquals(expected, frame.luma);
+        assertTrue(
+            frame.detections.toString(),
+            frame.detections.isEmpty()
+                || frame.detections.get(0).startsWith("f" + frame.frameNumber + " "));
+      }
+    }
+  }
+}
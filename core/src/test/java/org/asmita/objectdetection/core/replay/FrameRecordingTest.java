@@ -0,0 +1,138 @@
+package org.asmita.objectdetection.core.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameRecordingTest {
+  // Odd dimensions, so the chroma planes are rounded up.
+  private static final int WIDTH = 21;
+  private static final int HEIGHT = 13;
+  private static final int ROTATION = 270;
+  // More than the writer's initial room for timestamps.
+  private static final int FRAMES = 70;
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("recording", ".yuvr");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private static byte[] frame(final int index) {
+    final byte[] nv21 = new byte[FrameRecording.nv21Size(WIDTH, HEIGHT)];
+    new Random(index).nextBytes(nv21);
+    return nv21;
+  }
+
+  private static long timestampNs(final int index) {
+    return 5_000_000_000L + index * 33_366_667L;
+  }
+
+  @Test
+  public void nv21SizeRoundsChromaUp() {
+    assertEquals(640 * 480 * 3 / 2, FrameRecording.nv21Size(640, 480));
+    assertEquals(21 * 13 + 11 * 7 * 2, FrameRecording.nv21Size(WIDTH, HEIGHT));
+  }
+
+  @Test
+  public void framesAndTimestampsRoundTrip() throws IOException {
+    try (FrameRecordingWriter writer = new FrameRecordingWriter(file, WIDTH, HEIGHT, ROTATION)) {
+      for (int i = 0; i < FRAMES; ++i) {
+        if (i % 2 == 0) {
+          writer.addFrame(frame(i), timestampNs(i));
+        } else {
+          // Only the remaining bytes of a buffer are a frame.
+          final byte[] nv21 = frame(i);
+          final ByteBuffer buffer = ByteBuffer.allocateDirect(nv21.length + 3);
+          buffer.position(3);
+          buffer.put(nv21);
+          buffer.position(3);
+          writer.addFrame(buffer, timestampNs(i));
+        }
+      }
+      assertEquals(FRAMES, writer.getFrameCount());
+    }
+
+    try (FrameRecording recording = FrameRecording.open(file)) {
+      assertEquals(WIDTH, recording.getWidth());
+      assertEquals(HEIGHT, recording.getHeight());
+      assertEquals(ROTATION, recording.getRotation());
+      assertEquals(FRAMES, recording.getFrameCount());
+      for (int i = 0; i < FRAMES; ++i) {
+        assertEquals(timestampNs(i), recording.getTimestampNs(i));
+        final ByteBuffer frame = recording.getFrame(i);
+        assertEquals(0, frame.position());
+        final byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        assertArrayEquals(frame(i), bytes);
+      }
+    }
+  }
+
+  @Test
+  public void emptyRecordingRoundTrips() throws IOException {
+    new FrameRecordingWriter(file, WIDTH, HEIGHT, 0).close();
+    try (FrameRecording recording = FrameRecording.open(file)) {
+      assertEquals(0, recording.getFrameCount());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void writerRejectsFramesOfTheWrongSize() throws IOException {
+    try (FrameRecordingWriter writer = new FrameRecordingWriter(file, WIDTH, HEIGHT, 0)) {
+      writer.addFrame(new byte[WIDTH * HEIGHT], 0);
+    }
+  }
+
+  @Test(expected = ReadOnlyBufferException.class)
+  public void framesAreReadOnly() throws IOException {
+    try (FrameRecordingWriter writer = new FrameRecordingWriter(file, WIDTH, HEIGHT, 0)) {
+      writer.addFrame(frame(0), 0);
+    }
+    try (FrameRecording recording = FrameRecording.open(file)) {
+      recording.getFrame(0).put((byte) 0);
+    }
+  }
+
+  @Test
+  public void truncatedAndForeignFilesAreRejected() throws IOException {
+    try (FrameRecordingWriter writer = new FrameRecordingWriter(file, WIDTH, HEIGHT, 0)) {
+      writer.addFrame(frame(0), 0);
+      writer.addFrame(frame(1), 1);
+    }
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.setLength(raw.length() - 1);
+    }
+    assertOpenFails();
+
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.write(new byte[] {'R', 'I', 'F', 'F'});
+    }
+    assertOpenFails();
+  }
+
+  private void assertOpenFails() {
+    try {
+      FrameRecording.open(file).close();
+    } catch (final IOException e) {
+      return;
+    }
+    fail("Opened " + file);
+  }
+}
@@ -0,0 +1,63 @@
+package org.asmita.objectdetection.core.scene;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.asmita.objectdetection.core.detection.LabelTable;
+import org.junit.Test;
+
+public class ScenePhraserTest {
+  private final LabelTable labels =
+      LabelTable.of(Arrays.asList(LabelTable.UNKNOWN_LABEL, "person", "bus", "chair", "dog"));
+  private final ScenePhraser phraser = new ScenePhraser(labels);
+  private final List<SceneChange> changes = new ArrayList<>();
+
+  private void add(
+      final SceneChange.Type type,
+      final String label,
+      final Position position,
+      final Position previousPosition,
+      final int count,
+      final int previousCount) {
+    changes.add(
+        new SceneChange(
+            type, labels.indexOf(label), position, previousPosition, count, previousCount));
+  }
+
+  @Test
+  public void noChangesIsSilence() {
+    assertEquals("", phraser.phrase(changes));
+  }
+
+  @Test
+  public void changesAreJoinedIntoOneUtterance() {
+    add(SceneChange.Type.ADDED, "person", Position.LEFT, null, 2, 0);
+    add(SceneChange.Type.ADDED, "bus", Position.FRONT, null, 1, 0);
+    assertEquals("two people on your left, bus in front of you", phraser.phrase(changes));
+  }
+
+  @Test
+  public void eachChangeTypeHasItsPhrase() {
+    add(SceneChange.Type.COUNT_CHANGED, "chair", Position.RIGHT, null, 3, 1);
+    add(SceneChange.Type.MOVED, "dog", Position.LEFT, Position.FRONT, 1, 1);
+    add(SceneChange.Type.REMOVED, "bus", Position.FRONT, null, 0, 2);
+    assertEquals(
+        "three chairs on your right, dog now on your left, two buses no longer in front of you",
+        phraser.phrase(changes));
+  }
+
+  @Test
+  public void largeCountsAreSpokenAsNumbers() {
+    add(SceneChange.Type.ADDED, "person", Position.FRONT, null, 12, 0);
+    assertEquals("12 people in front of you", phraser.phrase(changes));
+  }
+
+  @Test
+  public void hazardWarning() {
+    assertEquals(
+        "Watch out, bus approaching on your right",
+        phraser.phraseHazard(labels.indexOf("bus"), Position.RIGHT));
+  }
+}
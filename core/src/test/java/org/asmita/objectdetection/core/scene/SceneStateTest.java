@@ -0,0 +1,134 @@
+package org.asmita.objectdetection.core.scene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class SceneStateTest {
+  private static final int PERSON = 1;
+  private static final int CHAIR = 2;
+
+  private final SceneState state = new SceneState(3);
+  private final List<SceneChange> changes = new ArrayList<>();
+
+  /** Runs a frame that saw {@code count} objects of {@code classIndex} at {@code position}. */
+  private boolean frame(final int classIndex, final Position position, final int count) {
+    state.beginFrame();
+    for (int i = 0; i < count; ++i) {
+      state.observe(classIndex, position);
+    }
+    return state.endFrame();
+  }
+
+  private List<SceneChange> collect() {
+    changes.clear();
+    state.collectChanges(changes);
+    return changes;
+  }
+
+  @Test
+  public void appearanceIsAcceptedOnTheSecondConsecutiveFrame() {
+    assertFalse(frame(PERSON, Position.LEFT, 1));
+    assertTrue(collect().isEmpty());
+    assertTrue(frame(PERSON, Position.LEFT, 1));
+
+    final List<SceneChange> changes = collect();
+    assertEquals(1, changes.size());
+    assertEquals(SceneChange.Type.ADDED, changes.get(0).type);
+    assertEquals(PERSON, changes.get(0).classIndex);
+    assertEquals(Position.LEFT, changes.get(0).position);
+    assertEquals(1, changes.get(0).count);
+    assertNull(changes.get(0).previousPosition);
+  }
+
+  @Test
+  public void objectSeenOnEveryOtherFrameIsNeverAccepted() {
+    for (int i = 0; i < 20; ++i) {
+      assertFalse(frame(PERSON, Position.FRONT, i % 2));
+    }
+    assertTrue(collect().isEmpty());
+  }
+
+  @Test
+  public void disappearanceIsAcceptedOnTheFourthConsecutiveFrame() {
+    frame(CHAIR, Position.RIGHT, 1);
+    frame(CHAIR, Position.RIGHT, 1);
+    collect();
+
+    assertFalse(frame(CHAIR, Position.RIGHT, 0));
+    assertFalse(frame(CHAIR, Position.RIGHT, 0));
+    // A single frame with the object again restarts the count.
+    assertFalse(frame(CHAIR, Position.RIGHT, 1));
+    assertFalse(frame(CHAIR, Position.RIGHT, 0));
+    assertFalse(frame(CHAIR, Position.RIGHT, 0));
+    assertFalse(frame(CHAIR, Position.RIGHT, 0));
+    assertTrue(frame(CHAIR, Position.RIGHT, 0));
+
+    final List<SceneChange> changes = collect();
+    assertEquals(1, changes.size());
+    assertEquals(SceneChange.Type.REMOVED, changes.get(0).type);
+    assertEquals(1, changes.get(0).previousCount);
+  }
+
+  @Test
+  public void countChangeIsReported() {
+    frame(PERSON, Position.FRONT, 1);
+    frame(PERSON, Position.FRONT, 1);
+    collect();
+    frame(PERSON, Position.FRONT, 3);
+    frame(PERSON, Position.FRONT, 3);
+
+    final List<SceneChange> changes = collect();
+    assertEquals(1, changes.size());
+    assertEquals(SceneChange.Type.COUNT_CHANGED, changes.get(0).type);
+    assertEquals(3, changes.get(0).count);
+    assertEquals(1, changes.get(0).previousCount);
+  }
+
+  @Test
+  public void classLeavingOnePositionForAnotherHasMoved() {
+    frame(PERSON, Position.LEFT, 1);
+    frame(PERSON, Position.LEFT, 1);
+    collect();
+    for (int i = 0; i < 4; ++i) {
+      frame(PERSON, Position.FRONT, 1);
+    }
+
+    final List<SceneChange> changes = collect();
+    assertEquals(1, changes.size());
+    assertEquals(SceneChange.Type.MOVED, changes.get(0).type);
+    assertEquals(Position.FRONT, changes.get(0).position);
+    assertEquals(Position.LEFT, changes.get(0).previousPosition);
+  }
+
+  @Test
+  public void changesAreOnlyReportedOnce() {
+    frame(PERSON, Position.LEFT, 1);
+    frame(PERSON, Position.LEFT, 1);
+    assertEquals(1, collect().size());
+    frame(PERSON, Position.LEFT, 1);
+    assertTrue(collect().isEmpty());
+  }
+
+  @Test
+  public void resetAnnouncedReportsTheWholeSceneAgain() {
+    frame(PERSON, Position.LEFT, 1);
+    frame(PERSON, Position.LEFT, 1);
+    collect();
+    state.resetAnnounced();
+    assertEquals(1, collect().size());
+  }
+
+  @Test
+  public void clearForgetsTheScene() {
+    frame(PERSON, Position.LEFT, 1);
+    frame(PERSON, Position.LEFT, 1);
+    state.clear();
+    assertTrue(collect().isEmpty());
+  }
+}
@@ -0,0 +1,140 @@
+package org.asmita.objectdetection.core.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TraceRecorderTest {
+  private long nowNs = 1_000_000L;
+  private final TraceRecorder tracer = new TraceRecorder(4, () -> nowNs);
+
+  private String json() {
+    final StringWriter text = new StringWriter();
+    tracer.writeJson(new PrintWriter(text, true));
+    return text.toString();
+  }
+
+  /** The event lines of the export, without thread names. */
+  private List<String> events() {
+    final List<String> events = new ArrayList<>();
+    for (final String line : json().split("\r?\n")) {
+      if (line.startsWith("{\"name\":") && !line.contains("\"ph\":\"M\"")) {
+        events.add(line.endsWith(",") ? line.substring(0, line.length() - 1) : line);
+      }
+    }
+    return events;
+  }
+
+  private static long tid() {
+    return Thread.currentThread().getId();
+  }
+
+  @Test
+  public void emptyTraceIsValid() {
+    assertEquals(
+        "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n\n]}\n",
+        json().replace("\r\n", "\n"));
+  }
+
+  @Test
+  public void eventsOfEveryPhase() {
+    final TraceRecorder tracer = new TraceRecorder(16, () -> nowNs);
+    tracer.begin("frame");
+    nowNs = 2_500_000L;
+    tracer.end("frame");
+    tracer.complete("detect", 3_000_000L, 4_250_500L);
+    tracer.beginAsync("ocr", 7);
+    tracer.endAsync("ocr", 7);
+    tracer.counter("detections", 3);
+    tracer.instant("drop");
+    final StringWriter text = new StringWriter();
+    tracer.writeJson(new PrintWriter(text, true));
+    final String json = text.toString();
+    final String prefix = "\",\"pid\":1,\"tid\":" + tid() + ",\"ts\":";
+    final String[] expected = {
+      "{\"name\":\"frame\",\"ph\":\"B" + prefix + "1000.000}",
+      "{\"name\":\"frame\",\"ph\":\"E" + prefix + "2500.000}",
+      "{\"name\":\"detect\",\"ph\":\"X" + prefix + "3000.000,\"dur\":1250.500}",
+      "{\"name\":\"ocr\",\"ph\":\"b" + prefix + "2500.000,\"cat\":\"async\",\"id\":7}",
+      "{\"name\":\"ocr\",\"ph\":\"e" + prefix + "2500.000,\"cat\":\"async\",\"id\":7}",
+      "{\"name\":\"detections\",\"ph\":\"C" + prefix + "2500.000,\"args\":{\"value\":3.0}}",
+      "{\"name\":\"drop\",\"ph\":\"i" + prefix + "2500.000,\"s\":\"t\"}",
+    };
+    int from = 0;
+    for (final String event : expected) {
+      final int at = json.indexOf(event, from);
+      assertTrue(event, at >= 0);
+      from = at + event.length();
+    }
+    assertTrue(
+        json.contains(
+            "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":"
+                + tid()
+                + ",\"args\":{\"name\":\""));
+  }
+
+  @Test
+  public void keepsOnlyTheNewestEventsOldestFirst() {
+    final String[] names = {"a", "b", "c", "d", "e", "f"};
+    for (final String name : names) {
+      tracer.instant(name);
+    }
+    final List<String> events = events();
+    assertEquals(4, events.size());
+    for (int i = 0; i < 4; ++i) {
+      assertTrue(events.get(i), events.get(i).startsWith("{\"name\":\"" + names[i + 2] + "\""));
+    }
+  }
+
+  @Test
+  public void wrapsRepeatedly() {
+    for (int i = 0; i < 4 * 5 + 3; ++i) {
+      tracer.counter("n", i);
+    }
+    final List<String> events = events();
+    assertEquals(4, events.size());
+    for (int i = 0; i < 4; ++i) {
+      assertTrue(events.get(i), events.get(i).endsWith("{\"value\":" + (19 + i) + ".0}}"));
+    }
+  }
+
+  @Test
+  public void nonFiniteCountersAreWrittenAsZero() {
+    tracer.counter("nan", Double.NaN);
+    tracer.counter("inf", Double.NEGATIVE_INFINITY);
+    for (final String event : events()) {
+      assertTrue(event, event.endsWith(",\"args\":{\"value\":0.0}}"));
+    }
+  }
+
+  @Test
+  public void namesAreEscaped() {
+    tracer.instant("say \"hi\" \\ now\n\t\u0001");
+    assertTrue(
+        events().get(0).startsWith("{\"name\":\"say \\\"hi\\\" \\\\ now\\u000a\\u0009\\u0001\","));
+  }
+
+  @Test
+  public void threadNamesAreEscaped() throws InterruptedException {
+    final Thread thread = new Thread(() -> tracer.instant("x"), "worker \"1\"");
+    thread.start();
+    thread.join();
+    assertTrue(json().contains(",\"args\":{\"name\":\"worker \\\"1\\\"\"}}"));
+  }
+
+  @Test
+  public void disabledRecorderAndClearDropEvents() {
+    tracer.setEnabled(false);
+    tracer.instant("off");
+    assertEquals(0, events().size());
+    tracer.setEnabled(true);
+    tracer.instant("on");
+    tracer.clear();
+    assertEquals(0, events().size());
+  }
+}
@@ -0,0 +1,94 @@
+package org.asmita.objectdetection.core.tracking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CollisionEstimatorTest {
+  private static final int TRACK = 7;
+  private static final long FRAME_NS = 100_000_000L;
+
+  private final CollisionEstimator estimator = new CollisionEstimator();
+
+  /** Box area of an object at {@code distance}, which shrinks with the square of the distance. */
+  private static float area(final float distance) {
+    return 10000f / (distance * distance);
+  }
+
+  /**
+   * Feeds {@code frames} samples of an object starting at {@code distance} and moving towards the
+   * camera at {@code speed} per second, returning the last estimate.
+   */
+  private float approach(final float distance, final float speed, final int frames) {
+    float ttc = Float.NaN;
+    for (int i = 0; i < frames; ++i) {
+      final float d = distance - speed * i * FRAME_NS / 1e9f;
+      ttc = estimator.update(TRACK, area(d), i * FRAME_NS);
+    }
+    return ttc;
+  }
+
+  @Test
+  public void approachingObjectEstimatesTimeToReachCamera() {
+    // After 0.9s the object is 10 - 1.8 = 8.2 away, 4.1s at 2 per second. The fit measures the
+    // rate at the middle of the 0.9s window, so it runs about 0.45s long.
+    assertEquals(4.55f, approach(10f, 2f, 10), 0.1f);
+  }
+
+  @Test
+  public void fasterApproachGivesShorterTime() {
+    final float slow = approach(10f, 1f, 10);
+    final CollisionEstimator other = new CollisionEstimator();
+    float fast = Float.NaN;
+    for (int i = 0; i < 10; ++i) {
+      fast = other.update(TRACK, area(10f - 4f * i * FRAME_NS / 1e9f), i * FRAME_NS);
+    }
+    assertTrue(fast < slow);
+  }
+
+  @Test
+  public void steadyOrRecedingObjectIsNotApproaching() {
+    assertEquals(Float.POSITIVE_INFINITY, approach(10f, 0f, 10), 0f);
+    assertEquals(Float.POSITIVE_INFINITY, approach(10f, -2f, 20), 0f);
+  }
+
+  @Test
+  public void needsEnoughSamplesOverEnoughTime() {
+    // Two samples are too few, three within 200ms too short.
+    assertEquals(Float.POSITIVE_INFINITY, approach(10f, 2f, 2), 0f);
+    assertEquals(Float.POSITIVE_INFINITY, approach(10f, 2f, 3), 0f);
+    assertTrue(approach(10f, 2f, 4) < Float.POSITIVE_INFINITY);
+  }
+
+  @Test
+  public void samplesOutsideTheWindowAreIgnored() {
+    // A fast approach long ago followed by a still object.
+    approach(10f, 4f, 5);
+    float ttc = Float.NaN;
+    for (int i = 0; i < 5; ++i) {
+      ttc = estimator.update(TRACK, area(5f), 5000_000_000L + i * FRAME_NS);
+    }
+    assertEquals(Float.POSITIVE_INFINITY, ttc, 0f);
+  }
+
+  @Test
+  public void alertsOncePerCooldown() {
+    estimator.update(TRACK, area(10f), 0);
+    assertFalse(estimator.tryAlert(TRACK + 1, 0));
+    assertTrue(estimator.tryAlert(TRACK, 0));
+    assertFalse(estimator.tryAlert(TRACK, 3999_000_000L));
+    assertTrue(estimator.tryAlert(TRACK, 4000_000_000L));
+  }
+
+  @Test
+  public void pruneDropsStaleTracks() {
+    estimator.update(TRACK, area(10f), 0);
+    estimator.prune(1000_000_000L);
+    assertTrue(estimator.tryAlert(TRACK, 1000_000_000L));
+
+    estimator.prune(3000_000_000L);
+    assertFalse(estimator.tryAlert(TRACK, 9000_000_000L));
+  }
+}